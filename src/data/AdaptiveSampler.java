@@ -0,0 +1,290 @@
+package data;
+
+import java.util.List;
+
+import data.ContinuousDataSet.BatchFunction;
+
+/**
+ * Samples a set of functions at x values chosen by how curved they are on
+ * screen. The domain is split into a binary tree of intervals. An interval is
+ * split in half if it is wider than a few pixels, or if any function's value
+ * at its middle is further than the tolerance, in pixels, from the straight
+ * line drawn between its ends. Flat regions end up with few samples and sharp
+ * features with many.
+ *
+ * The tree is kept between calls, so the function is never evaluated twice at
+ * the same x, and panning or zooming only evaluates the functions in the
+ * intervals which need refining for the new view. Each call to {@code sample}
+ * evaluates at most {@code maxEvaluations} new x values, once the budget is
+ * spent the cached samples are used as they are.
+ *
+ * Not thread safe, used under the lock of the {@code FunctionDataSet} owning
+ * it.
+ */
+class AdaptiveSampler {
+
+	/**
+	 * Intervals wider than this many pixels are always split, so features
+	 * narrower than the gap between samples aren't missed entirely.
+	 */
+	private static final double MAX_SEGMENT_PIXELS = 8d;
+
+	/**
+	 * Intervals narrower than this many pixels are never split.
+	 */
+	private static final double MIN_SEGMENT_PIXELS = 0.5d;
+
+	/**
+	 * Once the tree grows past this many nodes it is thrown away and rebuilt
+	 * for the current view, to bound the memory used by the cache.
+	 */
+	private static final int MAX_CACHED_NODES = 1 << 20;
+
+	/**
+	 * An interval of the domain, with every function's value at both ends and,
+	 * once the interval has been split, at its middle.
+	 */
+	private static class Node {
+		private final double xa;
+		private final double xb;
+		private final double[] ya;
+		private final double[] yb;
+		private double[] ym;
+		private Node left;
+		private Node right;
+
+		private Node(double xa, double xb, double[] ya, double[] yb) {
+			this.xa = xa;
+			this.xb = xb;
+			this.ya = ya;
+			this.yb = yb;
+		}
+	}
+
+	private final List<BatchFunction> functions;
+
+	private double tolerance = 0.5d;
+	private int maxEvaluations = 1 << 16;
+
+	private Node root = null;
+	private int nodeCount = 0;
+	private long evaluations = 0;
+
+	/**
+	 * New evaluations left for the current call to {@code sample}.
+	 */
+	private int budget;
+
+	/**
+	 * Range of y values seen in the coarse pass, used to turn y differences
+	 * into pixels.
+	 */
+	private double yMin;
+	private double yMax;
+
+	private final double[] in = new double[1];
+	private final double[] out = new double[1];
+
+	/**
+	 * @param functions
+	 *            Functions to sample, the list is read on every call so
+	 *            {@code reset} must be called whenever it changes
+	 */
+	AdaptiveSampler(List<BatchFunction> functions) {
+		this.functions = functions;
+	}
+
+	void setTolerance(double pixels) {
+		if (!(pixels > 0)) {
+			throw new IllegalArgumentException("Tolerance must be positive: " + pixels);
+		}
+		tolerance = pixels;
+	}
+
+	double getTolerance() {
+		return tolerance;
+	}
+
+	void setMaxEvaluations(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Maximum evaluations must be positive: " + n);
+		}
+		maxEvaluations = n;
+	}
+
+	int getMaxEvaluations() {
+		return maxEvaluations;
+	}
+
+	/**
+	 * @return Total number of x values the functions have been evaluated at
+	 */
+	long getEvaluationCount() {
+		return evaluations;
+	}
+
+	/**
+	 * Throws away the cached samples, needed when the functions or the domain
+	 * change.
+	 */
+	void reset() {
+		root = null;
+		nodeCount = 0;
+	}
+
+	/**
+	 * Samples the functions across the visible part of the domain.
+	 *
+	 * @param domainMin
+	 *            Smallest x value the tree covers
+	 * @param domainMax
+	 *            Largest x value the tree covers
+	 * @param xMin
+	 *            Smallest visible x value
+	 * @param xMax
+	 *            Largest visible x value
+	 * @param width
+	 *            Width of the view in pixels
+	 * @param height
+	 *            Height of the view in pixels
+	 * @param x
+	 *            Empty column to add the sampled x values to
+	 * @param ys
+	 *            Empty columns to add each function's values to
+	 */
+	void sample(double domainMin, double domainMax, double xMin, double xMax, int width, int height, DoubleColumn x,
+			DoubleColumn[] ys) {
+		xMin = Math.max(xMin, domainMin);
+		xMax = Math.min(xMax, domainMax);
+		if (!(xMin < xMax)) {
+			return;
+		}
+		if (root == null || root.xa != domainMin || root.xb != domainMax || nodeCount > MAX_CACHED_NODES) {
+			root = new Node(domainMin, domainMax, evaluate(domainMin), evaluate(domainMax));
+			nodeCount = 1;
+		}
+		budget = maxEvaluations;
+		double pxPerX = Math.max(width, 1) / (xMax - xMin);
+
+		// Coarse pass to find the rough y range, so deviations can be
+		// measured in pixels
+		yMin = Double.POSITIVE_INFINITY;
+		yMax = Double.NEGATIVE_INFINITY;
+		coarse(root, xMin, xMax, pxPerX);
+		double yRange = yMax - yMin;
+		double pxPerY = yRange > 0 && !Double.isInfinite(yRange) ? Math.max(height, 1) / yRange : 1d;
+
+		refine(root, xMin, xMax, pxPerX, pxPerY, x, ys);
+	}
+
+	private void coarse(Node node, double xMin, double xMax, double pxPerX) {
+		if (node.xb < xMin || node.xa > xMax) {
+			return;
+		}
+		if ((node.xb - node.xa) * pxPerX > MAX_SEGMENT_PIXELS && split(node)) {
+			coarse(node.left, xMin, xMax, pxPerX);
+			coarse(node.right, xMin, xMax, pxPerX);
+		} else {
+			includeInRange(node.ya);
+			includeInRange(node.yb);
+		}
+	}
+
+	private void refine(Node node, double xMin, double xMax, double pxPerX, double pxPerY, DoubleColumn x,
+			DoubleColumn[] ys) {
+		if (node.xb < xMin || node.xa > xMax) {
+			return;
+		}
+		if (needsSplit(node, pxPerX, pxPerY)) {
+			refine(node.left, xMin, xMax, pxPerX, pxPerY, x, ys);
+			refine(node.right, xMin, xMax, pxPerX, pxPerY, x, ys);
+		} else {
+			if (x.isEmpty()) {
+				emit(node.xa, node.ya, x, ys);
+			}
+			emit(node.xb, node.yb, x, ys);
+		}
+	}
+
+	private boolean needsSplit(Node node, double pxPerX, double pxPerY) {
+		double pixels = (node.xb - node.xa) * pxPerX;
+		if (pixels <= MIN_SEGMENT_PIXELS) {
+			return false;
+		}
+		if (pixels > MAX_SEGMENT_PIXELS) {
+			return split(node);
+		}
+		if (!split(node)) {
+			return false;
+		}
+		for (int f = 0; f < node.ym.length; f++) {
+			double a = node.ya[f];
+			double b = node.yb[f];
+			double m = node.ym[f];
+			boolean finite = isFinite(a) && isFinite(b) && isFinite(m);
+			if (finite) {
+				if (Math.abs(m - (a + b) / 2d) * pxPerY > tolerance) {
+					return true;
+				}
+			} else if (isFinite(a) || isFinite(b) || isFinite(m)) {
+				// Narrow down where the function stops being finite
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Splits the node in half if it hasn't been already, evaluating the
+	 * functions at its middle.
+	 *
+	 * @return False if the node can't be split, because the evaluation budget
+	 *         is spent or the interval can't be halved any further
+	 */
+	private boolean split(Node node) {
+		if (node.ym != null) {
+			return true;
+		}
+		double xm = node.xa + (node.xb - node.xa) / 2d;
+		if (budget <= 0 || xm <= node.xa || xm >= node.xb) {
+			return false;
+		}
+		budget--;
+		node.ym = evaluate(xm);
+		node.left = new Node(node.xa, xm, node.ya, node.ym);
+		node.right = new Node(xm, node.xb, node.ym, node.yb);
+		nodeCount += 2;
+		return true;
+	}
+
+	private double[] evaluate(double value) {
+		double[] y = new double[functions.size()];
+		in[0] = value;
+		for (int f = 0; f < y.length; f++) {
+			functions.get(f).apply(in, 0, out, 0, 1);
+			y[f] = out[0];
+		}
+		evaluations += y.length;
+		return y;
+	}
+
+	private void includeInRange(double[] y) {
+		for (double d : y) {
+			if (isFinite(d)) {
+				yMin = Math.min(yMin, d);
+				yMax = Math.max(yMax, d);
+			}
+		}
+	}
+
+	private static void emit(double xValue, double[] y, DoubleColumn x, DoubleColumn[] ys) {
+		x.addDouble(xValue);
+		for (int f = 0; f < ys.length; f++) {
+			ys[f].addDouble(y[f]);
+		}
+	}
+
+	private static boolean isFinite(double d) {
+		return !Double.isNaN(d) && !Double.isInfinite(d);
+	}
+}
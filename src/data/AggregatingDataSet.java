@@ -0,0 +1,342 @@
+package data;
+
+import interfaces.DataChange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Categoric dataset which aggregates raw rows as they are added, rather than
+ * storing them. Each row added is an event, a category and a value for each
+ * series, and the dataset keeps the sum, count, smallest, largest and mean of
+ * each series' values for each category. The dataset has one row per
+ * category, in the order the categories were first seen, and its dependent
+ * datasets hold the chosen {@code Aggregate} of each series, so a
+ * {@code BarGraph} observing it draws one bar per category.
+ *
+ * Aggregates are kept in primitive arrays indexed by the category's code in
+ * the {@code CategoryColumn} of independent values, so adding an event is a
+ * hash lookup and a few array writes, and memory use only grows with the
+ * number of categories, however many events are added. NaN values are left
+ * out of the aggregates, as missing values. The dependent datasets are only
+ * written once per batch, for the categories the batch changed, so a batch of
+ * one event costs the same however many categories there are, apart from
+ * copying the values a published snapshot still shares.
+ *
+ * Events can only be added with {@code addRow} or {@code addRows}, setting or
+ * adding to the independent dataset on its own throws an
+ * {@code UnsupportedOperationException}. Adding a batch of events which only
+ * adds new categories is reported to observers as rows appended.
+ *
+ * All operations in this class are thread safe.
+ */
+public class AggregatingDataSet extends CategoricDataSet {
+
+	/**
+	 * The aggregates kept for each series and category.
+	 */
+	public enum Aggregate {
+		/**
+		 * The sum of the values, 0 if there are none.
+		 */
+		SUM,
+
+		/**
+		 * The number of values.
+		 */
+		COUNT,
+
+		/**
+		 * The smallest value, NaN if there are none.
+		 */
+		MIN,
+
+		/**
+		 * The largest value, NaN if there are none.
+		 */
+		MAX,
+
+		/**
+		 * The mean of the values, NaN if there are none.
+		 */
+		MEAN
+	}
+
+	/**
+	 * Aggregates of each series, in the same order as the dependent datasets.
+	 */
+	private final List<Accumulator> accumulators = new ArrayList<>();
+
+	private Aggregate aggregate;
+
+	/**
+	 * Number of batches added, and the batch each category was last changed
+	 * in, indexed by the category's code.
+	 */
+	private int batch = 0;
+	private int[] changedIn = new int[16];
+
+	/**
+	 * Codes of the categories the current batch changed which were already
+	 * there before it.
+	 */
+	private int[] changed = new int[16];
+	private int changedCount = 0;
+
+	/**
+	 * Creates a dataset with no categories.
+	 *
+	 * @param series
+	 *            Number of values in each event
+	 * @param aggregate
+	 *            The aggregate the dependent datasets hold
+	 */
+	public AggregatingDataSet(int series, Aggregate aggregate) {
+		if (series < 0) {
+			throw new IllegalArgumentException("Number of series must not be negative: " + series);
+		}
+		this.aggregate = Objects.requireNonNull(aggregate);
+		for (int i = 0; i < series; i++) {
+			accumulators.add(new Accumulator());
+			depVars.add(new DoubleColumn());
+		}
+		publish();
+	}
+
+	/**
+	 * @return The aggregate the dependent datasets hold
+	 */
+	public synchronized Aggregate getAggregate() {
+		return aggregate;
+	}
+
+	/**
+	 * Changes the aggregate the dependent datasets hold, recalculating them
+	 * from the aggregates already kept.
+	 *
+	 * @param aggregate
+	 *            The new aggregate
+	 */
+	public synchronized void setAggregate(Aggregate aggregate) {
+		Objects.requireNonNull(aggregate);
+		if (aggregate == this.aggregate) {
+			return;
+		}
+		this.aggregate = aggregate;
+		int size = indVars.size();
+		for (int i = 0; i < accumulators.size(); i++) {
+			// A new column, rather than copying the one a snapshot shares and
+			// then overwriting it
+			Accumulator accumulator = accumulators.get(i);
+			DoubleColumn column = new DoubleColumn(size);
+			for (int row = 0; row < size; row++) {
+				column.addDouble(accumulator.get(aggregate, row));
+			}
+			depVars.set(i, column);
+		}
+		update();
+	}
+
+	/**
+	 * Gets any of the aggregates of a category, not only the one the dependent
+	 * datasets hold.
+	 *
+	 * @param category
+	 *            The category
+	 * @param series
+	 *            Index of the series
+	 * @param aggregate
+	 *            The aggregate to get
+	 * @return The aggregate of the series' values for the category, as if no
+	 *         values were added if no event has had the category
+	 */
+	public synchronized double getValue(String category, int series, Aggregate aggregate) {
+		Objects.requireNonNull(category);
+		Objects.requireNonNull(aggregate);
+		if (series < 0 || series >= accumulators.size()) {
+			throw new IndexOutOfBoundsException("Series: " + series + ", Size: " + accumulators.size());
+		}
+		return accumulators.get(series).get(aggregate, ((CategoryColumn) indVars).codeOf(category));
+	}
+
+	/**
+	 * Adds a batch of events, updating the observers once for the whole
+	 * batch.
+	 *
+	 * @param rows
+	 *            Events to be added, each a category and a value for each
+	 *            series
+	 */
+	@Override
+	public synchronized void addRows(List<? extends Row<String>> rows) {
+		Objects.requireNonNull(rows);
+		for (Row<String> row : rows) {
+			checkRow(row, accumulators.size());
+			Objects.requireNonNull(row.getIndependent());
+		}
+		CategoryColumn categories = (CategoryColumn) indVars;
+		int from = categories.size();
+		batch++;
+		changedCount = 0;
+		for (Row<String> row : rows) {
+			int code = categories.encode(row.getIndependent());
+			if (code == categories.size()) {
+				categories.add(row.getIndependent());
+				for (Accumulator accumulator : accumulators) {
+					accumulator.addCategory();
+				}
+				if (code == changedIn.length) {
+					changedIn = Arrays.copyOf(changedIn, code + (code >> 1));
+				}
+				changedIn[code] = batch;
+			} else if (changedIn[code] != batch) {
+				changedIn[code] = batch;
+				if (changedCount == changed.length) {
+					changed = Arrays.copyOf(changed, changedCount + (changedCount >> 1));
+				}
+				changed[changedCount++] = code;
+			}
+			double[] y = row.getDependent();
+			for (int i = 0; i < y.length; i++) {
+				accumulators.get(i).add(code, y[i]);
+			}
+		}
+		write(from);
+		if (changedCount > 0) {
+			update();
+		} else {
+			update(DataChange.Type.ROWS_APPENDED, from, categories.size());
+		}
+	}
+
+	/**
+	 * Writes the aggregates of the categories changed by the current batch to
+	 * the dependent datasets, once for each category however many of the
+	 * batch's events it had.
+	 *
+	 * @param from
+	 *            Number of categories before the batch, the categories from
+	 *            here on were added by it
+	 */
+	private void write(int from) {
+		int size = indVars.size();
+		for (int i = 0; i < accumulators.size(); i++) {
+			Accumulator accumulator = accumulators.get(i);
+			DoubleColumn column = (DoubleColumn) depVars.get(i);
+			for (int c = 0; c < changedCount; c++) {
+				column.setDouble(changed[c], accumulator.get(aggregate, changed[c]));
+			}
+			column.ensureCapacity(size);
+			for (int code = from; code < size; code++) {
+				column.addDouble(accumulator.get(aggregate, code));
+			}
+		}
+	}
+
+	/**
+	 * Removes the series at the given index, and its aggregates.
+	 */
+	@Override
+	public synchronized void removeDependent(int dataSet) {
+		if (dataSet < 0 || dataSet >= accumulators.size()) {
+			throw new IndexOutOfBoundsException("Series: " + dataSet + ", Size: " + accumulators.size());
+		}
+		accumulators.remove(dataSet);
+		super.removeDependent(dataSet);
+	}
+
+	/**
+	 * Removes every category and its aggregates, keeping the series.
+	 */
+	public synchronized void clear() {
+		indVars.clear();
+		for (int i = 0; i < accumulators.size(); i++) {
+			accumulators.set(i, new Accumulator());
+			depVars.set(i, new DoubleColumn());
+		}
+		update();
+	}
+
+	/**
+	 * Not supported, series are given when the dataset is created, and their
+	 * values come from the events added.
+	 */
+	@Override
+	public void addDependentSet(Collection<Double> l) {
+		throw new UnsupportedOperationException("Series of an aggregating dataset are given when it is created");
+	}
+
+	/**
+	 * Not supported, categories come from the events added.
+	 */
+	@Override
+	public void setIndependent(Collection<String> c) {
+		throw new UnsupportedOperationException("Events of an aggregating dataset must be added with addRow");
+	}
+
+	/**
+	 * Not supported, categories come from the events added.
+	 */
+	@Override
+	public void addToIndependent(String t) {
+		throw new UnsupportedOperationException("Events of an aggregating dataset must be added with addRow");
+	}
+
+	/**
+	 * Aggregates of one series' values for each category, indexed by the
+	 * category's code.
+	 */
+	private static final class Accumulator {
+		private double[] sums = new double[16];
+		private long[] counts = new long[16];
+		private double[] mins = new double[16];
+		private double[] maxs = new double[16];
+		private int size = 0;
+
+		void addCategory() {
+			if (size == sums.length) {
+				int capacity = size + (size >> 1);
+				sums = Arrays.copyOf(sums, capacity);
+				counts = Arrays.copyOf(counts, capacity);
+				mins = Arrays.copyOf(mins, capacity);
+				maxs = Arrays.copyOf(maxs, capacity);
+			}
+			sums[size] = 0;
+			counts[size] = 0;
+			mins[size] = Double.POSITIVE_INFINITY;
+			maxs[size] = Double.NEGATIVE_INFINITY;
+			size++;
+		}
+
+		void add(int code, double value) {
+			if (Double.isNaN(value)) {
+				return;
+			}
+			sums[code] += value;
+			counts[code]++;
+			mins[code] = Math.min(mins[code], value);
+			maxs[code] = Math.max(maxs[code], value);
+		}
+
+		double get(Aggregate aggregate, int code) {
+			long count = code >= 0 && code < size ? counts[code] : 0;
+			switch (aggregate) {
+			case SUM:
+				return count == 0 ? 0 : sums[code];
+			case COUNT:
+				return count;
+			case MIN:
+				return count == 0 ? Double.NaN : mins[code];
+			case MAX:
+				return count == 0 ? Double.NaN : maxs[code];
+			case MEAN:
+				return count == 0 ? Double.NaN : sums[code] / count;
+			default:
+				throw new IllegalArgumentException("Unknown aggregate: " + aggregate);
+			}
+		}
+	}
+}
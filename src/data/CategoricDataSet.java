@@ -1,8 +1,18 @@
-
 package data;
 
 /**
- * Class to "enforce" the use of strings in independent variables, doesn't add
- * any functionality to {@code DataSet}
+ * Class to "enforce" the use of strings in independent variables. The
+ * independent variables are stored in a {@code CategoryColumn}, as a code for
+ * each row into a table of the distinct strings, so a dataset with many rows
+ * but few categories stores each category once, and graphs can group and
+ * measure the categories by their codes.
  */
-public class CategoricDataSet extends DataSet<String> {}
\ No newline at end of file
+public class CategoricDataSet extends DataSet<String> {
+
+	/**
+	 * Creates an empty dataset.
+	 */
+	public CategoricDataSet() {
+		super(new CategoryColumn());
+	}
+}
@@ -0,0 +1,266 @@
+package data;
+
+import interfaces.CategoryList;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of strings, stored as an {@code int} code for each value
+ * and a table of the distinct strings, for categoric datasets with many rows
+ * but few categories. Each distinct string is stored once however many rows
+ * have it, and finding the code of a string being added is a hash lookup.
+ *
+ * Codes are given out in the order categories are first added, and a
+ * category keeps its code until the column is cleared, even if no value has
+ * it any more. Like {@code ListColumn}, snapshots share the column's arrays
+ * until a value they can see is changed. The table of strings is only ever
+ * added to, so snapshots always share it.
+ *
+ * This class is not thread safe, the {@code DataSet} owning a column is
+ * responsible for guarding access to it. Snapshots can be read from any
+ * thread.
+ */
+public class CategoryColumn extends AbstractList<String> implements CategoryList, RandomAccess, Column<String> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] codes = new int[DEFAULT_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * True if a snapshot is sharing the array of codes.
+	 */
+	private boolean shared = false;
+
+	/**
+	 * The distinct strings in order of their codes, and the code of each.
+	 */
+	private String[] categories = new String[DEFAULT_CAPACITY];
+	private int categoryCount = 0;
+	private Map<String, Integer> lookup = new HashMap<>();
+
+	@Override
+	public String get(int index) {
+		checkIndex(index);
+		return categories[codes[index]];
+	}
+
+	@Override
+	public int getCode(int index) {
+		checkIndex(index);
+		return codes[index];
+	}
+
+	@Override
+	public void getCodes(int from, int[] dest, int destOffset, int length) {
+		if (from < 0 || length < 0 || from + length > size) {
+			throw new IndexOutOfBoundsException("From: " + from + ", Length: " + length + ", Size: " + size);
+		}
+		System.arraycopy(codes, from, dest, destOffset, length);
+	}
+
+	@Override
+	public int getCategoryCount() {
+		return categoryCount;
+	}
+
+	@Override
+	public String getCategory(int code) {
+		if (code < 0 || code >= categoryCount) {
+			throw new IndexOutOfBoundsException("Code: " + code + ", Categories: " + categoryCount);
+		}
+		return categories[code];
+	}
+
+	/**
+	 * Gets the code of a category, adding it to the table of categories if it
+	 * isn't in it yet.
+	 *
+	 * @param category
+	 *            The category
+	 * @return The category's code
+	 */
+	public int encode(String category) {
+		Objects.requireNonNull(category);
+		Integer code = lookup.get(category);
+		if (code != null) {
+			return code;
+		}
+		if (categoryCount == categories.length) {
+			// Snapshots keep the old array, which never changes again
+			categories = Arrays.copyOf(categories, categoryCount + (categoryCount >> 1));
+		}
+		categories[categoryCount] = category;
+		lookup.put(category, categoryCount);
+		return categoryCount++;
+	}
+
+	/**
+	 * Gets the code of a category without adding it.
+	 *
+	 * @param category
+	 *            The category
+	 * @return The category's code, or -1 if it isn't in the table
+	 */
+	public int codeOf(String category) {
+		Integer code = lookup.get(category);
+		return code == null ? -1 : code;
+	}
+
+	@Override
+	public String set(int index, String s) {
+		checkIndex(index);
+		int code = encode(s);
+		unshare();
+		String old = categories[codes[index]];
+		codes[index] = code;
+		return old;
+	}
+
+	@Override
+	public boolean add(String s) {
+		int code = encode(s);
+		ensureCapacity(size + 1);
+		codes[size++] = code;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void add(int index, String s) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		int code = encode(s);
+		ensureCapacity(size + 1);
+		if (index < size) {
+			unshare();
+		}
+		System.arraycopy(codes, index, codes, index + 1, size - index);
+		codes[index] = code;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public String remove(int index) {
+		checkIndex(index);
+		unshare();
+		String old = categories[codes[index]];
+		System.arraycopy(codes, index + 1, codes, index, size - index - 1);
+		size--;
+		modCount++;
+		return old;
+	}
+
+	/**
+	 * Removes every value, and starts a new table of categories.
+	 */
+	@Override
+	public void clear() {
+		if (shared) {
+			codes = new int[DEFAULT_CAPACITY];
+			shared = false;
+		}
+		size = 0;
+		categories = new String[DEFAULT_CAPACITY];
+		categoryCount = 0;
+		lookup = new HashMap<>();
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<String> snapshot() {
+		shared = true;
+		return new View(codes, size, categories, categoryCount);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > codes.length) {
+			codes = Arrays.copyOf(codes, Math.max(capacity, codes.length + (codes.length >> 1)));
+			shared = false;
+		}
+	}
+
+	private void unshare() {
+		if (shared) {
+			codes = codes.clone();
+			shared = false;
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Immutable view of the first {@code size} codes of an array and the
+	 * first {@code categoryCount} categories of another, neither of which will
+	 * ever change.
+	 */
+	private static class View extends AbstractList<String> implements CategoryList, RandomAccess {
+		private final int[] codes;
+		private final int size;
+		private final String[] categories;
+		private final int categoryCount;
+
+		private View(int[] codes, int size, String[] categories, int categoryCount) {
+			this.codes = codes;
+			this.size = size;
+			this.categories = categories;
+			this.categoryCount = categoryCount;
+		}
+
+		@Override
+		public String get(int index) {
+			return categories[getCode(index)];
+		}
+
+		@Override
+		public int getCode(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return codes[index];
+		}
+
+		@Override
+		public void getCodes(int from, int[] dest, int destOffset, int length) {
+			if (from < 0 || length < 0 || from + length > size) {
+				throw new IndexOutOfBoundsException("From: " + from + ", Length: " + length + ", Size: " + size);
+			}
+			System.arraycopy(codes, from, dest, destOffset, length);
+		}
+
+		@Override
+		public int getCategoryCount() {
+			return categoryCount;
+		}
+
+		@Override
+		public String getCategory(int code) {
+			if (code < 0 || code >= categoryCount) {
+				throw new IndexOutOfBoundsException("Code: " + code + ", Categories: " + categoryCount);
+			}
+			return categories[code];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+package data;
+
+import interfaces.ChangeBatch;
+import interfaces.DataChange;
+import interfaces.DataSnapshot;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the changes made to a data model to {@code Flow.Subscriber}s, for
+ * consumers which aren't swing observers, such as file writers or alerting.
+ * Each change is published as a {@code ChangeBatch} holding the change and the
+ * snapshot it produced.
+ *
+ * Subscribers apply backpressure the same way swing observers are rate
+ * limited by a {@code NotificationCoalescer}: each subscriber has at most one
+ * batch pending, and changes made while it has no demand are merged into that
+ * batch rather than queued. A slow subscriber receives fewer, larger batches,
+ * and never makes the publisher hold more than one batch for it.
+ *
+ * Batches are delivered to each subscriber on the publisher's executor, one at
+ * a time and in order, so a slow subscriber never holds up the data model or
+ * other subscribers. Submitting a change with no subscribers costs nothing
+ * more than checking for them.
+ *
+ * All methods in this class are thread safe.
+ *
+ * @param <I>
+ *            Type of the model's independent values
+ * @param <D>
+ *            Type of the model's dependent values
+ */
+public class ChangePublisher<I, D> implements Flow.Publisher<ChangeBatch<I, D>> {
+
+	private final Executor executor;
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	private volatile boolean closed = false;
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong merged = new AtomicLong();
+
+	/**
+	 * Creates a publisher delivering batches on the common fork join pool.
+	 */
+	public ChangePublisher() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a publisher delivering batches on the given executor.
+	 *
+	 * @param executor
+	 *            Executor to call the subscribers on
+	 */
+	public ChangePublisher(Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+	}
+
+	/**
+	 * Adds a subscriber, which is sent every change submitted from then on. If
+	 * the publisher has been closed, the subscriber is completed straight
+	 * away.
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super ChangeBatch<I, D>> subscriber) {
+		Objects.requireNonNull(subscriber);
+		Subscription s = new Subscription(subscriber);
+		subscriptions.add(s);
+		// Checked after adding, so a subscriber added while the publisher is
+		// being closed is completed either here or by close
+		if (closed) {
+			s.complete();
+		} else {
+			s.signal();
+		}
+	}
+
+	/**
+	 * Sends a change to every subscriber, merging it with any batch still
+	 * pending for a subscriber. Ignored once the publisher is closed.
+	 *
+	 * @param change
+	 *            What changed
+	 * @param snapshot
+	 *            Snapshot of the model once the change was made
+	 */
+	public void submit(DataChange change, DataSnapshot<I, D> snapshot) {
+		if (closed || subscriptions.isEmpty()) {
+			return;
+		}
+		ChangeBatch<I, D> batch = new ChangeBatch<>(change, snapshot);
+		submitted.incrementAndGet();
+		for (Subscription s : subscriptions) {
+			s.offer(batch);
+		}
+	}
+
+	/**
+	 * Stops publishing. Each subscriber is sent the batch still pending for
+	 * it, once it has the demand for it, and then completed.
+	 */
+	public void close() {
+		closed = true;
+		for (Subscription s : subscriptions) {
+			s.complete();
+		}
+	}
+
+	/**
+	 * @return True if the publisher has been closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return Number of subscribers which haven't cancelled or been completed
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * @return True if there is at least one subscriber
+	 */
+	public boolean hasSubscribers() {
+		return !subscriptions.isEmpty();
+	}
+
+	/**
+	 * @return Number of changes submitted while there were subscribers
+	 */
+	public long getSubmittedCount() {
+		return submitted.get();
+	}
+
+	/**
+	 * @return Number of batches delivered, across all subscribers
+	 */
+	public long getDeliveredCount() {
+		return delivered.get();
+	}
+
+	/**
+	 * @return Number of changes merged into a batch already pending for a
+	 *         subscriber, across all subscribers
+	 */
+	public long getMergedCount() {
+		return merged.get();
+	}
+
+	/**
+	 * One subscriber, its demand and the batch pending for it. Calls to the
+	 * subscriber are made by {@code drain}, which only ever runs on one thread
+	 * at a time.
+	 */
+	private final class Subscription implements Flow.Subscription {
+		private final Flow.Subscriber<? super ChangeBatch<I, D>> subscriber;
+
+		private final AtomicReference<ChangeBatch<I, D>> pending = new AtomicReference<>();
+		private final AtomicLong demand = new AtomicLong();
+
+		/**
+		 * Number of signals not yet handled by {@code drain}, a drain is
+		 * scheduled whenever it goes up from zero.
+		 */
+		private final AtomicInteger signals = new AtomicInteger();
+
+		private volatile boolean cancelled = false;
+		private volatile boolean completing = false;
+		private volatile Throwable error = null;
+
+		/**
+		 * Only accessed by {@code drain}.
+		 */
+		private boolean subscribed = false;
+		private boolean done = false;
+
+		private Subscription(Flow.Subscriber<? super ChangeBatch<I, D>> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		void offer(ChangeBatch<I, D> batch) {
+			if (pending.getAndAccumulate(batch, ChangeBatch::merge) != null) {
+				merged.incrementAndGet();
+			}
+			signal();
+		}
+
+		void complete() {
+			completing = true;
+			signal();
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				error = new IllegalArgumentException("Demand must be positive: " + n);
+			} else {
+				demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+			}
+			signal();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+		}
+
+		void signal() {
+			if (signals.getAndIncrement() == 0) {
+				try {
+					executor.execute(this::drain);
+				} catch (RejectedExecutionException e) {
+					// Nothing can be delivered to the subscriber any more
+					cancel();
+				}
+			}
+		}
+
+		private void drain() {
+			int missed = 1;
+			do {
+				if (!subscribed) {
+					subscribed = true;
+					try {
+						subscriber.onSubscribe(this);
+					} catch (RuntimeException e) {
+						cancel();
+						done = true;
+					}
+				}
+				if (!done) {
+					step();
+				}
+				missed = signals.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		/**
+		 * Delivers the pending batch if there is demand for it, or completes
+		 * the subscriber if it has cancelled, asked for an invalid demand or
+		 * the publisher has closed.
+		 */
+		private void step() {
+			if (cancelled) {
+				done = true;
+				pending.set(null);
+				return;
+			}
+			Throwable t = error;
+			if (t != null) {
+				done = true;
+				cancel();
+				subscriber.onError(t);
+				return;
+			}
+			if (demand.get() > 0) {
+				ChangeBatch<I, D> batch = pending.getAndSet(null);
+				if (batch != null) {
+					if (demand.get() != Long.MAX_VALUE) {
+						demand.decrementAndGet();
+					}
+					delivered.incrementAndGet();
+					try {
+						subscriber.onNext(batch);
+					} catch (RuntimeException e) {
+						// A subscriber throwing is treated as cancelling
+						done = true;
+						cancel();
+						return;
+					}
+				}
+			}
+			if (completing && pending.get() == null) {
+				done = true;
+				cancel();
+				subscriber.onComplete();
+			}
+		}
+	}
+}
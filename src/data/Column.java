@@ -0,0 +1,28 @@
+package data;
+
+import java.util.List;
+
+/**
+ * A column of values which can give out immutable snapshots of itself without
+ * copying its contents. Columns share their storage with the snapshots they
+ * give out, and copy it before changing any value a snapshot can see.
+ *
+ * @param <E>
+ *            Type of value in the column
+ */
+interface Column<E> extends List<E> {
+
+	/**
+	 * @return An immutable view of the column as it is now
+	 */
+	List<E> snapshot();
+
+	/**
+	 * @return Number of values dropped from the start of the column, so the
+	 *         first value in the column is this many values after the first
+	 *         one ever added. Zero for columns which never drop values.
+	 */
+	default long firstRow() {
+		return 0;
+	}
+}
@@ -0,0 +1,519 @@
+package data;
+
+import interfaces.DataSnapshot;
+import interfaces.DoubleList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Binary columnar file holding a saved dataset, so a recording can be
+ * reopened without parsing it again. {@code write} saves every recorded row of
+ * a {@code ContinuousDataSet}, {@code CategoricDataSet} or any other dataset
+ * with number or string independent values, rather than the sample a
+ * {@code SampledDataSet} shows graphs, and {@code open} memory maps a
+ * saved file. The columns of an open file are read straight from the mapping,
+ * so opening a file of any size costs a few calls to {@code mmap}, and only
+ * the parts of the file actually read are loaded.
+ *
+ * The file is made of, in order, all little endian:
+ * <ul>
+ * <li>A 32 byte header: the magic number, the format version, flags, the
+ * number of rows, the number of dependent datasets and the number of values in
+ * each block of the statistics.</li>
+ * <li>The column directory: the offsets of the values and of the statistics
+ * of each column of doubles, the independent values first if they are
+ * numbers, then the offset of the string table if they aren't.</li>
+ * <li>Each column's values as doubles, optionally followed by the smallest and
+ * largest value in each block of values, ignoring NaN. Every column starts on
+ * an 8 byte boundary.</li>
+ * <li>For string independent values, the string table: each value as its
+ * length in bytes then its UTF-8 bytes.</li>
+ * </ul>
+ *
+ * Saved functions aren't kept, only the values they had when the file was
+ * written. An open file never changes, and can be read from any thread.
+ */
+public final class ColumnarFile implements Closeable {
+
+	/**
+	 * Number of values in each block of statistics unless told otherwise.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 12;
+
+	private static final long MAGIC = 0x4A47434F4C530001L;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+
+	private static final int FLAG_CATEGORIC = 1;
+	private static final int FLAG_STATS = 2;
+
+	/**
+	 * Number of values written at once.
+	 */
+	private static final int WRITE_BLOCK = 1 << 13;
+
+	private final FileChannel channel;
+	private final int rows;
+	private final int blockSize;
+	private final DoubleList independent;
+	private final List<String> categories;
+	private final List<DoubleList> dependent = new ArrayList<>();
+	private final List<DoubleList> stats = new ArrayList<>();
+
+	private ColumnarFile(FileChannel channel, Path file) throws IOException {
+		this.channel = channel;
+		long length = channel.size();
+		if (length < HEADER_BYTES) {
+			throw new IOException("Not a columnar file: " + file);
+		}
+		ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getLong(0) != MAGIC) {
+			throw new IOException("Not a columnar file: " + file);
+		}
+		if (header.getInt(8) != VERSION) {
+			throw new IOException("Unsupported columnar file version " + header.getInt(8) + ": " + file);
+		}
+		int flags = header.getInt(12);
+		long rowCount = header.getLong(16);
+		int dependents = header.getInt(24);
+		blockSize = header.getInt(28);
+		boolean categoric = (flags & FLAG_CATEGORIC) != 0;
+		boolean hasStats = (flags & FLAG_STATS) != 0;
+		int columns = dependents + (categoric ? 0 : 1);
+		if (rowCount < 0 || rowCount > Integer.MAX_VALUE || dependents < 0 || hasStats && blockSize < 1
+				|| HEADER_BYTES + columns * 16L + 8 > length) {
+			throw new IOException("Corrupt columnar file: " + file);
+		}
+		rows = (int) rowCount;
+
+		ByteBuffer directory = channel.map(MapMode.READ_ONLY, HEADER_BYTES, columns * 16L + 8).order(
+				ByteOrder.LITTLE_ENDIAN);
+		long blocks = hasStats ? (rows + (long) blockSize - 1) / blockSize : 0;
+		for (int c = 0; c < columns; c++) {
+			long values = directory.getLong(c * 16);
+			long statsOffset = directory.getLong(c * 16 + 8);
+			if (values < 0 || values + rows * 8L > length || hasStats
+					&& (statsOffset < 0 || statsOffset + blocks * 16 > length)) {
+				throw new IOException("Corrupt columnar file: " + file);
+			}
+			DoubleList list = map(values, rows);
+			if (c == 0 && !categoric) {
+				continue;
+			}
+			dependent.add(list);
+			stats.add(hasStats ? map(statsOffset, blocks * 2) : null);
+		}
+		if (categoric) {
+			independent = null;
+			categories = readStrings(directory.getLong(columns * 16), length, file);
+		} else {
+			independent = map(directory.getLong(0), rows);
+			categories = null;
+		}
+	}
+
+	/**
+	 * Opens a saved dataset.
+	 *
+	 * @param file
+	 *            File written by {@code write}
+	 * @return The open file
+	 * @throws IOException
+	 *             If the file can't be read, or isn't a columnar file
+	 */
+	public static ColumnarFile open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(Objects.requireNonNull(file), StandardOpenOption.READ);
+		try {
+			return new ColumnarFile(channel, file);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Saves every row the dataset has recorded, with statistics for blocks of
+	 * {@code DEFAULT_BLOCK_SIZE} values.
+	 *
+	 * @param dataSet
+	 *            Dataset to save
+	 * @param file
+	 *            File to write, replaced if it exists
+	 * @throws IOException
+	 *             If the file can't be written
+	 */
+	public static void write(DataSet<?> dataSet, Path file) throws IOException {
+		write(dataSet, file, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Saves every row the dataset has recorded, as returned by
+	 * {@code getRecording}. The independent values must all be numbers, or,
+	 * for a {@code CategoricDataSet}, strings.
+	 *
+	 * @param dataSet
+	 *            Dataset to save
+	 * @param file
+	 *            File to write, replaced if it exists
+	 * @param blockSize
+	 *            Number of values in each block of statistics, zero to write
+	 *            no statistics
+	 * @throws IOException
+	 *             If the file can't be written
+	 */
+	public static void write(DataSet<?> dataSet, Path file, int blockSize) throws IOException {
+		Objects.requireNonNull(dataSet);
+		Objects.requireNonNull(file);
+		if (blockSize < 0) {
+			throw new IllegalArgumentException("Block size must not be negative: " + blockSize);
+		}
+		DataSnapshot<?, Double> snapshot = dataSet.getRecording();
+		boolean categoric = dataSet instanceof CategoricDataSet;
+		List<?> ind = snapshot.getIndependent();
+		List<List<Double>> dep = snapshot.getDependent();
+		int rows = ind.size();
+		for (List<Double> l : dep) {
+			if (l.size() != rows) {
+				throw new IllegalArgumentException("Dependent dataset has " + l.size() + " values, but there are "
+						+ rows + " rows");
+			}
+		}
+
+		List<DoubleList> columns = new ArrayList<>();
+		if (!categoric) {
+			columns.add(toDoubleList(ind));
+		}
+		for (List<Double> l : dep) {
+			columns.add(toDoubleList(l));
+		}
+		long blocks = blockSize == 0 ? 0 : (rows + (long) blockSize - 1) / blockSize;
+		long offset = HEADER_BYTES + columns.size() * 16L + 8;
+		long[] valueOffsets = new long[columns.size()];
+		long[] statsOffsets = new long[columns.size()];
+		for (int c = 0; c < columns.size(); c++) {
+			valueOffsets[c] = offset;
+			offset += rows * 8L;
+			if (blockSize != 0) {
+				statsOffsets[c] = offset;
+				offset += blocks * 16;
+			}
+		}
+
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(WRITE_BLOCK * 8).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putLong(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt((categoric ? FLAG_CATEGORIC : 0) | (blockSize != 0 ? FLAG_STATS : 0));
+			buffer.putLong(rows);
+			buffer.putInt(dep.size());
+			buffer.putInt(blockSize);
+			for (int c = 0; c < columns.size(); c++) {
+				if (buffer.remaining() < 16) {
+					drain(out, buffer);
+				}
+				buffer.putLong(valueOffsets[c]);
+				buffer.putLong(statsOffsets[c]);
+			}
+			if (buffer.remaining() < 8) {
+				drain(out, buffer);
+			}
+			buffer.putLong(categoric ? offset : 0);
+			drain(out, buffer);
+
+			double[] values = new double[WRITE_BLOCK];
+			for (DoubleList column : columns) {
+				for (int from = 0; from < rows; from += WRITE_BLOCK) {
+					int n = Math.min(WRITE_BLOCK, rows - from);
+					column.getDoubles(from, values, 0, n);
+					buffer.asDoubleBuffer().put(values, 0, n);
+					buffer.position(n * 8);
+					drain(out, buffer);
+				}
+				if (blockSize != 0) {
+					writeStats(out, buffer, column, blockSize);
+				}
+			}
+			if (categoric) {
+				for (Object o : ind) {
+					byte[] bytes = o.toString().getBytes(StandardCharsets.UTF_8);
+					if (buffer.remaining() < 4) {
+						drain(out, buffer);
+					}
+					buffer.putInt(bytes.length);
+					for (int i = 0; i < bytes.length;) {
+						if (!buffer.hasRemaining()) {
+							drain(out, buffer);
+						}
+						int n = Math.min(buffer.remaining(), bytes.length - i);
+						buffer.put(bytes, i, n);
+						i += n;
+					}
+				}
+				drain(out, buffer);
+			}
+		}
+	}
+
+	/**
+	 * @return Number of rows in the file
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * @return Number of dependent datasets in the file
+	 */
+	public int getDependentCount() {
+		return dependent.size();
+	}
+
+	/**
+	 * @return True if the independent values are strings, false if they are
+	 *         numbers
+	 */
+	public boolean isCategoric() {
+		return categories != null;
+	}
+
+	/**
+	 * @return The independent values, read from the mapped file
+	 * @throws IllegalStateException
+	 *             If the independent values are strings
+	 */
+	public DoubleList getIndependentValues() {
+		if (independent == null) {
+			throw new IllegalStateException("Independent values are strings");
+		}
+		return independent;
+	}
+
+	/**
+	 * @return The independent values
+	 * @throws IllegalStateException
+	 *             If the independent values are numbers
+	 */
+	public List<String> getCategories() {
+		if (categories == null) {
+			throw new IllegalStateException("Independent values are numbers");
+		}
+		return categories;
+	}
+
+	/**
+	 * @param dataSet
+	 *            Index of the dependent dataset, in the order they were added
+	 * @return The dependent dataset, read from the mapped file
+	 */
+	public DoubleList getDependent(int dataSet) {
+		return dependent.get(dataSet);
+	}
+
+	/**
+	 * @return Number of values in each block of statistics, zero if the file
+	 *         has none
+	 */
+	public int getBlockSize() {
+		return stats.isEmpty() || stats.get(0) == null ? 0 : blockSize;
+	}
+
+	/**
+	 * @param dataSet
+	 *            Index of the dependent dataset
+	 * @param block
+	 *            Index of the block, covering the values from
+	 *            {@code block * getBlockSize()}
+	 * @return The smallest value in the block, NaN if every value is NaN
+	 * @throws IllegalStateException
+	 *             If the file has no statistics
+	 */
+	public double getBlockMin(int dataSet, int block) {
+		return blockStats(dataSet).getDouble(block * 2);
+	}
+
+	/**
+	 * @param dataSet
+	 *            Index of the dependent dataset
+	 * @param block
+	 *            Index of the block, covering the values from
+	 *            {@code block * getBlockSize()}
+	 * @return The largest value in the block, NaN if every value is NaN
+	 * @throws IllegalStateException
+	 *             If the file has no statistics
+	 */
+	public double getBlockMax(int dataSet, int block) {
+		return blockStats(dataSet).getDouble(block * 2 + 1);
+	}
+
+	private DoubleList blockStats(int dataSet) {
+		DoubleList b = stats.get(dataSet);
+		if (b == null) {
+			throw new IllegalStateException("File has no block statistics");
+		}
+		return b;
+	}
+
+	/**
+	 * Loads the file into a new {@code ContinuousDataSet}. The values are
+	 * copied from the mapping in bulk, nothing is parsed.
+	 *
+	 * @return A dataset holding every row in the file
+	 * @throws IllegalStateException
+	 *             If the independent values are strings
+	 */
+	public ContinuousDataSet toContinuousDataSet() {
+		ContinuousDataSet dataSet = new ContinuousDataSet();
+		dataSet.setIndependent(getIndependentValues());
+		for (DoubleList l : dependent) {
+			dataSet.addDependentSet(l);
+		}
+		return dataSet;
+	}
+
+	/**
+	 * Loads the file into a new {@code CategoricDataSet}.
+	 *
+	 * @return A dataset holding every row in the file
+	 * @throws IllegalStateException
+	 *             If the independent values are numbers
+	 */
+	public CategoricDataSet toCategoricDataSet() {
+		CategoricDataSet dataSet = new CategoricDataSet();
+		dataSet.setIndependent(getCategories());
+		for (DoubleList l : dependent) {
+			dataSet.addDependentSet(l);
+		}
+		return dataSet;
+	}
+
+	/**
+	 * Closes the file. The mapped columns stay readable until they are
+	 * garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Maps a run of doubles in the file, in regions of
+	 * {@code MappedDoubleList.REGION_SIZE} values.
+	 */
+	private MappedDoubleList map(long offset, long count) throws IOException {
+		int regionCount = (int) ((count + MappedDoubleList.REGION_SIZE - 1) / MappedDoubleList.REGION_SIZE);
+		DoubleBuffer[] regions = new DoubleBuffer[Math.max(regionCount, 1)];
+		regions[0] = DoubleBuffer.allocate(0);
+		for (int r = 0; r < regionCount; r++) {
+			long start = (long) r * MappedDoubleList.REGION_SIZE;
+			long n = Math.min(MappedDoubleList.REGION_SIZE, count - start);
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, offset + start * 8, n * 8);
+			regions[r] = buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		}
+		return new MappedDoubleList(regions, (int) Math.min(count, Integer.MAX_VALUE));
+	}
+
+	private List<String> readStrings(long offset, long length, Path file) throws IOException {
+		if (offset < 0 || offset > length) {
+			throw new IOException("Corrupt columnar file: " + file);
+		}
+		ByteBuffer table = channel.map(MapMode.READ_ONLY, offset, length - offset).order(ByteOrder.LITTLE_ENDIAN);
+		List<String> strings = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			if (table.remaining() < 4) {
+				throw new IOException("Corrupt columnar file: " + file);
+			}
+			int n = table.getInt();
+			if (n < 0 || n > table.remaining()) {
+				throw new IOException("Corrupt columnar file: " + file);
+			}
+			byte[] bytes = new byte[n];
+			table.get(bytes);
+			strings.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+		return Collections.unmodifiableList(strings);
+	}
+
+	/**
+	 * Writes the smallest and largest value of each block of the column.
+	 */
+	private static void writeStats(FileChannel out, ByteBuffer buffer, DoubleList column, int blockSize)
+			throws IOException {
+		double[] values = new double[WRITE_BLOCK];
+		int rows = column.size();
+		for (int start = 0; start < rows; start += blockSize) {
+			int end = (int) Math.min(rows, (long) start + blockSize);
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int from = start; from < end; from += WRITE_BLOCK) {
+				int n = Math.min(WRITE_BLOCK, end - from);
+				column.getDoubles(from, values, 0, n);
+				for (int i = 0; i < n; i++) {
+					double v = values[i];
+					if (v < min) {
+						min = v;
+					}
+					if (v > max) {
+						max = v;
+					}
+				}
+			}
+			if (min > max) {
+				// Every value was NaN
+				min = Double.NaN;
+				max = Double.NaN;
+			}
+			if (buffer.remaining() < 16) {
+				drain(out, buffer);
+			}
+			buffer.putDouble(min);
+			buffer.putDouble(max);
+		}
+		drain(out, buffer);
+	}
+
+	/**
+	 * Writes everything in the buffer to the channel and clears it.
+	 */
+	private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * @return The list itself if it is a {@code DoubleList}, otherwise a copy
+	 *         of the double value of every number in it
+	 * @throws IllegalArgumentException
+	 *             If the list holds anything other than numbers
+	 */
+	private static DoubleList toDoubleList(List<?> l) {
+		if (l instanceof DoubleList) {
+			return (DoubleList) l;
+		}
+		DoubleColumn column = new DoubleColumn(l.size());
+		for (Object o : l) {
+			if (!(o instanceof Number)) {
+				throw new IllegalArgumentException("Independent values must be numbers or strings: " + o);
+			}
+			column.addDouble(((Number) o).doubleValue());
+		}
+		return column;
+	}
+}
@@ -0,0 +1,438 @@
+package data;
+
+import interfaces.DoubleList;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A column of primitive doubles compressed the way the Gorilla time series
+ * database compresses its samples, for long recordings of regular timestamps
+ * and slowly changing values. Values are appended to an uncompressed head
+ * block, and once it holds {@code BLOCK_SIZE} values it is compressed into a
+ * sealed block of bits which never changes again.
+ *
+ * Two encodings are supported. {@code DELTA_OF_DELTA}, for timestamps, stores
+ * how much the difference between the bits of each value and the one before
+ * it changed, which is a single bit for evenly spaced values. {@code XOR}, for
+ * measurements, stores the bits which differ from the value before, which is
+ * a single bit for a repeated value and only the changed middle bits of a
+ * value close to the one before. Both are lossless for every double,
+ * including NaN and infinities.
+ *
+ * Values are decoded a block at a time, so reading a range with
+ * {@code getDoubles} costs a few nanoseconds a value, but reading a single
+ * value decodes its block up to it. Values can only be appended, so
+ * snapshots share the sealed blocks and the head block without copying
+ * anything.
+ *
+ * This class is not thread safe, the {@code DataSet} owning a column is
+ * responsible for guarding access to it. Snapshots can be read from any
+ * thread.
+ */
+public class CompressedColumn extends AbstractList<Double> implements PrimitiveColumn, RandomAccess {
+
+	/**
+	 * Number of values in each block.
+	 */
+	public static final int BLOCK_SIZE = 1024;
+
+	private static final int BLOCK_SHIFT = 10;
+
+	/**
+	 * The ways values can be compressed.
+	 */
+	public enum Encoding {
+		/**
+		 * Stores the change in the difference between consecutive values, for
+		 * timestamps and other evenly spaced values.
+		 */
+		DELTA_OF_DELTA,
+
+		/**
+		 * Stores the bits which differ from the value before, for
+		 * measurements which change slowly or not at all.
+		 */
+		XOR
+	}
+
+	private final Encoding encoding;
+
+	/**
+	 * The sealed blocks, each a stream of bits packed into longs from the
+	 * most significant bit down.
+	 */
+	private long[][] blocks = new long[16][];
+	private int blockCount = 0;
+	private long sealedBytes = 0;
+
+	/**
+	 * Values appended since the last block was sealed. Replaced rather than
+	 * reused when it is sealed, as snapshots may be reading it.
+	 */
+	private double[] head = new double[BLOCK_SIZE];
+
+	private int size = 0;
+
+	/**
+	 * Creates an empty column.
+	 *
+	 * @param encoding
+	 *            How to compress the values
+	 */
+	public CompressedColumn(Encoding encoding) {
+		this.encoding = Objects.requireNonNull(encoding);
+	}
+
+	/**
+	 * @return How the values are compressed
+	 */
+	public Encoding getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * @return Bytes of heap used by the values, counting the head block as
+	 *         full
+	 */
+	public long getCompressedBytes() {
+		return sealedBytes + 16 + BLOCK_SIZE * 8L + blocks.length * 8L;
+	}
+
+	@Override
+	public double getDouble(int index) {
+		checkRange(index, 1, size);
+		return read(blocks, head, size, encoding, index);
+	}
+
+	@Override
+	public void getDoubles(int from, double[] dest, int destOffset, int length) {
+		checkRange(from, length, size);
+		read(blocks, head, size, encoding, from, dest, destOffset, length);
+	}
+
+	@Override
+	public void addDouble(double d) {
+		int p = size & BLOCK_SIZE - 1;
+		head[p] = d;
+		size++;
+		modCount++;
+		if (p == BLOCK_SIZE - 1) {
+			if (blockCount == blocks.length) {
+				blocks = Arrays.copyOf(blocks, blockCount * 2);
+			}
+			long[] block = encode(head, encoding);
+			blocks[blockCount++] = block;
+			sealedBytes += 16 + block.length * 8L;
+			head = new double[BLOCK_SIZE];
+		}
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public boolean add(Double d) {
+		addDouble(d);
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<Double> snapshot() {
+		return new View(blocks, head, size, encoding);
+	}
+
+	/**
+	 * Reads a value of the first {@code size} values of a column, which are
+	 * in the blocks sealed before the column had {@code size} values and the
+	 * head block it had then. Blocks sealed later aren't read, as they can be
+	 * added to the array of blocks while a snapshot is reading it.
+	 */
+	private static double read(long[][] blocks, double[] head, int size, Encoding encoding, int index) {
+		int p = index & BLOCK_SIZE - 1;
+		if (index >>> BLOCK_SHIFT >= size >>> BLOCK_SHIFT) {
+			return head[p];
+		}
+		return decode(blocks[index >>> BLOCK_SHIFT], encoding, p, null, 0, 1);
+	}
+
+	private static void read(long[][] blocks, double[] head, int size, Encoding encoding, int from, double[] dest,
+			int destOffset, int length) {
+		int sealed = size >>> BLOCK_SHIFT;
+		int i = from;
+		int end = from + length;
+		while (i < end) {
+			int b = i >>> BLOCK_SHIFT;
+			int start = i & BLOCK_SIZE - 1;
+			int n = Math.min(end - i, BLOCK_SIZE - start);
+			if (b < sealed) {
+				decode(blocks[b], encoding, start, dest, destOffset + i - from, n);
+			} else {
+				System.arraycopy(head, start, dest, destOffset + i - from, n);
+			}
+			i += n;
+		}
+	}
+
+	private static void checkRange(int from, int length, int size) {
+		if (from < 0 || length < 0 || from + length > size) {
+			throw new IndexOutOfBoundsException("From: " + from + ", Length: " + length + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Compresses a full block of values.
+	 */
+	private static long[] encode(double[] values, Encoding encoding) {
+		BitWriter out = new BitWriter();
+		long previous = Double.doubleToRawLongBits(values[0]);
+		out.write(previous, 64);
+		if (encoding == Encoding.DELTA_OF_DELTA) {
+			long previousDelta = 0;
+			for (int i = 1; i < values.length; i++) {
+				long bits = Double.doubleToRawLongBits(values[i]);
+				long delta = bits - previous;
+				long dod = delta - previousDelta;
+				if (dod == 0) {
+					out.write(0, 1);
+				} else if (dod >= -64 && dod < 64) {
+					out.write(0b10, 2);
+					out.write(dod, 7);
+				} else if (dod >= -256 && dod < 256) {
+					out.write(0b110, 3);
+					out.write(dod, 9);
+				} else if (dod >= -2048 && dod < 2048) {
+					out.write(0b1110, 4);
+					out.write(dod, 12);
+				} else {
+					out.write(0b1111, 4);
+					out.write(dod, 64);
+				}
+				previous = bits;
+				previousDelta = delta;
+			}
+		} else {
+			int leading = -1;
+			int trailing = 0;
+			for (int i = 1; i < values.length; i++) {
+				long bits = Double.doubleToRawLongBits(values[i]);
+				long xor = bits ^ previous;
+				if (xor == 0) {
+					out.write(0, 1);
+				} else {
+					int lead = Math.min(31, Long.numberOfLeadingZeros(xor));
+					int trail = Long.numberOfTrailingZeros(xor);
+					if (leading >= 0 && lead >= leading && trail >= trailing) {
+						// The changed bits fit in the window of the last value
+						out.write(0b10, 2);
+						out.write(xor >>> trailing, 64 - leading - trailing);
+					} else {
+						int length = 64 - lead - trail;
+						out.write(0b11, 2);
+						out.write(lead, 5);
+						out.write(length - 1, 6);
+						out.write(xor >>> trail, length);
+						leading = lead;
+						trailing = trail;
+					}
+				}
+				previous = bits;
+			}
+		}
+		return out.toArray();
+	}
+
+	/**
+	 * Decompresses values from a block, skipping the first {@code skip}
+	 * values.
+	 *
+	 * @param dest
+	 *            Array to put the {@code n} values after the skipped ones in,
+	 *            or null to only return the last of them
+	 * @return The last value decoded
+	 */
+	private static double decode(long[] block, Encoding encoding, int skip, double[] dest, int destOffset, int n) {
+		BitReader in = new BitReader(block);
+		long bits = in.read(64);
+		int end = skip + n;
+		if (skip == 0 && dest != null) {
+			dest[destOffset] = Double.longBitsToDouble(bits);
+		}
+		if (encoding == Encoding.DELTA_OF_DELTA) {
+			long delta = 0;
+			for (int i = 1; i < end; i++) {
+				if (in.read(1) != 0) {
+					int width;
+					if (in.read(1) == 0) {
+						width = 7;
+					} else if (in.read(1) == 0) {
+						width = 9;
+					} else if (in.read(1) == 0) {
+						width = 12;
+					} else {
+						width = 64;
+					}
+					delta += in.readSigned(width);
+				}
+				bits += delta;
+				if (dest != null && i >= skip) {
+					dest[destOffset + i - skip] = Double.longBitsToDouble(bits);
+				}
+			}
+		} else {
+			int leading = 0;
+			int trailing = 0;
+			for (int i = 1; i < end; i++) {
+				if (in.read(1) != 0) {
+					if (in.read(1) != 0) {
+						leading = (int) in.read(5);
+						int length = (int) in.read(6) + 1;
+						trailing = 64 - leading - length;
+					}
+					bits ^= in.read(64 - leading - trailing) << trailing;
+				}
+				if (dest != null && i >= skip) {
+					dest[destOffset + i - skip] = Double.longBitsToDouble(bits);
+				}
+			}
+		}
+		return Double.longBitsToDouble(bits);
+	}
+
+	/**
+	 * Packs bits into longs, from the most significant bit down.
+	 */
+	private static final class BitWriter {
+		private long[] words = new long[64];
+		private int word = 0;
+		private int free = 64;
+
+		/**
+		 * Writes the lowest {@code width} bits of a value.
+		 */
+		void write(long value, int width) {
+			if (width < 64) {
+				value &= (1L << width) - 1;
+			}
+			if (width <= free) {
+				free -= width;
+				words[word] |= value << free;
+				if (free == 0) {
+					next();
+				}
+			} else {
+				int rest = width - free;
+				words[word] |= value >>> rest;
+				next();
+				free = 64 - rest;
+				words[word] |= value << free;
+			}
+		}
+
+		private void next() {
+			word++;
+			free = 64;
+			if (word == words.length) {
+				words = Arrays.copyOf(words, word * 2);
+			}
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(words, free == 64 ? word : word + 1);
+		}
+	}
+
+	/**
+	 * Reads bits packed by a {@code BitWriter}.
+	 */
+	private static final class BitReader {
+		private final long[] words;
+		private int word = 0;
+		private int left = 64;
+
+		BitReader(long[] words) {
+			this.words = words;
+		}
+
+		/**
+		 * @return The next {@code width} bits, as the lowest bits of a long
+		 */
+		long read(int width) {
+			long value;
+			if (width <= left) {
+				left -= width;
+				value = width == 64 ? words[word] : words[word] >>> left & (1L << width) - 1;
+				if (left == 0) {
+					word++;
+					left = 64;
+				}
+			} else {
+				int rest = width - left;
+				value = (words[word] & (1L << left) - 1) << rest;
+				word++;
+				left = 64 - rest;
+				value |= words[word] >>> left;
+			}
+			return value;
+		}
+
+		/**
+		 * @return The next {@code width} bits, as a two's complement number
+		 */
+		long readSigned(int width) {
+			long value = read(width);
+			return width == 64 ? value : value << 64 - width >> 64 - width;
+		}
+	}
+
+	/**
+	 * Immutable view of the first {@code size} values of a column. Sealed
+	 * blocks never change, and the head block only changes past the end of
+	 * the view.
+	 */
+	private static class View extends AbstractList<Double> implements DoubleList, RandomAccess {
+		private final long[][] blocks;
+		private final double[] head;
+		private final int size;
+		private final Encoding encoding;
+
+		private View(long[][] blocks, double[] head, int size, Encoding encoding) {
+			this.blocks = blocks;
+			this.head = head;
+			this.size = size;
+			this.encoding = encoding;
+		}
+
+		@Override
+		public double getDouble(int index) {
+			checkRange(index, 1, size);
+			return read(blocks, head, size, encoding, index);
+		}
+
+		@Override
+		public void getDoubles(int from, double[] dest, int destOffset, int length) {
+			checkRange(from, length, size);
+			read(blocks, head, size, encoding, from, dest, destOffset, length);
+		}
+
+		@Override
+		public Double get(int index) {
+			return getDouble(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
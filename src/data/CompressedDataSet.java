@@ -0,0 +1,78 @@
+package data;
+
+import java.util.ArrayList;
+
+/**
+ * Dataset keeping its whole recording compressed on the heap, for long
+ * running telemetry with regular timestamps and slowly changing values. The
+ * independent values are stored in a {@code CompressedColumn} with
+ * {@code DELTA_OF_DELTA} encoding and the dependent values with {@code XOR}
+ * encoding, which for evenly spaced samples of a smooth signal takes a bit or
+ * two per timestamp and a byte or two per value, rather than 8 bytes each.
+ *
+ * Like every {@code SampledDataSet}, graphs are only shown a sample of the
+ * rows in view. The dataset keeps the smallest and largest values of every
+ * {@code CompressedColumn.BLOCK_SIZE} rows, so a sample of many rows is taken
+ * from these summaries, and only the blocks at the ends of the rows in view
+ * are decoded, whole, rather than a value at a time from all over the
+ * recording. Appending rows only summarises the blocks they are in.
+ *
+ * All operations in this class are thread safe.
+ */
+public class CompressedDataSet extends SampledDataSet {
+
+	/**
+	 * Creates an empty dataset.
+	 */
+	public CompressedDataSet() {
+		setColumns(new CompressedColumn(CompressedColumn.Encoding.DELTA_OF_DELTA), new ArrayList<CompressedColumn>());
+	}
+
+	/**
+	 * @return Bytes of heap used by the recorded values of every column
+	 */
+	public synchronized long getCompressedBytes() {
+		long bytes = getIndependentColumn().getCompressedBytes();
+		for (PrimitiveColumn y : yColumns()) {
+			bytes += ((CompressedColumn) y).getCompressedBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the recorded independent values. This is the live column, which
+	 * can change while it is being read if rows are being appended.
+	 *
+	 * @return Every independent value recorded
+	 */
+	public synchronized CompressedColumn getIndependentColumn() {
+		return (CompressedColumn) xColumn();
+	}
+
+	/**
+	 * Returns the recorded values of a dependent dataset. This is the live
+	 * column, which can change while it is being read if rows are being
+	 * appended.
+	 *
+	 * @param dataSet
+	 *            Index of the dependent dataset, in the order they were added
+	 * @return Every value of the dependent dataset recorded
+	 */
+	public synchronized CompressedColumn getDependentColumn(int dataSet) {
+		return (CompressedColumn) yColumns().get(dataSet);
+	}
+
+	/**
+	 * Values of a {@code CompressedColumn} are slow to read at random, each
+	 * one decodes the block it is in.
+	 */
+	@Override
+	boolean keepsSummaries() {
+		return true;
+	}
+
+	@Override
+	CompressedColumn newColumn() {
+		return new CompressedColumn(CompressedColumn.Encoding.XOR);
+	}
+}
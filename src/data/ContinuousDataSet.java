@@ -1,11 +1,14 @@
 
 package data;
 
+import interfaces.DataChange;
+
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * Class representing a Double vs Double dataset. Adds the ability to add a 2D
@@ -14,21 +17,63 @@ import java.util.Objects;
  * 
  * All operations in this class are thread safe, and update any swing observers
  * in a thread safe manner.
+ * 
+ * The independent dataset is stored as a {@code SegmentedColumn}, as are all
+ * the dependent datasets, so no values are boxed in storage and growing the
+ * dataset never copies the values already in it. Functions are evaluated one
+ * chunk of the columns at a time.
+ * 
+ * Functions can optionally be evaluated in parallel, see
+ * {@code setParallelEvaluation}. Functions must be safe to call from several
+ * threads at once for this to be used.
+ * 
+ * The dataset keeps track of whether its independent values are sorted, and
+ * its snapshots can work out the order of the rows if they aren't, so graphs
+ * zoomed in on part of the data only have to look at the rows they show.
  */
 public class ContinuousDataSet extends DataSet<Double> {
 
 	/**
-	 * Maths functions, mapping the independent dataset to a dependent dataset
+	 * Maths functions, mapping the independent dataset to a dependent dataset.
+	 * Every kind of function is stored as a {@code BatchFunction}.
 	 */
-	private List<Function<Double, Double>> functions = new ArrayList<>();
+	private List<BatchFunction> functions = new ArrayList<>();
 
 	/**
 	 * Auxiliary list to store the indexes of functions, so upon reapplying
 	 * functions to the independent dataset we know which dependent data sets to
-	 * ignore and which ones to update
+	 * ignore and which ones to update. The nth entry is the index in
+	 * {@code depVars} of the nth function's results.
 	 */
 	private List<Integer> functionIndexes = new ArrayList<>();
 
+	/**
+	 * Decides whether functions are evaluated on the calling thread or split
+	 * across a thread pool.
+	 */
+	private FunctionEvaluator evaluator = new FunctionEvaluator();
+
+	/**
+	 * Single element buffers used to evaluate functions for one appended x
+	 * value without allocating.
+	 */
+	private final double[] singleX = new double[1];
+	private final double[] singleY = new double[1];
+
+	/**
+	 * Tracker of the order of the independent values. Replaced whenever the
+	 * independent values are, and created by the first snapshot, which is
+	 * published before this class's fields are initialised.
+	 */
+	private IndependentOrder order;
+
+	/**
+	 * Creates an empty dataset.
+	 */
+	public ContinuousDataSet() {
+		super(new SegmentedColumn());
+	}
+
 	/**
 	 * Functional interface for performing maths functions
 	 * 
@@ -41,6 +86,64 @@ public class ContinuousDataSet extends DataSet<Double> {
 		T apply(E x);
 	}
 
+	/**
+	 * Function which maps a whole range of x values to y values at once,
+	 * reading and writing primitive arrays. Evaluating functions this way
+	 * doesn't box anything, and simple loops over the arrays can be vectorised
+	 * by the JIT.
+	 */
+	public interface BatchFunction {
+		/**
+		 * Computes {@code y[yOffset + i] = f(x[xOffset + i])} for every
+		 * {@code i} from 0 up to {@code length}. Must only write to the given
+		 * range of {@code y}.
+		 * 
+		 * @param x
+		 *            Array of x values
+		 * @param xOffset
+		 *            Index of the first x value to use
+		 * @param y
+		 *            Array to write the results to
+		 * @param yOffset
+		 *            Index to write the first result to
+		 * @param length
+		 *            Number of values to compute
+		 */
+		void apply(double[] x, int xOffset, double[] y, int yOffset, int length);
+
+		/**
+		 * Adapts a function on primitive doubles to a batch function.
+		 * 
+		 * @param f
+		 *            Function to adapt
+		 * @return Batch function applying {@code f} to every value
+		 */
+		static BatchFunction of(DoubleUnaryOperator f) {
+			Objects.requireNonNull(f);
+			return (x, xOffset, y, yOffset, length) -> {
+				for (int i = 0; i < length; i++) {
+					y[yOffset + i] = f.applyAsDouble(x[xOffset + i]);
+				}
+			};
+		}
+
+		/**
+		 * Adapts a function on boxed doubles to a batch function.
+		 * 
+		 * @param f
+		 *            Function to adapt
+		 * @return Batch function applying {@code f} to every value
+		 */
+		static BatchFunction of(Function<Double, Double> f) {
+			Objects.requireNonNull(f);
+			return (x, xOffset, y, yOffset, length) -> {
+				for (int i = 0; i < length; i++) {
+					y[yOffset + i] = f.apply(x[xOffset + i]);
+				}
+			};
+		}
+	}
+
 	/**
 	 * Add a function to this data set, causes the result to be computed
 	 * straight away on the current thread, and causes any observers watching
@@ -50,67 +153,298 @@ public class ContinuousDataSet extends DataSet<Double> {
 	 *            New function to be performed
 	 */
 	public synchronized void addFunction(Function<Double, Double> f) {
+		addBatchFunction(BatchFunction.of(f));
+	}
+
+	/**
+	 * Add a function on primitive doubles to this data set. Works the same as
+	 * {@code addFunction}, but no values are boxed when it is evaluated.
+	 * 
+	 * @param f
+	 *            New function to be performed
+	 */
+	public synchronized void addDoubleFunction(DoubleUnaryOperator f) {
+		addBatchFunction(BatchFunction.of(f));
+	}
+
+	/**
+	 * Add a function which evaluates whole ranges of x values at once. The
+	 * result is computed straight away, and observers are updated.
+	 * 
+	 * @param f
+	 *            New function to be performed
+	 */
+	public synchronized void addBatchFunction(BatchFunction f) {
 		Objects.requireNonNull(f);
-		functionIndexes.add(functions.size());
+		functionIndexes.add(depVars.size());
 		functions.add(f);
-		ArrayList<Double> y = new ArrayList<>();
-		for (Double a : indVars) {
-			y.add(f.apply(a).doubleValue());
-		}
-		depVars.add(y);
-		update();
+		depVars.add(applyFunction(f));
+		update(DataChange.Type.SERIES_ADDED, depVars.size() - 1, depVars.size());
+	}
+
+	/**
+	 * Turns parallel evaluation of functions on or off. When on, evaluating a
+	 * function over at least {@code getParallelThreshold()} x values is split
+	 * across the executor set with {@code setExecutor}, or the common
+	 * {@code ForkJoinPool} if none has been set. Results are identical to
+	 * evaluating serially. Off by default.
+	 * 
+	 * @param b
+	 *            True to evaluate functions in parallel
+	 */
+	public synchronized void setParallelEvaluation(boolean b) {
+		evaluator.setParallel(b);
+	}
+
+	/**
+	 * @return True if functions are evaluated in parallel
+	 */
+	public synchronized boolean isParallelEvaluation() {
+		return evaluator.isParallel();
+	}
+
+	/**
+	 * Sets the number of x values below which functions are always evaluated
+	 * on the calling thread, even with parallel evaluation turned on.
+	 * 
+	 * @param n
+	 *            The new threshold, must be positive
+	 */
+	public synchronized void setParallelThreshold(int n) {
+		evaluator.setThreshold(n);
+	}
+
+	/**
+	 * @return The number of x values below which functions are evaluated
+	 *         serially
+	 */
+	public synchronized int getParallelThreshold() {
+		return evaluator.getThreshold();
+	}
+
+	/**
+	 * Sets the executor to evaluate functions on when parallel evaluation is
+	 * on. If the executor is a {@code ForkJoinPool} the work is split with
+	 * fork/join, otherwise it is split into a few tasks per processor.
+	 * 
+	 * @param e
+	 *            Executor to use, or null to use the common
+	 *            {@code ForkJoinPool}
+	 */
+	public synchronized void setExecutor(Executor e) {
+		evaluator.setExecutor(e);
 	}
 
 	/**
 	 * Set the independent dataset as well as reapplying all the functions to
-	 * this new independent dataset.
+	 * this new independent dataset. Function results already computed for x
+	 * values which were in the old independent dataset are reused rather than
+	 * computed again.
 	 */
 	public synchronized void setIndependent(Collection<Double> list) {
-		super.setIndependent(list);
-		reApplyFunctions();
+		Objects.requireNonNull(list);
+		SegmentedColumn oldX = (SegmentedColumn) indVars;
+		indVars = new SegmentedColumn(list);
+		order = new IndependentOrder();
+		reApplyFunctions(oldX);
+		update(DataChange.Type.INDEPENDENT_REPLACED, 0, indVars.size());
 	}
 
 	/**
-	 * Add a variable to the independent dataset
+	 * Add a variable to the independent dataset, the functions are only
+	 * applied to the new value.
 	 * 
 	 * @param o
 	 *            Value to be added
 	 */
 	public synchronized void addToInd(Double o) {
 		Objects.requireNonNull(o);
-		indVars.add(o);
-		reApplyFunctions();
+		double x = o;
+		((SegmentedColumn) indVars).addDouble(x);
+		singleX[0] = x;
+		for (int i = 0; i < functions.size(); i++) {
+			functions.get(i).apply(singleX, 0, singleY, 0, 1);
+			functionColumn(i).addDouble(singleY[0]);
+		}
+		update(DataChange.Type.ROWS_APPENDED, indVars.size() - 1, indVars.size());
 	}
 
 	/**
-	 * Re-applies functions, used when dataset modified
+	 * Appends a batch of rows. Each row has a value for every dependent
+	 * dataset which isn't computed by a function, in the order they were
+	 * added. The functions are then evaluated for the new x values in one go.
 	 */
-	private void reApplyFunctions() {
-		if (functionIndexes.isEmpty()) {
-			return;
+	@Override
+	public synchronized void addRows(List<? extends Row<Double>> rows) {
+		Objects.requireNonNull(rows);
+		int plain = depVars.size() - functions.size();
+		for (Row<Double> row : rows) {
+			checkRow(row, plain);
 		}
-		Collections.sort(functionIndexes);
-		for (int i = functionIndexes.get(functionIndexes.size() - 1); i >= 0; i--) {
-			depVars.remove((int) functionIndexes.get(i));
+		SegmentedColumn x = (SegmentedColumn) indVars;
+		int from = x.size();
+		List<PrimitiveColumn> plainColumns = new ArrayList<>(plain);
+		for (int i = 0; i < depVars.size(); i++) {
+			if (!functionIndexes.contains(i)) {
+				plainColumns.add((PrimitiveColumn) depVars.get(i));
+			}
 		}
-		functionIndexes.clear();
-		for (Function<Double, Double> f : functions) {
-			ArrayList<Double> newList = new ArrayList<>();
-			for (Double e : indVars) {
-				newList.add(f.apply(e).doubleValue());
+		for (Row<Double> row : rows) {
+			x.addDouble(row.getIndependent());
+			double[] y = row.getDependent();
+			for (int i = 0; i < y.length; i++) {
+				plainColumns.get(i).addDouble(y[i]);
 			}
-			functionIndexes.add(depVars.size());
-			depVars.add(newList);
 		}
-		update();
+		int to = x.size();
+		for (int f = 0; f < functions.size(); f++) {
+			SegmentedColumn results = functionColumn(f);
+			results.resize(to);
+			evaluate(functions.get(f), x, results, from, to);
+		}
+		update(DataChange.Type.ROWS_APPENDED, from, to);
+	}
+
+	/**
+	 * Same as {@code addToInd}, so adding to the independent dataset through
+	 * the {@code DataSet} methods keeps the functions up to date too.
+	 */
+	@Override
+	public synchronized void addToIndependent(Double t) {
+		addToInd(t);
+	}
+
+	/**
+	 * Removes the dependent dataset at the given index. If the dataset was
+	 * computed by a function, the function is removed as well.
+	 */
+	@Override
+	public synchronized void removeDependent(int dataSet) {
+		if (dataSet < 0 || dataSet >= depVars.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		for (int i = functionIndexes.size() - 1; i >= 0; i--) {
+			int index = functionIndexes.get(i);
+			if (index == dataSet) {
+				functionIndexes.remove(i);
+				functions.remove(i);
+			} else if (index > dataSet) {
+				functionIndexes.set(i, index - 1);
+			}
+		}
+		super.removeDependent(dataSet);
+	}
+
+	/**
+	 * Re-applies functions after the independent dataset has been replaced.
+	 * Each function's dataset stays at the same index in the dependent
+	 * datasets. Results for x values which were also in the old independent
+	 * dataset are copied across instead of being computed again.
+	 * 
+	 * @param oldX
+	 *            The independent dataset before it was replaced
+	 */
+	private void reApplyFunctions(SegmentedColumn oldX) {
+		if (functions.isEmpty()) {
+			return;
+		}
+		SegmentedColumn x = (SegmentedColumn) indVars;
+		DoubleIndexMap seen = oldX.isEmpty() ? null : new DoubleIndexMap(oldX);
+		int[] oldIndexes = new int[x.size()];
+		evaluator.forRange(0, x.size(), (from, to) -> {
+			for (int i = from; i < to; i++) {
+				oldIndexes[i] = seen == null ? -1 : seen.indexOf(x.getDouble(i));
+			}
+		});
+		for (int f = 0; f < functions.size(); f++) {
+			BatchFunction function = functions.get(f);
+			SegmentedColumn oldYs = functionColumn(f);
+			SegmentedColumn results = new SegmentedColumn(x.getChunkSize());
+			results.resize(x.size());
+			evaluator.forRange(0, x.size(), (from, to) -> {
+				x.forEachChunk(from, to, (xs, offset, length, index) -> {
+					double[] ys = results.chunkAt(index);
+					// Copy results we already have, and evaluate each run of
+					// new x values in one go
+					int i = 0;
+					while (i < length) {
+						if (oldIndexes[index + i] >= 0) {
+							ys[offset + i] = oldYs.getDouble(oldIndexes[index + i]);
+							i++;
+						} else {
+							int start = i;
+							while (i < length && oldIndexes[index + i] < 0) {
+								i++;
+							}
+							function.apply(xs, offset + start, ys, offset + start, i - start);
+						}
+					}
+				});
+			});
+			depVars.set(functionIndexes.get(f), results);
+		}
+	}
+
+	/**
+	 * Applies a function to every value in the independent dataset.
+	 * 
+	 * @param f
+	 *            Function to apply
+	 * @return Column of the results, in the same order as the independent
+	 *         dataset
+	 */
+	private SegmentedColumn applyFunction(BatchFunction f) {
+		SegmentedColumn x = (SegmentedColumn) indVars;
+		SegmentedColumn y = new SegmentedColumn(x.getChunkSize());
+		y.resize(x.size());
+		evaluate(f, x, y, 0, x.size());
+		return y;
+	}
+
+	/**
+	 * Evaluates a function for the x values from {@code from} up to
+	 * {@code to}, writing the results to the same indexes of {@code y}. Both
+	 * columns must have the same chunk size and never have values removed from
+	 * the start, so their chunks line up.
+	 */
+	private void evaluate(BatchFunction f, SegmentedColumn x, SegmentedColumn y, int from, int to) {
+		y.prepareWrite(from, to);
+		evaluator.forRange(from, to, (a, b) -> {
+			x.forEachChunk(a, b, (xs, offset, length, index) -> {
+				f.apply(xs, offset, y.chunkAt(index), offset, length);
+			});
+		});
+	}
+
+	@Override
+	IndependentOrder independentOrder() {
+		if (order == null) {
+			order = new IndependentOrder();
+		}
+		order.update((SegmentedColumn) indVars);
+		return order;
+	}
+
+	/**
+	 * @param function
+	 *            Index of a function in {@code functions}
+	 * @return The dependent dataset holding that function's results
+	 */
+	private SegmentedColumn functionColumn(int function) {
+		return (SegmentedColumn) depVars.get(functionIndexes.get(function));
 	}
 
 	/**
 	 * Removes the independent dataset, causes the swing observers to update
-	 * themselves with an empty independent dataset.
+	 * themselves with an empty independent dataset. Datasets computed by
+	 * functions are emptied too.
 	 */
 	public synchronized void removeIndependent() {
 		indVars.clear();
+		order = new IndependentOrder();
+		for (int i = 0; i < functions.size(); i++) {
+			functionColumn(i).clear();
+		}
 		update();
 	}
 }
@@ -1,11 +1,14 @@
 
 package data;
 
+import interfaces.DataChange;
 import interfaces.DataModel;
+import interfaces.DataSnapshot;
 import interfaces.SwingObserver;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -25,8 +28,36 @@ import javax.swing.SwingUtilities;
  * converted to its double value, without checking for rounding or truncation,
  * so for extremely precise or long numbers this will not be accurate.
  * 
+ * Dependent datasets are stored as {@code SegmentedColumn}s, so the lists
+ * returned by {@code getDependent} can be read without boxing through the
+ * {@code DoubleList} interface, and growing them never copies the values
+ * already in them.
+ * 
+ * Every change to the dataset publishes a new immutable
+ * {@code DataSnapshot}, which shares its storage with the dataset's columns
+ * rather than copying them. {@code getSnapshot} doesn't lock the dataset, so
+ * graphs drawing from snapshots never wait for producers adding data, and
+ * producers never wait for graphs to finish drawing.
+ * 
+ * The count, smallest, largest, mean and variance of each dependent dataset
+ * are available from {@code getStatistics} without reading its values. Each
+ * column keeps running summaries of blocks of its values, which publishing a
+ * snapshot brings up to date by summarising only the rows added since the
+ * last one, so appending stays O(1) per row.
+ * 
+ * Observers are told what changed with a {@code DataChange}. Rows added with
+ * {@code addRow}, {@code addRows} or {@code addToIndependent} are reported as
+ * appended, so an observer can process only the new rows.
+ * 
  * Adding data to this dataset causes any swing observers observing the dataset
- * to recalculate and redraw themselves automatically.
+ * to recalculate and redraw themselves automatically. Updates are coalesced,
+ * so a burst of changes results in one redraw, and each observer is redrawn at
+ * most {@code NotificationCoalescer.DEFAULT_MAX_RATE} times a second unless
+ * changed with {@code setMaxUpdateRate}.
+ * 
+ * Consumers which aren't swing observers can subscribe to the dataset's
+ * changes with {@code getChangePublisher}, and a {@code DataSetSubscriber}
+ * adds the rows of a reactive stream to a dataset.
  * 
  * @param <I>
  *            Type of data in the independent data set.
@@ -49,11 +80,12 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 	 * List of independent variables. Is only one dimensional, so only one set
 	 * of independents can be stored in one dataset at a time.
 	 */
-	protected List<I> indVars = new ArrayList<>();
+	protected List<I> indVars;
 
 	/**
 	 * Dependent variables for the data set, Is a list of lists, so multiple
-	 * dependent datasets can be represented by a dataset.
+	 * dependent datasets can be represented by a dataset. Every list in here is
+	 * a {@code PrimitiveColumn}.
 	 */
 	protected List<List<Double>> depVars = new ArrayList<List<Double>>();
 
@@ -62,6 +94,53 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 	 */
 	protected List<SwingObserver<I, Double>> observers = new ArrayList<>();
 
+	/**
+	 * Merges and rate limits the updates sent to the swing observers.
+	 */
+	protected NotificationCoalescer<I> notifier = new NotificationCoalescer<>();
+
+	/**
+	 * Publishes every change to subscribers which aren't swing observers.
+	 */
+	private final ChangePublisher<I, Double> changes = new ChangePublisher<>();
+
+	/**
+	 * Number of snapshots published so far.
+	 */
+	private long version = 0;
+
+	/**
+	 * Version of the last snapshot published by a change which did more than
+	 * append rows.
+	 */
+	private long structureVersion = 0;
+
+	/**
+	 * The latest published snapshot.
+	 */
+	private volatile DataSnapshot<I, Double> snapshot;
+
+	/**
+	 * Creates a dataset storing its independent variables in a
+	 * {@code ListColumn}.
+	 */
+	protected DataSet() {
+		this(new ListColumn<>());
+	}
+
+	/**
+	 * Creates a dataset storing its independent variables in the given list.
+	 * Used by subclasses which can store their independent variables more
+	 * compactly.
+	 * 
+	 * @param indVars
+	 *            Empty list to use for the independent variables.
+	 */
+	protected DataSet(List<I> indVars) {
+		this.indVars = Objects.requireNonNull(indVars);
+		publish();
+	}
+
 	/**
 	 * Set the independent dataset to the one provided.
 	 * 
@@ -73,6 +152,7 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 		Objects.requireNonNull(c);
 		indVars.clear();
 		indVars.addAll(c);
+		update(DataChange.Type.INDEPENDENT_REPLACED, 0, indVars.size());
 	}
 
 	/**
@@ -84,10 +164,35 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 	public synchronized void addToIndependent(I t) {
 		Objects.requireNonNull(t);
 		indVars.add(t);
+		update(DataChange.Type.ROWS_APPENDED, indVars.size() - 1, indVars.size());
 	}
 
 	/**
-	 * Returns the independent dataset.
+	 * Returns the latest snapshot of the dataset. Doesn't lock the dataset.
+	 * 
+	 * @return The snapshot published by the last change to the dataset.
+	 */
+	public DataSnapshot<I, Double> getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Returns a snapshot of every row recorded by the dataset. This is the
+	 * latest snapshot, unless the dataset publishes a sample of its rows for
+	 * graphs to draw, as a {@code SampledDataSet} does, in which case it holds
+	 * the recorded rows the sample was taken from. Used to save or export a
+	 * dataset. Doesn't copy the rows.
+	 * 
+	 * @return Snapshot of every recorded row
+	 */
+	public DataSnapshot<I, Double> getRecording() {
+		return getSnapshot();
+	}
+
+	/**
+	 * Returns the independent dataset. This is the live list, which can change
+	 * while it is being read, {@code getSnapshot} should be used to read from
+	 * another thread.
 	 * 
 	 * @return Returns the independent dataset as a list.
 	 */
@@ -96,7 +201,9 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 	}
 
 	/**
-	 * Get the list of dependent variables
+	 * Get the list of dependent variables. These are the live lists, which can
+	 * change while they are being read, {@code getSnapshot} should be used to
+	 * read from another thread.
 	 * 
 	 * @return Returns the list of dependent data sets
 	 */
@@ -112,8 +219,58 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 	 */
 	public synchronized void addDependentSet(Collection<Double> l) {
 		Objects.requireNonNull(l);
-		depVars.add(new ArrayList<>(l));
-		update();
+		depVars.add(new SegmentedColumn(l));
+		update(DataChange.Type.SERIES_ADDED, depVars.size() - 1, depVars.size());
+	}
+
+	/**
+	 * Appends one row to the dataset, an independent value and a value for
+	 * each dependent dataset.
+	 * 
+	 * @param x
+	 *            The independent value
+	 * @param y
+	 *            The dependent values, in the order the dependent datasets
+	 *            were added
+	 */
+	public synchronized void addRow(I x, double... y) {
+		addRows(Collections.singletonList(new Row<>(x, y.clone())));
+	}
+
+	/**
+	 * Appends a batch of rows to the dataset, updating the observers once for
+	 * the whole batch.
+	 * 
+	 * @param rows
+	 *            Rows to be appended, in order
+	 */
+	public synchronized void addRows(List<? extends Row<I>> rows) {
+		Objects.requireNonNull(rows);
+		for (Row<I> row : rows) {
+			checkRow(row, depVars.size());
+		}
+		int from = indVars.size();
+		for (Row<I> row : rows) {
+			indVars.add(row.getIndependent());
+			double[] y = row.getDependent();
+			for (int i = 0; i < y.length; i++) {
+				((PrimitiveColumn) depVars.get(i)).addDouble(y[i]);
+			}
+		}
+		update(DataChange.Type.ROWS_APPENDED, from, indVars.size());
+	}
+
+	/**
+	 * Checks a row has the expected number of dependent values.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the row has the wrong number of values.
+	 */
+	protected static void checkRow(Row<?> row, int expected) {
+		if (row.getDependent().length != expected) {
+			throw new IllegalArgumentException("Row has " + row.getDependent().length + " dependent values, expected "
+					+ expected);
+		}
 	}
 
 	/**
@@ -125,7 +282,7 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 			throw new IndexOutOfBoundsException();
 		}
 		depVars.remove(dataSet);
-		update();
+		update(DataChange.Type.SERIES_REMOVED, dataSet, dataSet + 1);
 	}
 
 	/**
@@ -164,6 +321,7 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 	public synchronized void removeObserver(SwingObserver<I, Double> o) {
 		Objects.requireNonNull(o);
 		observers.remove(o);
+		notifier.forget(o);
 		if (!SwingUtilities.isEventDispatchThread()) {
 			SwingUtilities.invokeLater(() -> {
 				if (o.getDataModel().equals(this)) {
@@ -186,20 +344,111 @@ public abstract class DataSet<I> implements DataModel<I, Double> {
 		}
 	}
 
+	/**
+	 * Sets the maximum number of times per second each swing observer is
+	 * updated. Changes made in between updates are merged into the next one.
+	 * 
+	 * @param hz
+	 *            Maximum updates per second, zero or less for no limit.
+	 */
+	public void setMaxUpdateRate(double hz) {
+		notifier.setMaxRate(hz);
+	}
+
+	/**
+	 * Get the coalescer used to update the swing observers, mostly useful for
+	 * its counters of how many notifications were requested and merged.
+	 * 
+	 * @return The notification coalescer for this dataset.
+	 */
+	public NotificationCoalescer<I> getNotificationCoalescer() {
+		return notifier;
+	}
+
+	/**
+	 * Gets the publisher of this dataset's changes. Subscribers are sent each
+	 * change with the snapshot it produced, on the common fork join pool, and
+	 * are never called with the dataset's lock held.
+	 * 
+	 * @return The change publisher for this dataset.
+	 */
+	@Override
+	public ChangePublisher<I, Double> getChangePublisher() {
+		return changes;
+	}
+
+	/**
+	 * Publishes a new snapshot of the dataset, made of snapshots of every
+	 * column. Must be called while holding the dataset's lock. Lists which
+	 * aren't columns are copied.
+	 */
+	protected void publish() {
+		publish(false);
+	}
+
+	/**
+	 * @param append
+	 *            True if the change being published only appended rows, or
+	 *            dropped rows from the start
+	 */
+	@SuppressWarnings("unchecked")
+	private void publish(boolean append) {
+		List<I> ind = indVars instanceof Column ? ((Column<I>) indVars).snapshot() : Collections
+				.unmodifiableList(new ArrayList<>(indVars));
+		long rowOffset = indVars instanceof Column ? ((Column<I>) indVars).firstRow() : 0;
+		List<List<Double>> dep = new ArrayList<>(depVars.size());
+		for (List<Double> l : depVars) {
+			dep.add(l instanceof Column ? ((Column<Double>) l).snapshot() : Collections
+					.unmodifiableList(new ArrayList<>(l)));
+		}
+		++version;
+		if (!append) {
+			structureVersion = version;
+		}
+		snapshot = new DataSetSnapshot<>(version, structureVersion, rowOffset, ind, Collections.unmodifiableList(dep),
+				independentOrder());
+	}
+
+	/**
+	 * Called while publishing a snapshot, by datasets which keep track of the
+	 * order of their independent values. May be called before a subclass's
+	 * constructor has run.
+	 * 
+	 * @return Tracker of the order of the independent values, brought up to
+	 *         date with them, or null if the dataset doesn't keep one
+	 */
+	IndependentOrder independentOrder() {
+		return null;
+	}
+
 	/**
 	 * Used whenever the swing observers need to be updated (when the data model
-	 * changes)
+	 * changes) and it isn't known exactly what changed. Publishes a new
+	 * snapshot straight away, the observers are updated later on the event
+	 * dispatch thread, with any other changes made in the meantime.
 	 */
 	protected void update() {
+		update(DataChange.Type.RESET, 0, 0);
+	}
+
+	/**
+	 * Same as {@code update()}, but tells the observers what changed.
+	 * 
+	 * @param type
+	 *            The kind of change
+	 * @param from
+	 *            First row appended, or index of the dependent dataset added
+	 *            or removed
+	 * @param to
+	 *            One past the last row appended
+	 */
+	protected void update(DataChange.Type type, int from, int to) {
+		publish(type == DataChange.Type.ROWS_APPENDED || type == DataChange.Type.WINDOW_SHIFTED);
+		DataChange change = new DataChange(type, from, to, version);
 		for (SwingObserver<I, Double> o : observers) {
-			if (!SwingUtilities.isEventDispatchThread()) {
-				SwingUtilities.invokeLater(() -> {
-					o.updateDisplay();
-				});
-			} else {
-				o.updateDisplay();
-			}
+			notifier.notify(o, change);
 		}
+		changes.submit(change, snapshot);
 	}
 
 	/*
@@ -0,0 +1,85 @@
+package data;
+
+import interfaces.DataSnapshot;
+import interfaces.DoubleList;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of a {@code DataSet}, made up of snapshots of each of its
+ * columns.
+ *
+ * @param <I>
+ *            Type of data in the independent dataset
+ */
+final class DataSetSnapshot<I> implements DataSnapshot<I, Double> {
+
+	private final long version;
+	private final long structureVersion;
+	private final long rowOffset;
+	private final List<I> independent;
+	private final List<List<Double>> dependent;
+
+	/**
+	 * Tracker of the order of the independent values, or null if the dataset
+	 * doesn't keep one. The order of the rows is only worked out if it is
+	 * asked for.
+	 */
+	private final IndependentOrder order;
+	private final boolean sorted;
+	private volatile int[] rows;
+
+	DataSetSnapshot(long version, long structureVersion, long rowOffset, List<I> independent,
+			List<List<Double>> dependent, IndependentOrder order) {
+		this.version = version;
+		this.structureVersion = structureVersion;
+		this.rowOffset = rowOffset;
+		this.independent = independent;
+		this.dependent = dependent;
+		this.order = order;
+		this.sorted = order != null && order.isSorted();
+	}
+
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public long getStructureVersion() {
+		return structureVersion;
+	}
+
+	@Override
+	public long getRowOffset() {
+		return rowOffset;
+	}
+
+	@Override
+	public boolean isIndependentSorted() {
+		return sorted;
+	}
+
+	@Override
+	public int[] getIndependentOrder() {
+		if (order == null || sorted) {
+			return null;
+		}
+		int[] r = rows;
+		if (r == null) {
+			r = order.order((DoubleList) independent);
+			rows = r;
+		}
+		return r;
+	}
+
+	@Override
+	public List<I> getIndependent() {
+		return independent;
+	}
+
+	@Override
+	public List<List<Double>> getDependent() {
+		return dependent;
+	}
+}
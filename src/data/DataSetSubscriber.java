@@ -0,0 +1,268 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds the rows of a reactive stream to a {@code DataSet}, with bounded
+ * demand. At most {@code bufferSize} rows are ever requested from the
+ * publisher without having been added to the dataset, so a producer faster
+ * than the dataset is slowed down rather than queueing rows without limit.
+ *
+ * Rows are added in batches of half the buffer, so the publisher can send the
+ * next batch while one is being added, and a batch which doesn't fill up is
+ * added once its first row has waited {@code MAX_LATENCY_MILLIS}. Each batch
+ * is one call to {@code DataSet.addRows}, so one observer update. A full
+ * batch is added on the thread the publisher sends its last row on, and a
+ * batch which didn't fill up on a background thread shared by every
+ * subscriber, never on the event dispatch thread, so adding rows never holds
+ * up drawing.
+ *
+ * If the dataset has swing observers, the demand for the rows of a batch is
+ * only given back to the publisher once the observers have been updated with
+ * them, see {@code NotificationCoalescer.whenDelivered}, including updates
+ * held back by the dataset's maximum update rate. A slow event dispatch
+ * thread or a graph taking a long time to redraw then holds back the stream,
+ * rather than the dataset growing faster than it can be drawn. At most about
+ * {@code bufferSize} rows are then added per update of the observers, so the
+ * buffer should hold as many rows as arrive between two updates.
+ *
+ * If adding a batch to the dataset fails, for example because its rows have
+ * the wrong number of values, the subscription is cancelled and the exception
+ * is kept for {@code getError}.
+ *
+ * All methods in this class are thread safe.
+ *
+ * @param <I>
+ *            Type of data in the dataset's independent dataset
+ */
+public class DataSetSubscriber<I> implements Flow.Subscriber<Row<I>> {
+
+	/**
+	 * Default maximum number of rows requested but not yet added.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	/**
+	 * Longest a row waits for its batch to fill up before being added, in
+	 * milliseconds.
+	 */
+	public static final int MAX_LATENCY_MILLIS = 16;
+
+	private final DataSet<I> dataSet;
+	private final int bufferSize;
+	private final int batchSize;
+
+	/**
+	 * Adds the batches of every subscriber which haven't filled up in time.
+	 */
+	private static final ScheduledExecutorService LATE_FLUSHES = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "DataSet subscriber");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * Adds the current batch if it hasn't filled up in time, or null if
+	 * there is no batch.
+	 */
+	private ScheduledFuture<?> lateFlush = null;
+
+	private Flow.Subscription subscription = null;
+	private ArrayList<Row<I>> batch = new ArrayList<>();
+	private volatile boolean done = false;
+	private volatile Throwable error = null;
+
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong added = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+
+	/**
+	 * Creates a subscriber adding rows to the given dataset, with a buffer of
+	 * {@code DEFAULT_BUFFER_SIZE} rows.
+	 *
+	 * @param dataSet
+	 *            Dataset to add rows to
+	 */
+	public DataSetSubscriber(DataSet<I> dataSet) {
+		this(dataSet, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a subscriber adding rows to the given dataset.
+	 *
+	 * @param dataSet
+	 *            Dataset to add rows to
+	 * @param bufferSize
+	 *            Most rows requested but not yet added, must be positive
+	 */
+	public DataSetSubscriber(DataSet<I> dataSet, int bufferSize) {
+		this.dataSet = Objects.requireNonNull(dataSet);
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		this.batchSize = Math.max(1, bufferSize / 2);
+	}
+
+	@Override
+	public synchronized void onSubscribe(Flow.Subscription s) {
+		Objects.requireNonNull(s);
+		if (subscription != null || done) {
+			// Only one subscription at a time
+			s.cancel();
+			return;
+		}
+		subscription = s;
+		s.request(bufferSize);
+	}
+
+	@Override
+	public synchronized void onNext(Row<I> row) {
+		Objects.requireNonNull(row);
+		if (done) {
+			return;
+		}
+		received.incrementAndGet();
+		batch.add(row);
+		if (batch.size() == 1) {
+			lateFlush = LATE_FLUSHES.schedule(this::flush, MAX_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		if (batch.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Adds the rows received so far, then stops.
+	 */
+	@Override
+	public synchronized void onError(Throwable t) {
+		Objects.requireNonNull(t);
+		flush();
+		if (error == null) {
+			error = t;
+		}
+		finish();
+	}
+
+	/**
+	 * Adds the rows received so far, then stops.
+	 */
+	@Override
+	public synchronized void onComplete() {
+		flush();
+		finish();
+	}
+
+	/**
+	 * Cancels the subscription, dropping any rows received but not yet added.
+	 */
+	public synchronized void cancel() {
+		batch.clear();
+		if (subscription != null && !done) {
+			subscription.cancel();
+		}
+		finish();
+	}
+
+	/**
+	 * Adds the rows received so far to the dataset, and asks the publisher
+	 * for as many again once the observers have caught up.
+	 */
+	private synchronized void flush() {
+		cancelLateFlush();
+		int n = batch.size();
+		if (n == 0 || done) {
+			return;
+		}
+		ArrayList<Row<I>> rows = batch;
+		batch = new ArrayList<>();
+		try {
+			dataSet.addRows(rows);
+		} catch (RuntimeException e) {
+			error = e;
+			if (subscription != null) {
+				subscription.cancel();
+			}
+			finish();
+			return;
+		}
+		added.addAndGet(n);
+		batches.incrementAndGet();
+		// Straight away if the dataset has no swing observers
+		dataSet.getNotificationCoalescer().whenDelivered(() -> {
+			request(n);
+		});
+	}
+
+	private synchronized void request(long n) {
+		if (subscription != null && !done) {
+			subscription.request(n);
+		}
+	}
+
+	private void finish() {
+		done = true;
+		cancelLateFlush();
+	}
+
+	private void cancelLateFlush() {
+		if (lateFlush != null) {
+			// Only runs flush, which waits for this subscriber's lock
+			lateFlush.cancel(false);
+			lateFlush = null;
+		}
+	}
+
+	/**
+	 * @return True once the stream has completed or failed, or the
+	 *         subscription has been cancelled
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * @return The error the stream failed with, or the exception adding rows
+	 *         to the dataset failed with, or null if there wasn't one
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * @return Most rows requested but not yet added
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @return Number of rows received from the publisher so far
+	 */
+	public long getReceivedCount() {
+		return received.get();
+	}
+
+	/**
+	 * @return Number of rows added to the dataset so far
+	 */
+	public long getAddedCount() {
+		return added.get();
+	}
+
+	/**
+	 * @return Number of batches added to the dataset so far, which is also the
+	 *         number of observer updates caused by the subscriber
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+}
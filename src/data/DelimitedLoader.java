@@ -0,0 +1,748 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads delimited text, such as CSV or TSV files, into a dataset. Each line is
+ * a row, the first field is the independent value and every other field a
+ * dependent value. Fields may be quoted with double quotes, with a doubled
+ * quote standing for a quote, but can't hold line breaks. Empty dependent
+ * fields are loaded as NaN, lines which can't be parsed are skipped and
+ * counted.
+ *
+ * The file is read through a {@code FileChannel} into a byte buffer, and
+ * numbers are parsed straight from the bytes without making a string for
+ * each field or boxing each value. Rows are added to the dataset in batches of
+ * {@code setBatchSize} rows, so loading a large file only updates the
+ * observers once per batch.
+ *
+ * With {@code tail} the loader follows a file which is being written to, like
+ * a log, reading whatever has been appended every so often on a background
+ * thread. A line is only loaded once its line break has been written. The
+ * file is checked for having been replaced on every poll, by comparing its
+ * file key, so a log rotated by renaming it and creating a new file is noticed:
+ * whatever is left of the old file is read, and the new file is followed from
+ * its start, without removing the rows already loaded. On file systems without
+ * file keys, a file which shrinks is assumed to have been replaced.
+ *
+ * A batch the dataset rejects is split in half and each half added on its own,
+ * so only the rows the dataset can't take, for example because they have the
+ * wrong number of values, are dropped. They are counted by
+ * {@code getRejectedCount}, and the exception is kept for
+ * {@code getLastError}.
+ *
+ * If the dataset has no rows and no dependent datasets when the first row is
+ * loaded, a dependent dataset is added for each dependent field. Otherwise the
+ * dataset must already have one for each.
+ *
+ * @param <I>
+ *            Type of data in the dataset's independent dataset
+ */
+public class DelimitedLoader<I> {
+
+	/**
+	 * Default number of rows added to the dataset at once.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1 << 14;
+
+	/**
+	 * Default interval between reads of a tailed file, in milliseconds.
+	 */
+	public static final long DEFAULT_POLL_MILLIS = 100;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Exact powers of ten, for parsing numbers with few enough digits to be
+	 * converted exactly.
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Makes an independent value from a field.
+	 */
+	private interface FieldParser<I> {
+		/**
+		 * @return The value, or null if the field isn't valid
+		 */
+		I parse(DelimitedLoader<I> loader, int from, int to, boolean quoted);
+	}
+
+	private final DataSet<I> dataSet;
+	private final FieldParser<I> parser;
+
+	private byte delimiter = ',';
+	private boolean header = false;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Guards the read state below, so a load and a poll of a tailed file
+	 * never run at once.
+	 */
+	private final Object readLock = new Object();
+
+	/**
+	 * Bytes read but not parsed yet are from {@code start} up to {@code end}.
+	 * Bytes before {@code scanned} have been checked for line breaks.
+	 */
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int start = 0;
+	private int end = 0;
+	private int scanned = 0;
+
+	/**
+	 * Offset in the file of the next byte to read.
+	 */
+	private long position = 0;
+
+	/**
+	 * Fields in each row, taken from the first row, or -1 before it.
+	 */
+	private int columns = -1;
+	private boolean headerPending = false;
+	private List<String> headerNames = Collections.emptyList();
+
+	private int[] fieldStarts = new int[16];
+	private int[] fieldEnds = new int[16];
+	private boolean[] fieldQuoted = new boolean[16];
+
+	/**
+	 * Set by {@code parseDouble} when a field isn't a number.
+	 */
+	private boolean invalid;
+
+	private ArrayList<Row<I>> batch = new ArrayList<>();
+
+	private ScheduledExecutorService scheduler = null;
+	private FileChannel tailed = null;
+
+	/**
+	 * Key of the followed file when it was opened, or null if the file system
+	 * has none.
+	 */
+	private Object tailedKey = null;
+
+	private final AtomicLong rows = new AtomicLong();
+	private final AtomicLong malformed = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong failedPolls = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private volatile RuntimeException lastError = null;
+
+	private DelimitedLoader(DataSet<I> dataSet, FieldParser<I> parser) {
+		this.dataSet = Objects.requireNonNull(dataSet);
+		this.parser = parser;
+	}
+
+	/**
+	 * Creates a loader for a dataset with number independent values, such as
+	 * a {@code ContinuousDataSet} or {@code StreamingDataSet}.
+	 *
+	 * @param dataSet
+	 *            Dataset to add rows to
+	 * @return The loader
+	 */
+	public static DelimitedLoader<Double> forNumbers(DataSet<Double> dataSet) {
+		return new DelimitedLoader<>(dataSet, (loader, from, to, quoted) -> {
+			double d = loader.parseDouble(from, to);
+			return loader.invalid || from == to ? null : d;
+		});
+	}
+
+	/**
+	 * Creates a loader for a dataset with string independent values, such as
+	 * a {@code CategoricDataSet}.
+	 *
+	 * @param dataSet
+	 *            Dataset to add rows to
+	 * @return The loader
+	 */
+	public static DelimitedLoader<String> forCategories(DataSet<String> dataSet) {
+		return new DelimitedLoader<>(dataSet, (loader, from, to, quoted) -> {
+			return loader.string(from, to, quoted);
+		});
+	}
+
+	/**
+	 * Sets the character between fields, a comma by default. Use a tab for
+	 * TSV files.
+	 *
+	 * @param c
+	 *            The delimiter, which must be an ASCII character other than a
+	 *            quote or line break
+	 */
+	public void setDelimiter(char c) {
+		if (c > 127 || c == '"' || c == '\n' || c == '\r') {
+			throw new IllegalArgumentException("Invalid delimiter: " + c);
+		}
+		delimiter = (byte) c;
+	}
+
+	/**
+	 * Sets whether the first line of the file is a header naming the columns
+	 * rather than a row. False by default.
+	 *
+	 * @param b
+	 *            True if the file has a header
+	 */
+	public void setHeader(boolean b) {
+		header = b;
+	}
+
+	/**
+	 * @return The fields of the header of the file last read, or an empty list
+	 *         if it had none
+	 */
+	public List<String> getHeader() {
+		synchronized (readLock) {
+			return headerNames;
+		}
+	}
+
+	/**
+	 * Sets the most rows added to the dataset at once.
+	 *
+	 * @param n
+	 *            Maximum batch size, must be positive
+	 */
+	public void setBatchSize(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + n);
+		}
+		batchSize = n;
+	}
+
+	/**
+	 * Loads every row in a file on the calling thread.
+	 *
+	 * @param file
+	 *            File to load
+	 * @return Number of rows loaded
+	 * @throws IOException
+	 *             If the file can't be read
+	 */
+	public long load(Path file) throws IOException {
+		synchronized (readLock) {
+			long before = rows.get();
+			reset();
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				read(channel, true);
+			}
+			return rows.get() - before;
+		}
+	}
+
+	/**
+	 * Starts following a file, reading it from the start and then reading
+	 * whatever has been appended to it every {@code DEFAULT_POLL_MILLIS}
+	 * milliseconds.
+	 *
+	 * @param file
+	 *            File to follow, which doesn't have to exist yet
+	 */
+	public void tail(Path file) {
+		tail(file, DEFAULT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts following a file, reading it from the start and then reading
+	 * whatever has been appended to it at the given interval on a background
+	 * thread. Any file already being followed is stopped first.
+	 *
+	 * @param file
+	 *            File to follow, which doesn't have to exist yet
+	 * @param period
+	 *            Time between reads
+	 * @param unit
+	 *            Unit of {@code period}
+	 */
+	public synchronized void tail(Path file, long period, TimeUnit unit) {
+		Objects.requireNonNull(file);
+		if (period <= 0) {
+			throw new IllegalArgumentException("Period must be positive: " + period);
+		}
+		stop();
+		synchronized (readLock) {
+			reset();
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "DataSet tail");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			poll(file);
+		}, 0, period, unit);
+	}
+
+	/**
+	 * Stops following the file, after any read in progress has finished.
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			try {
+				scheduler.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			scheduler = null;
+		}
+		synchronized (readLock) {
+			closeTailed();
+		}
+	}
+
+	/**
+	 * @return True if a file is being followed
+	 */
+	public synchronized boolean isTailing() {
+		return scheduler != null;
+	}
+
+	/**
+	 * @return Number of rows added to the dataset so far
+	 */
+	public long getRowCount() {
+		return rows.get();
+	}
+
+	/**
+	 * @return Number of lines skipped because they couldn't be parsed
+	 */
+	public long getMalformedCount() {
+		return malformed.get();
+	}
+
+	/**
+	 * @return Number of bytes read from files so far
+	 */
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	/**
+	 * @return Number of times reading a followed file failed, for example
+	 *         because it didn't exist yet
+	 */
+	public long getFailedPollCount() {
+		return failedPolls.get();
+	}
+
+	/**
+	 * @return Number of rows the dataset rejected, which were dropped
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return The exception the dataset last rejected a row with, or null if
+	 *         it hasn't rejected any
+	 */
+	public RuntimeException getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Reads whatever has been appended to a followed file since the last
+	 * poll.
+	 */
+	private void poll(Path file) {
+		synchronized (readLock) {
+			try {
+				// Null if the file has been moved away and not created again
+				// yet, in which case the old one is still read
+				Object key = fileKey(file);
+				if (tailed != null && key != null && tailedKey != null && !key.equals(tailedKey)) {
+					// The file has been rotated, finish the old one and start
+					// on the new one
+					read(tailed, true);
+					closeTailed();
+					reset();
+				}
+				if (tailed == null) {
+					tailed = FileChannel.open(file, StandardOpenOption.READ);
+					tailedKey = key;
+				}
+				if (tailed.size() < position) {
+					// The file has been replaced in place, start again
+					reset();
+				}
+				read(tailed, false);
+			} catch (IOException | RuntimeException e) {
+				failedPolls.incrementAndGet();
+				closeTailed();
+			}
+		}
+	}
+
+	private void closeTailed() {
+		if (tailed != null) {
+			try {
+				tailed.close();
+			} catch (IOException e) {
+				// Nothing left to read from it anyway
+			}
+			tailed = null;
+			tailedKey = null;
+		}
+	}
+
+	/**
+	 * @return The key identifying the file, or null if it can't be read or
+	 *         the file system has none
+	 */
+	private static Object fileKey(Path file) {
+		try {
+			return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Forgets everything read so far, so the next read starts at the
+	 * beginning of a file.
+	 */
+	private void reset() {
+		start = 0;
+		end = 0;
+		scanned = 0;
+		position = 0;
+		columns = -1;
+		headerPending = header;
+		headerNames = Collections.emptyList();
+		batch.clear();
+	}
+
+	/**
+	 * Reads from the channel until there is nothing left, parsing every
+	 * complete line.
+	 *
+	 * @param atEnd
+	 *            True if nothing more will be written to the file, so a last
+	 *            line without a line break is complete
+	 */
+	private void read(FileChannel channel, boolean atEnd) throws IOException {
+		try {
+			while (true) {
+				if (end == buffer.length) {
+					if (start > 0) {
+						System.arraycopy(buffer, start, buffer, 0, end - start);
+						end -= start;
+						scanned -= start;
+						start = 0;
+					} else {
+						// A single line is longer than the buffer
+						buffer = Arrays.copyOf(buffer, buffer.length * 2);
+					}
+				}
+				int n = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end), position);
+				if (n <= 0) {
+					break;
+				}
+				position += n;
+				end += n;
+				bytesRead.addAndGet(n);
+				parseLines();
+			}
+			if (atEnd && start < end) {
+				parseLine(start, end);
+				start = end;
+				scanned = end;
+			}
+		} finally {
+			flush();
+		}
+	}
+
+	/**
+	 * Parses every complete line in the buffer.
+	 */
+	private void parseLines() {
+		byte[] b = buffer;
+		for (int i = scanned; i < end; i++) {
+			if (b[i] == '\n') {
+				parseLine(start, i);
+				start = i + 1;
+			}
+		}
+		scanned = end;
+	}
+
+	/**
+	 * Parses one line, without its line break, and queues its row.
+	 */
+	private void parseLine(int from, int to) {
+		if (to > from && buffer[to - 1] == '\r') {
+			to--;
+		}
+		if (isBlank(from, to)) {
+			return;
+		}
+		int n = splitFields(from, to);
+		if (headerPending) {
+			headerPending = false;
+			List<String> names = new ArrayList<>(n);
+			for (int f = 0; f < n; f++) {
+				names.add(string(fieldStarts[f], fieldEnds[f], fieldQuoted[f]));
+			}
+			headerNames = Collections.unmodifiableList(names);
+			return;
+		}
+		if (columns < 0) {
+			columns = n;
+			addDependents(n - 1);
+		}
+		if (n != columns) {
+			malformed.incrementAndGet();
+			return;
+		}
+		I x = parser.parse(this, fieldStarts[0], fieldEnds[0], fieldQuoted[0]);
+		if (x == null) {
+			malformed.incrementAndGet();
+			return;
+		}
+		double[] y = new double[n - 1];
+		for (int f = 1; f < n; f++) {
+			y[f - 1] = parseDouble(fieldStarts[f], fieldEnds[f]);
+			if (invalid) {
+				malformed.incrementAndGet();
+				return;
+			}
+		}
+		batch.add(new Row<>(x, y));
+		if (batch.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Adds a dependent dataset for each dependent field if the dataset is
+	 * empty.
+	 */
+	private void addDependents(int n) {
+		synchronized (dataSet) {
+			if (dataSet.getIndependent().isEmpty() && dataSet.getDependent().isEmpty()) {
+				for (int i = 0; i < n; i++) {
+					dataSet.addDependentSet(new ArrayList<Double>());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the queued rows to the dataset.
+	 */
+	private void flush() {
+		if (!batch.isEmpty()) {
+			try {
+				add(batch);
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Adds rows to the dataset. If the dataset rejects them they are split in
+	 * half and each half is added on its own, so only the rows the dataset
+	 * can't take are dropped.
+	 */
+	private void add(List<Row<I>> r) {
+		int n = r.size();
+		try {
+			dataSet.addRows(r);
+		} catch (RuntimeException e) {
+			if (n == 1) {
+				lastError = e;
+				rejected.incrementAndGet();
+				return;
+			}
+			int half = n >>> 1;
+			add(r.subList(0, half));
+			add(r.subList(half, n));
+			return;
+		}
+		rows.addAndGet(n);
+	}
+
+	private boolean isBlank(int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (buffer[i] != ' ' && buffer[i] != '\t') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the fields in a line, without surrounding spaces or quotes.
+	 *
+	 * @return Number of fields
+	 */
+	private int splitFields(int from, int to) {
+		byte[] b = buffer;
+		byte delimiter = this.delimiter;
+		int n = 0;
+		int i = from;
+		while (true) {
+			if (n == fieldStarts.length) {
+				fieldStarts = Arrays.copyOf(fieldStarts, n * 2);
+				fieldEnds = Arrays.copyOf(fieldEnds, n * 2);
+				fieldQuoted = Arrays.copyOf(fieldQuoted, n * 2);
+			}
+			while (i < to && b[i] == ' ' && delimiter != ' ') {
+				i++;
+			}
+			int s = i;
+			int e;
+			boolean quoted = i < to && b[i] == '"';
+			if (quoted) {
+				s = ++i;
+				while (i < to) {
+					if (b[i] == '"') {
+						if (i + 1 < to && b[i + 1] == '"') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				e = i;
+				while (i < to && b[i] != delimiter) {
+					i++;
+				}
+			} else {
+				while (i < to && b[i] != delimiter) {
+					i++;
+				}
+				e = i;
+				while (e > s && (b[e - 1] == ' ' || b[e - 1] == '\t' && delimiter != '\t')) {
+					e--;
+				}
+			}
+			fieldStarts[n] = s;
+			fieldEnds[n] = e;
+			fieldQuoted[n] = quoted;
+			n++;
+			if (i >= to) {
+				return n;
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Decodes a field as UTF-8, turning doubled quotes in a quoted field into
+	 * single ones.
+	 */
+	private String string(int from, int to, boolean quoted) {
+		String s = new String(buffer, from, to - from, StandardCharsets.UTF_8);
+		return quoted ? s.replace("\"\"", "\"") : s;
+	}
+
+	/**
+	 * Parses a number from the buffer. Numbers whose digits make an integer of
+	 * at most 2^53, with a small exponent, are converted exactly with one
+	 * multiplication or division, anything else goes through
+	 * {@code Double.parseDouble}. Sets {@code invalid} if the field isn't a
+	 * number.
+	 *
+	 * @return The number, or NaN if the field is empty
+	 */
+	private double parseDouble(int from, int to) {
+		invalid = false;
+		if (from == to) {
+			return Double.NaN;
+		}
+		byte[] b = buffer;
+		int i = from;
+		boolean negative = false;
+		if (b[i] == '-' || b[i] == '+') {
+			negative = b[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean any = false;
+		for (; i < to && b[i] >= '0' && b[i] <= '9'; i++) {
+			any = true;
+			if (mantissa != 0 || b[i] != '0') {
+				mantissa = mantissa * 10 + (b[i] - '0');
+				digits++;
+			}
+		}
+		if (i < to && b[i] == '.') {
+			for (i++; i < to && b[i] >= '0' && b[i] <= '9'; i++) {
+				any = true;
+				if (mantissa != 0 || b[i] != '0') {
+					mantissa = mantissa * 10 + (b[i] - '0');
+					digits++;
+				}
+				exponent--;
+			}
+		}
+		if (any && i < to && (b[i] == 'e' || b[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < to && (b[i] == '-' || b[i] == '+')) {
+				negativeExponent = b[i] == '-';
+				i++;
+			}
+			int e = 0;
+			boolean anyExponent = false;
+			for (; i < to && b[i] >= '0' && b[i] <= '9' && e < 10000; i++) {
+				e = e * 10 + (b[i] - '0');
+				anyExponent = true;
+			}
+			if (!anyExponent) {
+				any = false;
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		if (!any || i != to || digits > 18 || mantissa > 1L << 53) {
+			return parseSlowly(from, to);
+		}
+		double d;
+		if (mantissa == 0) {
+			d = 0;
+		} else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+			d = mantissa * POWERS_OF_TEN[exponent];
+		} else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			d = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			return parseSlowly(from, to);
+		}
+		return negative ? -d : d;
+	}
+
+	private double parseSlowly(int from, int to) {
+		try {
+			return Double.parseDouble(new String(buffer, from, to - from, StandardCharsets.ISO_8859_1));
+		} catch (NumberFormatException e) {
+			invalid = true;
+			return Double.NaN;
+		}
+	}
+}
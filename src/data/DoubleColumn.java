@@ -0,0 +1,361 @@
+package data;
+
+import interfaces.DoubleList;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of primitive doubles. Behaves as a {@code List<Double>} so
+ * it can be handed to anything expecting the old boxed lists, but stores its
+ * values in a plain {@code double[]}, so each value costs 8 bytes rather than a
+ * reference plus a {@code Double} object.
+ *
+ * Values should be read through {@link #getDouble(int)} and written through
+ * {@link #addDouble(double)} wherever possible, the boxed {@code List} methods
+ * are only there for compatibility.
+ *
+ * This class is not thread safe, the {@code DataSet} owning a column is
+ * responsible for guarding access to it. Snapshots taken with
+ * {@link #snapshot()} are immutable and can be read from any thread, they
+ * share the backing array with the column until the column changes a value
+ * they can see, at which point the column copies it.
+ */
+public class DoubleColumn extends AbstractList<Double> implements PrimitiveColumn, RandomAccess {
+
+	/**
+	 * Capacity given to a column when none is specified.
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Backing array, only the first {@code size} values are in use.
+	 */
+	protected double[] values;
+
+	/**
+	 * Number of values in the column.
+	 */
+	protected int size = 0;
+
+	/**
+	 * True if a snapshot is sharing the backing array, in which case values
+	 * below {@code size} must not be changed in place.
+	 */
+	private boolean shared = false;
+
+	/**
+	 * Creates an empty column.
+	 */
+	public DoubleColumn() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty column with room for the given number of values before
+	 * it needs to grow.
+	 *
+	 * @param capacity
+	 *            Initial capacity of the column.
+	 */
+	public DoubleColumn(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+		}
+		values = new double[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Creates a column holding the double values of every number in the given
+	 * collection.
+	 *
+	 * @param c
+	 *            Collection of numbers to copy.
+	 */
+	public DoubleColumn(Collection<? extends Number> c) {
+		this(Objects.requireNonNull(c).size());
+		addAllNumbers(c);
+	}
+
+	@Override
+	public double getDouble(int index) {
+		checkIndex(index);
+		return values[index];
+	}
+
+	@Override
+	public void getDoubles(int from, double[] dest, int destOffset, int length) {
+		checkRange(from, length, size);
+		System.arraycopy(values, from, dest, destOffset, length);
+	}
+
+	/**
+	 * Sets the value at the given index.
+	 *
+	 * @param index
+	 *            Index of the value to replace.
+	 * @param d
+	 *            The new value.
+	 * @return The value previously at the index.
+	 */
+	public double setDouble(int index, double d) {
+		checkIndex(index);
+		unshare();
+		double old = values[index];
+		values[index] = d;
+		return old;
+	}
+
+	@Override
+	public void addDouble(double d) {
+		ensureCapacity(size + 1);
+		values[size++] = d;
+		modCount++;
+	}
+
+	/**
+	 * Appends the double value of every number in the given collection. Reads
+	 * primitives directly if the collection is itself a {@code DoubleList}.
+	 *
+	 * @param c
+	 *            Collection of numbers to append.
+	 */
+	public void addAllNumbers(Collection<? extends Number> c) {
+		Objects.requireNonNull(c);
+		ensureCapacity(size + c.size());
+		if (c instanceof DoubleList) {
+			DoubleList l = (DoubleList) c;
+			for (int i = 0, n = l.size(); i < n; i++) {
+				values[size++] = l.getDouble(i);
+			}
+		} else {
+			for (Number n : c) {
+				values[size++] = n.doubleValue();
+			}
+		}
+		modCount++;
+	}
+
+	/**
+	 * Makes sure the backing array can hold at least the given number of
+	 * values without growing again.
+	 *
+	 * @param capacity
+	 *            Minimum number of values the column should be able to hold.
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			int newCapacity = Math.max(capacity, values.length + (values.length >> 1));
+			if (newCapacity < 0) {
+				newCapacity = Integer.MAX_VALUE - 8;
+			}
+			values = Arrays.copyOf(values, newCapacity);
+			shared = false;
+		}
+	}
+
+	/**
+	 * Sets the number of values in the column. Growing the column fills the
+	 * new values with zero, shrinking it drops values from the end. Used to
+	 * size a column before filling it in place with {@code setDouble}.
+	 *
+	 * @param newSize
+	 *            The new number of values in the column.
+	 */
+	public void resize(int newSize) {
+		if (newSize < 0) {
+			throw new IllegalArgumentException("Size must not be negative: " + newSize);
+		}
+		ensureCapacity(newSize);
+		if (newSize < size) {
+			unshare();
+		}
+		if (newSize > size) {
+			Arrays.fill(values, size, newSize, 0d);
+		}
+		size = newSize;
+		modCount++;
+	}
+
+	/**
+	 * Removes values from the start of the column, moving the rest down.
+	 *
+	 * @param n
+	 *            Number of values to remove.
+	 */
+	public void removeFirst(int n) {
+		if (n < 0 || n > size) {
+			throw new IndexOutOfBoundsException("Count: " + n + ", Size: " + size);
+		}
+		if (n == 0) {
+			return;
+		}
+		if (shared) {
+			values = Arrays.copyOfRange(values, n, n + Math.max(values.length - n, 1));
+			shared = false;
+		} else {
+			System.arraycopy(values, n, values, 0, size - n);
+		}
+		size -= n;
+		modCount++;
+	}
+
+	/**
+	 * Gives direct access to the backing array, for filling or reading the
+	 * column in bulk. Only the first {@code size()} values are in use, and the
+	 * array is replaced whenever the column grows. Values below the size the
+	 * column had when a snapshot was last taken must not be written through
+	 * the array, values added since then can be.
+	 *
+	 * @return The backing array.
+	 */
+	double[] array() {
+		return values;
+	}
+
+	/**
+	 * Shrinks the backing array to the number of values in the column.
+	 */
+	public void trimToSize() {
+		if (values.length > size) {
+			values = Arrays.copyOf(values, Math.max(size, 1));
+			shared = false;
+		}
+	}
+
+	@Override
+	public List<Double> snapshot() {
+		shared = true;
+		return new View(values, size);
+	}
+
+	/**
+	 * Copies the backing array if a snapshot is sharing it, so values below
+	 * {@code size} can be changed.
+	 */
+	private void unshare() {
+		if (shared) {
+			values = values.clone();
+			shared = false;
+		}
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public Double set(int index, Double d) {
+		return setDouble(index, d);
+	}
+
+	@Override
+	public boolean add(Double d) {
+		addDouble(d);
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Double> c) {
+		int oldSize = size;
+		addAllNumbers(c);
+		return size != oldSize;
+	}
+
+	@Override
+	public void add(int index, Double d) {
+		Objects.requireNonNull(d);
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		ensureCapacity(size + 1);
+		if (index < size) {
+			unshare();
+		}
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = d;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Double remove(int index) {
+		checkIndex(index);
+		unshare();
+		double old = values[index];
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		if (shared) {
+			values = new double[DEFAULT_CAPACITY];
+			shared = false;
+		}
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	private static void checkRange(int from, int length, int size) {
+		if (from < 0 || length < 0 || from + length > size) {
+			throw new IndexOutOfBoundsException("From: " + from + ", Length: " + length + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Immutable view of the first {@code size} values of an array which will
+	 * never change.
+	 */
+	private static class View extends AbstractList<Double> implements DoubleList, RandomAccess {
+		private final double[] values;
+		private final int size;
+
+		private View(double[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		@Override
+		public double getDouble(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return values[index];
+		}
+
+		@Override
+		public void getDoubles(int from, double[] dest, int destOffset, int length) {
+			checkRange(from, length, size);
+			System.arraycopy(values, from, dest, destOffset, length);
+		}
+
+		@Override
+		public Double get(int index) {
+			return getDouble(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
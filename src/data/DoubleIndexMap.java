@@ -0,0 +1,80 @@
+package data;
+
+import interfaces.DoubleList;
+
+/**
+ * Open addressing hash map from primitive double keys to the index the key was
+ * first seen at in a column. Used to find values which have already been
+ * computed for an x value without boxing every key.
+ *
+ * Keys are compared by their bit patterns, so {@code 0d} and {@code -0d} are
+ * different keys and all {@code NaN}s are the same key.
+ */
+class DoubleIndexMap {
+
+	private final long[] keys;
+
+	/**
+	 * Index stored for each slot, plus one so that zero marks an empty slot.
+	 */
+	private final int[] indexes;
+
+	private final int mask;
+
+	/**
+	 * Creates a map of the values in the given column to their first index in
+	 * that column.
+	 *
+	 * @param column
+	 *            Column to index.
+	 */
+	DoubleIndexMap(DoubleList column) {
+		int size = column.size();
+		int capacity = Integer.highestOneBit(Math.max(4, size) * 2 - 1) << 1;
+		keys = new long[capacity];
+		indexes = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < size; i++) {
+			put(column.getDouble(i), i);
+		}
+	}
+
+	private void put(double key, int index) {
+		long bits = Double.doubleToLongBits(key);
+		int slot = hash(bits) & mask;
+		while (indexes[slot] != 0) {
+			if (keys[slot] == bits) {
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = bits;
+		indexes[slot] = index + 1;
+	}
+
+	/**
+	 * Gets the index a value was first seen at.
+	 *
+	 * @param key
+	 *            Value to look up.
+	 * @return The index of the value, or -1 if the value was not in the column.
+	 */
+	int indexOf(double key) {
+		long bits = Double.doubleToLongBits(key);
+		int slot = hash(bits) & mask;
+		while (indexes[slot] != 0) {
+			if (keys[slot] == bits) {
+				return indexes[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int hash(long bits) {
+		bits ^= bits >>> 33;
+		bits *= 0xff51afd7ed558ccdL;
+		bits ^= bits >>> 33;
+		return (int) bits;
+	}
+}
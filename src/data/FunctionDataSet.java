@@ -0,0 +1,335 @@
+package data;
+
+import interfaces.DataChange;
+import interfaces.ViewportModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+
+import data.ContinuousDataSet.BatchFunction;
+import data.ContinuousDataSet.Function;
+
+/**
+ * Dataset made up only of functions, which are evaluated lazily at the x
+ * values a graph can actually show rather than over a fixed independent
+ * dataset. Whenever a graph draws this dataset it sets the viewport, and the
+ * functions are sampled {@code samplesPerPixel} times per pixel column across
+ * the visible x range. Sampling only happens again when the visible range or
+ * the width of the graph changes, or a function is added.
+ *
+ * With {@code setAdaptiveSampling} turned on the functions are instead
+ * sampled where they curve on screen, see {@code AdaptiveSampler}. Adaptive
+ * samples are cached, so panning and zooming only evaluates the functions where
+ * the new view needs more detail. Adaptive sampling only covers the domain,
+ * parts of the view outside it are left empty.
+ *
+ * The independent and dependent datasets can't be changed directly, the
+ * methods to do so throw an {@code UnsupportedOperationException}.
+ *
+ * All operations in this class are thread safe.
+ */
+public class FunctionDataSet extends DataSet<Double> implements ViewportModel {
+
+	/**
+	 * Number of pixel columns to sample for before any graph has set the
+	 * viewport.
+	 */
+	private static final int DEFAULT_WIDTH = 500;
+
+	private List<BatchFunction> functions = new ArrayList<>();
+
+	private double domainMin;
+	private double domainMax;
+
+	private int samplesPerPixel = 2;
+
+	private boolean adaptive = false;
+	private AdaptiveSampler sampler = new AdaptiveSampler(functions);
+
+	/**
+	 * Number of function evaluations done by uniform sampling.
+	 */
+	private long uniformEvaluations = 0;
+
+	/**
+	 * The viewport the current samples were taken for.
+	 */
+	private double sampledMin;
+	private double sampledMax;
+	private int sampledWidth;
+	private int sampledHeight;
+
+	/**
+	 * Creates a dataset covering the given range of x values when a graph
+	 * showing it auto-ranges.
+	 *
+	 * @param domainMin
+	 *            Smallest x value
+	 * @param domainMax
+	 *            Largest x value
+	 */
+	public FunctionDataSet(double domainMin, double domainMax) {
+		super(new DoubleColumn());
+		setDomain(domainMin, domainMax);
+	}
+
+	/**
+	 * Sets the range of x values shown by a graph which is auto-ranging,
+	 * resampling the functions over the new range.
+	 *
+	 * @param min
+	 *            Smallest x value
+	 * @param max
+	 *            Largest x value
+	 */
+	public synchronized void setDomain(double min, double max) {
+		if (!(min < max) || Double.isInfinite(min) || Double.isInfinite(max)) {
+			throw new IllegalArgumentException("Domain must be a finite range with min < max: " + min + ", " + max);
+		}
+		domainMin = min;
+		domainMax = max;
+		sampler.reset();
+		sample(min, max, DEFAULT_WIDTH, DEFAULT_WIDTH);
+		update();
+	}
+
+	@Override
+	public synchronized double getDomainMin() {
+		return domainMin;
+	}
+
+	@Override
+	public synchronized double getDomainMax() {
+		return domainMax;
+	}
+
+	/**
+	 * Sets how many times each function is sampled per pixel column. One is
+	 * enough for smooth functions, two catches more of the peaks in
+	 * oscillating ones.
+	 *
+	 * @param n
+	 *            Samples per pixel, must be positive
+	 */
+	public synchronized void setSamplesPerPixel(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Samples per pixel must be positive: " + n);
+		}
+		samplesPerPixel = n;
+		sample(sampledMin, sampledMax, sampledWidth, sampledHeight);
+		update();
+	}
+
+	/**
+	 * Turns adaptive sampling on or off. Off by default.
+	 *
+	 * @param b
+	 *            True to sample where the functions curve, false to sample
+	 *            evenly across the view
+	 */
+	public synchronized void setAdaptiveSampling(boolean b) {
+		if (adaptive != b) {
+			adaptive = b;
+			sample(sampledMin, sampledMax, sampledWidth, sampledHeight);
+			update();
+		}
+	}
+
+	/**
+	 * @return True if adaptive sampling is on
+	 */
+	public synchronized boolean isAdaptiveSampling() {
+		return adaptive;
+	}
+
+	/**
+	 * Sets how far, in pixels, a function may stray from the straight line
+	 * between two adaptive samples before more samples are taken between them.
+	 *
+	 * @param pixels
+	 *            The tolerance, 0.5 by default
+	 */
+	public synchronized void setTolerance(double pixels) {
+		sampler.setTolerance(pixels);
+		if (adaptive) {
+			sample(sampledMin, sampledMax, sampledWidth, sampledHeight);
+			update();
+		}
+	}
+
+	/**
+	 * Sets the maximum number of new x values adaptive sampling evaluates the
+	 * functions at each time the view changes.
+	 *
+	 * @param n
+	 *            Maximum evaluations, must be positive
+	 */
+	public synchronized void setMaxEvaluations(int n) {
+		sampler.setMaxEvaluations(n);
+	}
+
+	/**
+	 * @return Number of times any function has been evaluated at a single x
+	 *         value, useful to compare the sampling modes
+	 */
+	public synchronized long getEvaluationCount() {
+		return uniformEvaluations + sampler.getEvaluationCount();
+	}
+
+	/**
+	 * Add a function to be drawn.
+	 *
+	 * @param f
+	 *            New function
+	 */
+	public synchronized void addFunction(Function<Double, Double> f) {
+		addBatchFunction(BatchFunction.of(f));
+	}
+
+	/**
+	 * Add a function on primitive doubles to be drawn.
+	 *
+	 * @param f
+	 *            New function
+	 */
+	public synchronized void addDoubleFunction(DoubleUnaryOperator f) {
+		addBatchFunction(BatchFunction.of(f));
+	}
+
+	/**
+	 * Add a function evaluating ranges of x values at once to be drawn.
+	 *
+	 * @param f
+	 *            New function
+	 */
+	public synchronized void addBatchFunction(BatchFunction f) {
+		Objects.requireNonNull(f);
+		functions.add(f);
+		sampler.reset();
+		if (adaptive) {
+			depVars.add(new DoubleColumn());
+			sample(sampledMin, sampledMax, sampledWidth, sampledHeight);
+			update();
+		} else {
+			depVars.add(evaluate(f, (DoubleColumn) indVars));
+			update(DataChange.Type.SERIES_ADDED, depVars.size() - 1, depVars.size());
+		}
+	}
+
+	/**
+	 * Removes the function at the given index, in the order the functions were
+	 * added.
+	 */
+	@Override
+	public synchronized void removeDependent(int dataSet) {
+		if (dataSet < 0 || dataSet >= functions.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		functions.remove(dataSet);
+		sampler.reset();
+		super.removeDependent(dataSet);
+	}
+
+	@Override
+	public synchronized void setViewport(double xMin, double xMax, int width, int height) {
+		if (Double.isNaN(xMin) || Double.isNaN(xMax) || Double.isInfinite(xMin) || Double.isInfinite(xMax)) {
+			return;
+		}
+		width = Math.max(width, 1);
+		height = Math.max(height, 1);
+		if (xMin != sampledMin || xMax != sampledMax || width != sampledWidth || adaptive && height != sampledHeight) {
+			sample(xMin, xMax, width, height);
+			// The graph setting the viewport reads the new snapshot itself, so
+			// the observers don't need updating
+			publish();
+		}
+	}
+
+	/**
+	 * Replaces the independent dataset with samples across the given range,
+	 * and the dependent datasets with every function's values at them.
+	 */
+	private void sample(double xMin, double xMax, int width, int height) {
+		sampledMin = xMin;
+		sampledMax = xMax;
+		sampledWidth = width;
+		sampledHeight = height;
+
+		if (adaptive) {
+			DoubleColumn x = new DoubleColumn();
+			DoubleColumn[] ys = new DoubleColumn[functions.size()];
+			for (int i = 0; i < ys.length; i++) {
+				ys[i] = new DoubleColumn();
+				depVars.set(i, ys[i]);
+			}
+			sampler.sample(domainMin, domainMax, xMin, xMax, width, height, x, ys);
+			indVars = x;
+			return;
+		}
+
+		int n = Math.max(2, width * samplesPerPixel);
+		DoubleColumn x = new DoubleColumn(n);
+		x.resize(n);
+		double[] xs = x.array();
+		double step = (xMax - xMin) / (n - 1);
+		for (int i = 0; i < n; i++) {
+			xs[i] = xMin + step * i;
+		}
+		xs[n - 1] = xMax;
+		indVars = x;
+		for (int i = 0; i < functions.size(); i++) {
+			depVars.set(i, evaluate(functions.get(i), x));
+		}
+	}
+
+	private DoubleColumn evaluate(BatchFunction f, DoubleColumn x) {
+		DoubleColumn y = new DoubleColumn(x.size());
+		y.resize(x.size());
+		f.apply(x.array(), 0, y.array(), 0, x.size());
+		uniformEvaluations += x.size();
+		return y;
+	}
+
+	/**
+	 * Not supported, the independent dataset is decided by the viewport.
+	 */
+	@Override
+	public void setIndependent(Collection<Double> c) {
+		throw new UnsupportedOperationException("Independent values of a function dataset are sampled automatically");
+	}
+
+	/**
+	 * Not supported, the independent dataset is decided by the viewport.
+	 */
+	@Override
+	public void addToIndependent(Double t) {
+		throw new UnsupportedOperationException("Independent values of a function dataset are sampled automatically");
+	}
+
+	/**
+	 * Not supported, only functions can be added to this dataset.
+	 */
+	@Override
+	public void addDependentSet(Collection<Double> l) {
+		throw new UnsupportedOperationException("Only functions can be added to a function dataset");
+	}
+
+	/**
+	 * Not supported, the rows are sampled from the functions.
+	 */
+	@Override
+	public void addRow(Double x, double... y) {
+		throw new UnsupportedOperationException("Rows of a function dataset are sampled automatically");
+	}
+
+	/**
+	 * Not supported, the rows are sampled from the functions.
+	 */
+	@Override
+	public void addRows(List<? extends Row<Double>> rows) {
+		throw new UnsupportedOperationException("Rows of a function dataset are sampled automatically");
+	}
+}
@@ -0,0 +1,160 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a piece of work over a range of indexes, either on the calling thread
+ * or split across a {@code ForkJoinPool} or user supplied {@code Executor}.
+ * Used by {@code ContinuousDataSet} to fill function result columns in place,
+ * each index is written by exactly one task so the results are the same as
+ * running the work serially.
+ */
+class FunctionEvaluator {
+
+	/**
+	 * Ranges smaller than this are always run on the calling thread.
+	 */
+	static final int DEFAULT_THRESHOLD = 1 << 14;
+
+	/**
+	 * Smallest range a parallel task is split down to.
+	 */
+	private static final int MIN_TASK_SIZE = 1 << 10;
+
+	/**
+	 * Work to be done for every index in a range.
+	 */
+	interface RangeBody {
+		/**
+		 * @param from
+		 *            First index, inclusive
+		 * @param to
+		 *            Last index, exclusive
+		 */
+		void run(int from, int to);
+	}
+
+	private boolean parallel = false;
+	private int threshold = DEFAULT_THRESHOLD;
+
+	/**
+	 * Executor to run parallel work on, null to use the common
+	 * {@code ForkJoinPool}.
+	 */
+	private Executor executor = null;
+
+	void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	boolean isParallel() {
+		return parallel;
+	}
+
+	void setThreshold(int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+		}
+		this.threshold = threshold;
+	}
+
+	int getThreshold() {
+		return threshold;
+	}
+
+	void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Runs the body over the given range, returning once every index has been
+	 * done. Exceptions thrown by the body are rethrown on the calling thread.
+	 *
+	 * @param from
+	 *            First index, inclusive
+	 * @param to
+	 *            Last index, exclusive
+	 * @param body
+	 *            Work to run
+	 */
+	void forRange(int from, int to, RangeBody body) {
+		Objects.requireNonNull(body);
+		int length = to - from;
+		if (length <= 0) {
+			return;
+		}
+		if (!parallel || length < threshold) {
+			body.run(from, to);
+		} else if (executor == null || executor instanceof ForkJoinPool) {
+			ForkJoinPool pool = executor == null ? ForkJoinPool.commonPool() : (ForkJoinPool) executor;
+			int taskSize = taskSize(length, pool.getParallelism());
+			pool.invoke(new RangeAction(from, to, taskSize, body));
+		} else {
+			int taskSize = taskSize(length, Runtime.getRuntime().availableProcessors());
+			List<CompletableFuture<Void>> tasks = new ArrayList<>();
+			for (int start = from; start < to; start += taskSize) {
+				int a = start;
+				int b = Math.min(to, start + taskSize);
+				tasks.add(CompletableFuture.runAsync(() -> body.run(a, b), executor));
+			}
+			try {
+				CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				} else if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Splits the range into a few tasks per thread so uneven functions still
+	 * balance out.
+	 */
+	private static int taskSize(int length, int threads) {
+		return Math.max(MIN_TASK_SIZE, length / (Math.max(threads, 1) * 4));
+	}
+
+	/**
+	 * Splits a range in half until it is no bigger than the task size.
+	 */
+	private static class RangeAction extends RecursiveAction {
+		private static final long serialVersionUID = -2619364470180362731L;
+
+		private final int from;
+		private final int to;
+		private final int taskSize;
+		private final RangeBody body;
+
+		private RangeAction(int from, int to, int taskSize, RangeBody body) {
+			this.from = from;
+			this.to = to;
+			this.taskSize = taskSize;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= taskSize) {
+				body.run(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new RangeAction(from, mid, taskSize, body), new RangeAction(mid, to, taskSize, body));
+			}
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package data;
+
+import interfaces.DoubleList;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the order of a dataset's independent values, so graphs can
+ * find the rows in an x interval by binary search rather than looking at every
+ * row.
+ *
+ * Whether the values are sorted is checked as rows are appended, only looking
+ * at the new rows. If they aren't sorted, the rows in order of their values
+ * are worked out the first time a snapshot is asked for them, by sorting only
+ * the rows appended since the order was last worked out and merging them into
+ * it. NaN values are put after every other value. Values which aren't finite
+ * count as unsorted, as graphs draw them at the edge of the axis rather than
+ * where they would sort.
+ *
+ * Only holds for a dataset whose existing independent values never change, a
+ * dataset replacing its independent values starts a new tracker.
+ *
+ * Appending is not thread safe, the {@code DataSet} owning the tracker is
+ * responsible for guarding it. Orders can be asked for from any thread.
+ */
+final class IndependentOrder {
+
+	/**
+	 * Bits in each digit of the radix sort.
+	 */
+	private static final int DIGIT_BITS = 11;
+
+	/**
+	 * Number of values checked for being sorted, and the last of them.
+	 */
+	private int checked = 0;
+	private double last = Double.NEGATIVE_INFINITY;
+	private volatile boolean sorted = true;
+
+	/**
+	 * The most rows the order has been worked out for, in order of their
+	 * values, and the sort key of each of their values. Guarded by this.
+	 */
+	private int[] latest = new int[0];
+	private long[] latestKeys = new long[0];
+
+	/**
+	 * Checks whether the values appended since this was last called keep the
+	 * values sorted.
+	 *
+	 * @param x
+	 *            The independent values
+	 */
+	void update(DoubleList x) {
+		int size = x.size();
+		if (!sorted || size <= checked) {
+			return;
+		}
+		double[] buffer = new double[Math.min(1024, size - checked)];
+		for (int start = checked; start < size && sorted; start += buffer.length) {
+			int n = Math.min(buffer.length, size - start);
+			x.getDoubles(start, buffer, 0, n);
+			for (int i = 0; i < n; i++) {
+				double d = buffer[i];
+				// Also false for NaN
+				if (!(d >= last) || Double.isInfinite(d)) {
+					sorted = false;
+					break;
+				}
+				last = d;
+			}
+		}
+		checked = size;
+	}
+
+	/**
+	 * @return True if every value checked is finite and at least the one
+	 *         before it
+	 */
+	boolean isSorted() {
+		return sorted;
+	}
+
+	/**
+	 * Works out the order of the rows of a snapshot of the values.
+	 *
+	 * @param x
+	 *            Snapshot of the independent values
+	 * @return Indexes of every row of the snapshot in order of their values,
+	 *         rows with the same value in the order they were added
+	 */
+	synchronized int[] order(DoubleList x) {
+		int size = x.size();
+		int known = latest.length;
+		if (known > size) {
+			// An older snapshot, drop the rows it doesn't have
+			int[] order = new int[size];
+			for (int i = 0, j = 0; i < known; i++) {
+				if (latest[i] < size) {
+					order[j++] = latest[i];
+				}
+			}
+			return order;
+		}
+		if (known == size) {
+			return latest;
+		}
+		int n = size - known;
+		double[] values = new double[n];
+		x.getDoubles(known, values, 0, n);
+		long[] keys = new long[n];
+		int[] rows = new int[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = key(values[i]);
+			rows[i] = known + i;
+		}
+		sort(keys, rows);
+
+		// Merge the new rows into the rows already in order, the new rows
+		// going after old rows with the same value
+		int[] order = new int[size];
+		long[] orderKeys = new long[size];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < known && j < n) {
+			if (keys[j] < latestKeys[i]) {
+				orderKeys[k] = keys[j];
+				order[k++] = rows[j++];
+			} else {
+				orderKeys[k] = latestKeys[i];
+				order[k++] = latest[i++];
+			}
+		}
+		System.arraycopy(latestKeys, i, orderKeys, k, known - i);
+		System.arraycopy(latest, i, order, k, known - i);
+		k += known - i;
+		System.arraycopy(keys, j, orderKeys, k, n - j);
+		System.arraycopy(rows, j, order, k, n - j);
+		latest = order;
+		latestKeys = orderKeys;
+		return order;
+	}
+
+	/**
+	 * @return A long which sorts the same way as the value, with every NaN
+	 *         after positive infinity
+	 */
+	private static long key(double d) {
+		long bits = Double.doubleToLongBits(d);
+		return bits ^ (bits >> 63) & Long.MAX_VALUE;
+	}
+
+	/**
+	 * Sorts keys with a least significant digit first radix sort, moving the
+	 * rows with them and keeping rows with the same key in order. Digits which
+	 * are the same for every key are skipped, which is most of the high digits
+	 * of values in a narrow range.
+	 */
+	private static void sort(long[] keys, int[] rows) {
+		int n = keys.length;
+		if (n == 0) {
+			return;
+		}
+		long[] fromKeys = keys;
+		int[] fromRows = rows;
+		long[] toKeys = new long[n];
+		int[] toRows = new int[n];
+		int[] counts = new int[1 << DIGIT_BITS];
+		for (int shift = 0; shift < 64; shift += DIGIT_BITS) {
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < n; i++) {
+				counts[digit(fromKeys[i], shift)]++;
+			}
+			if (counts[digit(fromKeys[0], shift)] == n) {
+				continue;
+			}
+			for (int d = 0, total = 0; d < counts.length; d++) {
+				int c = counts[d];
+				counts[d] = total;
+				total += c;
+			}
+			for (int i = 0; i < n; i++) {
+				int k = counts[digit(fromKeys[i], shift)]++;
+				toKeys[k] = fromKeys[i];
+				toRows[k] = fromRows[i];
+			}
+			long[] tk = fromKeys;
+			fromKeys = toKeys;
+			toKeys = tk;
+			int[] tr = fromRows;
+			fromRows = toRows;
+			toRows = tr;
+		}
+		if (fromKeys != keys) {
+			System.arraycopy(fromKeys, 0, keys, 0, n);
+			System.arraycopy(fromRows, 0, rows, 0, n);
+		}
+	}
+
+	/**
+	 * @return The digit of a key at the given shift, with the sign bit
+	 *         flipped so negative keys sort first
+	 */
+	private static int digit(long key, int shift) {
+		return (int) ((key ^ Long.MIN_VALUE) >>> shift) & (1 << DIGIT_BITS) - 1;
+	}
+}
@@ -0,0 +1,378 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Front end for feeding one {@code DataSet} from many threads. Producers
+ * {@link #offer} rows onto a lock-free multi-producer, single-consumer queue
+ * without ever touching the dataset's lock. The queue is drained into the
+ * dataset in batches, either by calling {@link #drain()} or on a background
+ * thread at a fixed cadence after {@link #start()}. Each drain takes the
+ * dataset's lock once and updates its observers once.
+ *
+ * Producers only ever do one atomic swap to enqueue a row. The queue is the
+ * intrusive linked queue described by Dmitry Vyukov, so a consumer can see a
+ * row which has been swapped in but not linked yet, in which case it spins
+ * until the producer finishes. These stalls are counted, along with the
+ * throughput and backlog of the queue.
+ *
+ * A batch the dataset rejects, for example because some of its rows have the
+ * wrong number of values, is split in half and each half added on its own,
+ * until only the rows the dataset can't take are left. Those rows are dropped
+ * and counted by {@code getRejectedCount}, every other row is still added, in
+ * the order it was offered. This relies on {@code DataSet.addRows} checking
+ * every row of a batch before adding any of them. A drain on the background
+ * thread which fails for any other reason is counted by
+ * {@code getFailedDrainCount}, and the next drain runs as usual.
+ *
+ * @param <I>
+ *            Type of data in the dataset's independent dataset
+ */
+public class IngestionQueue<I> {
+
+	/**
+	 * Default interval between drains, in milliseconds.
+	 */
+	public static final long DEFAULT_CADENCE_MILLIS = 16;
+
+	/**
+	 * Default maximum number of rows to add to the dataset in one batch.
+	 */
+	public static final int DEFAULT_MAX_BATCH = 1 << 16;
+
+	/**
+	 * A queued row, linked to the row queued after it.
+	 */
+	private static final class Node<I> extends Row<I> {
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Node, Node> NEXT = AtomicReferenceFieldUpdater.newUpdater(
+				Node.class, Node.class, "next");
+
+		private volatile Node<I> next;
+
+		private Node(I x, double[] y) {
+			super(x, y);
+		}
+
+		private Node() {
+			super();
+		}
+	}
+
+	private final DataSet<I> dataSet;
+
+	/**
+	 * Last node swapped in by a producer.
+	 */
+	private final AtomicReference<Node<I>> tail;
+
+	/**
+	 * Last node taken by the consumer, its row has already been drained.
+	 * Only accessed while holding {@code drainLock}.
+	 */
+	private Node<I> head;
+
+	private final Object drainLock = new Object();
+
+	private int maxBatch = DEFAULT_MAX_BATCH;
+
+	private ScheduledExecutorService scheduler = null;
+	private ScheduledFuture<?> task = null;
+
+	private final LongAdder offered = new LongAdder();
+	private final AtomicLong drained = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong failedDrains = new AtomicLong();
+	private volatile RuntimeException lastError = null;
+	private final AtomicLong drains = new AtomicLong();
+	private final AtomicLong largestBatch = new AtomicLong();
+	private final AtomicLong maxBacklog = new AtomicLong();
+	private final AtomicLong stalls = new AtomicLong();
+	private final AtomicLong drainNanos = new AtomicLong();
+	private final long created = System.nanoTime();
+
+	/**
+	 * Creates a queue feeding the given dataset. Nothing is drained until
+	 * {@code start} or {@code drain} is called.
+	 *
+	 * @param dataSet
+	 *            Dataset to add rows to
+	 */
+	public IngestionQueue(DataSet<I> dataSet) {
+		this.dataSet = Objects.requireNonNull(dataSet);
+		head = new Node<>();
+		tail = new AtomicReference<>(head);
+	}
+
+	/**
+	 * Queues a row to be added to the dataset. Safe to call from any number of
+	 * threads, never blocks.
+	 *
+	 * @param x
+	 *            The independent value
+	 * @param y
+	 *            The dependent values, one for each dependent dataset which
+	 *            isn't computed by the dataset. Copied.
+	 */
+	public void offer(I x, double... y) {
+		Objects.requireNonNull(x);
+		Node<I> node = new Node<>(x, y.clone());
+		// Counted before the row can be drained, so a drained or rejected
+		// count read before the offered count never exceeds it
+		offered.increment();
+		Node<I> prev = tail.getAndSet(node);
+		Node.NEXT.lazySet(prev, node);
+	}
+
+	/**
+	 * Sets the most rows added to the dataset in one batch, so a very large
+	 * backlog doesn't hold the dataset's lock for too long at once.
+	 *
+	 * @param n
+	 *            Maximum batch size, must be positive
+	 */
+	public void setMaxBatch(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + n);
+		}
+		maxBatch = n;
+	}
+
+	/**
+	 * Starts draining the queue on a background thread every
+	 * {@code DEFAULT_CADENCE_MILLIS} milliseconds.
+	 */
+	public void start() {
+		start(DEFAULT_CADENCE_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts draining the queue on a background thread at the given cadence.
+	 * If it was already started, the old cadence is replaced.
+	 *
+	 * @param period
+	 *            Time between drains
+	 * @param unit
+	 *            Unit of {@code period}
+	 */
+	public synchronized void start(long period, TimeUnit unit) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("Period must be positive: " + period);
+		}
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "DataSet ingestion");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		if (task != null) {
+			task.cancel(false);
+		}
+		task = scheduler.scheduleWithFixedDelay(() -> {
+			// An exception would cancel the task, and nothing would ever be
+			// drained again
+			try {
+				drain();
+			} catch (RuntimeException e) {
+				lastError = e;
+				failedDrains.incrementAndGet();
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Stops draining on the background thread, then drains whatever is left
+	 * in the queue on the calling thread.
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			try {
+				scheduler.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			scheduler = null;
+			task = null;
+		}
+		drain();
+	}
+
+	/**
+	 * Adds everything queued so far to the dataset, in batches of at most
+	 * {@code setMaxBatch} rows. Each batch is one call to
+	 * {@code DataSet.addRows}, so one observer update.
+	 *
+	 * @return Number of rows added
+	 */
+	public int drain() {
+		synchronized (drainLock) {
+			long backlog = getBacklog();
+			maxBacklog.accumulateAndGet(backlog, Math::max);
+
+			Node<I> last = tail.get();
+			int total = 0;
+			ArrayList<Row<I>> batch = new ArrayList<>();
+			while (head != last) {
+				Node<I> next = head.next;
+				if (next == null) {
+					// A producer has swapped in a node but not linked it yet
+					stalls.incrementAndGet();
+					Thread.yield();
+					continue;
+				}
+				head = next;
+				batch.add(next);
+				if (batch.size() == maxBatch) {
+					total += flush(batch);
+				}
+			}
+			total += flush(batch);
+			return total;
+		}
+	}
+
+	private int flush(ArrayList<Row<I>> batch) {
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		int n = add(batch);
+		drainNanos.addAndGet(System.nanoTime() - start);
+		batch.clear();
+		return n;
+	}
+
+	/**
+	 * Adds rows to the dataset. If the dataset rejects them they are split in
+	 * half and each half is added on its own, so only the rows the dataset
+	 * can't take are dropped.
+	 *
+	 * @return Number of rows added
+	 */
+	private int add(List<Row<I>> rows) {
+		int n = rows.size();
+		try {
+			dataSet.addRows(rows);
+		} catch (RuntimeException e) {
+			if (n == 1) {
+				lastError = e;
+				rejected.incrementAndGet();
+				return 0;
+			}
+			int half = n >>> 1;
+			return add(rows.subList(0, half)) + add(rows.subList(half, n));
+		}
+		drained.addAndGet(n);
+		drains.incrementAndGet();
+		largestBatch.accumulateAndGet(n, Math::max);
+		return n;
+	}
+
+	/**
+	 * @return Number of rows offered so far
+	 */
+	public long getOfferedCount() {
+		return offered.sum();
+	}
+
+	/**
+	 * @return Number of rows added to the dataset so far
+	 */
+	public long getDrainedCount() {
+		return drained.get();
+	}
+
+	/**
+	 * @return Number of rows the dataset rejected, which were dropped
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return Number of drains on the background thread which failed with an
+	 *         exception
+	 */
+	public long getFailedDrainCount() {
+		return failedDrains.get();
+	}
+
+	/**
+	 * @return The exception the dataset last rejected a row with, or a drain
+	 *         on the background thread last failed with, or null if there
+	 *         hasn't been one
+	 */
+	public RuntimeException getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @return Number of batches added to the dataset so far, which is also the
+	 *         number of observer updates caused by the queue
+	 */
+	public long getBatchCount() {
+		return drains.get();
+	}
+
+	/**
+	 * @return The size of the largest batch added to the dataset
+	 */
+	public long getLargestBatch() {
+		return largestBatch.get();
+	}
+
+	/**
+	 * @return Number of rows offered but not drained or rejected yet
+	 */
+	public long getBacklog() {
+		// Read before the offered count, every row they count has already
+		// been counted as offered, so the backlog is never negative
+		long done = drained.get() + rejected.get();
+		return offered.sum() - done;
+	}
+
+	/**
+	 * @return The largest backlog seen at the start of a drain
+	 */
+	public long getMaxBacklog() {
+		return maxBacklog.get();
+	}
+
+	/**
+	 * @return Number of times the consumer had to wait for a producer to
+	 *         finish linking a row, a measure of contention between producers
+	 *         and the consumer
+	 */
+	public long getStallCount() {
+		return stalls.get();
+	}
+
+	/**
+	 * @return Total time, in nanoseconds, spent adding batches to the dataset,
+	 *         which is the time the dataset's lock was held for
+	 */
+	public long getDrainNanos() {
+		return drainNanos.get();
+	}
+
+	/**
+	 * @return Average number of rows added to the dataset per second since
+	 *         this queue was created
+	 */
+	public double getThroughput() {
+		double seconds = (System.nanoTime() - created) / 1e9;
+		return seconds > 0 ? drained.get() / seconds : 0;
+	}
+}
@@ -0,0 +1,166 @@
+package data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of objects, used for independent datasets which aren't
+ * numbers. Works the same as an {@code ArrayList}, but can give out immutable
+ * snapshots which share its backing array until a value they can see is
+ * changed.
+ *
+ * This class is not thread safe, the {@code DataSet} owning a column is
+ * responsible for guarding access to it. Snapshots can be read from any
+ * thread.
+ *
+ * @param <E>
+ *            Type of value in the column
+ */
+public class ListColumn<E> extends AbstractList<E> implements RandomAccess, Column<E> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private Object[] values = new Object[DEFAULT_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * True if a snapshot is sharing the backing array.
+	 */
+	private boolean shared = false;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		checkIndex(index);
+		return (E) values[index];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E set(int index, E e) {
+		checkIndex(index);
+		unshare();
+		E old = (E) values[index];
+		values[index] = e;
+		return old;
+	}
+
+	@Override
+	public boolean add(E e) {
+		ensureCapacity(size + 1);
+		values[size++] = e;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		Object[] added = c.toArray();
+		ensureCapacity(size + added.length);
+		System.arraycopy(added, 0, values, size, added.length);
+		size += added.length;
+		modCount++;
+		return added.length != 0;
+	}
+
+	@Override
+	public void add(int index, E e) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		ensureCapacity(size + 1);
+		if (index < size) {
+			unshare();
+		}
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = e;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E remove(int index) {
+		checkIndex(index);
+		unshare();
+		E old = (E) values[index];
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		values[--size] = null;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		if (shared) {
+			values = new Object[DEFAULT_CAPACITY];
+			shared = false;
+		} else {
+			Arrays.fill(values, 0, size, null);
+		}
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<E> snapshot() {
+		shared = true;
+		return new View<>(values, size);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			values = Arrays.copyOf(values, Math.max(capacity, values.length + (values.length >> 1)));
+			shared = false;
+		}
+	}
+
+	private void unshare() {
+		if (shared) {
+			values = values.clone();
+			shared = false;
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Immutable view of the first {@code size} values of an array which will
+	 * never change.
+	 */
+	private static class View<E> extends AbstractList<E> implements RandomAccess {
+		private final Object[] values;
+		private final int size;
+
+		private View(Object[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return (E) values[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
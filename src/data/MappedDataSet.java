@@ -0,0 +1,206 @@
+package data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Dataset stored in memory-mapped files rather than on the heap, for
+ * recordings far bigger than the heap. Each column is a
+ * {@code MappedDoubleColumn} in its own file in a directory, {@code x.dcol}
+ * for the independent values and {@code y0.dcol}, {@code y1.dcol} and so on
+ * for the dependent values. Opening a dataset only maps the files, so it takes
+ * the same time however big the recording is, and as graphs are only shown a
+ * sample of the rows in view, drawing an overview only reads a few thousand
+ * values from the files.
+ *
+ * The recorded columns are returned by {@code getIndependentColumn} and
+ * {@code getDependentColumn}. Recorded columns are never removed, so
+ * {@code removeDependent} throws an {@code UnsupportedOperationException}.
+ *
+ * All operations in this class are thread safe.
+ */
+public class MappedDataSet extends SampledDataSet implements Closeable {
+
+	private final Path directory;
+	private final boolean readOnly;
+	private boolean closed = false;
+
+	/**
+	 * Opens the recording in the given directory, creating the directory and
+	 * an empty recording if they don't exist.
+	 *
+	 * @param directory
+	 *            Directory holding the column files
+	 * @throws IOException
+	 *             If the files can't be opened, or aren't a recording
+	 */
+	public MappedDataSet(Path directory) throws IOException {
+		this(directory, false);
+	}
+
+	/**
+	 * Opens the recording in the given directory.
+	 *
+	 * @param directory
+	 *            Directory holding the column files
+	 * @param readOnly
+	 *            True to open an existing recording without being able to
+	 *            append to it, false to create the recording if it doesn't
+	 *            exist
+	 * @throws IOException
+	 *             If the files can't be opened, or aren't a recording
+	 */
+	public MappedDataSet(Path directory, boolean readOnly) throws IOException {
+		this.directory = Objects.requireNonNull(directory);
+		this.readOnly = readOnly;
+		if (!readOnly) {
+			Files.createDirectories(directory);
+		}
+		List<MappedDoubleColumn> columns = new ArrayList<>();
+		try {
+			columns.add(new MappedDoubleColumn(directory.resolve("x.dcol"), readOnly));
+			for (int i = 0; Files.exists(dependentFile(i)); i++) {
+				columns.add(new MappedDoubleColumn(dependentFile(i), readOnly));
+			}
+			// A row only part written when the recording was last open is
+			// dropped
+			int rows = Integer.MAX_VALUE;
+			for (MappedDoubleColumn c : columns) {
+				rows = Math.min(rows, c.size());
+			}
+			for (MappedDoubleColumn c : columns) {
+				if (c.size() != rows) {
+					if (readOnly) {
+						throw new IOException("Columns in " + directory + " have different lengths");
+					}
+					c.truncate(rows);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			try {
+				close(columns);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+		setColumns(columns.get(0), columns.subList(1, columns.size()));
+	}
+
+	private Path dependentFile(int i) {
+		return directory.resolve("y" + i + ".dcol");
+	}
+
+	/**
+	 * @return The directory holding the column files
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the recorded independent values. This is the live column, which
+	 * can change while it is being read if rows are being appended.
+	 *
+	 * @return Every independent value recorded
+	 */
+	public synchronized MappedDoubleColumn getIndependentColumn() {
+		return (MappedDoubleColumn) xColumn();
+	}
+
+	/**
+	 * Returns the recorded values of a dependent dataset. This is the live
+	 * column, which can change while it is being read if rows are being
+	 * appended.
+	 *
+	 * @param dataSet
+	 *            Index of the dependent dataset, in the order they were added
+	 * @return Every value of the dependent dataset recorded
+	 */
+	public synchronized MappedDoubleColumn getDependentColumn(int dataSet) {
+		return (MappedDoubleColumn) yColumns().get(dataSet);
+	}
+
+	/**
+	 * Creates the file for a new dependent dataset.
+	 */
+	@Override
+	MappedDoubleColumn newColumn() {
+		try {
+			Path file = dependentFile(yColumns().size());
+			Files.deleteIfExists(file);
+			return new MappedDoubleColumn(file);
+		} catch (IOException e) {
+			throw new IllegalStateException("Couldn't create column file", e);
+		}
+	}
+
+	@Override
+	void checkWritable() {
+		if (readOnly) {
+			throw new IllegalStateException("Dataset is read only");
+		}
+		if (closed) {
+			throw new IllegalStateException("Dataset is closed");
+		}
+	}
+
+	@Override
+	boolean isOpen() {
+		return !closed;
+	}
+
+	/**
+	 * Forces every row appended so far out to the files.
+	 */
+	public synchronized void flush() {
+		getIndependentColumn().flush();
+		for (PrimitiveColumn y : yColumns()) {
+			((MappedDoubleColumn) y).flush();
+		}
+	}
+
+	/**
+	 * Flushes and closes the files. The sample last published can still be
+	 * drawn, but no more rows can be added.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			List<MappedDoubleColumn> columns = new ArrayList<>();
+			columns.add(getIndependentColumn());
+			for (PrimitiveColumn y : yColumns()) {
+				columns.add((MappedDoubleColumn) y);
+			}
+			close(columns);
+		}
+	}
+
+	private static void close(List<MappedDoubleColumn> columns) throws IOException {
+		IOException failure = null;
+		for (MappedDoubleColumn c : columns) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Not supported, recorded columns are never removed.
+	 */
+	@Override
+	public void removeDependent(int dataSet) {
+		throw new UnsupportedOperationException("Dependent datasets of a mapped dataset can't be removed");
+	}
+}
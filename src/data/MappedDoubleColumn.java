@@ -0,0 +1,262 @@
+package data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A column of doubles stored in a memory-mapped file rather than on the heap,
+ * for datasets bigger than the heap. The column uses a few hundred bytes of
+ * heap however many values it holds, the operating system pages the values in
+ * and out of memory as they are read.
+ *
+ * The file is a 16 byte header, holding a magic number and the number of
+ * values, followed by the values as little endian doubles. It is mapped in
+ * regions of {@code REGION_SIZE} values, so columns can be bigger than the 2GB
+ * a single mapping is limited to. Opening a column only maps it, nothing is
+ * read until it is used.
+ *
+ * Values can only be appended, values already in the column never change, so
+ * snapshots share the mapped regions with the column without copying
+ * anything. The number of values in the header is updated with every append,
+ * and {@code flush} forces the values out to the file.
+ *
+ * This class is not thread safe, the {@code DataSet} owning a column is
+ * responsible for guarding access to it. Snapshots can be read from any
+ * thread.
+ */
+public class MappedDoubleColumn extends AbstractList<Double> implements PrimitiveColumn, RandomAccess, Closeable {
+
+	/**
+	 * Number of values in each mapped region, 128MB of doubles.
+	 */
+	public static final int REGION_SIZE = MappedDoubleList.REGION_SIZE;
+
+	private static final int REGION_SHIFT = MappedDoubleList.REGION_SHIFT;
+	private static final int REGION_MASK = REGION_SIZE - 1;
+
+	private static final long MAGIC = 0x44434F4C00000001L;
+	private static final int HEADER_BYTES = 16;
+
+	private final FileChannel channel;
+	private final boolean readOnly;
+
+	/**
+	 * The header, mapped separately so the count can be updated in place.
+	 */
+	private final MappedByteBuffer header;
+
+	/**
+	 * Mapped regions, the first {@code regionCount} are in use. Regions never
+	 * change once mapped, so snapshots can share the array.
+	 */
+	private DoubleBuffer[] regions = new DoubleBuffer[4];
+	private MappedByteBuffer[] mapped = new MappedByteBuffer[4];
+	private int regionCount = 0;
+
+	private int size;
+
+	/**
+	 * Opens the column stored in the given file, creating an empty one if the
+	 * file doesn't exist.
+	 *
+	 * @param file
+	 *            File holding the column
+	 * @throws IOException
+	 *             If the file can't be opened, or isn't a column file
+	 */
+	public MappedDoubleColumn(Path file) throws IOException {
+		this(file, false);
+	}
+
+	/**
+	 * Opens the column stored in the given file.
+	 *
+	 * @param file
+	 *            File holding the column
+	 * @param readOnly
+	 *            True to open an existing file without being able to append
+	 *            to it, false to create the file if it doesn't exist
+	 * @throws IOException
+	 *             If the file can't be opened, or isn't a column file
+	 */
+	public MappedDoubleColumn(Path file, boolean readOnly) throws IOException {
+		Objects.requireNonNull(file);
+		this.readOnly = readOnly;
+		channel = readOnly ? FileChannel.open(file, StandardOpenOption.READ) : FileChannel.open(file,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		try {
+			boolean empty = channel.size() == 0;
+			if (empty && readOnly) {
+				throw new IOException("Not a column file: " + file);
+			}
+			header = channel.map(readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (empty) {
+				header.putLong(0, MAGIC);
+				header.putLong(8, 0);
+			} else if (header.getLong(0) != MAGIC) {
+				throw new IOException("Not a column file: " + file);
+			}
+			long count = header.getLong(8);
+			if (count < 0 || count > Integer.MAX_VALUE || HEADER_BYTES + count * 8 > channel.size()) {
+				throw new IOException("Corrupt column file: " + file);
+			}
+			size = (int) count;
+			while ((long) regionCount << REGION_SHIFT < size) {
+				mapRegion();
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return True if the column can't be appended to
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return MappedDoubleList.get(regions, size, index);
+	}
+
+	@Override
+	public void getDoubles(int from, double[] dest, int destOffset, int length) {
+		MappedDoubleList.copy(regions, size, from, dest, destOffset, length);
+	}
+
+	/**
+	 * Appends a value, growing the file if needed.
+	 *
+	 * @throws IllegalStateException
+	 *             If the column is read only, or the file can't be grown
+	 */
+	@Override
+	public void addDouble(double d) {
+		if (readOnly) {
+			throw new IllegalStateException("Column is read only");
+		}
+		if (size == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Column is full");
+		}
+		if (size >>> REGION_SHIFT == regionCount) {
+			try {
+				mapRegion();
+			} catch (IOException e) {
+				throw new IllegalStateException("Couldn't grow column file", e);
+			}
+		}
+		regions[size >>> REGION_SHIFT].put(size & REGION_MASK, d);
+		size++;
+		header.putLong(8, size);
+		modCount++;
+	}
+
+	/**
+	 * Drops values from the end of the column. Only safe before any snapshot
+	 * has been taken, as the dropped values are written over by the next
+	 * values appended.
+	 *
+	 * @param newSize
+	 *            The new number of values, no more than the current number
+	 */
+	void truncate(int newSize) {
+		if (newSize < 0 || newSize > size) {
+			throw new IndexOutOfBoundsException("Size: " + newSize + ", Current size: " + size);
+		}
+		size = newSize;
+		header.putLong(8, size);
+		modCount++;
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public boolean add(Double d) {
+		addDouble(d);
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Double> c) {
+		for (Double d : c) {
+			addDouble(d);
+		}
+		return !c.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<Double> snapshot() {
+		return new MappedDoubleList(regions, size);
+	}
+
+	/**
+	 * Forces every value appended so far out to the file.
+	 */
+	public void flush() {
+		if (readOnly) {
+			return;
+		}
+		for (int r = 0; r < regionCount; r++) {
+			mapped[r].force();
+		}
+		header.force();
+	}
+
+	/**
+	 * Flushes the column and closes the file. The mapped regions stay valid
+	 * until they are garbage collected, so snapshots already taken can still
+	 * be read.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	/**
+	 * Maps the next region of the file. In read-write mode the whole region is
+	 * mapped, growing the file, otherwise only as much as the file holds.
+	 */
+	private void mapRegion() throws IOException {
+		long position = HEADER_BYTES + ((long) regionCount << REGION_SHIFT) * 8;
+		long bytes = (long) REGION_SIZE * 8;
+		if (readOnly) {
+			bytes = Math.min(bytes, channel.size() - position);
+		}
+		MappedByteBuffer buffer = channel.map(readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE, position, bytes);
+		if (regionCount == regions.length) {
+			// Snapshots keep the old array, which still holds every region
+			// they can see
+			regions = Arrays.copyOf(regions, regionCount * 2);
+			mapped = Arrays.copyOf(mapped, regionCount * 2);
+		}
+		mapped[regionCount] = buffer;
+		regions[regionCount] = buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		regionCount++;
+	}
+}
@@ -0,0 +1,90 @@
+package data;
+
+import interfaces.DoubleList;
+
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of the first {@code size} doubles of a set of memory-mapped
+ * regions, each holding {@code REGION_SIZE} values. Reading it never copies
+ * the file into the heap.
+ */
+final class MappedDoubleList extends AbstractList<Double> implements DoubleList, RandomAccess {
+
+	/**
+	 * Number of values in each region, as a power of two.
+	 */
+	static final int REGION_SHIFT = 24;
+
+	/**
+	 * Number of values in each region, 128MB of doubles.
+	 */
+	static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+	private static final int REGION_MASK = REGION_SIZE - 1;
+
+	private final DoubleBuffer[] regions;
+	private final int size;
+
+	/**
+	 * @param regions
+	 *            Regions holding the values, which must never change
+	 * @param size
+	 *            Number of values in the list
+	 */
+	MappedDoubleList(DoubleBuffer[] regions, int size) {
+		this.regions = regions;
+		this.size = size;
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return get(regions, size, index);
+	}
+
+	@Override
+	public void getDoubles(int from, double[] dest, int destOffset, int length) {
+		copy(regions, size, from, dest, destOffset, length);
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The value at the given index of the regions
+	 */
+	static double get(DoubleBuffer[] regions, int size, int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return regions[index >>> REGION_SHIFT].get(index & REGION_MASK);
+	}
+
+	/**
+	 * Copies a range of values from the regions into an array.
+	 */
+	static void copy(DoubleBuffer[] regions, int size, int from, double[] dest, int destOffset, int length) {
+		if (from < 0 || length < 0 || from + length > size) {
+			throw new IndexOutOfBoundsException("From: " + from + ", Length: " + length + ", Size: " + size);
+		}
+		int i = from;
+		int end = from + length;
+		while (i < end) {
+			int start = i & REGION_MASK;
+			int n = Math.min(end - i, REGION_SIZE - start);
+			DoubleBuffer region = regions[i >>> REGION_SHIFT].duplicate();
+			region.position(start);
+			region.get(dest, destOffset + i - from, n);
+			i += n;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package data;
+
+import interfaces.DataChange;
+import interfaces.SwingObserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Collapses bursts of data model updates into single calls to
+ * {@code updateDisplay} on the event dispatch thread.
+ *
+ * Each observer has a dirty flag, and at most one task pending on the EDT. If
+ * an observer is notified while it already has a task pending, the
+ * notification is merged into that task. Deliveries to an observer are also
+ * limited to a maximum rate, if a notification arrives sooner than that after
+ * the last delivery, the task is delayed with a swing {@code Timer} until the
+ * observer is allowed to update again.
+ *
+ * The {@code DataChange}s of merged notifications are merged too, so the
+ * observer is given one change describing everything since its last update.
+ *
+ * {@code whenDelivered} runs a task once the updates pending have been
+ * delivered, including those held back by the rate limit, so a producer can
+ * wait for the observers to catch up before making more changes.
+ *
+ * All methods in this class are thread safe.
+ *
+ * @param <I>
+ *            Type of independent data the observers use.
+ */
+public class NotificationCoalescer<I> {
+
+	/**
+	 * Update rate used unless told otherwise, in updates per second.
+	 */
+	public static final double DEFAULT_MAX_RATE = 60d;
+
+	/**
+	 * Minimum time between two deliveries to the same observer, in
+	 * nanoseconds.
+	 */
+	private volatile long minInterval;
+
+	/**
+	 * Pending state of every observer which has been notified.
+	 */
+	private final Map<SwingObserver<I, Double>, Pending> pending = new ConcurrentHashMap<>();
+
+	private final AtomicLong requested = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong merged = new AtomicLong();
+
+	/**
+	 * Dirty flag and time of last delivery for one observer, and the tasks
+	 * waiting for its pending update to be delivered, which are only accessed
+	 * while holding its lock.
+	 */
+	private static class Pending {
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		private final AtomicReference<DataChange> change = new AtomicReference<>();
+		private volatile long lastDelivery = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+		private List<Runnable> waiting = new ArrayList<>();
+	}
+
+	/**
+	 * Creates a coalescer limited to {@code DEFAULT_MAX_RATE} updates per
+	 * second for each observer.
+	 */
+	public NotificationCoalescer() {
+		setMaxRate(DEFAULT_MAX_RATE);
+	}
+
+	/**
+	 * Sets the maximum number of times per second any one observer will be
+	 * updated. A rate of zero or less, or an infinite rate, removes the limit,
+	 * in which case updates are still merged while one is pending on the EDT.
+	 *
+	 * @param hz
+	 *            Maximum updates per second.
+	 */
+	public void setMaxRate(double hz) {
+		if (Double.isNaN(hz)) {
+			throw new IllegalArgumentException("Rate must be a number");
+		}
+		minInterval = hz <= 0 || Double.isInfinite(hz) ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / hz);
+	}
+
+	/**
+	 * @return The maximum number of updates per second for each observer, or
+	 *         {@code Double.POSITIVE_INFINITY} if there is no limit.
+	 */
+	public double getMaxRate() {
+		long interval = minInterval;
+		return interval == 0 ? Double.POSITIVE_INFINITY : (double) TimeUnit.SECONDS.toNanos(1) / interval;
+	}
+
+	/**
+	 * Marks the observer as needing an update, scheduling one on the EDT if
+	 * there isn't one pending already. The observer is told anything could
+	 * have changed.
+	 *
+	 * @param o
+	 *            Observer to notify.
+	 */
+	public void notify(SwingObserver<I, Double> o) {
+		notify(o, DataChange.reset(0));
+	}
+
+	/**
+	 * Marks the observer as needing an update for the given change,
+	 * scheduling one on the EDT if there isn't one pending already.
+	 *
+	 * @param o
+	 *            Observer to notify.
+	 * @param change
+	 *            What changed, merged with any change still pending for the
+	 *            observer.
+	 */
+	public void notify(SwingObserver<I, Double> o, DataChange change) {
+		Objects.requireNonNull(o);
+		Objects.requireNonNull(change);
+		requested.incrementAndGet();
+		Pending p = pending.computeIfAbsent(o, k -> new Pending());
+		// Merge the change in before checking the flag, so a delivery which
+		// has already cleared the flag either takes the change or is followed
+		// by another delivery which does
+		p.change.accumulateAndGet(change, DataChange::merge);
+		if (!p.scheduled.compareAndSet(false, true)) {
+			merged.incrementAndGet();
+			return;
+		}
+		long wait = p.lastDelivery + minInterval - System.nanoTime();
+		if (wait <= 0) {
+			SwingUtilities.invokeLater(() -> {
+				deliver(o, p);
+			});
+		} else {
+			Timer timer = new Timer((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)), e -> {
+				deliver(o, p);
+			});
+			timer.setRepeats(false);
+			timer.start();
+		}
+	}
+
+	/**
+	 * Stops tracking the given observer, any update already scheduled for it
+	 * will be dropped.
+	 *
+	 * @param o
+	 *            Observer to forget.
+	 */
+	public void forget(SwingObserver<I, Double> o) {
+		pending.remove(o);
+	}
+
+	/**
+	 * Runs a task once every update pending when this is called has been
+	 * delivered, or dropped because its observer was forgotten. Updates
+	 * scheduled afterwards aren't waited for. The task runs on the EDT after
+	 * the last of the observers has been updated, or straight away on the
+	 * calling thread if there are no updates pending.
+	 *
+	 * @param task
+	 *            Task to run.
+	 */
+	public void whenDelivered(Runnable task) {
+		Objects.requireNonNull(task);
+		// One more than the updates waited for, until they have all been
+		// found, so the task can't run before then
+		AtomicInteger remaining = new AtomicInteger(1);
+		Runnable countDown = () -> {
+			if (remaining.decrementAndGet() == 0) {
+				task.run();
+			}
+		};
+		for (Pending p : pending.values()) {
+			synchronized (p) {
+				if (p.scheduled.get()) {
+					remaining.incrementAndGet();
+					p.waiting.add(countDown);
+				}
+			}
+		}
+		countDown.run();
+	}
+
+	/**
+	 * Runs on the EDT. Clears the dirty flag before updating the observer, so
+	 * anything changing while the observer redraws schedules a new update.
+	 * Then runs the tasks waiting for the update, even if it was dropped.
+	 */
+	private void deliver(SwingObserver<I, Double> o, Pending p) {
+		List<Runnable> waiting;
+		synchronized (p) {
+			p.scheduled.set(false);
+			if (p.waiting.isEmpty()) {
+				waiting = Collections.emptyList();
+			} else {
+				waiting = p.waiting;
+				p.waiting = new ArrayList<>();
+			}
+		}
+		try {
+			DataChange change = p.change.getAndSet(null);
+			if (pending.get(o) != p || change == null) {
+				return;
+			}
+			p.lastDelivery = System.nanoTime();
+			delivered.incrementAndGet();
+			o.updateDisplay(change);
+		} finally {
+			for (Runnable r : waiting) {
+				r.run();
+			}
+		}
+	}
+
+	/**
+	 * @return Number of notifications requested, across all observers.
+	 */
+	public long getRequestedCount() {
+		return requested.get();
+	}
+
+	/**
+	 * @return Number of times an observer has actually been updated.
+	 */
+	public long getDeliveredCount() {
+		return delivered.get();
+	}
+
+	/**
+	 * @return Number of notifications which were merged into an update that
+	 *         was already pending.
+	 */
+	public long getMergedCount() {
+		return merged.get();
+	}
+
+	/**
+	 * Resets all the counters to zero.
+	 */
+	public void resetCounters() {
+		requested.set(0);
+		delivered.set(0);
+		merged.set(0);
+	}
+}
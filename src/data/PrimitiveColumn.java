@@ -0,0 +1,18 @@
+package data;
+
+import interfaces.DoubleList;
+
+/**
+ * A column of primitive doubles which can be appended to without boxing.
+ * Dependent datasets in a {@code DataSet} are all primitive columns.
+ */
+interface PrimitiveColumn extends Column<Double>, DoubleList {
+
+	/**
+	 * Appends a value to the end of the column.
+	 *
+	 * @param d
+	 *            Value to be appended
+	 */
+	void addDouble(double d);
+}
@@ -0,0 +1,555 @@
+package data;
+
+import interfaces.DoubleList;
+
+import java.util.Arrays;
+
+/**
+ * Pyramid of summaries of the finite values in a column, so the smallest,
+ * largest, mean and variance of any part of the column can be found in
+ * O(log n) rather than by reading every value. Values are grouped in buckets
+ * of {@code BUCKET_SIZE} unless told otherwise, the bottom level of the
+ * pyramid holds the smallest, largest, sum, count and sum of squared
+ * differences from the mean of the finite values in each bucket, and each
+ * level above holds those of pairs of nodes in the level below. Parts of a
+ * query which don't cover whole buckets are read from the column.
+ *
+ * Sums of squared differences are combined with the pairwise formula of Chan
+ * et al. and values read from the column with Welford's method, rather than
+ * from sums of squares, which lose most of their precision for values far
+ * from 0.
+ *
+ * Positions are counted from the first value ever added to the column, and
+ * node {@code j} of level {@code k} covers the buckets from {@code j << k} up
+ * to {@code (j + 1) << k}, so a block of {@code BUCKET_SIZE << k} values
+ * starting at a multiple of its size is summarised by a single node however
+ * many values have been dropped from the start of the column. Once more than
+ * half the buckets are dropped, the pyramid is built again without them.
+ *
+ * For a column whose values never decrease, {@code search} finds the first
+ * value at least or more than a given one by searching the buckets' largest
+ * values, so only the bucket holding it is read from the column.
+ *
+ * The index isn't kept up to date as values are added, it is brought up to
+ * date in one go by {@code refresh}, only rebuilding the buckets from the
+ * first one which changed. A bucket is never changed once a snapshot relies on
+ * it, see {@code needsCopy}, so views of the index can be read from any
+ * thread.
+ */
+final class RangeIndex {
+
+	private static final int BUCKET_SHIFT = 6;
+
+	/**
+	 * Number of values in each bucket unless told otherwise.
+	 */
+	static final int BUCKET_SIZE = 1 << BUCKET_SHIFT;
+
+	/**
+	 * Indexes of the parts of a summary in the arrays queries fill in.
+	 */
+	static final int MIN = 0;
+	static final int MAX = 1;
+	static final int SUM = 2;
+	static final int COUNT = 3;
+	static final int M2 = 4;
+
+	/**
+	 * Length of the arrays queries fill in.
+	 */
+	static final int SUMMARY_LENGTH = 5;
+
+	/**
+	 * Most values read from a column at once while scanning it.
+	 */
+	private static final int SCAN_BLOCK = 1024;
+
+	/**
+	 * Log2 of the number of values in each bucket.
+	 */
+	private final int shift;
+
+	/**
+	 * Smallest, largest, sum, count and sum of squared differences from the
+	 * mean of the finite values in each node of each level, level 0 being the
+	 * buckets. Node {@code j} of level {@code k} is at index
+	 * {@code j - (firstBucket >>> k)} of its level's arrays.
+	 */
+	private double[][] mins = { new double[16] };
+	private double[][] maxs = { new double[16] };
+	private double[][] sums = { new double[16] };
+	private int[][] counts = { new int[16] };
+	private double[][] m2s = { new double[16] };
+
+	/**
+	 * The first bucket in the pyramid, and the bucket after the last one.
+	 */
+	private long firstBucket = 0;
+	private long endBucket = 0;
+
+	/**
+	 * Values from this position on have been added or changed since the index
+	 * was last refreshed.
+	 */
+	private long indexedTo = 0;
+
+	/**
+	 * Creates an index of buckets of {@code BUCKET_SIZE} values.
+	 */
+	RangeIndex() {
+		this(BUCKET_SHIFT);
+	}
+
+	/**
+	 * Creates an index of buckets of a given size.
+	 *
+	 * @param shift
+	 *            Log2 of the number of values in each bucket
+	 */
+	RangeIndex(int shift) {
+		if (shift < 0 || shift > 20) {
+			throw new IllegalArgumentException("Bucket shift out of range: " + shift);
+		}
+		this.shift = shift;
+	}
+
+	/**
+	 * Marks the values from the given position on as changed.
+	 *
+	 * @param position
+	 *            Position of the first changed value
+	 */
+	void invalidate(long position) {
+		indexedTo = Math.min(indexedTo, position);
+	}
+
+	/**
+	 * @param end
+	 *            Position after the last value any snapshot can see
+	 * @return True if refreshing the index would change a bucket holding only
+	 *         values a snapshot can see, in which case the index has to be
+	 *         copied first
+	 */
+	boolean needsCopy(long end) {
+		return indexedTo < (end & -(1L << shift)) && indexedTo < endBucket << shift;
+	}
+
+	/**
+	 * @return A copy of the index which can be changed without changing this
+	 *         one
+	 */
+	RangeIndex copy() {
+		RangeIndex copy = new RangeIndex(shift);
+		copy.mins = new double[mins.length][];
+		copy.maxs = new double[maxs.length][];
+		copy.sums = new double[sums.length][];
+		copy.counts = new int[counts.length][];
+		copy.m2s = new double[m2s.length][];
+		for (int level = 0; level < mins.length; level++) {
+			copy.mins[level] = mins[level].clone();
+			copy.maxs[level] = maxs[level].clone();
+			copy.sums[level] = sums[level].clone();
+			copy.counts[level] = counts[level].clone();
+			copy.m2s[level] = m2s[level].clone();
+		}
+		copy.firstBucket = firstBucket;
+		copy.endBucket = endBucket;
+		copy.indexedTo = indexedTo;
+		return copy;
+	}
+
+	/**
+	 * Brings the index up to date with the column.
+	 *
+	 * @param values
+	 *            The column
+	 * @param first
+	 *            Position of the column's first value
+	 */
+	void refresh(DoubleList values, long first) {
+		long end = first + values.size();
+		long start = first >>> shift;
+		long newEnd = (end + (1L << shift) - 1) >>> shift;
+		if (start - firstBucket > (newEnd - firstBucket) / 2 || indexedTo < start << shift) {
+			// Most of the pyramid is dropped values, or values before the
+			// first one changed, so start again
+			mins = new double[][] { new double[16] };
+			maxs = new double[][] { new double[16] };
+			sums = new double[][] { new double[16] };
+			counts = new int[][] { new int[16] };
+			m2s = new double[][] { new double[16] };
+			firstBucket = start;
+			endBucket = start;
+			indexedTo = start << shift;
+		}
+		if (indexedTo >= end && newEnd == endBucket) {
+			return;
+		}
+		long from = Math.min(indexedTo, end) >>> shift;
+		endBucket = newEnd;
+		int levels = ensureLevels();
+
+		double[] block = new double[(int) Math.min(1L << shift, end - Math.max(first, from << shift))];
+		for (long b = from; b < endBucket; b++) {
+			long lo = Math.max(first, b << shift);
+			long hi = Math.min(end, (b + 1) << shift);
+			int n = (int) (hi - lo);
+			values.getDoubles((int) (lo - first), block, 0, n);
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			double sum = 0;
+			int count = 0;
+			for (int i = 0; i < n; i++) {
+				double d = block[i];
+				// Only true for finite values
+				if (d - d == 0) {
+					min = d < min ? d : min;
+					max = d > max ? d : max;
+					sum += d;
+					count++;
+				}
+			}
+			double mean = sum / count;
+			double m2 = 0;
+			for (int i = 0; i < n; i++) {
+				double d = block[i];
+				if (d - d == 0) {
+					m2 += (d - mean) * (d - mean);
+				}
+			}
+			int i = (int) (b - firstBucket);
+			mins[0][i] = min;
+			maxs[0][i] = max;
+			sums[0][i] = sum;
+			counts[0][i] = count;
+			m2s[0][i] = m2;
+		}
+		for (int level = 1; level < levels; level++) {
+			long childFirst = firstBucket >>> level - 1;
+			long childLast = (endBucket - 1) >>> level - 1;
+			long nodeFirst = firstBucket >>> level;
+			long last = (endBucket - 1) >>> level;
+			double[] childMins = mins[level - 1];
+			double[] childMaxs = maxs[level - 1];
+			double[] childSums = sums[level - 1];
+			int[] childCounts = counts[level - 1];
+			double[] childM2s = m2s[level - 1];
+			for (long j = Math.max(nodeFirst, from >>> level); j <= last; j++) {
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				double sum = 0;
+				int count = 0;
+				double m2 = 0;
+				// Either child can be missing at the ends of the level
+				for (long c = Math.max(j << 1, childFirst); c <= Math.min((j << 1) + 1, childLast); c++) {
+					int ci = (int) (c - childFirst);
+					min = childMins[ci] < min ? childMins[ci] : min;
+					max = childMaxs[ci] > max ? childMaxs[ci] : max;
+					m2 = m2(sum, count, m2, childSums[ci], childCounts[ci], childM2s[ci]);
+					sum += childSums[ci];
+					count += childCounts[ci];
+				}
+				int i = (int) (j - nodeFirst);
+				mins[level][i] = min;
+				maxs[level][i] = max;
+				sums[level][i] = sum;
+				counts[level][i] = count;
+				m2s[level][i] = m2;
+			}
+		}
+		indexedTo = end;
+	}
+
+	/**
+	 * Makes sure every level has room for its nodes. Arrays are replaced
+	 * rather than grown in place, as views may be reading them.
+	 *
+	 * @return Number of levels in use
+	 */
+	private int ensureLevels() {
+		int levels = 1;
+		while (nodes(levels - 1) > 1) {
+			levels++;
+		}
+		if (levels > mins.length) {
+			int old = mins.length;
+			mins = Arrays.copyOf(mins, levels);
+			maxs = Arrays.copyOf(maxs, levels);
+			sums = Arrays.copyOf(sums, levels);
+			counts = Arrays.copyOf(counts, levels);
+			m2s = Arrays.copyOf(m2s, levels);
+			for (int level = old; level < levels; level++) {
+				mins[level] = new double[16];
+				maxs[level] = new double[16];
+				sums[level] = new double[16];
+				counts[level] = new int[16];
+				m2s[level] = new double[16];
+			}
+		}
+		for (int level = 0; level < levels; level++) {
+			int count = nodes(level);
+			if (mins[level].length < count) {
+				int capacity = Math.max(count + (count >>> 1), mins[level].length * 2);
+				mins[level] = Arrays.copyOf(mins[level], capacity);
+				maxs[level] = Arrays.copyOf(maxs[level], capacity);
+				sums[level] = Arrays.copyOf(sums[level], capacity);
+				counts[level] = Arrays.copyOf(counts[level], capacity);
+				m2s[level] = Arrays.copyOf(m2s[level], capacity);
+			}
+		}
+		return levels;
+	}
+
+	/**
+	 * @return Number of nodes in the given level
+	 */
+	private int nodes(int level) {
+		if (endBucket == firstBucket) {
+			return 0;
+		}
+		return (int) (((endBucket - 1) >>> level) - (firstBucket >>> level) + 1);
+	}
+
+	/**
+	 * @return An immutable view of the index as it is now, for a snapshot of
+	 *         the column. The index must be up to date.
+	 */
+	View view() {
+		return new View(mins.clone(), maxs.clone(), sums.clone(), counts.clone(), m2s.clone(), firstBucket, shift);
+	}
+
+	/**
+	 * Same as {@code View.summarise}, the index must be up to date.
+	 */
+	void summarise(DoubleList values, long first, int from, int to, double[] summary) {
+		summarise(mins, maxs, sums, counts, m2s, firstBucket, shift, values, first, from, to, summary);
+	}
+
+	/**
+	 * Finds the first value of a column whose values never decrease which is
+	 * at least, or more than, a given value. The index must be up to date.
+	 *
+	 * @param values
+	 *            The column
+	 * @param first
+	 *            Position of the column's first value
+	 * @param v
+	 *            The value to look for
+	 * @param above
+	 *            True to find the first value more than {@code v}, false
+	 *            for the first value at least {@code v}
+	 * @return Index of the value, or the size of the column if there isn't
+	 *         one
+	 */
+	int search(DoubleList values, long first, double v, boolean above) {
+		return search(maxs, counts, firstBucket, shift, values, first, v, above);
+	}
+
+	private static int search(double[][] maxs, int[][] counts, long firstBucket, int shift, DoubleList values,
+			long first, double v, boolean above) {
+		int size = values.size();
+		long lo = first >>> shift;
+		long hi = (first + size + (1L << shift) - 1) >>> shift;
+		long end = hi;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			if (passes(largest(maxs, counts, firstBucket, shift, values, first, mid), v, above)) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		if (lo == end) {
+			return size;
+		}
+		int from = (int) (Math.max(first, lo << shift) - first);
+		int to = (int) (Math.min(first + size, (lo + 1) << shift) - first);
+		double[] block = new double[to - from];
+		values.getDoubles(from, block, 0, block.length);
+		int l = 0;
+		int h = block.length;
+		while (l < h) {
+			int mid = (l + h) >>> 1;
+			if (passes(block[mid], v, above)) {
+				h = mid;
+			} else {
+				l = mid + 1;
+			}
+		}
+		return from + l;
+	}
+
+	private static boolean passes(double d, double v, boolean above) {
+		return above ? d > v : d >= v;
+	}
+
+	/**
+	 * @return The largest value in a bucket of a column whose values never
+	 *         decrease, only read from the column if some of the bucket's
+	 *         values aren't finite
+	 */
+	private static double largest(double[][] maxs, int[][] counts, long firstBucket, int shift, DoubleList values,
+			long first, long bucket) {
+		long lo = Math.max(first, bucket << shift);
+		long hi = Math.min(first + values.size(), (bucket + 1) << shift);
+		int i = (int) (bucket - firstBucket);
+		if (counts[0][i] == hi - lo) {
+			return maxs[0][i];
+		}
+		return values.getDouble((int) (hi - 1 - first));
+	}
+
+	/**
+	 * Summarises the finite values in a range of a column, reading whole
+	 * nodes of the pyramid where it can and the column's values where it
+	 * can't.
+	 */
+	private static void summarise(double[][] mins, double[][] maxs, double[][] sums, int[][] counts,
+			double[][] m2s, long firstBucket, int shift, DoubleList values, long first, int from, int to,
+			double[] summary) {
+		if (from < 0 || to > values.size() || from > to) {
+			throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Size: " + values.size());
+		}
+		summary[MIN] = Double.POSITIVE_INFINITY;
+		summary[MAX] = Double.NEGATIVE_INFINITY;
+		summary[SUM] = 0;
+		summary[COUNT] = 0;
+		summary[M2] = 0;
+		long a = first + from;
+		long b = first + to;
+		long lo = (a + (1L << shift) - 1) >>> shift;
+		long hi = b >>> shift;
+		if (lo >= hi) {
+			scan(values, from, to, summary);
+			return;
+		}
+		scan(values, from, (int) ((lo << shift) - first), summary);
+		scan(values, (int) ((hi << shift) - first), to, summary);
+		long l = lo;
+		long h = hi;
+		for (int level = 0; l < h; level++) {
+			long nodeFirst = firstBucket >>> level;
+			if ((l & 1) == 1) {
+				add(mins, maxs, sums, counts, m2s, level, (int) (l++ - nodeFirst), summary);
+			}
+			if ((h & 1) == 1) {
+				add(mins, maxs, sums, counts, m2s, level, (int) (--h - nodeFirst), summary);
+			}
+			l >>>= 1;
+			h >>>= 1;
+		}
+	}
+
+	private static void add(double[][] mins, double[][] maxs, double[][] sums, int[][] counts, double[][] m2s,
+			int level, int i, double[] summary) {
+		summary[MIN] = mins[level][i] < summary[MIN] ? mins[level][i] : summary[MIN];
+		summary[MAX] = maxs[level][i] > summary[MAX] ? maxs[level][i] : summary[MAX];
+		summary[M2] = m2(summary[SUM], summary[COUNT], summary[M2], sums[level][i], counts[level][i], m2s[level][i]);
+		summary[SUM] += sums[level][i];
+		summary[COUNT] += counts[level][i];
+	}
+
+	/**
+	 * Reads a range of the column, adding its finite values to a summary.
+	 */
+	private static void scan(DoubleList values, int from, int to, double[] summary) {
+		double[] block = new double[Math.min(SCAN_BLOCK, Math.max(to - from, 0))];
+		double min = summary[MIN];
+		double max = summary[MAX];
+		double sum = 0;
+		double count = 0;
+		double mean = 0;
+		double m2 = 0;
+		for (int start = from; start < to; start += block.length) {
+			int n = Math.min(block.length, to - start);
+			values.getDoubles(start, block, 0, n);
+			for (int i = 0; i < n; i++) {
+				double d = block[i];
+				if (d - d == 0) {
+					min = d < min ? d : min;
+					max = d > max ? d : max;
+					sum += d;
+					count++;
+					double delta = d - mean;
+					mean += delta / count;
+					m2 += delta * (d - mean);
+				}
+			}
+		}
+		summary[MIN] = min;
+		summary[MAX] = max;
+		summary[M2] = m2(summary[SUM], summary[COUNT], summary[M2], sum, count, m2);
+		summary[SUM] += sum;
+		summary[COUNT] += count;
+	}
+
+	/**
+	 * @return The sum of squared differences from the mean of two groups of
+	 *         values together, given the sum, count and sum of squared
+	 *         differences from the mean of each group
+	 */
+	private static double m2(double sum, double count, double m2, double otherSum, double otherCount,
+			double otherM2) {
+		if (count == 0 || otherCount == 0) {
+			return m2 + otherM2;
+		}
+		double delta = otherSum / otherCount - sum / count;
+		return m2 + otherM2 + delta * delta * (count * otherCount / (count + otherCount));
+	}
+
+	/**
+	 * Immutable view of the index, for a snapshot of the column. Only nodes
+	 * covering values the snapshot can see are read, and those never change.
+	 */
+	static final class View {
+		private final double[][] mins;
+		private final double[][] maxs;
+		private final double[][] sums;
+		private final int[][] counts;
+		private final double[][] m2s;
+		private final long firstBucket;
+		private final int shift;
+
+		private View(double[][] mins, double[][] maxs, double[][] sums, int[][] counts, double[][] m2s,
+				long firstBucket, int shift) {
+			this.mins = mins;
+			this.maxs = maxs;
+			this.sums = sums;
+			this.counts = counts;
+			this.m2s = m2s;
+			this.firstBucket = firstBucket;
+			this.shift = shift;
+		}
+
+		/**
+		 * Summarises the finite values in a range of the snapshot.
+		 *
+		 * @param values
+		 *            The snapshot
+		 * @param first
+		 *            Position of the snapshot's first value
+		 * @param from
+		 *            Index of the first value, inclusive
+		 * @param to
+		 *            Index of the last value, exclusive
+		 * @param summary
+		 *            Array of {@code SUMMARY_LENGTH} to put the smallest,
+		 *            largest, sum, count and sum of squared differences from
+		 *            the mean of the values in, at {@code MIN}, {@code MAX},
+		 *            {@code SUM}, {@code COUNT} and {@code M2}. The smallest
+		 *            and largest are infinite if the range has no finite
+		 *            values.
+		 */
+		void summarise(DoubleList values, long first, int from, int to, double[] summary) {
+			RangeIndex.summarise(mins, maxs, sums, counts, m2s, firstBucket, shift, values, first, from, to,
+					summary);
+		}
+
+		/**
+		 * Same as {@code RangeIndex.search}, for the snapshot.
+		 */
+		int search(DoubleList values, long first, double v, boolean above) {
+			return RangeIndex.search(maxs, counts, firstBucket, shift, values, first, v, above);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package data;
+
+/**
+ * A column of primitive doubles holding at most a fixed number of values.
+ * Once it is full, adding a value drops the oldest one, so the column is a
+ * sliding window over everything added to it and its memory use stays flat.
+ *
+ * The values are kept in a {@code SegmentedColumn} with chunks sized to about
+ * an eighth of the capacity. Chunks are never written over, when every value
+ * in the oldest chunk has been dropped the whole chunk is released instead.
+ * Snapshots therefore share the chunks with the column, and stay valid however
+ * far the window moves on.
+ *
+ * This class is not thread safe, the {@code DataSet} owning a column is
+ * responsible for guarding access to it. Snapshots can be read from any
+ * thread.
+ */
+public class RingColumn extends SegmentedColumn {
+
+	/**
+	 * Largest number of values in one chunk.
+	 */
+	private static final int MAX_CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Smallest number of values in one chunk.
+	 */
+	private static final int MIN_CHUNK_SIZE = 1 << 4;
+
+	private final int capacity;
+
+	/**
+	 * Creates an empty column holding at most the given number of values.
+	 *
+	 * @param capacity
+	 *            Maximum number of values in the column
+	 */
+	public RingColumn(int capacity) {
+		super(Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, checkCapacity(capacity) / 8)));
+		this.capacity = capacity;
+	}
+
+	private static int checkCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		return capacity;
+	}
+
+	/**
+	 * @return The maximum number of values in the column
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Appends a value, dropping the oldest value if the column is full.
+	 */
+	@Override
+	public void addDouble(double d) {
+		super.addDouble(d);
+		if (size() > capacity) {
+			removeFirst(1);
+		}
+	}
+
+	/**
+	 * Sets the number of values in the column, which can't be more than its
+	 * capacity.
+	 */
+	@Override
+	public void resize(int newSize) {
+		if (newSize > capacity) {
+			throw new IllegalArgumentException("Size " + newSize + " is more than the capacity " + capacity);
+		}
+		super.resize(newSize);
+	}
+}
@@ -0,0 +1,51 @@
+package data;
+
+import java.util.Objects;
+
+/**
+ * One row of data, an independent value and a value for each dependent
+ * dataset it is being added to.
+ *
+ * @param <I>
+ *            Type of the independent value
+ */
+public class Row<I> {
+
+	private final I independent;
+	private final double[] dependent;
+
+	/**
+	 * @param independent
+	 *            The independent value
+	 * @param dependent
+	 *            The dependent values, one for each dependent dataset which
+	 *            isn't computed by the dataset itself. Not copied.
+	 */
+	public Row(I independent, double[] dependent) {
+		this.independent = Objects.requireNonNull(independent);
+		this.dependent = Objects.requireNonNull(dependent);
+	}
+
+	/**
+	 * Creates an empty row, only used for the sentinel node of an
+	 * {@code IngestionQueue}.
+	 */
+	Row() {
+		this.independent = null;
+		this.dependent = null;
+	}
+
+	/**
+	 * @return The independent value
+	 */
+	public I getIndependent() {
+		return independent;
+	}
+
+	/**
+	 * @return The dependent values
+	 */
+	public double[] getDependent() {
+		return dependent;
+	}
+}
@@ -0,0 +1,828 @@
+package data;
+
+import interfaces.DataChange;
+import interfaces.DataSnapshot;
+import interfaces.DoubleList;
+import interfaces.Statistics;
+import interfaces.ViewportModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Dataset recording more rows than a graph could ever draw, which shows graphs
+ * a sample of the rows in view rather than every row. Whenever a graph draws
+ * the dataset it sets the viewport, and the dataset publishes a sample of the
+ * rows in the visible x range, at most {@code samplesPerPixel} rows per pixel
+ * column. Each pixel column gets the smallest and largest value of every
+ * dependent dataset, so peaks are never lost.
+ *
+ * Datasets which keep summaries, see {@code keepsSummaries}, summarise each
+ * recorded column in blocks of {@code SUMMARY_SIZE} rows with a
+ * {@code RangeIndex}, as rows are added. A pixel column holding more than a
+ * block of rows is widened to whole blocks and its smallest and largest values
+ * taken from the summaries, and the visible rows are found by searching the
+ * summaries, so an overview of the whole recording reads none of the values
+ * but those in the last, unfinished block. Datasets which don't keep
+ * summaries read every visible row while there are no more than
+ * {@code SCAN_LIMIT} of them, and evenly spaced rows beyond that.
+ *
+ * Until a graph sets the viewport, the sample covers the whole domain and is
+ * brought up to date whenever rows are added, so a dataset with no graph
+ * still publishes an overview of everything recorded. If the sample was taken
+ * from the summaries, only its last bucket and the buckets after it are
+ * sampled again, until the rows no longer fit the same size of bucket. Once
+ * a graph has set the viewport, adding rows only marks the sample as out of
+ * date, and it is taken again when the graph next sets the viewport, at most
+ * once per redraw however many batches of rows were added.
+ *
+ * The dataset's lock is only held while a sample is started, to take
+ * snapshots of the recorded columns and their summaries, and while it is
+ * published, not while the snapshots are sampled, so rows can be added
+ * meanwhile. Graphs set the viewport on the event dispatch thread, which never
+ * waits for the lock: the viewport is handed over to a background thread
+ * which takes the sample, see {@code ViewportSampler}, and the observers are
+ * updated once it is published. {@code getDomainMin} and
+ * {@code getDomainMax} don't take the lock either.
+ *
+ * {@code getIndependent}, {@code getDependent} and {@code getSnapshot} return
+ * the sample. {@code getRecording} returns a snapshot of every recorded row,
+ * for writing them out or reading them from another thread, and
+ * {@code getStatistics} describes the recorded values rather than the sample.
+ *
+ * The independent values must never decrease, so the rows in a range of x
+ * values can be found by binary search. Rows can only be appended, with
+ * {@code addRow} or {@code addRows}, setting or adding to the independent
+ * dataset on its own throws an {@code UnsupportedOperationException}.
+ *
+ * All operations in this class are thread safe.
+ */
+public abstract class SampledDataSet extends DataSet<Double> implements ViewportModel {
+
+	/**
+	 * Largest number of visible rows to read every value of when sampling.
+	 */
+	public static final int SCAN_LIMIT = 1 << 20;
+
+	private static final int SUMMARY_SHIFT = 10;
+
+	/**
+	 * Number of rows in each summarised block.
+	 */
+	public static final int SUMMARY_SIZE = 1 << SUMMARY_SHIFT;
+
+	/**
+	 * Number of pixel columns to sample for before any graph has set the
+	 * viewport.
+	 */
+	private static final int DEFAULT_WIDTH = 500;
+
+	/**
+	 * Number of values read from a column at once while scanning it.
+	 */
+	private static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * The recorded columns.
+	 */
+	private PrimitiveColumn x;
+	private final List<PrimitiveColumn> ys = new ArrayList<>();
+
+	/**
+	 * Summaries of the recorded columns, or null and empty if the dataset
+	 * doesn't keep them.
+	 */
+	private RangeIndex xIndex = null;
+	private final List<RangeIndex> yIndexes = new ArrayList<>();
+
+	/**
+	 * Statistics of each recorded dependent dataset, worked out from the
+	 * summaries whenever rows are added, or null if the dataset doesn't keep
+	 * summaries.
+	 */
+	private volatile Statistics[] statistics = null;
+
+	/**
+	 * The first and last recorded x values, kept so finding the domain never
+	 * reads a column or takes the lock, NaN until there are rows.
+	 */
+	private volatile double firstX = Double.NaN;
+	private volatile double lastX = Double.NaN;
+
+	private int samplesPerPixel = 2;
+
+	/**
+	 * The viewport the current sample was taken for.
+	 */
+	private double sampledMin;
+	private double sampledMax;
+	private int sampledWidth = DEFAULT_WIDTH;
+
+	/**
+	 * Rows in each bucket of the current sample, and the first row of its
+	 * last bucket, if it was taken from the summaries in buckets lined up
+	 * with the summarised blocks, otherwise 0.
+	 */
+	private long sampledStep = 0;
+	private long lastBucket = 0;
+
+	/**
+	 * Holds the viewport last set by a graph. Until one is set the sample
+	 * follows the whole domain.
+	 */
+	private final ViewportSampler sampler = new ViewportSampler(() -> takeSample(true));
+
+	/**
+	 * True if rows have been added since the rows the sample was taken from.
+	 */
+	private boolean stale = false;
+
+	/**
+	 * Number of samples started, and the number of the sample published, so
+	 * a sample taken without the lock isn't published over a newer one.
+	 */
+	private long samplesStarted = 0;
+	private long samplePublished = 0;
+
+	SampledDataSet() {
+		super(new DoubleColumn());
+	}
+
+	/**
+	 * Sets the recorded columns, and publishes a sample of them across the
+	 * whole domain. Called once by the subclass constructor.
+	 *
+	 * @param x
+	 *            Recorded independent values
+	 * @param ys
+	 *            Recorded dependent values, each as long as {@code x}
+	 */
+	synchronized void setColumns(PrimitiveColumn x, List<? extends PrimitiveColumn> ys) {
+		this.x = Objects.requireNonNull(x);
+		if (!x.isEmpty()) {
+			firstX = x.getDouble(0);
+			lastX = x.getDouble(x.size() - 1);
+		}
+		if (keepsSummaries()) {
+			xIndex = new RangeIndex(SUMMARY_SHIFT);
+		}
+		for (PrimitiveColumn y : ys) {
+			this.ys.add(y);
+			if (xIndex != null) {
+				yIndexes.add(new RangeIndex(SUMMARY_SHIFT));
+			}
+			depVars.add(new DoubleColumn());
+		}
+		summarise();
+		resample();
+		update();
+	}
+
+	/**
+	 * @return The recorded independent values
+	 */
+	PrimitiveColumn xColumn() {
+		return x;
+	}
+
+	/**
+	 * @return The recorded dependent values
+	 */
+	List<PrimitiveColumn> yColumns() {
+		return ys;
+	}
+
+	/**
+	 * Creates an empty column to record a new dependent dataset in.
+	 *
+	 * @throws IllegalStateException
+	 *             If the column can't be created
+	 */
+	abstract PrimitiveColumn newColumn();
+
+	/**
+	 * @return True if the recorded columns should be summarised, for datasets
+	 *         whose values are slow to read at random, false unless
+	 *         overridden
+	 */
+	boolean keepsSummaries() {
+		return false;
+	}
+
+	/**
+	 * Throws an exception if rows can't be added to the dataset. Does nothing
+	 * unless overridden.
+	 *
+	 * @throws IllegalStateException
+	 *             If the dataset can't be changed
+	 */
+	void checkWritable() {
+	}
+
+	/**
+	 * @return False once the recorded columns can no longer be read, and the
+	 *         sample last published has to stay. True unless overridden.
+	 */
+	boolean isOpen() {
+		return true;
+	}
+
+	/**
+	 * @return Number of rows recorded
+	 */
+	public synchronized int getRowCount() {
+		return x.size();
+	}
+
+	/**
+	 * Returns a snapshot of every recorded row, rather than the sample shown
+	 * to graphs. The snapshot shares the recorded columns rather than copying
+	 * them, so it can be read from any thread while rows are added.
+	 *
+	 * @return Snapshot of the recorded columns
+	 */
+	@Override
+	public synchronized DataSnapshot<Double, Double> getRecording() {
+		List<List<Double>> dep = new ArrayList<>(ys.size());
+		for (PrimitiveColumn y : ys) {
+			dep.add(y.snapshot());
+		}
+		DataSnapshot<Double, Double> published = getSnapshot();
+		return new DataSetSnapshot<>(published.getVersion(), published.getStructureVersion(), 0, x.snapshot(),
+				Collections.unmodifiableList(dep), null);
+	}
+
+	/**
+	 * Gets the statistics of every recorded value of a dependent dataset,
+	 * rather than of the sample. Read from the summaries if the dataset keeps
+	 * them, otherwise every recorded value is read.
+	 */
+	@Override
+	public Statistics getStatistics(int series) {
+		Statistics[] s = statistics;
+		if (s == null) {
+			return getRecording().getStatistics(series);
+		}
+		return s[series];
+	}
+
+	/**
+	 * Sets how many rows are sampled per pixel column. When every visible row
+	 * is read, each pixel column gets two rows whatever this is set to.
+	 *
+	 * @param n
+	 *            Samples per pixel, must be positive
+	 */
+	public synchronized void setSamplesPerPixel(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Samples per pixel must be positive: " + n);
+		}
+		samplesPerPixel = n;
+		resample();
+		update();
+	}
+
+	@Override
+	public double getDomainMin() {
+		double first = firstX;
+		return Double.isNaN(first) ? 0 : first;
+	}
+
+	@Override
+	public double getDomainMax() {
+		double last = lastX;
+		return Double.isNaN(last) ? 1 : last;
+	}
+
+	/**
+	 * Adds a dependent dataset. The values must line up with the rows already
+	 * recorded, so there must be exactly as many of them as there are rows.
+	 *
+	 * @param l
+	 *            Collection of values to be added
+	 * @throws IllegalStateException
+	 *             If the dataset can't be changed
+	 */
+	@Override
+	public synchronized void addDependentSet(Collection<Double> l) {
+		Objects.requireNonNull(l);
+		checkWritable();
+		if (l.size() != x.size()) {
+			throw new IllegalArgumentException("Dataset has " + x.size() + " rows, but " + l.size()
+					+ " values were given");
+		}
+		PrimitiveColumn column = newColumn();
+		for (Double d : l) {
+			column.addDouble(d);
+		}
+		ys.add(column);
+		if (xIndex != null) {
+			yIndexes.add(new RangeIndex(SUMMARY_SHIFT));
+		}
+		depVars.add(new DoubleColumn());
+		summarise();
+		resample();
+		update(DataChange.Type.SERIES_ADDED, ys.size() - 1, ys.size());
+	}
+
+	/**
+	 * Removes the dependent dataset at the given index, in the order they were
+	 * added.
+	 */
+	@Override
+	public synchronized void removeDependent(int dataSet) {
+		if (dataSet < 0 || dataSet >= ys.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		ys.remove(dataSet);
+		if (xIndex != null) {
+			yIndexes.remove(dataSet);
+		}
+		summarise();
+		super.removeDependent(dataSet);
+	}
+
+	/**
+	 * Appends a batch of rows. The independent value of each row must be at
+	 * least that of the row before it.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If a row has the wrong number of values, or an independent
+	 *             value smaller than the last one
+	 * @throws IllegalStateException
+	 *             If the dataset can't be changed
+	 */
+	@Override
+	public synchronized void addRows(List<? extends Row<Double>> rows) {
+		Objects.requireNonNull(rows);
+		checkWritable();
+		double last = x.isEmpty() ? Double.NEGATIVE_INFINITY : lastX;
+		for (Row<Double> row : rows) {
+			checkRow(row, ys.size());
+			double v = row.getIndependent();
+			if (!(v >= last)) {
+				throw new IllegalArgumentException("Independent values must not decrease: " + v + " after " + last);
+			}
+			last = v;
+		}
+		if (x.isEmpty() && !rows.isEmpty()) {
+			firstX = rows.get(0).getIndependent();
+		}
+		for (Row<Double> row : rows) {
+			x.addDouble(row.getIndependent());
+			double[] y = row.getDependent();
+			for (int i = 0; i < y.length; i++) {
+				ys.get(i).addDouble(y[i]);
+			}
+		}
+		lastX = last;
+		summarise();
+		if (sampler.getViewport() != null) {
+			// Taken again when the graph next sets the viewport
+			stale = true;
+		} else if (!extendSample()) {
+			resample();
+		}
+		// The sample isn't made of whole rows, so the new rows can't be
+		// reported as appended
+		update();
+	}
+
+	@Override
+	public void setViewport(double xMin, double xMax, int width, int height) {
+		if (Double.isNaN(xMin) || Double.isNaN(xMax) || Double.isInfinite(xMin) || Double.isInfinite(xMax)) {
+			return;
+		}
+		if (sampler.setViewport(xMin, xMax, Math.max(width, 1))) {
+			takeSample(false);
+		}
+	}
+
+	/**
+	 * Samples the recorded columns for the viewport last set, if it or the
+	 * rows have changed since the sample was taken. The lock isn't held while
+	 * the columns are sampled.
+	 *
+	 * @param background
+	 *            True if on the background thread, so the observers have to
+	 *            be updated. Otherwise whoever set the viewport reads the new
+	 *            snapshot itself.
+	 */
+	private void takeSample(boolean background) {
+		ViewportSampler.Viewport v = sampler.getViewport();
+		Recording recording;
+		synchronized (this) {
+			if (!isOpen() || !stale && v.is(sampledMin, sampledMax, sampledWidth)) {
+				return;
+			}
+			recording = record();
+		}
+		Sample sample;
+		try {
+			sample = recording.sample(v.min, v.max, v.width);
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				if (!isOpen()) {
+					// Closed while sampling, so the last sample stays
+					return;
+				}
+			}
+			throw e;
+		}
+		synchronized (this) {
+			if (usesSample(sample)) {
+				if (background) {
+					update();
+				} else {
+					publish();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Samples the recorded columns again for the current viewport, or across
+	 * the whole domain if no graph has set one, after they have changed. Must
+	 * be called while holding the lock.
+	 */
+	void resample() {
+		ViewportSampler.Viewport v = sampler.getViewport();
+		Recording recording = record();
+		if (v != null) {
+			usesSample(recording.sample(v.min, v.max, v.width));
+		} else {
+			usesSample(recording.sample(getDomainMin(), getDomainMax(), sampledWidth));
+		}
+	}
+
+	/**
+	 * Starts a sample. Must be called while holding the lock.
+	 *
+	 * @return Snapshot of the recorded columns and their summaries, which can
+	 *         be sampled without the lock
+	 */
+	private Recording record() {
+		return new Recording(++samplesStarted, x, ys, xIndex, yIndexes, firstX, lastX, samplesPerPixel);
+	}
+
+	/**
+	 * Replaces the independent and dependent datasets with a sample, unless a
+	 * newer sample has been used since it was started or a dependent dataset
+	 * has been removed. Must be called while holding the lock.
+	 *
+	 * @return False if the sample was dropped
+	 */
+	private boolean usesSample(Sample sample) {
+		if (sample.number < samplePublished || sample.ys.length != ys.size()) {
+			return false;
+		}
+		samplePublished = sample.number;
+		sampledMin = sample.min;
+		sampledMax = sample.max;
+		sampledWidth = sample.width;
+		sampledStep = sample.step;
+		lastBucket = sample.lastBucket;
+		stale = sample.rows != x.size();
+		indVars = sample.x;
+		for (int i = 0; i < sample.ys.length; i++) {
+			depVars.set(i, sample.ys[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Brings the summaries up to date with the recorded columns, and works out
+	 * the statistics of each dependent dataset from them. Only reads the rows
+	 * in the last block summarised and the rows added since.
+	 */
+	private void summarise() {
+		if (xIndex == null) {
+			return;
+		}
+		xIndex.refresh(x, 0);
+		Statistics[] s = new Statistics[ys.size()];
+		double[] summary = new double[RangeIndex.SUMMARY_LENGTH];
+		for (int i = 0; i < s.length; i++) {
+			PrimitiveColumn y = ys.get(i);
+			RangeIndex index = yIndexes.get(i);
+			index.refresh(y, 0);
+			index.summarise(y, 0, 0, y.size(), summary);
+			double count = summary[RangeIndex.COUNT];
+			s[i] = new Statistics((long) count, summary[RangeIndex.MIN], summary[RangeIndex.MAX],
+					count == 0 ? Double.NaN : summary[RangeIndex.SUM] / count, summary[RangeIndex.M2]);
+		}
+		statistics = s;
+	}
+
+	/**
+	 * @return Rows in each bucket of a sample taken from the summaries, whole
+	 *         blocks if a bucket has more than a block of rows
+	 */
+	private static long summaryStep(int from, int to, int buckets) {
+		long step = (to - from + buckets - 1L) / buckets;
+		return step >= SUMMARY_SIZE ? (step + SUMMARY_SIZE - 1) & -SUMMARY_SIZE : step;
+	}
+
+	/**
+	 * Brings a sample of the whole domain up to date with the rows appended
+	 * since it was taken, by sampling its last bucket again along with the
+	 * buckets after it. Only possible if the sample was taken from the
+	 * summaries, and the rows still fit the same number of rows per bucket.
+	 * Must be called while holding the lock.
+	 *
+	 * @return False if the sample has to be taken again instead
+	 */
+	private boolean extendSample() {
+		int to = x.size();
+		if (sampledStep == 0 || sampledMin != firstX || summaryStep(0, to, sampledWidth) != sampledStep) {
+			return false;
+		}
+		// Each bucket added two rows to the sample
+		DoubleColumn sx = (DoubleColumn) indVars;
+		sx.resize(sx.size() - 2);
+		DoubleColumn[] sy = new DoubleColumn[ys.size()];
+		for (int i = 0; i < sy.length; i++) {
+			sy[i] = (DoubleColumn) depVars.get(i);
+			sy[i].resize(sy[i].size() - 2);
+		}
+		lastBucket = record().addBuckets(0, to, lastBucket, sampledStep, sx, sy);
+		sampledMax = lastX;
+		return true;
+	}
+
+	/**
+	 * Not supported, rows have to be appended whole.
+	 */
+	@Override
+	public void setIndependent(Collection<Double> c) {
+		throw new UnsupportedOperationException("Rows of a sampled dataset must be added with addRow");
+	}
+
+	/**
+	 * Not supported, rows have to be appended whole.
+	 */
+	@Override
+	public void addToIndependent(Double t) {
+		throw new UnsupportedOperationException("Rows of a sampled dataset must be added with addRow");
+	}
+
+	/**
+	 * A sample of the recorded rows, published once it is used.
+	 */
+	private static final class Sample {
+		private final long number;
+		private final int rows;
+		private final double min;
+		private final double max;
+		private final int width;
+		private final DoubleColumn x = new DoubleColumn();
+		private final DoubleColumn[] ys;
+
+		/**
+		 * Rows in each bucket and the first row of the last bucket, if taken
+		 * from the summaries in buckets lined up with the summarised blocks,
+		 * otherwise 0.
+		 */
+		private long step = 0;
+		private long lastBucket = 0;
+
+		private Sample(long number, int rows, double min, double max, int width, int series) {
+			this.number = number;
+			this.rows = rows;
+			this.min = min;
+			this.max = max;
+			this.width = width;
+			ys = new DoubleColumn[series];
+			for (int i = 0; i < series; i++) {
+				ys[i] = new DoubleColumn();
+			}
+		}
+	}
+
+	/**
+	 * Snapshots of the recorded columns and their summaries as they were when
+	 * a sample was started, which never change, so they can be sampled
+	 * without holding the dataset's lock.
+	 */
+	private static final class Recording {
+		private final long number;
+		private final DoubleList x;
+		private final DoubleList[] ys;
+		private final RangeIndex.View xIndex;
+		private final RangeIndex.View[] yIndexes;
+		private final double firstX;
+		private final double lastX;
+		private final int samplesPerPixel;
+
+		private Recording(long number, PrimitiveColumn x, List<PrimitiveColumn> ys, RangeIndex xIndex,
+				List<RangeIndex> yIndexes, double firstX, double lastX, int samplesPerPixel) {
+			this.number = number;
+			this.x = (DoubleList) x.snapshot();
+			this.ys = new DoubleList[ys.size()];
+			for (int i = 0; i < this.ys.length; i++) {
+				this.ys[i] = (DoubleList) ys.get(i).snapshot();
+			}
+			this.xIndex = xIndex == null ? null : xIndex.view();
+			this.yIndexes = new RangeIndex.View[yIndexes.size()];
+			for (int i = 0; i < this.yIndexes.length; i++) {
+				this.yIndexes[i] = yIndexes.get(i).view();
+			}
+			this.firstX = firstX;
+			this.lastX = lastX;
+			this.samplesPerPixel = samplesPerPixel;
+		}
+
+		/**
+		 * @return A sample of the rows recorded in the given x range, plus one
+		 *         row either side of it so lines run off the edges of the graph
+		 */
+		Sample sample(double xMin, double xMax, int width) {
+			Sample sample = new Sample(number, x.size(), xMin, xMax, width, ys.length);
+			int from = Math.max(0, firstAtLeast(xMin) - 1);
+			int to = Math.min(x.size(), firstAbove(xMax) + 1);
+			int rows = Math.max(0, to - from);
+			int points = Math.max(2, width * samplesPerPixel);
+			if (rows <= points) {
+				copyRows(from, rows, sample.x, sample.ys);
+			} else if (xIndex != null) {
+				summaryEnvelope(from, to, width, sample);
+			} else if (rows <= SCAN_LIMIT) {
+				envelope(from, rows, width, sample.x, sample.ys);
+			} else {
+				spreadRows(from, rows, points, sample.x, sample.ys);
+			}
+			return sample;
+		}
+
+		/**
+		 * Copies every row in the range.
+		 */
+		private void copyRows(int from, int rows, DoubleColumn sx, DoubleColumn[] sy) {
+			sx.resize(rows);
+			x.getDoubles(from, sx.array(), 0, rows);
+			for (int i = 0; i < sy.length; i++) {
+				sy[i].resize(rows);
+				ys[i].getDoubles(from, sy[i].array(), 0, rows);
+			}
+		}
+
+		/**
+		 * Splits the range into one bucket of rows per pixel column, and adds
+		 * two rows for each bucket, at the first and last x value in it,
+		 * holding the smallest and then the largest value of each dependent
+		 * dataset.
+		 */
+		private void envelope(int from, int rows, int buckets, DoubleColumn sx, DoubleColumn[] sy) {
+			double[] block = new double[BLOCK_SIZE];
+			for (int b = 0; b < buckets; b++) {
+				int start = from + (int) ((long) rows * b / buckets);
+				int end = from + (int) ((long) rows * (b + 1) / buckets);
+				if (start == end) {
+					continue;
+				}
+				sx.addDouble(x.getDouble(start));
+				sx.addDouble(x.getDouble(end - 1));
+				for (int i = 0; i < sy.length; i++) {
+					DoubleList y = ys[i];
+					double min = Double.POSITIVE_INFINITY;
+					double max = Double.NEGATIVE_INFINITY;
+					for (int r = start; r < end; r += BLOCK_SIZE) {
+						int n = Math.min(BLOCK_SIZE, end - r);
+						y.getDoubles(r, block, 0, n);
+						for (int k = 0; k < n; k++) {
+							double v = block[k];
+							if (v < min) {
+								min = v;
+							}
+							if (v > max) {
+								max = v;
+							}
+						}
+					}
+					if (min > max) {
+						// Every value was NaN
+						min = Double.NaN;
+						max = Double.NaN;
+					}
+					sy[i].addDouble(min);
+					sy[i].addDouble(max);
+				}
+			}
+		}
+
+		/**
+		 * Same as {@code envelope}, but with the smallest and largest values
+		 * of each bucket taken from the summaries, so only rows at the ends of
+		 * buckets which don't line up with the summarised blocks are read. A
+		 * bucket of more than a block is widened to whole blocks, lined up
+		 * with the blocks, which can give a few more buckets than pixel
+		 * columns.
+		 */
+		private void summaryEnvelope(int from, int to, int buckets, Sample sample) {
+			long step = summaryStep(from, to, buckets);
+			long start = from;
+			if (step >= SUMMARY_SIZE) {
+				start = from / step * step;
+				sample.step = step;
+			}
+			sample.lastBucket = addBuckets(from, to, start, step, sample.x, sample.ys);
+		}
+
+		/**
+		 * Adds two rows to the sample for each bucket from {@code start} on,
+		 * with the smallest and largest values of each dependent dataset in
+		 * the bucket, taken from the summaries.
+		 *
+		 * @return The first row of the last bucket
+		 */
+		long addBuckets(int from, int to, long start, long step, DoubleColumn sx, DoubleColumn[] sy) {
+			double[] summary = new double[RangeIndex.SUMMARY_LENGTH];
+			long lastBucket = start;
+			for (long s = start; s < to; s += step) {
+				lastBucket = s;
+				int a = (int) Math.max(from, s);
+				int b = (int) Math.min(to, s + step);
+				xIndex.summarise(x, 0, a, b, summary);
+				// The x values of a bucket are only all summarised if they are
+				// all finite
+				boolean finite = summary[RangeIndex.COUNT] == b - a;
+				sx.addDouble(finite ? summary[RangeIndex.MIN] : x.getDouble(a));
+				sx.addDouble(finite ? summary[RangeIndex.MAX] : x.getDouble(b - 1));
+				for (int i = 0; i < sy.length; i++) {
+					yIndexes[i].summarise(ys[i], 0, a, b, summary);
+					boolean empty = summary[RangeIndex.COUNT] == 0;
+					sy[i].addDouble(empty ? Double.NaN : summary[RangeIndex.MIN]);
+					sy[i].addDouble(empty ? Double.NaN : summary[RangeIndex.MAX]);
+				}
+			}
+			return lastBucket;
+		}
+
+		/**
+		 * Adds evenly spaced rows from the range, including its first and
+		 * last rows.
+		 */
+		private void spreadRows(int from, int rows, int points, DoubleColumn sx, DoubleColumn[] sy) {
+			for (int k = 0; k < points; k++) {
+				int r = from + (int) ((long) (rows - 1) * k / (points - 1));
+				sx.addDouble(x.getDouble(r));
+				for (int i = 0; i < sy.length; i++) {
+					sy[i].addDouble(ys[i].getDouble(r));
+				}
+			}
+		}
+
+		/**
+		 * @return Index of the first row with an x value of at least v, or
+		 *         the number of rows if there is none
+		 */
+		private int firstAtLeast(double v) {
+			if (x.isEmpty() || v <= firstX) {
+				return 0;
+			} else if (v > lastX) {
+				return x.size();
+			} else if (xIndex != null) {
+				return xIndex.search(x, 0, v, false);
+			}
+			int lo = 0;
+			int hi = x.size();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (x.getDouble(mid) < v) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+
+		/**
+		 * @return Index of the first row with an x value more than v, or
+		 *         the number of rows if there is none
+		 */
+		private int firstAbove(double v) {
+			if (x.isEmpty() || v < firstX) {
+				return 0;
+			} else if (v >= lastX) {
+				return x.size();
+			} else if (xIndex != null) {
+				return xIndex.search(x, 0, v, true);
+			}
+			int lo = 0;
+			int hi = x.size();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (x.getDouble(mid) <= v) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+}
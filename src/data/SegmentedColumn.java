@@ -0,0 +1,626 @@
+package data;
+
+import interfaces.DoubleList;
+import interfaces.Statistics;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A column of primitive doubles stored in fixed size chunks, for very large
+ * datasets. Growing the column only ever allocates a new chunk, values already
+ * in the column are never copied, so appending to a column of hundreds of
+ * millions of values doesn't cause the allocation spikes and long pauses of
+ * growing one huge array. Values can also be removed from the start of the
+ * column with {@code removeFirst}, which releases each chunk as soon as all of
+ * its values are gone.
+ *
+ * Values are read through {@code getDouble}, or a whole range at a time with
+ * {@code getDoubles} or {@code forEachChunk}, which hand over the values a
+ * chunk at a time so loops over them run as fast as over a plain array.
+ *
+ * The column keeps a pyramid of summaries of its values, the smallest,
+ * largest, mean, count and variance of the finite values in blocks of 64,
+ * 128, 256 and so on values. {@code min}, {@code max}, {@code mean},
+ * {@code count} and {@code statistics} of any range, such as the range a
+ * graph fits its axis to or the rows behind one pixel of an overview, take
+ * O(log n) rather than reading every value. The pyramid is brought up to date
+ * when a snapshot is taken or it is queried, which only reads the values
+ * added or changed since.
+ *
+ * Snapshots share the chunks with the column. A chunk is only copied if a
+ * value a snapshot can see is changed, and then only that chunk.
+ *
+ * This class is not thread safe, the {@code DataSet} owning a column is
+ * responsible for guarding access to it. Snapshots can be read from any
+ * thread.
+ */
+public class SegmentedColumn extends AbstractList<Double> implements PrimitiveColumn, RandomAccess {
+
+	/**
+	 * Number of values in a chunk unless told otherwise, 128KB of doubles.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 14;
+
+	/**
+	 * Receives the values in a range of a column one chunk at a time.
+	 */
+	public interface ChunkVisitor {
+		/**
+		 * @param chunk
+		 *            Array holding the values, must not be written to
+		 * @param offset
+		 *            Index in {@code chunk} of the first value
+		 * @param length
+		 *            Number of values
+		 * @param index
+		 *            Index in the column of the first value
+		 */
+		void visit(double[] chunk, int offset, int length, int index);
+	}
+
+	private final int shift;
+	private final int mask;
+
+	/**
+	 * Chunks in use are from {@code first} up to {@code first + count}.
+	 */
+	private double[][] chunks = new double[4][];
+	private int first = 0;
+	private int count = 0;
+
+	/**
+	 * True if a snapshot holds the {@code chunks} array, in which case it is
+	 * copied before any chunk the snapshot can see is replaced or released.
+	 */
+	private boolean chunksShared = false;
+
+	/**
+	 * Number of snapshots taken when each chunk was allocated. A chunk is
+	 * shared with a snapshot if a snapshot has been taken since.
+	 */
+	private long[] epochs = new long[4];
+	private long snapshots = 0;
+
+	/**
+	 * Values before this position, counted from the first value ever added,
+	 * can be seen by a snapshot. Never goes down, as an older snapshot can
+	 * see more values than the latest one if the column has shrunk.
+	 */
+	private long snapshotEnd = 0;
+
+	/**
+	 * Index in the first chunk of the first value.
+	 */
+	private int offset = 0;
+	private int size = 0;
+
+	/**
+	 * Number of values removed from the start of the column.
+	 */
+	private long dropped = 0;
+
+	/**
+	 * Smallest and largest values in each part of the column. True if a
+	 * snapshot holds the index, in which case it is copied before anything the
+	 * snapshot can see is changed.
+	 */
+	private RangeIndex index = new RangeIndex();
+	private boolean indexShared = false;
+
+	/**
+	 * Creates an empty column with chunks of {@code DEFAULT_CHUNK_SIZE}
+	 * values.
+	 */
+	public SegmentedColumn() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates an empty column with chunks of the given size, rounded up to a
+	 * power of two.
+	 *
+	 * @param chunkSize
+	 *            Number of values in a chunk
+	 */
+	public SegmentedColumn(int chunkSize) {
+		if (chunkSize < 1 || chunkSize > 1 << 30) {
+			throw new IllegalArgumentException("Chunk size must be between 1 and 2^30: " + chunkSize);
+		}
+		shift = 32 - Integer.numberOfLeadingZeros(chunkSize - 1);
+		mask = (1 << shift) - 1;
+	}
+
+	/**
+	 * Creates a column, with the default chunk size, holding the double values
+	 * of every number in the given collection.
+	 *
+	 * @param c
+	 *            Collection of numbers to copy
+	 */
+	public SegmentedColumn(Collection<? extends Number> c) {
+		this();
+		addAllNumbers(c);
+	}
+
+	/**
+	 * @return Number of values in each chunk
+	 */
+	public int getChunkSize() {
+		return mask + 1;
+	}
+
+	/**
+	 * @return Number of values removed from the start of the column since it
+	 *         was created or last cleared
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+
+	@Override
+	public long firstRow() {
+		return dropped;
+	}
+
+	@Override
+	public double getDouble(int index) {
+		checkIndex(index);
+		int p = offset + index;
+		return chunks[first + (p >>> shift)][p & mask];
+	}
+
+	@Override
+	public void getDoubles(int from, double[] dest, int destOffset, int length) {
+		checkRange(from, from + length, size);
+		copy(chunks, first, offset, shift, from, dest, destOffset, length);
+	}
+
+	/**
+	 * Passes the values from {@code from} up to {@code to} to the visitor, a
+	 * chunk at a time, in order.
+	 *
+	 * @param from
+	 *            First index, inclusive
+	 * @param to
+	 *            Last index, exclusive
+	 * @param visitor
+	 *            Visitor to give the values to
+	 */
+	public void forEachChunk(int from, int to, ChunkVisitor visitor) {
+		checkRange(from, to, size);
+		visit(chunks, first, offset, shift, from, to, visitor);
+	}
+
+	@Override
+	public double min(int from, int to) {
+		return summarise(from, to)[RangeIndex.MIN];
+	}
+
+	@Override
+	public double max(int from, int to) {
+		return summarise(from, to)[RangeIndex.MAX];
+	}
+
+	@Override
+	public double mean(int from, int to) {
+		return mean(summarise(from, to));
+	}
+
+	@Override
+	public int count(int from, int to) {
+		return (int) summarise(from, to)[RangeIndex.COUNT];
+	}
+
+	@Override
+	public Statistics statistics(int from, int to) {
+		return statistics(summarise(from, to));
+	}
+
+	/**
+	 * Sets the value at the given index.
+	 *
+	 * @param index
+	 *            Index of the value to replace
+	 * @param d
+	 *            The new value
+	 * @return The value previously at the index
+	 */
+	public double setDouble(int index, double d) {
+		checkIndex(index);
+		prepareWrite(index, index + 1);
+		int p = offset + index;
+		double[] chunk = chunks[first + (p >>> shift)];
+		double old = chunk[p & mask];
+		chunk[p & mask] = d;
+		return old;
+	}
+
+	@Override
+	public void addDouble(double d) {
+		int p = offset + size;
+		int c = p >>> shift;
+		if (c == count) {
+			addChunk();
+		} else if (dropped + size < snapshotEnd) {
+			prepareWrite(size, size + 1);
+		}
+		chunks[first + c][p & mask] = d;
+		size++;
+		modCount++;
+	}
+
+	/**
+	 * Appends the double value of every number in the given collection. Reads
+	 * primitives directly if the collection is itself a {@code DoubleList}.
+	 *
+	 * @param c
+	 *            Collection of numbers to append
+	 */
+	public void addAllNumbers(Collection<? extends Number> c) {
+		Objects.requireNonNull(c);
+		if (c instanceof DoubleList) {
+			DoubleList l = (DoubleList) c;
+			for (int i = 0, n = l.size(); i < n; i++) {
+				addDouble(l.getDouble(i));
+			}
+		} else {
+			for (Number n : c) {
+				addDouble(n.doubleValue());
+			}
+		}
+	}
+
+	/**
+	 * Sets the number of values in the column. Growing the column fills the
+	 * new values with zero, shrinking it drops values from the end. Used to
+	 * size a column before filling it in place.
+	 *
+	 * @param newSize
+	 *            The new number of values in the column
+	 */
+	public void resize(int newSize) {
+		if (newSize < 0) {
+			throw new IllegalArgumentException("Size must not be negative: " + newSize);
+		}
+		if (newSize < size) {
+			int needed = newSize == 0 ? 0 : ((offset + newSize - 1) >>> shift) + 1;
+			if (needed < count) {
+				unshareChunks();
+				for (int c = needed; c < count; c++) {
+					chunks[first + c] = null;
+				}
+				count = needed;
+			}
+			index.invalidate(dropped + newSize);
+			size = newSize;
+		} else if (newSize > size) {
+			// The end of the last chunk may hold values from before the column
+			// last shrank
+			int end = (int) Math.min(newSize, ((long) count << shift) - offset);
+			if (end > size) {
+				prepareWrite(size, end);
+				fill(size, end);
+			}
+			while (((long) count << shift) - offset < newSize) {
+				addChunk();
+			}
+			size = newSize;
+		}
+		modCount++;
+	}
+
+	/**
+	 * Removes values from the start of the column, releasing every chunk
+	 * which no longer holds any values.
+	 *
+	 * @param n
+	 *            Number of values to remove
+	 */
+	public void removeFirst(int n) {
+		if (n < 0 || n > size) {
+			throw new IndexOutOfBoundsException("Count: " + n + ", Size: " + size);
+		}
+		if (n == 0) {
+			return;
+		}
+		offset += n;
+		size -= n;
+		dropped += n;
+		int released = Math.min(offset >>> shift, count);
+		if (released > 0) {
+			unshareChunks();
+			for (int c = 0; c < released; c++) {
+				chunks[first + c] = null;
+			}
+			first += released;
+			count -= released;
+			offset -= released << shift;
+		}
+		modCount++;
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public Double set(int index, Double d) {
+		return setDouble(index, d);
+	}
+
+	@Override
+	public boolean add(Double d) {
+		addDouble(d);
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Double> c) {
+		int oldSize = size;
+		addAllNumbers(c);
+		return size != oldSize;
+	}
+
+	/**
+	 * Empties the column and resets the dropped count.
+	 */
+	@Override
+	public void clear() {
+		chunks = new double[4][];
+		epochs = new long[4];
+		chunksShared = false;
+		first = 0;
+		count = 0;
+		offset = 0;
+		size = 0;
+		dropped = 0;
+		snapshotEnd = 0;
+		index = new RangeIndex();
+		indexShared = false;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<Double> snapshot() {
+		snapshots++;
+		chunksShared = true;
+		refreshIndex();
+		indexShared = true;
+		snapshotEnd = Math.max(snapshotEnd, dropped + size);
+		return new View(chunks, first, offset, size, shift, dropped, index.view());
+	}
+
+	/**
+	 * Makes the values from {@code from} up to {@code to} safe to write to
+	 * directly through the chunk arrays, copying any chunk shared with a
+	 * snapshot which can see them. Must be called before writing to chunks
+	 * given out by {@code forEachChunk} or {@code chunkAt}.
+	 */
+	void prepareWrite(int from, int to) {
+		if (from < to) {
+			index.invalidate(dropped + from);
+		}
+		if (from >= to || dropped + from >= snapshotEnd) {
+			return;
+		}
+		int last = Math.min(to, (int) (snapshotEnd - dropped)) - 1;
+		for (int c = (offset + from) >>> shift; c <= (offset + last) >>> shift; c++) {
+			if (epochs[first + c] < snapshots) {
+				unshareChunks();
+				chunks[first + c] = chunks[first + c].clone();
+				epochs[first + c] = snapshots;
+			}
+		}
+	}
+
+	/**
+	 * Gives direct access to the chunk holding a value. The value is at
+	 * {@code chunkOffset(index)} in the chunk.
+	 *
+	 * @param index
+	 *            Index of a value in the column
+	 * @return The chunk holding it
+	 */
+	double[] chunkAt(int index) {
+		checkIndex(index);
+		return chunks[first + ((offset + index) >>> shift)];
+	}
+
+	/**
+	 * @return The position of a value in the chunk returned by
+	 *         {@code chunkAt}
+	 */
+	int chunkOffset(int index) {
+		return (offset + index) & mask;
+	}
+
+	private void addChunk() {
+		if (first + count == chunks.length) {
+			// Move the chunks in use to the start of a new array, only
+			// growing it if more than half of it is in use
+			int length = count * 2 > chunks.length ? chunks.length * 2 : chunks.length;
+			double[][] newChunks = new double[length][];
+			long[] newEpochs = new long[length];
+			System.arraycopy(chunks, first, newChunks, 0, count);
+			System.arraycopy(epochs, first, newEpochs, 0, count);
+			chunks = newChunks;
+			epochs = newEpochs;
+			chunksShared = false;
+			first = 0;
+		}
+		chunks[first + count] = new double[mask + 1];
+		epochs[first + count] = snapshots;
+		count++;
+	}
+
+	/**
+	 * @return Summary of the values from {@code from} up to {@code to}, see
+	 *         {@code RangeIndex.summarise}
+	 */
+	private double[] summarise(int from, int to) {
+		refreshIndex();
+		double[] summary = new double[RangeIndex.SUMMARY_LENGTH];
+		index.summarise(this, dropped, from, to, summary);
+		return summary;
+	}
+
+	private static double mean(double[] summary) {
+		double count = summary[RangeIndex.COUNT];
+		return count == 0 ? Double.NaN : summary[RangeIndex.SUM] / count;
+	}
+
+	private static Statistics statistics(double[] summary) {
+		return new Statistics((long) summary[RangeIndex.COUNT], summary[RangeIndex.MIN], summary[RangeIndex.MAX],
+				mean(summary), summary[RangeIndex.M2]);
+	}
+
+	/**
+	 * Brings the index up to date, copying it first if that would change
+	 * anything a snapshot reads from it.
+	 */
+	private void refreshIndex() {
+		if (indexShared && index.needsCopy(snapshotEnd)) {
+			index = index.copy();
+			indexShared = false;
+		}
+		index.refresh(this, dropped);
+	}
+
+	private void unshareChunks() {
+		if (chunksShared) {
+			chunks = chunks.clone();
+			chunksShared = false;
+		}
+	}
+
+	private void fill(int from, int to) {
+		for (int i = from; i < to; i++) {
+			int p = offset + i;
+			chunks[first + (p >>> shift)][p & mask] = 0d;
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	private static void checkRange(int from, int to, int size) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Size: " + size);
+		}
+	}
+
+	private static void visit(double[][] chunks, int first, int offset, int shift, int from, int to,
+			ChunkVisitor visitor) {
+		int mask = (1 << shift) - 1;
+		int i = from;
+		while (i < to) {
+			int p = offset + i;
+			int start = p & mask;
+			int length = Math.min(to - i, mask + 1 - start);
+			visitor.visit(chunks[first + (p >>> shift)], start, length, i);
+			i += length;
+		}
+	}
+
+	private static void copy(double[][] chunks, int first, int offset, int shift, int from, double[] dest,
+			int destOffset, int length) {
+		visit(chunks, first, offset, shift, from, from + length, (chunk, start, n, index) -> {
+			System.arraycopy(chunk, start, dest, destOffset + index - from, n);
+		});
+	}
+
+	/**
+	 * Immutable view of values in chunks which will never change.
+	 */
+	private static class View extends AbstractList<Double> implements DoubleList, RandomAccess {
+		private final double[][] chunks;
+		private final int first;
+		private final int offset;
+		private final int size;
+		private final int shift;
+		private final int mask;
+		private final long dropped;
+		private final RangeIndex.View index;
+
+		private View(double[][] chunks, int first, int offset, int size, int shift, long dropped,
+				RangeIndex.View index) {
+			this.chunks = chunks;
+			this.first = first;
+			this.offset = offset;
+			this.size = size;
+			this.shift = shift;
+			this.mask = (1 << shift) - 1;
+			this.dropped = dropped;
+			this.index = index;
+		}
+
+		@Override
+		public double getDouble(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			int p = offset + index;
+			return chunks[first + (p >>> shift)][p & mask];
+		}
+
+		@Override
+		public void getDoubles(int from, double[] dest, int destOffset, int length) {
+			checkRange(from, from + length, size);
+			copy(chunks, first, offset, shift, from, dest, destOffset, length);
+		}
+
+		@Override
+		public double min(int from, int to) {
+			return summarise(from, to)[RangeIndex.MIN];
+		}
+
+		@Override
+		public double max(int from, int to) {
+			return summarise(from, to)[RangeIndex.MAX];
+		}
+
+		@Override
+		public double mean(int from, int to) {
+			return SegmentedColumn.mean(summarise(from, to));
+		}
+
+		@Override
+		public int count(int from, int to) {
+			return (int) summarise(from, to)[RangeIndex.COUNT];
+		}
+
+		@Override
+		public Statistics statistics(int from, int to) {
+			return SegmentedColumn.statistics(summarise(from, to));
+		}
+
+		private double[] summarise(int from, int to) {
+			double[] summary = new double[RangeIndex.SUMMARY_LENGTH];
+			index.summarise(this, dropped, from, to, summary);
+			return summary;
+		}
+
+		@Override
+		public Double get(int index) {
+			return getDouble(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,427 @@
+package data;
+
+import interfaces.DoubleList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A column of primitive doubles which keeps only its most recent chunks on the
+ * heap, for histories which would otherwise grow until they run out of
+ * memory. Values are stored in fixed size chunks like a
+ * {@code SegmentedColumn}. Once there are more recent chunks than the heap
+ * budget allows, the oldest is written to a spill file and dropped from the
+ * heap. Reading a spilled chunk pages it back in to a cache of recently read
+ * chunks, which drops the least recently used chunk when it is full.
+ *
+ * The heap budget is split evenly between the recent chunks and the cache.
+ * The cache counts hits, misses and evictions, so the budget can be tuned to
+ * the way the column is read.
+ *
+ * Values can only be appended, values already in the column never change, so
+ * snapshots read through the column's chunks and cache without copying
+ * anything. Reads take a lock on the cache, writes only take it when a chunk
+ * is started or spilled.
+ *
+ * This class is not thread safe for writing, the {@code DataSet} owning a
+ * column is responsible for guarding access to it. Snapshots can be read from
+ * any thread, until the column is closed.
+ */
+public class SpillingColumn extends AbstractList<Double> implements PrimitiveColumn, RandomAccess, Closeable {
+
+	/**
+	 * Number of values in a chunk unless told otherwise, 128KB of doubles.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 14;
+
+	private final int shift;
+	private final int mask;
+
+	private final FileChannel file;
+
+	/**
+	 * Buffer used to move a chunk to and from the file. Guarded by
+	 * {@code lock}.
+	 */
+	private final ByteBuffer io;
+
+	/**
+	 * Guards the chunks, the cache, the counters and the file.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Every chunk started so far, spilled chunks are null. Chunks from
+	 * {@code firstResident} up to {@code chunkCount} are on the heap.
+	 */
+	private double[][] chunks = new double[16][];
+	private int chunkCount = 0;
+	private int firstResident = 0;
+
+	/**
+	 * Most recent chunks kept on the heap, and spilled chunks kept in the
+	 * cache.
+	 */
+	private int maxResident;
+	private int maxCached;
+	private long heapBudget;
+
+	/**
+	 * Spilled chunks read back in, least recently used first.
+	 */
+	private final LinkedHashMap<Integer, double[]> cache = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+			if (size() > maxCached) {
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	private int size = 0;
+
+	/**
+	 * Creates an empty column with chunks of {@code DEFAULT_CHUNK_SIZE}
+	 * values, spilling to a new file in the given directory.
+	 *
+	 * @param directory
+	 *            Directory to create the spill file in
+	 * @param heapBudget
+	 *            Bytes of heap the column may use for its values
+	 * @throws IOException
+	 *             If the spill file can't be created
+	 */
+	public SpillingColumn(Path directory, long heapBudget) throws IOException {
+		this(directory, DEFAULT_CHUNK_SIZE, heapBudget);
+	}
+
+	/**
+	 * Creates an empty column with chunks of the given size, rounded up to a
+	 * power of two, spilling to a new file in the given directory. The file is
+	 * deleted when the column is closed.
+	 *
+	 * @param directory
+	 *            Directory to create the spill file in
+	 * @param chunkSize
+	 *            Number of values in a chunk
+	 * @param heapBudget
+	 *            Bytes of heap the column may use for its values
+	 * @throws IOException
+	 *             If the spill file can't be created
+	 */
+	public SpillingColumn(Path directory, int chunkSize, long heapBudget) throws IOException {
+		Objects.requireNonNull(directory);
+		if (chunkSize < 1 || chunkSize > 1 << 26) {
+			throw new IllegalArgumentException("Chunk size must be between 1 and 2^26: " + chunkSize);
+		}
+		shift = 32 - Integer.numberOfLeadingZeros(chunkSize - 1);
+		mask = (1 << shift) - 1;
+		io = ByteBuffer.allocate((mask + 1) * 8).order(ByteOrder.LITTLE_ENDIAN);
+		setHeapBudget(heapBudget);
+		Path path = Files.createTempFile(directory, "spill", ".bin");
+		file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	/**
+	 * Sets the bytes of heap the column may use for its values, spilling or
+	 * evicting chunks straight away if it is using more. At least one recent
+	 * chunk and one cached chunk are always kept, however small the budget.
+	 *
+	 * @param bytes
+	 *            The heap budget
+	 */
+	public void setHeapBudget(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("Heap budget must not be negative: " + bytes);
+		}
+		synchronized (lock) {
+			heapBudget = bytes;
+			long total = Math.max(2, Math.min(Integer.MAX_VALUE, bytes / ((mask + 1) * 8L)));
+			maxResident = (int) Math.max(1, total / 2);
+			maxCached = (int) Math.max(1, total - maxResident);
+			Iterator<Integer> it = cache.keySet().iterator();
+			while (cache.size() > maxCached) {
+				it.next();
+				it.remove();
+				evictions++;
+			}
+			if (file != null) {
+				spillExcess();
+			}
+		}
+	}
+
+	/**
+	 * @return Bytes of heap the column may use for its values
+	 */
+	public long getHeapBudget() {
+		synchronized (lock) {
+			return heapBudget;
+		}
+	}
+
+	/**
+	 * @return Number of values in each chunk
+	 */
+	public int getChunkSize() {
+		return mask + 1;
+	}
+
+	/**
+	 * @return Number of chunks written to the spill file
+	 */
+	public int getSpilledChunks() {
+		synchronized (lock) {
+			return firstResident;
+		}
+	}
+
+	/**
+	 * @return Number of spilled chunks currently in the cache
+	 */
+	public int getCachedChunks() {
+		synchronized (lock) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * @return Number of reads of a spilled chunk found in the cache
+	 */
+	public long getCacheHits() {
+		synchronized (lock) {
+			return hits;
+		}
+	}
+
+	/**
+	 * @return Number of reads of a spilled chunk which had to read it from the
+	 *         spill file
+	 */
+	public long getCacheMisses() {
+		synchronized (lock) {
+			return misses;
+		}
+	}
+
+	/**
+	 * @return Number of chunks dropped from the cache to make room
+	 */
+	public long getEvictions() {
+		synchronized (lock) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * Sets the cache counters back to zero.
+	 */
+	public void resetCounters() {
+		synchronized (lock) {
+			hits = 0;
+			misses = 0;
+			evictions = 0;
+		}
+	}
+
+	@Override
+	public double getDouble(int index) {
+		checkRange(index, 1, size);
+		return read(index);
+	}
+
+	@Override
+	public void getDoubles(int from, double[] dest, int destOffset, int length) {
+		checkRange(from, length, size);
+		read(from, dest, destOffset, length);
+	}
+
+	@Override
+	public void addDouble(double d) {
+		int p = size & mask;
+		if (p == 0) {
+			synchronized (lock) {
+				if (chunkCount == chunks.length) {
+					chunks = Arrays.copyOf(chunks, chunkCount * 2);
+				}
+				chunks[chunkCount++] = new double[mask + 1];
+				spillExcess();
+			}
+		}
+		// Only this thread writes the chunk, and snapshots never read past
+		// their size
+		chunks[chunkCount - 1][p] = d;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public boolean add(Double d) {
+		addDouble(d);
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<Double> snapshot() {
+		return new View(this, size);
+	}
+
+	/**
+	 * Closes and deletes the spill file. Snapshots can no longer read spilled
+	 * chunks which aren't in the cache.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (lock) {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes the oldest recent chunks to the spill file until no more than
+	 * {@code maxResident} are left. Must hold the lock.
+	 */
+	private void spillExcess() {
+		while (chunkCount - firstResident > maxResident) {
+			double[] chunk = chunks[firstResident];
+			io.clear();
+			io.asDoubleBuffer().put(chunk);
+			try {
+				long position = (long) firstResident << shift << 3;
+				while (io.hasRemaining()) {
+					file.write(io, position + io.position());
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Couldn't write to spill file", e);
+			}
+			chunks[firstResident++] = null;
+		}
+	}
+
+	/**
+	 * @return The chunk with the given index, read from the spill file if it
+	 *         has been spilled and isn't cached. Must hold the lock.
+	 */
+	private double[] chunk(int c) {
+		double[] chunk = chunks[c];
+		if (chunk != null) {
+			return chunk;
+		}
+		chunk = cache.get(c);
+		if (chunk != null) {
+			hits++;
+			return chunk;
+		}
+		misses++;
+		chunk = new double[mask + 1];
+		io.clear();
+		try {
+			long position = (long) c << shift << 3;
+			while (io.hasRemaining()) {
+				if (file.read(io, position + io.position()) < 0) {
+					throw new IOException("Spill file is truncated");
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Couldn't read from spill file", e);
+		}
+		io.flip();
+		io.asDoubleBuffer().get(chunk);
+		cache.put(c, chunk);
+		return chunk;
+	}
+
+	private double read(int index) {
+		synchronized (lock) {
+			return chunk(index >>> shift)[index & mask];
+		}
+	}
+
+	private void read(int from, double[] dest, int destOffset, int length) {
+		synchronized (lock) {
+			int i = from;
+			int end = from + length;
+			while (i < end) {
+				int start = i & mask;
+				int n = Math.min(end - i, mask + 1 - start);
+				System.arraycopy(chunk(i >>> shift), start, dest, destOffset + i - from, n);
+				i += n;
+			}
+		}
+	}
+
+	private static void checkRange(int from, int length, int size) {
+		if (from < 0 || length < 0 || from + length > size) {
+			throw new IndexOutOfBoundsException("From: " + from + ", Length: " + length + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Immutable view of the first {@code size} values of a column, which never
+	 * change.
+	 */
+	private static class View extends AbstractList<Double> implements DoubleList, RandomAccess {
+		private final SpillingColumn column;
+		private final int size;
+
+		private View(SpillingColumn column, int size) {
+			this.column = column;
+			this.size = size;
+		}
+
+		@Override
+		public double getDouble(int index) {
+			checkRange(index, 1, size);
+			return column.read(index);
+		}
+
+		@Override
+		public void getDoubles(int from, double[] dest, int destOffset, int length) {
+			checkRange(from, length, size);
+			column.read(from, dest, destOffset, length);
+		}
+
+		@Override
+		public Double get(int index) {
+			return getDouble(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
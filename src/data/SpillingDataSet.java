@@ -0,0 +1,266 @@
+package data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Dataset keeping only recent and recently viewed values on the heap, for
+ * long running sessions whose history would otherwise run out of memory.
+ * Every column is a {@code SpillingColumn}, which writes its older chunks to
+ * a spill file and pages them back in to a bounded cache when they are read.
+ * The heap budget is shared evenly between the columns.
+ *
+ * The columns are summarised as rows are added, so an overview of the whole
+ * recording is drawn from the summaries, and the rows in view are found by
+ * searching them, without reading any spilled values. Drawing recent rows
+ * never touches the spill files, and panning back through the history only
+ * reads the spilled rows in view, and none of them once a pixel column holds
+ * more than a summarised block of rows. The cache counters are totals across
+ * every column.
+ *
+ * Closing the dataset deletes the spill files.
+ *
+ * All operations in this class are thread safe.
+ */
+public class SpillingDataSet extends SampledDataSet implements Closeable {
+
+	/**
+	 * Heap budget used unless told otherwise, 64MB.
+	 */
+	public static final long DEFAULT_HEAP_BUDGET = 64L << 20;
+
+	private final Path directory;
+	private long heapBudget;
+	private boolean closed = false;
+
+	/**
+	 * Creates an empty dataset with a heap budget of
+	 * {@code DEFAULT_HEAP_BUDGET}.
+	 *
+	 * @param directory
+	 *            Directory to create the spill files in
+	 * @throws IOException
+	 *             If the spill file can't be created
+	 */
+	public SpillingDataSet(Path directory) throws IOException {
+		this(directory, DEFAULT_HEAP_BUDGET);
+	}
+
+	/**
+	 * Creates an empty dataset.
+	 *
+	 * @param directory
+	 *            Directory to create the spill files in
+	 * @param heapBudget
+	 *            Bytes of heap the dataset may use for its values
+	 * @throws IOException
+	 *             If the spill file can't be created
+	 */
+	public SpillingDataSet(Path directory, long heapBudget) throws IOException {
+		this.directory = Objects.requireNonNull(directory);
+		this.heapBudget = heapBudget;
+		setColumns(new SpillingColumn(directory, heapBudget), new ArrayList<SpillingColumn>());
+	}
+
+	/**
+	 * Sets the bytes of heap the dataset may use for its values, spilling or
+	 * evicting chunks straight away if it is using more.
+	 *
+	 * @param bytes
+	 *            The heap budget
+	 */
+	public synchronized void setHeapBudget(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("Heap budget must not be negative: " + bytes);
+		}
+		heapBudget = bytes;
+		List<SpillingColumn> columns = columns();
+		for (SpillingColumn c : columns) {
+			c.setHeapBudget(bytes / columns.size());
+		}
+	}
+
+	/**
+	 * @return Bytes of heap the dataset may use for its values
+	 */
+	public synchronized long getHeapBudget() {
+		return heapBudget;
+	}
+
+	/**
+	 * @return Number of chunks written to the spill files
+	 */
+	public synchronized long getSpilledChunks() {
+		long n = 0;
+		for (SpillingColumn c : columns()) {
+			n += c.getSpilledChunks();
+		}
+		return n;
+	}
+
+	/**
+	 * @return Number of spilled chunks currently cached
+	 */
+	public synchronized long getCachedChunks() {
+		long n = 0;
+		for (SpillingColumn c : columns()) {
+			n += c.getCachedChunks();
+		}
+		return n;
+	}
+
+	/**
+	 * @return Number of reads of a spilled chunk found in a cache
+	 */
+	public synchronized long getCacheHits() {
+		long n = 0;
+		for (SpillingColumn c : columns()) {
+			n += c.getCacheHits();
+		}
+		return n;
+	}
+
+	/**
+	 * @return Number of reads of a spilled chunk which had to read it from a
+	 *         spill file
+	 */
+	public synchronized long getCacheMisses() {
+		long n = 0;
+		for (SpillingColumn c : columns()) {
+			n += c.getCacheMisses();
+		}
+		return n;
+	}
+
+	/**
+	 * @return Number of chunks dropped from a cache to make room
+	 */
+	public synchronized long getEvictions() {
+		long n = 0;
+		for (SpillingColumn c : columns()) {
+			n += c.getEvictions();
+		}
+		return n;
+	}
+
+	/**
+	 * Sets the cache counters of every column back to zero.
+	 */
+	public synchronized void resetCounters() {
+		for (SpillingColumn c : columns()) {
+			c.resetCounters();
+		}
+	}
+
+	/**
+	 * Returns the recorded independent values. This is the live column, which
+	 * can change while it is being read if rows are being appended.
+	 *
+	 * @return Every independent value recorded
+	 */
+	public synchronized SpillingColumn getIndependentColumn() {
+		return (SpillingColumn) xColumn();
+	}
+
+	/**
+	 * Returns the recorded values of a dependent dataset. This is the live
+	 * column, which can change while it is being read if rows are being
+	 * appended.
+	 *
+	 * @param dataSet
+	 *            Index of the dependent dataset, in the order they were added
+	 * @return Every value of the dependent dataset recorded
+	 */
+	public synchronized SpillingColumn getDependentColumn(int dataSet) {
+		return (SpillingColumn) yColumns().get(dataSet);
+	}
+
+	/**
+	 * Creates a column for a new dependent dataset, and shares the heap budget
+	 * out again.
+	 */
+	@Override
+	SpillingColumn newColumn() {
+		try {
+			SpillingColumn column = new SpillingColumn(directory, heapBudget / (yColumns().size() + 2));
+			List<SpillingColumn> columns = columns();
+			for (SpillingColumn c : columns) {
+				c.setHeapBudget(heapBudget / (columns.size() + 1));
+			}
+			return column;
+		} catch (IOException e) {
+			throw new IllegalStateException("Couldn't create spill file", e);
+		}
+	}
+
+	/**
+	 * Removes the dependent dataset at the given index, deleting its spill
+	 * file.
+	 */
+	@Override
+	public synchronized void removeDependent(int dataSet) {
+		SpillingColumn column = getDependentColumn(dataSet);
+		super.removeDependent(dataSet);
+		try {
+			column.close();
+		} catch (IOException e) {
+			throw new IllegalStateException("Couldn't delete spill file", e);
+		}
+		setHeapBudget(heapBudget);
+	}
+
+	@Override
+	boolean keepsSummaries() {
+		return true;
+	}
+
+	@Override
+	void checkWritable() {
+		if (closed) {
+			throw new IllegalStateException("Dataset is closed");
+		}
+	}
+
+	@Override
+	boolean isOpen() {
+		return !closed;
+	}
+
+	/**
+	 * Closes and deletes the spill files. The sample last published can still
+	 * be drawn, but no more rows can be added.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			IOException failure = null;
+			for (SpillingColumn c : columns()) {
+				try {
+					c.close();
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * @return The independent column followed by every dependent column
+	 */
+	private List<SpillingColumn> columns() {
+		List<SpillingColumn> columns = new ArrayList<>();
+		columns.add(getIndependentColumn());
+		for (PrimitiveColumn y : yColumns()) {
+			columns.add((SpillingColumn) y);
+		}
+		return columns;
+	}
+}
@@ -0,0 +1,133 @@
+package data;
+
+import interfaces.DataChange;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Dataset keeping only the most recent rows added to it, for live data which
+ * would otherwise grow forever. Every column is a {@code RingColumn} of the
+ * same capacity, once the dataset is full each new row drops the oldest one.
+ * Memory use stays flat however long the dataset is fed.
+ *
+ * Rows can only be added whole, with {@code addRow} or {@code addRows}, so the
+ * columns always stay aligned. When rows are dropped to make room, observers
+ * are told the window shifted rather than that everything changed.
+ *
+ * All operations in this class are thread safe.
+ */
+public class StreamingDataSet extends DataSet<Double> {
+
+	private final int capacity;
+
+	/**
+	 * Creates an empty dataset holding at most the given number of rows.
+	 *
+	 * @param capacity
+	 *            Maximum number of rows, must be positive
+	 */
+	public StreamingDataSet(int capacity) {
+		super(new RingColumn(capacity));
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return The maximum number of rows in the dataset
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return Number of rows dropped to make room for new ones since the
+	 *         dataset was created or last cleared
+	 */
+	public synchronized long getDroppedCount() {
+		return ((RingColumn) indVars).getDroppedCount();
+	}
+
+	/**
+	 * Adds a dependent dataset. The values must line up with the rows already
+	 * in the dataset, so there must be exactly as many of them as there are
+	 * rows.
+	 *
+	 * @param l
+	 *            Collection of values to be added
+	 */
+	@Override
+	public synchronized void addDependentSet(Collection<Double> l) {
+		Objects.requireNonNull(l);
+		if (l.size() != indVars.size()) {
+			throw new IllegalArgumentException("Dataset has " + indVars.size() + " rows, but " + l.size()
+					+ " values were given");
+		}
+		RingColumn column = new RingColumn(capacity);
+		for (Double d : l) {
+			column.addDouble(d);
+		}
+		depVars.add(column);
+		update(DataChange.Type.SERIES_ADDED, depVars.size() - 1, depVars.size());
+	}
+
+	/**
+	 * Appends a batch of rows, dropping as many of the oldest rows as needed
+	 * to stay within the capacity.
+	 */
+	@Override
+	public synchronized void addRows(List<? extends Row<Double>> rows) {
+		Objects.requireNonNull(rows);
+		for (Row<Double> row : rows) {
+			checkRow(row, depVars.size());
+		}
+		RingColumn x = (RingColumn) indVars;
+		List<RingColumn> ys = new ArrayList<>(depVars.size());
+		for (List<Double> l : depVars) {
+			ys.add((RingColumn) l);
+		}
+		long droppedBefore = x.getDroppedCount();
+		int from = x.size();
+		for (Row<Double> row : rows) {
+			x.addDouble(row.getIndependent());
+			double[] y = row.getDependent();
+			for (int i = 0; i < y.length; i++) {
+				ys.get(i).addDouble(y[i]);
+			}
+		}
+		int dropped = (int) (x.getDroppedCount() - droppedBefore);
+		if (dropped == 0) {
+			update(DataChange.Type.ROWS_APPENDED, from, x.size());
+		} else {
+			update(DataChange.Type.WINDOW_SHIFTED, dropped, x.size());
+		}
+	}
+
+	/**
+	 * Removes every row, keeping the dependent datasets.
+	 */
+	public synchronized void clear() {
+		indVars.clear();
+		for (List<Double> l : depVars) {
+			l.clear();
+		}
+		update();
+	}
+
+	/**
+	 * Not supported, rows have to be added whole so the columns stay aligned.
+	 */
+	@Override
+	public void setIndependent(Collection<Double> c) {
+		throw new UnsupportedOperationException("Rows of a streaming dataset must be added with addRow");
+	}
+
+	/**
+	 * Not supported, rows have to be added whole so the columns stay aligned.
+	 */
+	@Override
+	public void addToIndependent(Double t) {
+		throw new UnsupportedOperationException("Rows of a streaming dataset must be added with addRow");
+	}
+}
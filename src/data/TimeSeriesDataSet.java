@@ -0,0 +1,886 @@
+package data;
+
+import interfaces.DataSnapshot;
+import interfaces.DoubleList;
+import interfaces.Statistics;
+import interfaces.ViewportModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntToDoubleFunction;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Dataset of samples taken at wall clock times, recorded as whole
+ * milliseconds since the epoch, with rollups of the samples into seconds,
+ * minutes and hours. Each rollup keeps the smallest,
+ * largest, sum and count of every dependent dataset's values in each bucket,
+ * and is updated as samples are added, so adding a sample costs the same
+ * however many there are. Buckets start at whole seconds, minutes and hours
+ * since the epoch, so in UTC.
+ *
+ * Like a {@code SampledDataSet}, graphs are shown the part of the recording
+ * in view rather than all of it. Whenever a graph draws the dataset it sets
+ * the viewport, and if there are more samples in view than
+ * {@code POINTS_PER_PIXEL} for each pixel column, the finest rollup with few
+ * enough buckets in view is published instead, one row per bucket at the
+ * bucket's start time holding the chosen aggregate of each dependent dataset.
+ * {@code getIndependent} returns the published times as doubles, which hold
+ * whole milliseconds exactly for the next quarter of a million years.
+ *
+ * The times and values of the samples are recorded in
+ * {@code SegmentedColumn}s, so appending never copies the recording. Adding
+ * samples only marks the published rows as out of date, and they are chosen
+ * again when they are next read or a graph sets the viewport, at most once
+ * however many batches of samples were added in between.
+ *
+ * The rows are chosen from snapshots of the columns and rollups, without
+ * holding the dataset's lock, so samples can be added meanwhile. On the event
+ * dispatch thread setting the viewport or reading stale rows never waits for
+ * the lock: the rows are chosen on a background thread, see
+ * {@code ViewportSampler}, and the observers are updated once they are
+ * published.
+ * {@code getRecording} returns a snapshot of every sample rather than the
+ * published rows, and {@code getStatistics} describes every sample too.
+ *
+ * The times must never decrease. Samples can only be added whole, with
+ * {@code addRow} or {@code addRows}, setting or adding to the independent
+ * dataset on its own throws an {@code UnsupportedOperationException}. NaN
+ * values are left out of the rollups, as missing values.
+ *
+ * All operations in this class are thread safe.
+ */
+public class TimeSeriesDataSet extends DataSet<Double> implements ViewportModel {
+
+	/**
+	 * Most rows published for each pixel column of the viewport before a
+	 * rollup is published instead.
+	 */
+	public static final int POINTS_PER_PIXEL = 2;
+
+	/**
+	 * Number of pixel columns to publish for before any graph has set the
+	 * viewport.
+	 */
+	private static final int DEFAULT_WIDTH = 500;
+
+	/**
+	 * The sizes of bucket samples are rolled up into.
+	 */
+	public enum Resolution {
+		SECOND(1000L), MINUTE(60_000L), HOUR(3_600_000L);
+
+		private final long millis;
+
+		private Resolution(long millis) {
+			this.millis = millis;
+		}
+
+		/**
+		 * @return Length of a bucket in milliseconds
+		 */
+		public long getMillis() {
+			return millis;
+		}
+	}
+
+	/**
+	 * Times of every sample, in milliseconds since the epoch, and the times
+	 * of the first and last ones, which are read without the lock.
+	 */
+	private final SegmentedColumn times = new SegmentedColumn();
+	private volatile long firstTime = 0;
+	private volatile long lastTime = Long.MIN_VALUE;
+
+	/**
+	 * Values of every sample of each dependent dataset.
+	 */
+	private final List<SegmentedColumn> values = new ArrayList<>();
+
+	/**
+	 * One rollup for each resolution, in the order of {@code Resolution}.
+	 */
+	private final Rollup[] rollups = new Rollup[Resolution.values().length];
+
+	private AggregatingDataSet.Aggregate rollupAggregate = AggregatingDataSet.Aggregate.MEAN;
+
+	/**
+	 * The viewport the published rows were chosen for, and the resolution of
+	 * the rollup published, null if the samples were.
+	 */
+	private double viewMin = Double.NEGATIVE_INFINITY;
+	private double viewMax = Double.POSITIVE_INFINITY;
+	private int viewWidth = DEFAULT_WIDTH;
+	private Resolution published = null;
+
+	/**
+	 * Holds the viewport last set by a graph.
+	 */
+	private final ViewportSampler sampler = new ViewportSampler(() -> takeSample(true));
+
+	/**
+	 * True if samples have been added since the published rows were chosen.
+	 */
+	private volatile boolean stale = false;
+
+	/**
+	 * Number of times rows have started being chosen, and the number of
+	 * those published, so rows chosen without the lock aren't published over
+	 * newer ones.
+	 */
+	private long samplesStarted = 0;
+	private long samplePublished = 0;
+
+	/**
+	 * Statistics of every sample of each dependent dataset, worked out
+	 * whenever samples are added.
+	 */
+	private volatile Statistics[] statistics = new Statistics[0];
+
+	/**
+	 * Creates an empty dataset.
+	 */
+	public TimeSeriesDataSet() {
+		super(new DoubleColumn());
+		for (Resolution r : Resolution.values()) {
+			rollups[r.ordinal()] = new Rollup(r.getMillis());
+		}
+	}
+
+	/**
+	 * @return Number of samples recorded
+	 */
+	public synchronized int getRowCount() {
+		return times.size();
+	}
+
+	/**
+	 * @param row
+	 *            Index of a sample
+	 * @return The time of the sample, in milliseconds since the epoch
+	 */
+	public synchronized long getTime(int row) {
+		if (row < 0 || row >= times.size()) {
+			throw new IndexOutOfBoundsException("Row: " + row + ", Rows: " + times.size());
+		}
+		return (long) times.getDouble(row);
+	}
+
+	/**
+	 * @return The aggregate of each bucket published when a rollup is
+	 */
+	public synchronized AggregatingDataSet.Aggregate getRollupAggregate() {
+		return rollupAggregate;
+	}
+
+	/**
+	 * Sets the aggregate of each bucket published when a rollup is.
+	 *
+	 * @param aggregate
+	 *            The aggregate, {@code MEAN} unless changed
+	 */
+	public synchronized void setRollupAggregate(AggregatingDataSet.Aggregate aggregate) {
+		rollupAggregate = Objects.requireNonNull(aggregate);
+		resample();
+		update();
+	}
+
+	/**
+	 * @return The resolution of the rollup published for the current
+	 *         viewport, or null if the samples themselves are published
+	 */
+	public Resolution getPublishedResolution() {
+		refresh();
+		synchronized (this) {
+			return published;
+		}
+	}
+
+	/**
+	 * @param resolution
+	 *            Resolution of a rollup
+	 * @return Number of buckets in the rollup, every bucket holding at least
+	 *         one sample
+	 */
+	public synchronized int getBucketCount(Resolution resolution) {
+		return rollups[resolution.ordinal()].count;
+	}
+
+	/**
+	 * @param resolution
+	 *            Resolution of a rollup
+	 * @param bucket
+	 *            Index of a bucket of the rollup
+	 * @return The start time of the bucket, in milliseconds since the epoch
+	 */
+	public synchronized long getBucketStart(Resolution resolution, int bucket) {
+		Rollup rollup = rollups[resolution.ordinal()];
+		rollup.checkBucket(bucket);
+		return rollup.starts[bucket];
+	}
+
+	/**
+	 * @param resolution
+	 *            Resolution of a rollup
+	 * @param dataSet
+	 *            Index of a dependent dataset
+	 * @param bucket
+	 *            Index of a bucket of the rollup
+	 * @param aggregate
+	 *            The aggregate to get
+	 * @return The aggregate of the dependent dataset's values in the bucket
+	 */
+	public synchronized double getBucketValue(Resolution resolution, int dataSet, int bucket,
+			AggregatingDataSet.Aggregate aggregate) {
+		Objects.requireNonNull(aggregate);
+		if (dataSet < 0 || dataSet >= values.size()) {
+			throw new IndexOutOfBoundsException("Dataset: " + dataSet + ", Size: " + values.size());
+		}
+		Rollup rollup = rollups[resolution.ordinal()];
+		rollup.checkBucket(bucket);
+		return rollup.get(dataSet, bucket, aggregate);
+	}
+
+	@Override
+	public double getDomainMin() {
+		// The first time is set before the last one
+		return lastTime == Long.MIN_VALUE ? 0 : firstTime;
+	}
+
+	@Override
+	public double getDomainMax() {
+		long last = lastTime;
+		return last == Long.MIN_VALUE ? 1 : last;
+	}
+
+	/**
+	 * Gets the published rows, choosing them again first if samples have
+	 * been added since they were chosen. On the event dispatch thread the
+	 * rows last published are returned, and the observers are updated once
+	 * the new ones are.
+	 */
+	@Override
+	public DataSnapshot<Double, Double> getSnapshot() {
+		refresh();
+		return super.getSnapshot();
+	}
+
+	@Override
+	public List<Double> getIndependent() {
+		refresh();
+		return super.getIndependent();
+	}
+
+	@Override
+	public List<List<Double>> getDependent() {
+		refresh();
+		return super.getDependent();
+	}
+
+	/**
+	 * Returns a snapshot of every sample, rather than the published rows. The
+	 * snapshot shares the recorded columns rather than copying them, so it
+	 * can be read from any thread while samples are added.
+	 *
+	 * @return Snapshot of the recorded samples
+	 */
+	@Override
+	public synchronized DataSnapshot<Double, Double> getRecording() {
+		List<List<Double>> dep = new ArrayList<>(values.size());
+		for (SegmentedColumn y : values) {
+			dep.add(y.snapshot());
+		}
+		DataSnapshot<Double, Double> published = super.getSnapshot();
+		return new DataSetSnapshot<>(published.getVersion(), published.getStructureVersion(), 0, times.snapshot(),
+				Collections.unmodifiableList(dep), null);
+	}
+
+	/**
+	 * Gets the statistics of every sample of a dependent dataset, rather than
+	 * of the published rows.
+	 */
+	@Override
+	public Statistics getStatistics(int series) {
+		return statistics[series];
+	}
+
+	/**
+	 * Adds a dependent dataset. The values must line up with the samples
+	 * already recorded, so there must be exactly as many of them as there
+	 * are samples.
+	 *
+	 * @param l
+	 *            Collection of values to be added
+	 */
+	@Override
+	public synchronized void addDependentSet(Collection<Double> l) {
+		Objects.requireNonNull(l);
+		if (l.size() != times.size()) {
+			throw new IllegalArgumentException("Dataset has " + times.size() + " rows, but " + l.size()
+					+ " values were given");
+		}
+		SegmentedColumn column = new SegmentedColumn(l);
+		values.add(column);
+		for (Rollup rollup : rollups) {
+			rollup.addSeries(times, column);
+		}
+		depVars.add(new DoubleColumn());
+		summarise();
+		resample();
+		update();
+	}
+
+	/**
+	 * Removes the dependent dataset at the given index, in the order they were
+	 * added.
+	 */
+	@Override
+	public synchronized void removeDependent(int dataSet) {
+		if (dataSet < 0 || dataSet >= values.size()) {
+			throw new IndexOutOfBoundsException("Dataset: " + dataSet + ", Size: " + values.size());
+		}
+		values.remove(dataSet);
+		for (Rollup rollup : rollups) {
+			rollup.removeSeries(dataSet);
+		}
+		summarise();
+		super.removeDependent(dataSet);
+	}
+
+	/**
+	 * Adds a sample.
+	 *
+	 * @param time
+	 *            Time of the sample in milliseconds since the epoch, at least
+	 *            that of the last sample
+	 * @param y
+	 *            A value for each dependent dataset
+	 */
+	public synchronized void addRow(long time, double... y) {
+		addRows(new long[] { time }, new double[][] { y });
+	}
+
+	/**
+	 * Adds a batch of samples, updating the observers once for the whole
+	 * batch.
+	 *
+	 * @param time
+	 *            Times of the samples in milliseconds since the epoch, each at
+	 *            least that of the sample before
+	 * @param y
+	 *            For each sample, a value for each dependent dataset
+	 * @throws IllegalArgumentException
+	 *             If a sample has the wrong number of values, or a time before
+	 *             the last one
+	 */
+	public synchronized void addRows(long[] time, double[][] y) {
+		Objects.requireNonNull(time);
+		Objects.requireNonNull(y);
+		if (time.length != y.length) {
+			throw new IllegalArgumentException(time.length + " times were given, but " + y.length + " rows of values");
+		}
+		long last = lastTime;
+		for (int i = 0; i < time.length; i++) {
+			if (y[i].length != values.size()) {
+				throw new IllegalArgumentException("Row has " + y[i].length + " dependent values, expected "
+						+ values.size());
+			}
+			if (time[i] < last) {
+				throw new IllegalArgumentException("Times must not decrease: " + time[i] + " after " + last);
+			}
+			last = time[i];
+		}
+		if (times.isEmpty() && time.length > 0) {
+			firstTime = time[0];
+		}
+		for (int i = 0; i < time.length; i++) {
+			times.addDouble(time[i]);
+			for (int s = 0; s < y[i].length; s++) {
+				values.get(s).addDouble(y[i][s]);
+			}
+			for (Rollup rollup : rollups) {
+				rollup.add(time[i], y[i]);
+			}
+		}
+		lastTime = last;
+		summarise();
+		// Chosen again when next read, or when a graph next sets the
+		// viewport. The published rows aren't the samples, so the new samples
+		// can't be reported as appended.
+		stale = true;
+		update();
+	}
+
+	/**
+	 * Works out the statistics of each dependent dataset, from the summaries
+	 * the recorded columns keep.
+	 */
+	private void summarise() {
+		Statistics[] s = new Statistics[values.size()];
+		for (int i = 0; i < s.length; i++) {
+			s[i] = values.get(i).statistics(0, times.size());
+		}
+		statistics = s;
+	}
+
+	/**
+	 * Adds a batch of samples, rounding each independent value to whole
+	 * milliseconds.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If a row has the wrong number of values, or a time before
+	 *             the last one
+	 */
+	@Override
+	public synchronized void addRows(List<? extends Row<Double>> rows) {
+		Objects.requireNonNull(rows);
+		long[] time = new long[rows.size()];
+		double[][] y = new double[rows.size()][];
+		for (int i = 0; i < time.length; i++) {
+			Row<Double> row = rows.get(i);
+			time[i] = Math.round(row.getIndependent());
+			y[i] = row.getDependent();
+		}
+		addRows(time, y);
+	}
+
+	@Override
+	public void setViewport(double xMin, double xMax, int width, int height) {
+		if (Double.isNaN(xMin) || Double.isNaN(xMax) || Double.isInfinite(xMin) || Double.isInfinite(xMax)) {
+			return;
+		}
+		if (sampler.setViewport(xMin, xMax, Math.max(width, 1))) {
+			takeSample(false);
+		}
+	}
+
+	/**
+	 * Chooses the rows to publish again if samples have been added since
+	 * they were chosen, on the background thread if called on the event
+	 * dispatch thread.
+	 */
+	private void refresh() {
+		if (stale) {
+			if (SwingUtilities.isEventDispatchThread()) {
+				sampler.schedule();
+			} else {
+				takeSample(false);
+			}
+		}
+	}
+
+	/**
+	 * Chooses the rows to publish for the viewport last set, if it or the
+	 * samples have changed since they were chosen. The lock isn't held while
+	 * the rows are chosen.
+	 *
+	 * @param background
+	 *            True if on the background thread, so the observers have to
+	 *            be updated. Otherwise whoever set the viewport or read the
+	 *            rows reads the new ones itself.
+	 */
+	private void takeSample(boolean background) {
+		ViewportSampler.Viewport v = sampler.getViewport();
+		Recording recording;
+		synchronized (this) {
+			if (v == null) {
+				// No graph has set the viewport, so the samples have changed
+				v = new ViewportSampler.Viewport(viewMin, viewMax, viewWidth);
+			}
+			if (!stale && v.is(viewMin, viewMax, viewWidth)) {
+				return;
+			}
+			recording = record();
+		}
+		Sample sample = recording.sample(v.min, v.max, v.width);
+		synchronized (this) {
+			if (usesSample(sample)) {
+				if (background) {
+					update();
+				} else {
+					// Whoever changed the samples has already updated the
+					// observers
+					publish();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Chooses the rows to publish again for the current viewport, after the
+	 * samples have changed. Must be called while holding the lock.
+	 */
+	private void resample() {
+		ViewportSampler.Viewport v = sampler.getViewport();
+		if (v == null) {
+			v = new ViewportSampler.Viewport(viewMin, viewMax, viewWidth);
+		}
+		usesSample(record().sample(v.min, v.max, v.width));
+	}
+
+	/**
+	 * Starts choosing the rows to publish. Must be called while holding the
+	 * lock.
+	 *
+	 * @return Snapshot of the samples and rollups, which can be read without
+	 *         the lock
+	 */
+	private Recording record() {
+		List<DoubleList> y = new ArrayList<>(values.size());
+		for (SegmentedColumn column : values) {
+			y.add((DoubleList) column.snapshot());
+		}
+		Rollup.View[] r = new Rollup.View[rollups.length];
+		for (int i = 0; i < r.length; i++) {
+			r[i] = rollups[i].view();
+		}
+		return new Recording(++samplesStarted, (DoubleList) times.snapshot(), y, r, rollupAggregate);
+	}
+
+	/**
+	 * Publishes the rows chosen, unless newer ones have been used since they
+	 * started being chosen or a dependent dataset has been removed. Must be
+	 * called while holding the lock.
+	 *
+	 * @return False if the rows were dropped
+	 */
+	private boolean usesSample(Sample sample) {
+		if (sample.number < samplePublished || sample.ys.length != values.size()) {
+			return false;
+		}
+		samplePublished = sample.number;
+		viewMin = sample.min;
+		viewMax = sample.max;
+		viewWidth = sample.width;
+		published = sample.resolution;
+		stale = sample.rows != times.size();
+		indVars = sample.x;
+		for (int s = 0; s < sample.ys.length; s++) {
+			depVars.set(s, sample.ys[s]);
+		}
+		return true;
+	}
+
+	/**
+	 * @param times
+	 *            Gets each of the times, which never decrease
+	 * @return Index of the first of the first {@code n} times which is at
+	 *         least v, or more than v if {@code above}, or n if there is none
+	 */
+	private static int search(IntToDoubleFunction times, int n, double v, boolean above) {
+		int lo = 0;
+		int hi = n;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			double t = times.applyAsDouble(mid);
+			if (t < v || above && t == v) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Not supported, samples have to be added whole.
+	 */
+	@Override
+	public void setIndependent(Collection<Double> c) {
+		throw new UnsupportedOperationException("Samples of a time series dataset must be added with addRow");
+	}
+
+	/**
+	 * Not supported, samples have to be added whole.
+	 */
+	@Override
+	public void addToIndependent(Double t) {
+		throw new UnsupportedOperationException("Samples of a time series dataset must be added with addRow");
+	}
+
+	/**
+	 * The smallest, largest, sum and count of each dependent dataset's values
+	 * in each bucket of one size. Buckets with no samples aren't kept.
+	 */
+	private static final class Rollup {
+		private final long millis;
+		private long[] starts = new long[16];
+		private int count = 0;
+
+		/**
+		 * End of the last bucket, so a sample in it is found without dividing.
+		 */
+		private long end = Long.MIN_VALUE;
+		private final List<double[]> mins = new ArrayList<>();
+		private final List<double[]> maxs = new ArrayList<>();
+		private final List<double[]> sums = new ArrayList<>();
+		private final List<long[]> counts = new ArrayList<>();
+
+		Rollup(long millis) {
+			this.millis = millis;
+		}
+
+		/**
+		 * Adds a sample to the last bucket, or to a new bucket after it if
+		 * the sample's time is past the end of the last bucket.
+		 */
+		void add(long time, double[] y) {
+			if (count == 0 || time >= end) {
+				long start = Math.floorDiv(time, millis) * millis;
+				if (count == starts.length) {
+					int capacity = count + (count >> 1);
+					starts = Arrays.copyOf(starts, capacity);
+					for (int s = 0; s < mins.size(); s++) {
+						mins.set(s, Arrays.copyOf(mins.get(s), capacity));
+						maxs.set(s, Arrays.copyOf(maxs.get(s), capacity));
+						sums.set(s, Arrays.copyOf(sums.get(s), capacity));
+						counts.set(s, Arrays.copyOf(counts.get(s), capacity));
+					}
+				}
+				starts[count] = start;
+				end = start + millis;
+				for (int s = 0; s < mins.size(); s++) {
+					mins.get(s)[count] = Double.POSITIVE_INFINITY;
+					maxs.get(s)[count] = Double.NEGATIVE_INFINITY;
+					sums.get(s)[count] = 0;
+					counts.get(s)[count] = 0;
+				}
+				count++;
+			}
+			int b = count - 1;
+			for (int s = 0; s < y.length; s++) {
+				double d = y[s];
+				if (!Double.isNaN(d)) {
+					mins.get(s)[b] = Math.min(mins.get(s)[b], d);
+					maxs.get(s)[b] = Math.max(maxs.get(s)[b], d);
+					sums.get(s)[b] += d;
+					counts.get(s)[b]++;
+				}
+			}
+		}
+
+		/**
+		 * Rolls up a new dependent dataset's values for samples already
+		 * recorded.
+		 */
+		void addSeries(DoubleList times, SegmentedColumn column) {
+			int capacity = starts.length;
+			double[] min = new double[capacity];
+			double[] max = new double[capacity];
+			double[] sum = new double[capacity];
+			long[] n = new long[capacity];
+			Arrays.fill(min, Double.POSITIVE_INFINITY);
+			Arrays.fill(max, Double.NEGATIVE_INFINITY);
+			int b = 0;
+			for (int i = 0; i < times.size(); i++) {
+				long start = Math.floorDiv((long) times.getDouble(i), millis) * millis;
+				while (starts[b] != start) {
+					b++;
+				}
+				double d = column.getDouble(i);
+				if (!Double.isNaN(d)) {
+					min[b] = Math.min(min[b], d);
+					max[b] = Math.max(max[b], d);
+					sum[b] += d;
+					n[b]++;
+				}
+			}
+			mins.add(min);
+			maxs.add(max);
+			sums.add(sum);
+			counts.add(n);
+		}
+
+		void removeSeries(int s) {
+			mins.remove(s);
+			maxs.remove(s);
+			sums.remove(s);
+			counts.remove(s);
+		}
+
+		double get(int s, int b, AggregatingDataSet.Aggregate aggregate) {
+			return aggregate(mins.get(s)[b], maxs.get(s)[b], sums.get(s)[b], counts.get(s)[b], aggregate);
+		}
+
+		private static double aggregate(double min, double max, double sum, long n,
+				AggregatingDataSet.Aggregate aggregate) {
+			switch (aggregate) {
+			case SUM:
+				return sum;
+			case COUNT:
+				return n;
+			case MIN:
+				return n == 0 ? Double.NaN : min;
+			case MAX:
+				return n == 0 ? Double.NaN : max;
+			case MEAN:
+				return n == 0 ? Double.NaN : sum / n;
+			default:
+				throw new IllegalArgumentException("Unknown aggregate: " + aggregate);
+			}
+		}
+
+		/**
+		 * @return The buckets as they are now, which can be read without
+		 *         holding the dataset's lock
+		 */
+		View view() {
+			return new View(this);
+		}
+
+		void checkBucket(int bucket) {
+			if (bucket < 0 || bucket >= count) {
+				throw new IndexOutOfBoundsException("Bucket: " + bucket + ", Buckets: " + count);
+			}
+		}
+
+		/**
+		 * Immutable view of a rollup's buckets. Only the last bucket changes
+		 * as samples are added, and the arrays are replaced rather than grown
+		 * in place, so the view shares the arrays and copies only the last
+		 * bucket.
+		 */
+		private static final class View {
+			private final long[] starts;
+			private final int count;
+			private final double[][] mins;
+			private final double[][] maxs;
+			private final double[][] sums;
+			private final long[][] counts;
+
+			/**
+			 * The last bucket of each dependent dataset, smallest, largest,
+			 * sum and count.
+			 */
+			private final double[][] last;
+
+			private View(Rollup rollup) {
+				starts = rollup.starts;
+				count = rollup.count;
+				int series = rollup.mins.size();
+				mins = rollup.mins.toArray(new double[series][]);
+				maxs = rollup.maxs.toArray(new double[series][]);
+				sums = rollup.sums.toArray(new double[series][]);
+				counts = rollup.counts.toArray(new long[series][]);
+				last = new double[series][];
+				for (int s = 0; s < series && count > 0; s++) {
+					int b = count - 1;
+					last[s] = new double[] { mins[s][b], maxs[s][b], sums[s][b], counts[s][b] };
+				}
+			}
+
+			double get(int s, int b, AggregatingDataSet.Aggregate aggregate) {
+				if (b == count - 1) {
+					double[] l = last[s];
+					return aggregate(l[0], l[1], l[2], (long) l[3], aggregate);
+				}
+				return aggregate(mins[s][b], maxs[s][b], sums[s][b], counts[s][b], aggregate);
+			}
+		}
+	}
+
+	/**
+	 * Rows chosen to publish, published once they are used.
+	 */
+	private static final class Sample {
+		private final long number;
+		private final int rows;
+		private final double min;
+		private final double max;
+		private final int width;
+		private Resolution resolution = null;
+		private final DoubleColumn x = new DoubleColumn();
+		private final DoubleColumn[] ys;
+
+		private Sample(long number, int rows, double min, double max, int width, int series) {
+			this.number = number;
+			this.rows = rows;
+			this.min = min;
+			this.max = max;
+			this.width = width;
+			ys = new DoubleColumn[series];
+		}
+	}
+
+	/**
+	 * Snapshots of the samples and rollups as they were when rows started
+	 * being chosen, which never change, so rows can be chosen from them
+	 * without holding the dataset's lock.
+	 */
+	private static final class Recording {
+		private final long number;
+		private final DoubleList times;
+		private final List<DoubleList> values;
+		private final Rollup.View[] rollups;
+		private final AggregatingDataSet.Aggregate aggregate;
+
+		private Recording(long number, DoubleList times, List<DoubleList> values, Rollup.View[] rollups,
+				AggregatingDataSet.Aggregate aggregate) {
+			this.number = number;
+			this.times = times;
+			this.values = values;
+			this.rollups = rollups;
+			this.aggregate = aggregate;
+		}
+
+		/**
+		 * @return The samples in the given range, plus one either side of it
+		 *         so lines run off the edges of the graph, or if there are too
+		 *         many, the buckets in the range of the finest rollup with
+		 *         few enough of them
+		 */
+		Sample sample(double xMin, double xMax, int width) {
+			int rows = times.size();
+			Sample sample = new Sample(number, rows, xMin, xMax, width, values.size());
+			int points = width * POINTS_PER_PIXEL;
+
+			int from = Math.max(0, search(times::getDouble, rows, xMin, false) - 1);
+			int to = Math.min(rows, search(times::getDouble, rows, xMax, true) + 1);
+			Rollup.View rollup = null;
+			if (to - from > points) {
+				for (Resolution r : Resolution.values()) {
+					rollup = rollups[r.ordinal()];
+					sample.resolution = r;
+					// Buckets are found by their start, so the bucket holding
+					// xMin starts before it
+					long[] starts = rollup.starts;
+					from = Math.max(0, search(b -> starts[b], rollup.count, xMin - r.getMillis(), false) - 1);
+					to = Math.min(rollup.count, search(b -> starts[b], rollup.count, xMax, true) + 1);
+					if (to - from <= points) {
+						break;
+					}
+				}
+			}
+
+			int n = Math.max(0, to - from);
+			sample.x.resize(n);
+			if (rollup == null) {
+				times.getDoubles(from, sample.x.array(), 0, n);
+			} else {
+				double[] x = sample.x.array();
+				for (int i = 0; i < n; i++) {
+					x[i] = rollup.starts[from + i];
+				}
+			}
+			for (int s = 0; s < values.size(); s++) {
+				DoubleColumn sy = new DoubleColumn();
+				sy.resize(n);
+				if (rollup == null) {
+					values.get(s).getDoubles(from, sy.array(), 0, n);
+				} else {
+					double[] y = sy.array();
+					for (int i = 0; i < n; i++) {
+						y[i] = rollup.get(s, from + i, aggregate);
+					}
+				}
+				sample.ys[s] = sy;
+			}
+			return sample;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package data;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Hands the viewport a graph sets over to a dataset which samples its rows
+ * for it, see {@code ViewportModel}, without the graph waiting for the
+ * dataset's lock. Graphs set the viewport on the event dispatch thread, which
+ * would otherwise wait behind every batch of rows being added, so there the
+ * viewport is only handed over, and the dataset samples it on a background
+ * thread shared by every dataset and updates its observers once the sample
+ * is published. On any other thread the dataset samples straight away, so
+ * whoever set the viewport reads the new sample after.
+ *
+ * Viewports set while a sample is pending are merged, only the last one is
+ * sampled.
+ *
+ * All methods in this class are thread safe.
+ */
+final class ViewportSampler {
+
+	/**
+	 * Takes the samples of every dataset for viewports set on the event
+	 * dispatch thread.
+	 */
+	private static final ExecutorService SAMPLING = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "Dataset sampler");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * The x range and width in pixels of a viewport.
+	 */
+	static final class Viewport {
+		final double min;
+		final double max;
+		final int width;
+
+		Viewport(double min, double max, int width) {
+			this.min = min;
+			this.max = max;
+			this.width = width;
+		}
+
+		/**
+		 * @return True if the viewport has the given range and width
+		 */
+		boolean is(double min, double max, int width) {
+			return this.min == min && this.max == max && this.width == width;
+		}
+	}
+
+	private final AtomicReference<Viewport> viewport = new AtomicReference<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private final Runnable sample;
+
+	/**
+	 * @param sample
+	 *            Samples the dataset on the background thread for the
+	 *            viewport last set, and updates its observers
+	 */
+	ViewportSampler(Runnable sample) {
+		this.sample = sample;
+	}
+
+	/**
+	 * @return The viewport last set, or null if no graph has set one
+	 */
+	Viewport getViewport() {
+		return viewport.get();
+	}
+
+	/**
+	 * Hands over a viewport. On the event dispatch thread the sample is taken
+	 * on the background thread, and this returns straight away.
+	 *
+	 * @param min
+	 *            Smallest visible x value
+	 * @param max
+	 *            Largest visible x value
+	 * @param width
+	 *            Width of the drawing area in pixels
+	 * @return True if the caller should take the sample itself, before
+	 *         returning, as it isn't on the event dispatch thread
+	 */
+	boolean setViewport(double min, double max, int width) {
+		viewport.set(new Viewport(min, max, width));
+		if (!SwingUtilities.isEventDispatchThread()) {
+			return true;
+		}
+		schedule();
+		return false;
+	}
+
+	/**
+	 * Takes a sample on the background thread, unless one is already
+	 * pending.
+	 */
+	void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			SAMPLING.execute(() -> {
+				// Cleared first, so a viewport set while sampling is sampled
+				// again after
+				scheduled.set(false);
+				sample.run();
+			});
+		}
+	}
+}
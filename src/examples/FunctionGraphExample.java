@@ -0,0 +1,29 @@
+package examples;
+
+import graphs.LineGraph;
+
+import javax.swing.SwingUtilities;
+
+import data.FunctionDataSet;
+
+/**
+ * Demonstrates drawing a function over a huge range. The function is only
+ * evaluated at the x values the graph has room to show, so nothing depends on
+ * the size of the range.
+ */
+public class FunctionGraphExample {
+
+	public static void main(String[] args) {
+		FunctionDataSet d = new FunctionDataSet(-1e6, 1e6);
+		d.addDoubleFunction(x -> Math.sin(x) / x);
+
+		SwingUtilities.invokeLater(() -> {
+			LineGraph g = new LineGraph();
+			g.setDataModel(d);
+			g.setTitle("Function graph example");
+			g.setDrawPoints(false);
+			g.setSeriesName(0, "sin(x) / x");
+			new JFrameWrapper(g);
+		});
+	}
+}
@@ -5,7 +5,8 @@ import java.awt.AlphaComposite;
 import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Polygon;
-import java.util.List;
+
+import data.DoubleColumn;
 
 /**
  * Class to draw a line graph with the area under a line connected chart filled
@@ -34,23 +35,23 @@ public class AreaLineGraph extends LineGraph {
 		Composite oldComposite = g.getComposite();
 		g.setComposite(composite);
 
-		Double xPrev = null;
-		Double yPrev = null;
+		double xPrev;
+		double yPrev;
 		double yOrigin = convert(Math.max(0d, yMinVal), false);
 
 		for (int i = 0; i < series.size(); i++) {
 			Polygon p;
 			Series set = series.get(i);
-			List<Double> yPlotPoints = set.getyPlotPoints();
+			DoubleColumn yPlotPoints = set.getyPlotPoints();
 
-			xPrev = xPlotPoints.get(0);
-			yPrev = yPlotPoints.get(0);
+			xPrev = xPlotPoints.getDouble(0);
+			yPrev = yPlotPoints.getDouble(0);
 			g.setColor(utils.ColorGenerator.convertToAlpha(set.getColor(), (int) (alpha * alphaFraction)));
 			for (int j = 1; j < xPlotPoints.size(); j++) {
 				p = new Polygon();
 
-				double nx = xPlotPoints.get(j);
-				double ny = yPlotPoints.get(j);
+				double nx = xPlotPoints.getDouble(j);
+				double ny = yPlotPoints.getDouble(j);
 
 				p.addPoint((int) Math.rint(xPrev), (int) Math.rint(yPrev));
 				p.addPoint((int) Math.rint(nx), (int) Math.rint(ny));
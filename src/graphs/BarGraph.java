@@ -6,12 +6,15 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Stroke;
 import java.awt.geom.Path2D;
-import java.util.List;
+
+import data.DoubleColumn;
 
 /**
  * Class for drawing bar graphs. Extends {@code CategoricGraph} so the dataset
  * this class requires is a collection of strings for the independent variables,
- * and a list of lists of doubles.
+ * and a list of lists of doubles. To chart raw events, observe an
+ * {@code AggregatingDataSet}, which gives one bar per category of the
+ * aggregate it is set to.
  */
 public class BarGraph extends CategoricGraph {
 
@@ -124,22 +127,22 @@ public class BarGraph extends CategoricGraph {
 	 */
 	@Override
 	protected void drawGraph(Graphics2D g) {
-		int numDependents = dataModel.getDependent().size();
+		int numDependents = snapshot.getDependent().size();
 
 		double barWidth = (valPerIndependent - 2 * barGap) / numDependents;
 		for (int i = 0; i < series.size(); i++) {
 			Series set = series.get(i);
-			List<Double> yPlotPoints = set.getyPlotPoints();
+			DoubleColumn yPlotPoints = set.getyPlotPoints();
 
 			Color alphaColor = utils.ColorGenerator.convertToAlpha(set.getColor(), barAlpha);
 			Color fullColor = utils.ColorGenerator.convertToAlpha(highlightColor == null ? set.getColor() : highlightColor,
 					barHighlightAlpha);
 
-			int lim = Math.min(yPlotPoints.size(), dataModel.getIndependent().size());
+			int lim = Math.min(yPlotPoints.size(), snapshot.getIndependent().size());
 			for (int j = 0; j < lim; j++) {
 				Path2D.Double p = new Path2D.Double();
 
-				double yTop = yPlotPoints.get(j).intValue();
+				double yTop = (int) yPlotPoints.getDouble(j);
 				double yBase = convert(0, false);
 
 				double x1 = (convert(j * valPerIndependent + barGap + i * barWidth, true));
@@ -1,22 +1,41 @@
 
 package graphs;
 
+import interfaces.CategoryList;
+
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.font.FontRenderContext;
 import java.awt.geom.AffineTransform;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Class representing all categoric graphs. The data model it requires is a
  * collection of strings for the independent values, and a collection of
  * collections of doubles for the dependent values.
+ *
+ * The width of each label, for making room for the labels, is measured once
+ * and kept until the label font changes, up to {@code MAX_CACHED_LABELS}
+ * labels, and the widest label is only looked for again when the data
+ * changes. Whether the labels are drawn rotated is decided with the font
+ * metrics of the graphics they are drawn with. If the independent values are
+ * a {@code CategoryList}, only the distinct categories are measured, found
+ * from the codes of the rows.
  */
 public abstract class CategoricGraph extends XYGraph<String> {
 
 	private static final long serialVersionUID = 3085485342069260175L;
 
+	/**
+	 * Most label widths kept, so data with ever more distinct labels doesn't
+	 * keep the width of every label it has had.
+	 */
+	private static final int MAX_CACHED_LABELS = 1024;
+
 	/**
 	 * The "starting" point for the graph. This is the minimum value to use for
 	 * calculating how to scale and draw the graph as a pair of axis.
@@ -29,6 +48,19 @@ public abstract class CategoricGraph extends XYGraph<String> {
 	 */
 	protected double valPerIndependent = 1d;
 
+	/**
+	 * Widths of the labels measured so far in {@code measuredFont}.
+	 */
+	private final Map<String, Double> labelWidths = new HashMap<>();
+	private Font measuredFont = null;
+
+	/**
+	 * Width of the widest label in the snapshot with version
+	 * {@code measuredVersion}, which is -1 if it hasn't been found yet.
+	 */
+	private double maxLabelWidth = 0;
+	private long measuredVersion = -1;
+
 	/**
 	 * Called to process the independent data. Simply iterates through the
 	 * length of the {@code dataModel}'s independent dataset and adds the
@@ -41,9 +73,9 @@ public abstract class CategoricGraph extends XYGraph<String> {
 	 */
 	protected void processStringData(List<String> list) {
 		xMinVal = 0d;
-		xMaxVal = (double) dataModel.getIndependent().size();
-		for (int i = 0; i < dataModel.getIndependent().size(); i++) {
-			xPlotPoints.add(convert(i + 1, true));
+		xMaxVal = (double) list.size();
+		for (int i = 0; i < list.size(); i++) {
+			xPlotPoints.addDouble(convert(i + 1, true));
 		}
 	}
 
@@ -54,15 +86,7 @@ public abstract class CategoricGraph extends XYGraph<String> {
 	 */
 	protected double convert(double d, boolean horizontal) {
 		if (drawingPanel.getHeight() != 0) {
-			AffineTransform aff = new AffineTransform();
-			FontRenderContext fontRenderContext = new FontRenderContext(aff, true, true);
-			Font font = fontLoader.getLabelFont();
-
-			double maxTextWidth = 0;
-			for (String s : dataModel.getIndependent()) {
-				maxTextWidth = Math.max(font.getStringBounds(s, fontRenderContext).getWidth(), maxTextWidth);
-			}
-			maxTextWidth += 5;
+			double maxTextWidth = maxLabelWidth() + 5;
 			double yLoc = super.convert(zeroIsInRange(false) ? 0d : yMinVal, false);
 
 			if (yLoc + maxTextWidth > drawingPanel.getHeight()) {
@@ -102,18 +126,15 @@ public abstract class CategoricGraph extends XYGraph<String> {
 		boolean drawHorizontal = true;
 		FontMetrics fm = g.getFontMetrics();
 
-		for (String s : dataModel.getIndependent()) {
-			if (fm.stringWidth(s) > columnWidth) {
-				drawHorizontal = false;
-				break;
-			}
+		if (widestLabel(fm::stringWidth) > columnWidth) {
+			drawHorizontal = false;
 		}
 
-		for (int i = 0; i < dataModel.getIndependent().size(); i++) {
+		for (int i = 0; i < snapshot.getIndependent().size(); i++) {
 			double xLoc = convert(firstPoint + valPerIndependent * i + valPerIndependent / 2d, true);
 			double yLoc = convert(zeroIsInRange(false) ? 0d : yMinVal, false);
 
-			String text = dataModel.getIndependent().get(i);
+			String text = snapshot.getIndependent().get(i);
 
 			if (drawHorizontal) {
 				g.drawString(text, (int) (xLoc - fm.stringWidth(text) / 2), (int) (yLoc + fm.getHeight()));
@@ -129,6 +150,68 @@ public abstract class CategoricGraph extends XYGraph<String> {
 		}
 	}
 
+	/**
+	 * Finds the width of the widest label in the label font, measuring only
+	 * labels which haven't been measured in it before.
+	 * 
+	 * @return Width of the widest independent value of the snapshot
+	 */
+	protected double maxLabelWidth() {
+		Font font = fontLoader.getLabelFont();
+		if (!font.equals(measuredFont)) {
+			labelWidths.clear();
+			measuredFont = font;
+			measuredVersion = -1;
+		}
+		if (measuredVersion == snapshot.getVersion()) {
+			return maxLabelWidth;
+		}
+		FontRenderContext fontRenderContext = new FontRenderContext(new AffineTransform(), true, true);
+		maxLabelWidth = widestLabel(s -> labelWidth(s, font, fontRenderContext));
+		measuredVersion = snapshot.getVersion();
+		return maxLabelWidth;
+	}
+
+	/**
+	 * @param width
+	 *            Measures a label
+	 * @return Width of the widest independent value of the snapshot
+	 */
+	private double widestLabel(ToDoubleFunction<String> width) {
+		List<String> labels = snapshot.getIndependent();
+		double max = 0;
+		if (labels instanceof CategoryList) {
+			// Only measure the categories some row still has
+			CategoryList categories = (CategoryList) labels;
+			boolean[] used = new boolean[categories.getCategoryCount()];
+			int[] codes = new int[Math.min(1024, categories.size())];
+			for (int start = 0; start < categories.size(); start += codes.length) {
+				int n = Math.min(codes.length, categories.size() - start);
+				categories.getCodes(start, codes, 0, n);
+				for (int i = 0; i < n; i++) {
+					used[codes[i]] = true;
+				}
+			}
+			for (int code = 0; code < used.length; code++) {
+				if (used[code]) {
+					max = Math.max(max, width.applyAsDouble(categories.getCategory(code)));
+				}
+			}
+		} else {
+			for (String s : labels) {
+				max = Math.max(max, width.applyAsDouble(s));
+			}
+		}
+		return max;
+	}
+
+	private double labelWidth(String s, Font font, FontRenderContext fontRenderContext) {
+		if (labelWidths.size() >= MAX_CACHED_LABELS) {
+			labelWidths.clear();
+		}
+		return labelWidths.computeIfAbsent(s, k -> font.getStringBounds(k, fontRenderContext).getWidth());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -148,7 +231,7 @@ public abstract class CategoricGraph extends XYGraph<String> {
 		vPadMax = null;
 
 		processDependents();
-		processStringData(dataModel.getIndependent());
+		processStringData(snapshot.getIndependent());
 		yRangeAuto = false;
 
 		if (yMinVal != null) {
@@ -1,21 +1,102 @@
-
 package graphs;
 
+import interfaces.DoubleList;
+import interfaces.ViewportModel;
+
+import java.util.Arrays;
+import java.util.List;
+
+import data.DoubleColumn;
+
 /**
  * Class to represent a continuous vs. continuous chart. Requires a data model
  * with a collection of doubles for its independent values, and a collection of
  * collections of doubles for the dependent values.
+ *
+ * If the data model is a {@code ViewportModel}, it is told the visible x range
+ * and the size of the drawing area before its values are read, so it only
+ * has to provide values the graph can show.
+ *
+ * If the only changes to the data model since the points were last calculated
+ * are rows being appended, and the new rows don't change the axis ranges, only
+ * the new rows are converted to screen positions. Appending to a large
+ * dataset then only costs as much as the rows appended. Rows dropped from the
+ * start by a sliding window are just removed from the points, but fitted axis
+ * ranges are fitted again to the rows left, so they follow the window rather
+ * than only ever growing.
+ *
+ * If the x range is set rather than fitted to the data, only the rows inside
+ * it are converted and drawn, plus one either side so lines leaving the
+ * drawing area are still drawn. If the data model keeps track of the order of
+ * its independent values the rows are found by binary search, otherwise
+ * every row is converted.
+ *
+ * If a graph joining up its points has sorted independent values and many
+ * rows behind each pixel, such as an overview of a long recording, the rows
+ * are converted in blocks of a power of two rows, each becoming the smallest
+ * and largest value in it. Datasets keeping summaries of their columns give
+ * these without reading the rows, so the cost depends on the width of the
+ * graph rather than the number of rows.
  */
 public abstract class ContinuousGraph extends XYGraph<Double> {
 	private static final long serialVersionUID = 1805212588655879298L;
 
+	/**
+	 * Pixels either side of the drawing area rows are still converted for,
+	 * so points drawn as shapes are drawn whole at the edges.
+	 */
+	private static final double CULL_MARGIN = 50d;
+
+	/**
+	 * Fewest rows behind each pixel of the drawing area before a graph joining
+	 * up its points converts them in blocks. Matches the smallest block the
+	 * dataset's columns keep a summary of.
+	 */
+	private static final int MIN_BLOCK = 64;
+
+	/**
+	 * Version of the snapshot the current points were calculated from, or -1
+	 * if they have to be calculated from scratch.
+	 */
+	private long projectedVersion = -1;
+
+	/**
+	 * Row offset of the snapshot the current points were calculated from.
+	 */
+	private long projectedOffset = 0;
+
+	/**
+	 * Everything other than the data the current points depend on, see
+	 * {@code projectionKey}.
+	 */
+	private double[] projectedKey = null;
+
 	/*
 	 * (non-Javadoc)
-	 * 
+	 *
 	 * @see graphs.Graph#convertPoints()
 	 */
 	@Override
 	protected void convertPoints() {
+		if (dataModel instanceof ViewportModel) {
+			ViewportModel viewport = (ViewportModel) dataModel;
+			double min = xRangeAuto || xMinVal == null ? viewport.getDomainMin() : xMinVal;
+			double max = xRangeAuto || xMaxVal == null ? viewport.getDomainMax() : xMaxVal;
+			viewport.setViewport(min, max, drawingPanel.getWidth(), drawingPanel.getHeight());
+			snapshot = dataModel.getSnapshot();
+		}
+
+		if (!canAppend() || !appendPoints()) {
+			convertAllPoints();
+		}
+	}
+
+	/**
+	 * Converts every value in the snapshot to a screen position.
+	 */
+	private void convertAllPoints() {
+		double[] before = projectionKey();
+
 		xPlotPoints.clear();
 		for (Series aSeries : series) {
 			aSeries.getyPlotPoints().clear();
@@ -26,7 +107,257 @@ public abstract class ContinuousGraph extends XYGraph<Double> {
 		vPadMin = null;
 		vPadMax = null;
 
-		processNumberData(dataModel.getIndependent(), xRangeAuto, xPlotPoints, true);
+		boolean culled = selectVisibleRows() | selectBlock();
+		processNumberData(snapshot.getIndependent(), xRangeAuto, xPlotPoints, true);
 		processDependents();
+
+		// If the ranges grew part way through, the points converted before
+		// they did are out of date, so the next update has to start again.
+		// Appended rows can't be added to points for only some of the rows.
+		projectedKey = projectionKey();
+		projectedVersion = !culled && Arrays.equals(before, projectedKey) ? snapshot.getVersion() : -1;
+		projectedOffset = snapshot.getRowOffset();
+	}
+
+	/**
+	 * Chooses the rows of the snapshot to convert to points. If the x range is
+	 * set, only the rows inside it are chosen. If the independent values are
+	 * sorted they are found by binary search, as a range of rows with one more
+	 * either side. Otherwise, unless the graph joins up its points in row
+	 * order, they are found by binary search of the order of the rows.
+	 *
+	 * @return True if only some of the rows are chosen
+	 */
+	private boolean selectVisibleRows() {
+		plotFrom = 0;
+		plotTo = Integer.MAX_VALUE;
+		plotRows = null;
+		if (xRangeAuto || xMinVal == null || xMaxVal == null) {
+			return false;
+		}
+		double pad = (xMaxVal - xMinVal) * prcntMargin * (yLabel != null ? 2 : 1);
+		double min = xMinVal - pad;
+		double max = xMaxVal + pad;
+		double margin = (max - min) / Math.max(1, drawingPanel.getWidth()) * CULL_MARGIN;
+		min -= margin;
+		max += margin;
+		if (!(min <= max)) {
+			return false;
+		}
+
+		DoubleList x = toDoubleList(snapshot.getIndependent());
+		int size = x.size();
+		if (snapshot.isIndependentSorted()) {
+			int from = Math.max(0, firstAtLeast(x, null, min) - 1);
+			int to = Math.min(size, firstAbove(x, null, max) + 1);
+			if (from == 0 && to == size) {
+				return false;
+			}
+			plotFrom = from;
+			plotTo = to;
+			return true;
+		}
+		int[] order = joinsPoints() ? null : snapshot.getIndependentOrder();
+		if (order == null) {
+			return false;
+		}
+		int from = firstAtLeast(x, order, min);
+		int to = firstAbove(x, order, max);
+		// Values which aren't finite are drawn at the edge of the axis, and
+		// sort before and after every other value
+		int finiteFrom = firstAtLeast(x, order, -Double.MAX_VALUE);
+		int finiteTo = firstAbove(x, order, Double.MAX_VALUE);
+		int count = finiteFrom + to - from + size - finiteTo;
+		if (count == size) {
+			return false;
+		}
+		if (count == 0) {
+			// Keep a point so the axes are still drawn
+			from = Math.min(from, size - 1);
+			to = from + 1;
+			count = 1;
+		}
+		plotRows = new int[count];
+		System.arraycopy(order, 0, plotRows, 0, finiteFrom);
+		System.arraycopy(order, from, plotRows, finiteFrom, to - from);
+		System.arraycopy(order, finiteTo, plotRows, finiteFrom + to - from, count - finiteFrom - (to - from));
+		Arrays.sort(plotRows);
+		return true;
+	}
+
+	/**
+	 * Chooses the size of the blocks of rows converted to points if there are
+	 * at least {@code MIN_BLOCK} chosen rows behind each pixel of the drawing
+	 * area. Blocks are a power of two rows, the largest with at least as many
+	 * blocks as pixels. Only if the independent values are sorted and the
+	 * graph joins up its points, as the lines between the rows of a block
+	 * would cover the pixels between its smallest and largest value anyway.
+	 *
+	 * @return True if the rows are converted in blocks
+	 */
+	private boolean selectBlock() {
+		plotBlock = 0;
+		if (plotRows != null || !joinsPoints() || !snapshot.isIndependentSorted()) {
+			return false;
+		}
+		int size = snapshot.getIndependent().size();
+		long rows = Math.min(plotTo, size) - (long) Math.min(plotFrom, size);
+		long perPixel = rows / Math.max(1, drawingPanel.getWidth());
+		if (perPixel < MIN_BLOCK) {
+			return false;
+		}
+		plotBlock = Integer.highestOneBit((int) perPixel);
+		return true;
+	}
+
+	/**
+	 * @return True if the graph draws lines between the points of consecutive
+	 *         rows, in which case it needs every row if the independent values
+	 *         aren't sorted
+	 */
+	protected boolean joinsPoints() {
+		return false;
+	}
+
+	/**
+	 * @return Index in {@code order}, or in {@code x} if {@code order} is
+	 *         null, of the first value which is at least {@code min}
+	 */
+	private static int firstAtLeast(DoubleList x, int[] order, double min) {
+		int lo = 0;
+		int hi = order == null ? x.size() : order.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			// NaN values sort last
+			if (x.getDouble(order == null ? mid : order[mid]) < min) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return Index in {@code order}, or in {@code x} if {@code order} is
+	 *         null, of the first value which is more than {@code max}
+	 */
+	private static int firstAbove(DoubleList x, int[] order, double max) {
+		int lo = 0;
+		int hi = order == null ? x.size() : order.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (x.getDouble(order == null ? mid : order[mid]) <= max) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return True if nothing but rows being appended, or dropped from the
+	 *         start, has happened to the data model since the points were
+	 *         calculated, and nothing else the points depend on has changed
+	 */
+	private boolean canAppend() {
+		if (pendingChange != null && !pendingChange.isAppendOrShift()) {
+			return false;
+		}
+		if (projectedVersion < 0 || snapshot.getStructureVersion() > projectedVersion
+				|| snapshot.getVersion() < projectedVersion) {
+			return false;
+		}
+		long dropped = snapshot.getRowOffset() - projectedOffset;
+		List<List<Double>> dependent = snapshot.getDependent();
+		if (dropped < 0 || series.size() != dependent.size()
+				|| !keepsPoints(xPlotPoints.size(), dropped, snapshot.getIndependent().size())) {
+			return false;
+		}
+		for (int i = 0; i < series.size(); i++) {
+			if (!keepsPoints(series.get(i).getyPlotPoints().size(), dropped, dependent.get(i).size())) {
+				return false;
+			}
+		}
+		return Arrays.equals(projectedKey, projectionKey());
+	}
+
+	/**
+	 * @return True if once the dropped rows are removed from the points, every
+	 *         point left is still in the dataset
+	 */
+	private static boolean keepsPoints(int points, long dropped, int size) {
+		return dropped <= points && points - dropped <= size;
+	}
+
+	/**
+	 * Converts only the values appended since the points were last
+	 * calculated, after removing the points for rows which have been dropped.
+	 *
+	 * @return False if the new values, or the rows dropped, changed the axis
+	 *         ranges, in which case every point has to be converted again
+	 */
+	private boolean appendPoints() {
+		int dropped = (int) (snapshot.getRowOffset() - projectedOffset);
+		DoubleList x = toDoubleList(snapshot.getIndependent());
+		List<List<Double>> dependent = snapshot.getDependent();
+		DoubleList[] y = new DoubleList[series.size()];
+		for (int i = 0; i < y.length; i++) {
+			series.get(i).setValues(dependent.get(i));
+			y[i] = toDoubleList(dependent.get(i));
+		}
+
+		// Without rows dropped only the new values can change the fitted
+		// ranges. Dropped rows may have held the ends of the ranges, so they
+		// are fitted again to the rows left, which columns keeping a summary
+		// of their values answer without reading them all.
+		if (xRangeAuto) {
+			if (dropped > 0) {
+				xMinVal = null;
+				xMaxVal = null;
+				fitRange(x, true);
+			} else {
+				includeInRange(x, xPlotPoints.size(), true);
+			}
+		}
+		if (yRangeAuto) {
+			if (dropped > 0) {
+				yMinVal = null;
+				yMaxVal = null;
+			}
+			for (int i = 0; i < y.length; i++) {
+				if (dropped > 0) {
+					fitRange(y[i], false);
+				} else {
+					includeInRange(y[i], series.get(i).getyPlotPoints().size(), false);
+				}
+			}
+		}
+		roundRangeVals();
+		if (!Arrays.equals(projectedKey, projectionKey())) {
+			return false;
+		}
+
+		xPlotPoints.removeFirst(dropped);
+		projectNumberData(x, xPlotPoints.size(), xPlotPoints, true);
+		for (int i = 0; i < y.length; i++) {
+			DoubleColumn points = series.get(i).getyPlotPoints();
+			points.removeFirst(dropped);
+			projectNumberData(y[i], points.size(), points, false);
+		}
+		projectedVersion = snapshot.getVersion();
+		projectedOffset = snapshot.getRowOffset();
+		return true;
+	}
+
+	/**
+	 * @return The axis ranges, size of the drawing area, margin and label
+	 *         settings, which decide where every value is drawn
+	 */
+	private double[] projectionKey() {
+		return new double[] { xMinVal == null ? Double.NaN : xMinVal, xMaxVal == null ? Double.NaN : xMaxVal,
+				yMinVal == null ? Double.NaN : yMinVal, yMaxVal == null ? Double.NaN : yMaxVal,
+				drawingPanel.getWidth(), drawingPanel.getHeight(), prcntMargin, yLabel == null ? 0 : 1 };
 	}
 }
@@ -2,7 +2,9 @@
 package graphs;
 
 import graphs.DefaultLabel.FontType;
+import interfaces.DataChange;
 import interfaces.DataModel;
+import interfaces.DataSnapshot;
 import interfaces.SwingObserver;
 
 import java.awt.BasicStroke;
@@ -70,6 +72,18 @@ public abstract class Graph<I> extends JPanel implements SwingObserver<I, Double
 	 */
 	protected DataModel<I, Double> dataModel;
 
+	/**
+	 * Snapshot of the data model currently being drawn. Taken each time the
+	 * graph is updated, so drawing never reads the live data model.
+	 */
+	protected DataSnapshot<I, Double> snapshot;
+
+	/**
+	 * Changes to the data model reported since the points to draw were last
+	 * calculated, merged into one. Null if there haven't been any.
+	 */
+	protected DataChange pendingChange;
+
 	/**
 	 * Collection of {@code Series}, where a series contains the meta
 	 * information for a series of dependent data, and also the plotting points
@@ -285,11 +299,22 @@ public abstract class Graph<I> extends JPanel implements SwingObserver<I, Double
 	}
 
 	public void updateDisplay() {
+		updateDisplay(DataChange.reset(0));
+	}
+
+	/**
+	 * Remembers the change until the points are next calculated, so graphs
+	 * which can only recalculate the points affected by the change do so.
+	 */
+	@Override
+	public void updateDisplay(DataChange change) {
+		pendingChange = DataChange.merge(pendingChange, change);
 		repaint();
 	}
 
 	public void removeDataModel() {
 		this.dataModel = null;
+		this.snapshot = null;
 		updated();
 		repaint();
 	}
@@ -429,9 +454,23 @@ public abstract class Graph<I> extends JPanel implements SwingObserver<I, Double
 	 * colours too, if the legend is visible.
 	 */
 	public void updated() {
-		if (dataModel != null) {
+		pendingChange = DataChange.reset(0);
+		updated(dataModel == null ? null : dataModel.getSnapshot());
+	}
+
+	/**
+	 * Re-calculates the points to draw from the given snapshot of the data
+	 * model, and updates the legend.
+	 * 
+	 * @param s
+	 *            Snapshot to draw from, or null if there is no data model
+	 */
+	protected void updated(DataSnapshot<I, Double> s) {
+		snapshot = s;
+		if (s != null) {
 			convertPoints();
 		}
+		pendingChange = null;
 		updateLegendColors();
 		updateLegendNames();
 	}
@@ -4,7 +4,8 @@ package graphs;
 import java.awt.Graphics2D;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
-import java.util.List;
+
+import data.DoubleColumn;
 
 public class LineGraph extends ContinuousGraph {
 	private static final long serialVersionUID = 830656033876679737L;
@@ -16,24 +17,34 @@ public class LineGraph extends ContinuousGraph {
 
 	@Override
 	protected void drawGraph(Graphics2D g) {
-		Double xPrev = null;
-		Double yPrev = null;
+		double xPrev;
+		double yPrev;
 		for (Series set : series) {
-			List<Double> yPlotPoints = set.getyPlotPoints();
-			xPrev = xPlotPoints.get(0);
-			yPrev = yPlotPoints.get(0);
+			DoubleColumn yPlotPoints = set.getyPlotPoints();
+			xPrev = xPlotPoints.getDouble(0);
+			yPrev = yPlotPoints.getDouble(0);
 			g.setColor(set.getColor());
 			drawPoint(xPrev, yPrev, g);
 			for (int j = 1; j < xPlotPoints.size(); j++) {
-				Line2D.Double line = new Line2D.Double(xPrev, yPrev, xPlotPoints.get(j), yPlotPoints.get(j));
+				double x = xPlotPoints.getDouble(j);
+				double y = yPlotPoints.getDouble(j);
+				Line2D.Double line = new Line2D.Double(xPrev, yPrev, x, y);
 				g.draw(line);
-				drawPoint(xPlotPoints.get(j), yPlotPoints.get(j), g);
-				xPrev = xPlotPoints.get(j);
-				yPrev = yPlotPoints.get(j);
+				drawPoint(x, y, g);
+				xPrev = x;
+				yPrev = y;
 			}
 		}
 	}
 
+	/**
+	 * Lines are drawn between the points of consecutive rows.
+	 */
+	@Override
+	protected boolean joinsPoints() {
+		return true;
+	}
+
 	private void drawPoint(double x, double y, Graphics2D g) {
 		if (drawPoints) {
 			Ellipse2D.Double circle = new Ellipse2D.Double(x - pointRadius, y - pointRadius, pointRadius * 2,
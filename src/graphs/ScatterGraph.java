@@ -78,8 +78,8 @@ public class ScatterGraph extends ContinuousGraph {
 			}
 
 			for (int j = 0; j < xPlotPoints.size(); j++) {
-				java.awt.Shape tmpShape = f
-						.apply(new ShapeWrapper(xPlotPoints.get(j), series.get(i).getyPlotPoints().get(j)));
+				java.awt.Shape tmpShape = f.apply(new ShapeWrapper(xPlotPoints.getDouble(j), series.get(i).getyPlotPoints()
+						.getDouble(j)));
 				g.fill(tmpShape);
 			}
 		}
@@ -6,10 +6,12 @@ import java.awt.Stroke;
 import java.util.ArrayList;
 import java.util.List;
 
+import data.DoubleColumn;
+
 public class Series {
 
 	private String seriesName;
-	private List<Double> yPlotPoints = new ArrayList<>();
+	private DoubleColumn yPlotPoints = new DoubleColumn();
 	private List<Double> values = new ArrayList<>();
 	private boolean drawing = true;
 	private Stroke stroke;
@@ -40,7 +42,7 @@ public class Series {
 	/**
 	 * @return the xPlotPoints
 	 */
-	public List<Double> getyPlotPoints() {
+	public DoubleColumn getyPlotPoints() {
 		return yPlotPoints;
 	}
 
@@ -48,7 +50,7 @@ public class Series {
 	 * @param xPlotPoints
 	 *            the xPlotPoints to set
 	 */
-	public void setyPlotPoints(ArrayList<Double> xPlotPoints) {
+	public void setyPlotPoints(DoubleColumn xPlotPoints) {
 		this.yPlotPoints = xPlotPoints;
 	}
 
@@ -0,0 +1,262 @@
+package graphs;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Line2D;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Line graph of a time series, with independent values in milliseconds since
+ * the epoch, such as those of a {@code TimeSeriesDataSet}. The x axis is a
+ * time axis: its ticks and grid lines are at whole seconds, minutes, hours,
+ * days, weeks, months or years, choosing the shortest step which gives no
+ * more ticks than the axis has lines, and are labelled with the time of day
+ * or the date depending on the step. Steps of an hour or more are counted in
+ * the local time of the graph's time zone, so ticks stay on whole hours across
+ * daylight saving changes and in zones offset from UTC by part of an hour, and
+ * months and years are calendar months and years.
+ *
+ * Formatting a time is much slower than formatting a number, so labels are
+ * cached for the current step and only the ticks which come into view while
+ * the graph is panned are formatted.
+ */
+public class TimeSeriesGraph extends LineGraph {
+	private static final long serialVersionUID = -3189056526702553841L;
+
+	private static final long SECOND = 1000L;
+	private static final long MINUTE = 60 * SECOND;
+	private static final long HOUR = 60 * MINUTE;
+	private static final long DAY = 24 * HOUR;
+	private static final long WEEK = 7 * DAY;
+
+	/**
+	 * Nominal lengths of a month and a year, for choosing a step. Ticks are
+	 * placed on calendar months and years.
+	 */
+	private static final long MONTH = 30 * DAY;
+	private static final long YEAR = 365 * DAY;
+
+	/**
+	 * Steps between ticks, shortest first.
+	 */
+	private static final long[] STEPS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, SECOND, 2 * SECOND, 5 * SECOND,
+			10 * SECOND, 15 * SECOND, 30 * SECOND, MINUTE, 2 * MINUTE, 5 * MINUTE, 10 * MINUTE, 15 * MINUTE,
+			30 * MINUTE, HOUR, 2 * HOUR, 3 * HOUR, 6 * HOUR, 12 * HOUR, DAY, 2 * DAY, WEEK, MONTH, 3 * MONTH, YEAR };
+
+	/**
+	 * Largest time, either side of the epoch, drawn as a time axis rather than
+	 * a numeric one. About 3000 years.
+	 */
+	private static final double MAX_TIME = 1e14;
+
+	/**
+	 * Most labels cached, so panning across a long recording doesn't keep
+	 * every label it passed.
+	 */
+	private static final int MAX_CACHED_LABELS = 1024;
+
+	private ZoneId zone = ZoneId.systemDefault();
+
+	/**
+	 * Labels of the ticks formatted for the current step, by time.
+	 */
+	private final Map<Long, String> labels = new HashMap<>();
+	private long labelStep = 0;
+	private DateTimeFormatter formatter = null;
+
+	/**
+	 * @return The time zone ticks are placed and labelled in
+	 */
+	public ZoneId getTimeZone() {
+		return zone;
+	}
+
+	/**
+	 * Sets the time zone ticks are placed and labelled in.
+	 *
+	 * @param zone
+	 *            The time zone, the system default unless changed
+	 */
+	public void setTimeZone(ZoneId zone) {
+		this.zone = Objects.requireNonNull(zone);
+		labels.clear();
+		labelStep = 0;
+		repaint();
+	}
+
+	@Override
+	protected void drawXLabels(Graphics2D g) {
+		if (!isTimeRange()) {
+			super.drawXLabels(g);
+			return;
+		}
+		setupLabelGraphics(g);
+		double loc = convert(Math.max(yMinVal, 0d), false);
+		long step = tickStep(xMaxVal - xMinVal, numAxisLines);
+		for (long t : ticks(step)) {
+			double i = convert(t, true);
+			Line2D.Double line = new Line2D.Double(i, loc - axisLabelSize / 2d, i, loc + axisLabelSize / 2d);
+			g.draw(line);
+			g.drawString(label(t, step), (int) i, (int) (loc + 15));
+		}
+	}
+
+	@Override
+	protected void drawXGridLines(Graphics2D g) {
+		if (!isTimeRange()) {
+			super.drawXGridLines(g);
+			return;
+		}
+		g.setStroke(gridLineStroke);
+		g.setColor(gridLineColor);
+		double screenStart = convert(yMinVal, false);
+		double screenEnd = convert(yMaxVal, false);
+		long step = tickStep(xMaxVal - xMinVal, numXGridLines);
+		for (long t : ticks(step)) {
+			double val = convert(t, true);
+			g.draw(new Line2D.Double(val, screenStart, val, screenEnd));
+		}
+	}
+
+	/**
+	 * @return True if the x range is one which can be drawn as times
+	 */
+	private boolean isTimeRange() {
+		return xMaxVal > xMinVal && Math.abs(xMinVal) < MAX_TIME && Math.abs(xMaxVal) < MAX_TIME;
+	}
+
+	/**
+	 * @return The shortest step giving at most {@code ticks} ticks in the span
+	 */
+	private static long tickStep(double span, int ticks) {
+		double perTick = span / Math.max(ticks, 1);
+		for (long step : STEPS) {
+			if (step >= perTick) {
+				return step;
+			}
+		}
+		return (long) Math.ceil(perTick / YEAR) * YEAR;
+	}
+
+	/**
+	 * @return Times of the ticks in the x range, at multiples of the step in
+	 *         the graph's time zone
+	 */
+	private List<Long> ticks(long step) {
+		List<Long> ticks = new ArrayList<>();
+		long min = (long) Math.ceil(xMinVal);
+		if (step < HOUR) {
+			// Offsets from UTC can change by less than an hour, Lord Howe
+			// Island's by half an hour, so each tick is lined up with the
+			// offset at its own time
+			ZoneRules rules = zone.getRules();
+			for (long t = min;;) {
+				long offset = rules.getOffset(Instant.ofEpochMilli(t)).getTotalSeconds() * SECOND;
+				long tick = Math.floorDiv(t + offset + step - 1, step) * step - offset;
+				if (tick > xMaxVal) {
+					return ticks;
+				}
+				ticks.add(tick);
+				t = tick + 1;
+			}
+		}
+		LocalDateTime first = floor(LocalDateTime.ofInstant(Instant.ofEpochMilli(min), zone), step);
+		long last = Long.MIN_VALUE;
+		for (int i = 0;; i++) {
+			// Counted from the first tick rather than the tick before, so a
+			// tick moved out of a daylight saving gap doesn't move the rest
+			long t = plus(first, step, i).atZone(zone).toInstant().toEpochMilli();
+			if (t > xMaxVal) {
+				return ticks;
+			}
+			if (t >= min && t > last) {
+				ticks.add(t);
+				last = t;
+			}
+		}
+	}
+
+	/**
+	 * @return The latest local time at or before the given one which is a
+	 *         multiple of a step of an hour or more
+	 */
+	private static LocalDateTime floor(LocalDateTime time, long step) {
+		if (step < DAY) {
+			int hours = (int) (step / HOUR);
+			return time.truncatedTo(ChronoUnit.DAYS).withHour(time.getHour() / hours * hours);
+		}
+		LocalDate date = time.toLocalDate();
+		if (step < WEEK) {
+			date = date.minusDays(Math.floorMod(date.toEpochDay(), step / DAY));
+		} else if (step < MONTH) {
+			date = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+		} else if (step < YEAR) {
+			int months = (int) (step / MONTH);
+			date = date.withDayOfMonth(1).withMonth((date.getMonthValue() - 1) / months * months + 1);
+		} else {
+			long years = step / YEAR;
+			date = LocalDate.of((int) (Math.floorDiv(date.getYear(), years) * years), 1, 1);
+		}
+		return date.atStartOfDay();
+	}
+
+	/**
+	 * @return The local time the given number of steps, of an hour or more,
+	 *         after the given one
+	 */
+	private static LocalDateTime plus(LocalDateTime time, long step, int steps) {
+		if (step < DAY) {
+			return time.plusHours(steps * (step / HOUR));
+		} else if (step < WEEK) {
+			return time.plusDays(steps * (step / DAY));
+		} else if (step < MONTH) {
+			return time.plusWeeks(steps * (step / WEEK));
+		} else if (step < YEAR) {
+			return time.plusMonths(steps * (step / MONTH));
+		}
+		return time.plusYears(steps * (step / YEAR));
+	}
+
+	/**
+	 * @return The label of the tick at the given time
+	 */
+	private String label(long time, long step) {
+		if (step != labelStep || labels.size() >= MAX_CACHED_LABELS) {
+			labels.clear();
+			labelStep = step;
+			formatter = DateTimeFormatter.ofPattern(pattern(step)).withZone(zone);
+		}
+		return labels.computeIfAbsent(time, t -> formatter.format(Instant.ofEpochMilli(t)));
+	}
+
+	/**
+	 * @return Pattern showing the parts of a time which change between ticks
+	 *         of the given step
+	 */
+	private static String pattern(long step) {
+		if (step < SECOND) {
+			return "HH:mm:ss.SSS";
+		} else if (step < MINUTE) {
+			return "HH:mm:ss";
+		} else if (step < DAY) {
+			return "HH:mm";
+		} else if (step < MONTH) {
+			return "MMM d";
+		} else if (step < YEAR) {
+			return "yyyy-MM-dd";
+		}
+		return "yyyy";
+	}
+}
@@ -1,6 +1,9 @@
 
 package graphs;
 
+import interfaces.DataSnapshot;
+import interfaces.DoubleList;
+
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Stroke;
@@ -11,6 +14,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import utils.ColorGenerator;
+import data.DoubleColumn;
 import utils.DoubleCheck;
 import utils.GraphicsAuxiliary;
 
@@ -37,9 +41,34 @@ public abstract class XYGraph<E> extends Graph<E> {
 	protected boolean drawYGridLines = true;
 	protected int numYGridLines = 10;
 
-	protected ArrayList<Double> xPlotPoints = new ArrayList<>();
+	protected DoubleColumn xPlotPoints = new DoubleColumn();
 	// Y plot points stored in series arraylist
 
+	/**
+	 * Rows of the snapshot which are converted to points, the rows from
+	 * {@code plotFrom} up to {@code plotTo}, or if {@code plotRows} isn't null
+	 * only the rows it lists, in order. Every row unless a graph zoomed in on
+	 * part of its data chooses otherwise.
+	 */
+	protected int plotFrom = 0;
+	protected int plotTo = Integer.MAX_VALUE;
+	protected int[] plotRows = null;
+
+	/**
+	 * If more than 0, the plotted rows are converted in blocks of this many
+	 * rows, starting at multiples of it counted from the first row ever added,
+	 * each block becoming two points. The x values of the first and last row
+	 * of the block, with the smallest and then the largest y value in it, or
+	 * NaN if it has no finite y values.
+	 */
+	protected int plotBlock = 0;
+
+	/**
+	 * Values are copied into this a block at a time while being scanned, so
+	 * datasets stored in chunks are read in bulk.
+	 */
+	private final double[] scanBuffer = new double[1024];
+
 	/**
 	 * Amount of horizontal "padding" to add around the graph being drawn based
 	 * on {@code prcntMargin}. This is in terms of the data values, it isn't a
@@ -140,17 +169,14 @@ public abstract class XYGraph<E> extends Graph<E> {
 	@Override
 	protected void draw(Graphics2D g) {
 		if (dataModel != null) {
-			int depCount = 0;
-			if (dataModel.getDependent().size() != 0) {
-				for (List<Double> l : dataModel.getDependent()) {
-					if (l.size() != 0) {
-						depCount++;
-						break;
-					}
+			DataSnapshot<E, Double> data = dataModel.getSnapshot();
+			if (hasData(data)) {
+				updated(data);
+				// The data can change while the points are calculated if the
+				// model is a viewport model
+				if (!hasData(snapshot) || xPlotPoints.isEmpty()) {
+					return;
 				}
-			}
-			if (dataModel.getIndependent().size() != 0 && depCount != 0) {
-				updated();
 				g.setColor(backgroundColor);
 				GraphicsAuxiliary.setupAA(g);
 				if (drawXGridLines) {
@@ -182,6 +208,22 @@ public abstract class XYGraph<E> extends Graph<E> {
 		}
 	}
 
+	/**
+	 * @return True if the snapshot has independent values and at least one
+	 *         non-empty dependent dataset
+	 */
+	protected boolean hasData(DataSnapshot<E, Double> data) {
+		if (data == null || data.getIndependent().size() == 0) {
+			return false;
+		}
+		for (List<Double> l : data.getDependent()) {
+			if (l.size() != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	protected void drawXAxis(Graphics2D g) {
 		drawAxis(g, false);
 	}
@@ -338,50 +380,104 @@ public abstract class XYGraph<E> extends Graph<E> {
 	protected void processDependents() {
 		// Check if the current series does not agree with the data set's
 		// dependent variable size
-		if (series.size() <= dataModel.getDependent().size()) {
+		if (series.size() <= snapshot.getDependent().size()) {
 			for (int i = 0; i < series.size(); i++) {
-				series.get(i).setValues(dataModel.getDependent().get(i));
+				series.get(i).setValues(snapshot.getDependent().get(i));
 			}
-			for (int i = series.size(); i < dataModel.getDependent().size(); i++) {
-				series.add(new Series(dataModel.getDependent().get(i), "Series - " + (i + 1), DEFAULT_STROKE, ColorGenerator
+			for (int i = series.size(); i < snapshot.getDependent().size(); i++) {
+				series.add(new Series(snapshot.getDependent().get(i), "Series - " + (i + 1), DEFAULT_STROKE, ColorGenerator
 						.getColor(alpha)));
 			}
-		} else if (series.size() > dataModel.getDependent().size()) {
-			for (int i = series.size() - 1; i >= dataModel.getDependent().size(); i--) {
+		} else if (series.size() > snapshot.getDependent().size()) {
+			for (int i = series.size() - 1; i >= snapshot.getDependent().size(); i--) {
 				series.remove((int) i);
 			}
 			for (int i = 0; i < series.size(); i++) {
-				series.get(i).setValues(dataModel.getDependent().get(i));
+				series.get(i).setValues(snapshot.getDependent().get(i));
 			}
 		}
 
-		for (int i = 0; i < dataModel.getDependent().size(); i++) {
+		for (int i = 0; i < snapshot.getDependent().size(); i++) {
 			processNumberData(series.get(i).getValues(), yRangeAuto, series.get(i).getyPlotPoints(), false);
 		}
 	}
 
-	protected void processNumberData(List<? extends Number> list, boolean auto, List<Double> processed, boolean horizontal) {
-		ArrayList<Double> all = new ArrayList<>();
-		for (Number n : list) {
-			all.add(n.doubleValue());
+	protected void processNumberData(List<? extends Number> list, boolean auto, DoubleColumn processed, boolean horizontal) {
+		DoubleList all = toDoubleList(list);
+		int size = all.size();
+
+		if (auto) {
+			fitRange(all, horizontal);
 		}
 
-		// Find the max vals from this data set
-		double tmpMin = Double.MAX_VALUE;
-		double tmpMax = -Double.MAX_VALUE;
-		for (Double d : all) {
-			if (d < tmpMin && !Double.isInfinite(d) && !Double.isNaN(d)) {
-				tmpMin = d;
-			}
-			if (d > tmpMax && !Double.isInfinite(d) && !Double.isNaN(d)) {
-				tmpMax = d;
+		roundRangeVals();
+
+		// Now for the rows being plotted, convert each value to a screen
+		// position rather than just a value
+		if (plotRows != null) {
+			processed.ensureCapacity(processed.size() + plotRows.length);
+			for (int row : plotRows) {
+				processed.addDouble(convert(all.getDouble(row), horizontal));
 			}
+		} else if (plotBlock > 0) {
+			projectBlocks(all, Math.min(plotFrom, size), Math.min(plotTo, size), processed, horizontal);
+		} else {
+			projectNumberData(all, Math.min(plotFrom, size), Math.min(plotTo, size), processed, horizontal);
 		}
-		if (auto) {
-			setRangeVals(horizontal, tmpMin, tmpMax);
+	}
+
+	/**
+	 * Reads primitives straight out of the data model where it allows it,
+	 * otherwise takes a primitive copy once so nothing reading it unboxes.
+	 */
+	protected static DoubleList toDoubleList(List<? extends Number> list) {
+		return list instanceof DoubleList ? (DoubleList) list : new DoubleColumn(list);
+	}
+
+	/**
+	 * Widens the range of an axis to include every value in a data set, as
+	 * fitting the range to the data does.
+	 * 
+	 * @param values
+	 *            Values to include
+	 * @param horizontal
+	 *            True for the x axis, false for the y axis
+	 */
+	protected void fitRange(DoubleList values, boolean horizontal) {
+		// Find the max vals from this data set, which columns keeping an index
+		// of their values answer without reading them all
+		double tmpMin = values.min(0, values.size());
+		double tmpMax = values.max(0, values.size());
+		setRangeVals(horizontal, tmpMin == Double.POSITIVE_INFINITY ? Double.MAX_VALUE : tmpMin,
+				tmpMax == Double.NEGATIVE_INFINITY ? -Double.MAX_VALUE : tmpMax);
+	}
+
+	/**
+	 * Widens the range of an axis to include the finite values from the given
+	 * index onwards. Unlike {@code setRangeVals}, doesn't add 0 to the range
+	 * if the values are all the same, as they are only part of a dataset.
+	 * 
+	 * @param values
+	 *            Values to include
+	 * @param from
+	 *            Index of the first value to include
+	 * @param horizontal
+	 *            True for the x axis, false for the y axis
+	 */
+	protected void includeInRange(DoubleList values, int from, boolean horizontal) {
+		double tmpMin = values.min(from, values.size());
+		double tmpMax = values.max(from, values.size());
+		if (tmpMin <= tmpMax) {
+			checkRange(horizontal, true, tmpMin, tmpMin);
+			checkRange(horizontal, false, tmpMax, tmpMax);
 		}
+	}
 
-		// Round to nice numbers if they're close enough (within 3%)
+	/**
+	 * Rounds the axis ranges to nice numbers if they're close enough (within
+	 * 3%).
+	 */
+	protected void roundRangeVals() {
 		if (xMaxVal != null) { // Only check one since if max is set min will
 								// also be set
 			xMinVal = DoubleCheck.rangeDifferenceFactor(xMinVal, Math.rint(xMinVal), xMaxVal - xMinVal) < 0.03d ? Math
@@ -395,11 +491,80 @@ public abstract class XYGraph<E> extends Graph<E> {
 			yMaxVal = DoubleCheck.rangeDifferenceFactor(yMaxVal, Math.rint(yMaxVal), yMaxVal - yMinVal) < 0.03d ? Math
 					.rint(yMaxVal) : yMaxVal;
 		}
+	}
 
-		// Now for the whole data set, convert each value to a screen position
-		// rather than just a value
-		for (Double d : all) {
-			processed.add(convert(d, horizontal));
+	/**
+	 * Converts values to screen positions with the current axis ranges,
+	 * appending them to the processed points.
+	 * 
+	 * @param values
+	 *            Values to convert
+	 * @param from
+	 *            Index of the first value to convert
+	 * @param processed
+	 *            Screen positions to append to
+	 * @param horizontal
+	 *            True for x values, false for y values
+	 */
+	protected void projectNumberData(DoubleList values, int from, DoubleColumn processed, boolean horizontal) {
+		projectNumberData(values, from, values.size(), processed, horizontal);
+	}
+
+	/**
+	 * Same as {@code projectNumberData(values, from, processed, horizontal)},
+	 * but stops before the value at index {@code to}.
+	 */
+	protected void projectNumberData(DoubleList values, int from, int to, DoubleColumn processed, boolean horizontal) {
+		processed.ensureCapacity(processed.size() + to - from);
+		double[] buffer = scanBuffer;
+		for (int start = from; start < to; start += buffer.length) {
+			int n = Math.min(buffer.length, to - start);
+			values.getDoubles(start, buffer, 0, n);
+			for (int i = 0; i < n; i++) {
+				processed.addDouble(convert(buffer[i], horizontal));
+			}
+		}
+	}
+
+	/**
+	 * Converts values to two screen positions for each block of
+	 * {@code plotBlock} rows, appending them to the processed points. Columns
+	 * keeping an index of their values find the smallest and largest value of
+	 * a block without reading it.
+	 * 
+	 * @param values
+	 *            Values to convert
+	 * @param from
+	 *            Index of the first value to convert
+	 * @param to
+	 *            Index after the last value to convert
+	 * @param processed
+	 *            Screen positions to append to
+	 * @param horizontal
+	 *            True for x values, which give the first and last value of
+	 *            each block, false for y values, which give the smallest and
+	 *            largest
+	 */
+	protected void projectBlocks(DoubleList values, int from, int to, DoubleColumn processed, boolean horizontal) {
+		long offset = snapshot.getRowOffset();
+		processed.ensureCapacity(processed.size() + 2 * ((to - from) / plotBlock + 2));
+		for (int start = from; start < to;) {
+			int end = (int) Math.min(to, start + plotBlock - Math.floorMod(offset + start, (long) plotBlock));
+			double first;
+			double second;
+			if (horizontal) {
+				first = values.getDouble(start);
+				second = values.getDouble(end - 1);
+			} else {
+				first = values.min(start, end);
+				second = values.max(start, end);
+				if (first > second) {
+					first = second = Double.NaN;
+				}
+			}
+			processed.addDouble(convert(first, horizontal));
+			processed.addDouble(convert(second, horizontal));
+			start = end;
 		}
 	}
 
@@ -0,0 +1,56 @@
+package interfaces;
+
+import java.util.List;
+
+/**
+ * A list of strings stored as codes into a table of the distinct strings, for
+ * categoric datasets with many rows but few categories. Data models are free
+ * to return implementations of this interface from {@code getIndependent}, in
+ * which case graphs will group, measure and compare the codes rather than the
+ * strings.
+ */
+public interface CategoryList extends List<String> {
+
+	/**
+	 * Returns the code of the category at the given index. Codes count up
+	 * from 0 in the order the categories were first added.
+	 *
+	 * @param index
+	 *            Index of the value to get.
+	 * @return The code of the value at the given index.
+	 */
+	public int getCode(int index);
+
+	/**
+	 * Copies the codes of a range of values into an array.
+	 *
+	 * @param from
+	 *            Index of the first value to copy.
+	 * @param dest
+	 *            Array to copy the codes into.
+	 * @param destOffset
+	 *            Index in {@code dest} to copy the first code to.
+	 * @param length
+	 *            Number of codes to copy.
+	 */
+	public default void getCodes(int from, int[] dest, int destOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			dest[destOffset + i] = getCode(from + i);
+		}
+	}
+
+	/**
+	 * @return Number of distinct categories, every code is less than this.
+	 *         Can include categories no value in the list has any more.
+	 */
+	public int getCategoryCount();
+
+	/**
+	 * Returns the category with the given code.
+	 *
+	 * @param code
+	 *            Code of the category.
+	 * @return The category's string.
+	 */
+	public String getCategory(int code);
+}
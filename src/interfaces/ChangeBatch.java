@@ -0,0 +1,68 @@
+package interfaces;
+
+import java.util.Objects;
+
+/**
+ * A change to a data model and the snapshot it produced, as published to
+ * subscribers which aren't swing observers, such as file writers or alerting.
+ * Like an observer update, a batch describes every change made since the
+ * subscriber's last batch, merged into one, and the snapshot published by the
+ * last of them, so the rows a change describes can be read from the batch's
+ * snapshot even if the model has changed again since.
+ *
+ * @param <I>
+ *            Type of the model's independent values
+ * @param <D>
+ *            Type of the model's dependent values
+ */
+public final class ChangeBatch<I, D> {
+
+	private final DataChange change;
+	private final DataSnapshot<I, D> snapshot;
+
+	/**
+	 * @param change
+	 *            What changed
+	 * @param snapshot
+	 *            Snapshot of the model once the change was made
+	 */
+	public ChangeBatch(DataChange change, DataSnapshot<I, D> snapshot) {
+		this.change = Objects.requireNonNull(change);
+		this.snapshot = Objects.requireNonNull(snapshot);
+	}
+
+	/**
+	 * Merges two batches published one after the other into one.
+	 *
+	 * @param first
+	 *            The earlier batch, or null if there isn't one
+	 * @param second
+	 *            The later batch
+	 * @return A batch with the changes of both merged, and the later snapshot
+	 */
+	public static <I, D> ChangeBatch<I, D> merge(ChangeBatch<I, D> first, ChangeBatch<I, D> second) {
+		if (first == null) {
+			return second;
+		}
+		return new ChangeBatch<>(DataChange.merge(first.change, second.change), second.snapshot);
+	}
+
+	/**
+	 * @return Every change made since the last batch, merged into one
+	 */
+	public DataChange getChange() {
+		return change;
+	}
+
+	/**
+	 * @return Snapshot of the model once the change was made
+	 */
+	public DataSnapshot<I, D> getSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public String toString() {
+		return "ChangeBatch[" + change + "]";
+	}
+}
@@ -0,0 +1,172 @@
+package interfaces;
+
+import java.util.Objects;
+
+/**
+ * Describes how a data model changed, so an observer can redo only the work
+ * the change affects rather than recalculating everything. Changes are
+ * immutable, and two changes can be merged into one describing both, for
+ * when several changes are delivered to an observer at once.
+ */
+public final class DataChange {
+
+	/**
+	 * The kinds of change a data model can make.
+	 */
+	public enum Type {
+		/**
+		 * Rows were added to the end of the model, nothing before them
+		 * changed. {@code getFrom} and {@code getTo} give the range of new
+		 * rows.
+		 */
+		ROWS_APPENDED,
+
+		/**
+		 * {@code getFrom} rows were dropped from the start of the model, and
+		 * rows were appended to the end, leaving {@code getTo} rows. Nothing
+		 * else changed.
+		 */
+		WINDOW_SHIFTED,
+
+		/**
+		 * A dependent dataset was added, at index {@code getFrom}.
+		 */
+		SERIES_ADDED,
+
+		/**
+		 * The dependent dataset at index {@code getFrom} was removed.
+		 */
+		SERIES_REMOVED,
+
+		/**
+		 * The independent dataset was replaced, and any dependent datasets
+		 * computed from it.
+		 */
+		INDEPENDENT_REPLACED,
+
+		/**
+		 * Anything may have changed.
+		 */
+		RESET
+	}
+
+	private final Type type;
+	private final int from;
+	private final int to;
+	private final long version;
+
+	/**
+	 * @param type
+	 *            The kind of change
+	 * @param from
+	 *            First row appended, number of rows dropped by a window shift,
+	 *            or the index of the dependent dataset added or removed.
+	 *            Ignored for other changes.
+	 * @param to
+	 *            One past the last row appended, or the number of rows left
+	 *            after a window shift. Ignored for other changes.
+	 * @param version
+	 *            Version of the data model once the change was made
+	 */
+	public DataChange(Type type, int from, int to, long version) {
+		Objects.requireNonNull(type);
+		if (type == Type.ROWS_APPENDED && (from < 0 || to < from)) {
+			throw new IllegalArgumentException("Invalid row range: " + from + " to " + to);
+		}
+		if (type == Type.WINDOW_SHIFTED && (from < 0 || to < 0)) {
+			throw new IllegalArgumentException("Invalid window shift: " + from + ", " + to);
+		}
+		this.type = type;
+		this.from = from;
+		this.to = to;
+		this.version = version;
+	}
+
+	/**
+	 * @param version
+	 *            Version of the data model once the change was made
+	 * @return A change which could have changed anything
+	 */
+	public static DataChange reset(long version) {
+		return new DataChange(Type.RESET, 0, 0, version);
+	}
+
+	/**
+	 * Merges two changes made one after the other into one. Rows appended
+	 * twice in a row merge into one range of rows, and appends and window
+	 * shifts merge into one window shift dropping all the rows either
+	 * dropped. Anything else merges into a {@code RESET}.
+	 *
+	 * @param first
+	 *            The earlier change, or null if there isn't one
+	 * @param second
+	 *            The later change
+	 * @return A change describing both
+	 */
+	public static DataChange merge(DataChange first, DataChange second) {
+		if (first == null) {
+			return second;
+		}
+		long version = Math.max(first.version, second.version);
+		if (first.type == Type.ROWS_APPENDED && second.type == Type.ROWS_APPENDED) {
+			return new DataChange(Type.ROWS_APPENDED, Math.min(first.from, second.from), Math.max(first.to, second.to),
+					version);
+		}
+		if (first.isAppendOrShift() && second.isAppendOrShift()) {
+			int dropped = (first.type == Type.WINDOW_SHIFTED ? first.from : 0)
+					+ (second.type == Type.WINDOW_SHIFTED ? second.from : 0);
+			return new DataChange(Type.WINDOW_SHIFTED, dropped, second.to, version);
+		}
+		return reset(version);
+	}
+
+	/**
+	 * @return The kind of change
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return First row appended, number of rows dropped by a window shift,
+	 *         or index of the dependent dataset added or removed
+	 */
+	public int getFrom() {
+		return from;
+	}
+
+	/**
+	 * @return One past the last row appended, or number of rows left after a
+	 *         window shift
+	 */
+	public int getTo() {
+		return to;
+	}
+
+	/**
+	 * @return The version of the data model once the change was made
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return True if the change only added rows to the end of the model
+	 */
+	public boolean isAppend() {
+		return type == Type.ROWS_APPENDED;
+	}
+
+	/**
+	 * @return True if the change only added rows to the end of the model,
+	 *         and possibly dropped rows from the start
+	 */
+	public boolean isAppendOrShift() {
+		return type == Type.ROWS_APPENDED || type == Type.WINDOW_SHIFTED;
+	}
+
+	@Override
+	public String toString() {
+		return type + "[" + from + ", " + to + "] @" + version;
+	}
+}
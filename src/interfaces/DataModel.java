@@ -2,6 +2,8 @@
 package interfaces;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow;
 
 public interface DataModel<I, D> {
 
@@ -14,4 +16,51 @@ public interface DataModel<I, D> {
 	public List<List<D>> getDependent();
 	
 	public List<I> getIndependent();
+
+	/**
+	 * Gets the latest immutable snapshot of the model. Must not block, so it
+	 * can be called while the model is being changed on another thread.
+	 * 
+	 * @return The latest snapshot
+	 */
+	public DataSnapshot<I, D> getSnapshot();
+
+	/**
+	 * Gets the count, smallest, largest, mean and variance of the finite
+	 * values of a dependent dataset, as of the latest snapshot, for legends
+	 * and live summaries of the data. Doesn't block.
+	 * 
+	 * @param series
+	 *            Index of the dependent dataset
+	 * @return Statistics of the dependent dataset
+	 */
+	public default Statistics getStatistics(int series) {
+		return getSnapshot().getStatistics(series);
+	}
+
+	/**
+	 * Gets a publisher of the model's changes, for consumers which aren't
+	 * swing observers. Each change is published with the snapshot it
+	 * produced, and changes made while a subscriber has no demand are merged
+	 * into one batch rather than queued.
+	 * 
+	 * Unless overridden, subscribers are accepted but never sent anything, for
+	 * models which don't keep track of their changes.
+	 * 
+	 * @return Publisher of every change made to the model
+	 */
+	public default Flow.Publisher<ChangeBatch<I, D>> getChangePublisher() {
+		return subscriber -> {
+			Objects.requireNonNull(subscriber);
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+		};
+	}
 }
@@ -0,0 +1,103 @@
+package interfaces;
+
+import java.util.List;
+
+/**
+ * An immutable view of a data model at one point in time. Graphs draw from a
+ * snapshot rather than the live data model, so they never need to lock the
+ * model and are never affected by changes made while they are drawing.
+ * 
+ * @param <I>
+ *            Type of data in the independent dataset
+ * @param <D>
+ *            Type of data in the dependent datasets
+ */
+public interface DataSnapshot<I, D> {
+
+	/**
+	 * @return The version of the data model this snapshot was taken at. Every
+	 *         change to a data model increases its version.
+	 */
+	public long getVersion();
+
+	/**
+	 * @return The version of the last change to the data model which did more
+	 *         than append rows, or drop rows from the start. Every row in this
+	 *         snapshot has the same values as the same row, counted from
+	 *         {@code getRowOffset}, in any other snapshot of the model taken
+	 *         at or after this version. Unless the model says otherwise this
+	 *         is the snapshot's own version.
+	 */
+	public default long getStructureVersion() {
+		return getVersion();
+	}
+
+	/**
+	 * @return Number of rows dropped from the start of the data model before
+	 *         this snapshot was taken, by models which only keep a window of
+	 *         their most recent rows. Row {@code i} of this snapshot is row
+	 *         {@code getRowOffset() + i} of everything added to the model.
+	 */
+	public default long getRowOffset() {
+		return 0;
+	}
+
+	/**
+	 * @return True if the independent values are numbers, each at least the
+	 *         one before it, so graphs can find the rows in an x interval by
+	 *         binary search. False unless the model keeps track of it.
+	 */
+	public default boolean isIndependentSorted() {
+		return false;
+	}
+
+	/**
+	 * Returns the rows in order of their independent values, for models whose
+	 * independent values are numbers which aren't sorted. Graphs which don't
+	 * join up their points in row order can binary search this for the rows in
+	 * an x interval.
+	 * 
+	 * @return Indexes of every row in order of their independent values, NaN
+	 *         last, or null if the values are sorted already or the model
+	 *         doesn't keep track of their order. The array must not be
+	 *         modified.
+	 */
+	public default int[] getIndependentOrder() {
+		return null;
+	}
+
+	/**
+	 * @return The independent dataset, as it was when the snapshot was taken.
+	 *         The list can't be modified.
+	 */
+	public List<I> getIndependent();
+
+	/**
+	 * @return The dependent datasets, as they were when the snapshot was taken.
+	 *         None of the lists can be modified.
+	 */
+	public List<List<D>> getDependent();
+
+	/**
+	 * Returns the count, smallest, largest, mean and variance of the finite
+	 * values of a dependent dataset. Datasets which keep summaries of their
+	 * columns answer this without reading every value.
+	 * 
+	 * @param series
+	 *            Index of the dependent dataset
+	 * @return Statistics of the dependent dataset, as it was when the
+	 *         snapshot was taken
+	 */
+	public default Statistics getStatistics(int series) {
+		List<D> values = getDependent().get(series);
+		if (values instanceof DoubleList) {
+			return ((DoubleList) values).statistics(0, values.size());
+		}
+		double[] copy = new double[values.size()];
+		int i = 0;
+		for (D d : values) {
+			copy[i++] = ((Number) d).doubleValue();
+		}
+		return Statistics.of(copy, 0, copy.length);
+	}
+}
@@ -0,0 +1,175 @@
+package interfaces;
+
+import java.util.List;
+
+/**
+ * A list of doubles which can be read without boxing. Data models are free to
+ * return implementations of this interface from {@code getIndependent} and
+ * {@code getDependent}, in which case graphs will read the primitive values
+ * directly rather than going through {@code get}.
+ */
+public interface DoubleList extends List<Double> {
+
+	/**
+	 * Returns the value at the given index as a primitive.
+	 * 
+	 * @param index
+	 *            Index of the value to get.
+	 * @return The value at the given index.
+	 */
+	public double getDouble(int index);
+
+	/**
+	 * Copies a range of values into an array. Lists storing their values in
+	 * arrays copy them in bulk, which is much faster for long scans than
+	 * reading them one at a time.
+	 * 
+	 * @param from
+	 *            Index of the first value to copy.
+	 * @param dest
+	 *            Array to copy the values into.
+	 * @param destOffset
+	 *            Index in {@code dest} to copy the first value to.
+	 * @param length
+	 *            Number of values to copy.
+	 */
+	public default void getDoubles(int from, double[] dest, int destOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			dest[destOffset + i] = getDouble(from + i);
+		}
+	}
+
+	/**
+	 * Returns the smallest finite value in a range, ignoring NaN and
+	 * infinities as graphs do when fitting their axes to the data. Lists which
+	 * keep an index of their values answer this without reading the whole
+	 * range.
+	 * 
+	 * @param from
+	 *            Index of the first value, inclusive.
+	 * @param to
+	 *            Index of the last value, exclusive.
+	 * @return The smallest finite value, or positive infinity if the range has
+	 *         none.
+	 */
+	public default double min(int from, int to) {
+		double min = Double.POSITIVE_INFINITY;
+		double[] buffer = new double[Math.min(1024, Math.max(to - from, 0))];
+		for (int start = from; start < to; start += buffer.length) {
+			int n = Math.min(buffer.length, to - start);
+			getDoubles(start, buffer, 0, n);
+			for (int i = 0; i < n; i++) {
+				double d = buffer[i];
+				if (d < min && d > Double.NEGATIVE_INFINITY) {
+					min = d;
+				}
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the largest finite value in a range, ignoring NaN and
+	 * infinities as graphs do when fitting their axes to the data. Lists which
+	 * keep an index of their values answer this without reading the whole
+	 * range.
+	 * 
+	 * @param from
+	 *            Index of the first value, inclusive.
+	 * @param to
+	 *            Index of the last value, exclusive.
+	 * @return The largest finite value, or negative infinity if the range has
+	 *         none.
+	 */
+	public default double max(int from, int to) {
+		double max = Double.NEGATIVE_INFINITY;
+		double[] buffer = new double[Math.min(1024, Math.max(to - from, 0))];
+		for (int start = from; start < to; start += buffer.length) {
+			int n = Math.min(buffer.length, to - start);
+			getDoubles(start, buffer, 0, n);
+			for (int i = 0; i < n; i++) {
+				double d = buffer[i];
+				if (d > max && d < Double.POSITIVE_INFINITY) {
+					max = d;
+				}
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the mean of the finite values in a range. Lists which keep an
+	 * index of their values answer this without reading the whole range.
+	 * 
+	 * @param from
+	 *            Index of the first value, inclusive.
+	 * @param to
+	 *            Index of the last value, exclusive.
+	 * @return The mean of the finite values, or NaN if the range has none.
+	 */
+	public default double mean(int from, int to) {
+		double sum = 0;
+		int count = 0;
+		double[] buffer = new double[Math.min(1024, Math.max(to - from, 0))];
+		for (int start = from; start < to; start += buffer.length) {
+			int n = Math.min(buffer.length, to - start);
+			getDoubles(start, buffer, 0, n);
+			for (int i = 0; i < n; i++) {
+				double d = buffer[i];
+				if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+					sum += d;
+					count++;
+				}
+			}
+		}
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/**
+	 * Returns the number of finite values in a range. Lists which keep an
+	 * index of their values answer this without reading the whole range.
+	 * 
+	 * @param from
+	 *            Index of the first value, inclusive.
+	 * @param to
+	 *            Index of the last value, exclusive.
+	 * @return The number of values which aren't NaN or infinite.
+	 */
+	public default int count(int from, int to) {
+		int count = 0;
+		double[] buffer = new double[Math.min(1024, Math.max(to - from, 0))];
+		for (int start = from; start < to; start += buffer.length) {
+			int n = Math.min(buffer.length, to - start);
+			getDoubles(start, buffer, 0, n);
+			for (int i = 0; i < n; i++) {
+				double d = buffer[i];
+				if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the count, smallest, largest, mean and variance of the finite
+	 * values in a range. Lists which keep an index of their values answer
+	 * this without reading the whole range.
+	 * 
+	 * @param from
+	 *            Index of the first value, inclusive.
+	 * @param to
+	 *            Index of the last value, exclusive.
+	 * @return Statistics of the finite values in the range.
+	 */
+	public default Statistics statistics(int from, int to) {
+		Statistics statistics = Statistics.EMPTY;
+		double[] buffer = new double[Math.min(1024, Math.max(to - from, 0))];
+		for (int start = from; start < to; start += buffer.length) {
+			int n = Math.min(buffer.length, to - start);
+			getDoubles(start, buffer, 0, n);
+			statistics = statistics.merge(Statistics.of(buffer, 0, n));
+		}
+		return statistics;
+	}
+}
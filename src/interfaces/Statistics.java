@@ -0,0 +1,160 @@
+package interfaces;
+
+/**
+ * Summary of the finite values in a dataset, or part of one: how many there
+ * are, the smallest, largest and mean, and their variance. NaN and infinite
+ * values are left out, as graphs leave them out when fitting their axes to
+ * the data. Statistics are immutable, and two can be merged into the
+ * statistics of both groups of values without reading the values again.
+ */
+public final class Statistics {
+
+	/**
+	 * Statistics of no values.
+	 */
+	public static final Statistics EMPTY = new Statistics(0, Double.NaN, Double.NaN, Double.NaN, 0);
+
+	private final long count;
+	private final double min;
+	private final double max;
+	private final double mean;
+	private final double m2;
+
+	/**
+	 * @param count
+	 *            Number of values
+	 * @param min
+	 *            The smallest value, ignored if there are no values
+	 * @param max
+	 *            The largest value, ignored if there are no values
+	 * @param mean
+	 *            The mean of the values, ignored if there are no values
+	 * @param m2
+	 *            Sum of the squared differences of the values from their mean
+	 */
+	public Statistics(long count, double min, double max, double mean, double m2) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Negative count: " + count);
+		}
+		this.count = count;
+		this.min = count == 0 ? Double.NaN : min;
+		this.max = count == 0 ? Double.NaN : max;
+		this.mean = count == 0 ? Double.NaN : mean;
+		this.m2 = count == 0 ? 0 : m2;
+	}
+
+	/**
+	 * Works out the statistics of a range of values in one pass, with
+	 * Welford's method for the variance.
+	 *
+	 * @param values
+	 *            Array of values
+	 * @param from
+	 *            Index of the first value, inclusive
+	 * @param to
+	 *            Index of the last value, exclusive
+	 * @return Statistics of the finite values in the range
+	 */
+	public static Statistics of(double[] values, int from, int to) {
+		if (from < 0 || to > values.length || from > to) {
+			throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Length: " + values.length);
+		}
+		long count = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double mean = 0;
+		double m2 = 0;
+		for (int i = from; i < to; i++) {
+			double d = values[i];
+			if (Double.isNaN(d) || Double.isInfinite(d)) {
+				continue;
+			}
+			count++;
+			min = Math.min(min, d);
+			max = Math.max(max, d);
+			double delta = d - mean;
+			mean += delta / count;
+			m2 += delta * (d - mean);
+		}
+		return new Statistics(count, min, max, mean, m2);
+	}
+
+	/**
+	 * Merges the statistics of two groups of values, with the pairwise
+	 * formula of Chan et al. for the variance.
+	 *
+	 * @param other
+	 *            Statistics of the other group of values
+	 * @return Statistics of both groups of values together
+	 */
+	public Statistics merge(Statistics other) {
+		if (other.count == 0) {
+			return this;
+		}
+		if (count == 0) {
+			return other;
+		}
+		long total = count + other.count;
+		double delta = other.mean - mean;
+		double weight = (double) other.count / total;
+		return new Statistics(total, Math.min(min, other.min), Math.max(max, other.max), mean + delta * weight, m2
+				+ other.m2 + delta * delta * count * weight);
+	}
+
+	/**
+	 * @return Number of finite values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The smallest value, or NaN if there are none
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return The largest value, or NaN if there are none
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return The mean of the values, or NaN if there are none
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return The population variance of the values, or NaN if there are
+	 *         none
+	 */
+	public double getVariance() {
+		return count == 0 ? Double.NaN : m2 / count;
+	}
+
+	/**
+	 * @return The sample variance of the values, or NaN if there are fewer
+	 *         than two
+	 */
+	public double getSampleVariance() {
+		return count < 2 ? Double.NaN : m2 / (count - 1);
+	}
+
+	/**
+	 * @return The population standard deviation of the values, or NaN if
+	 *         there are none
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	@Override
+	public String toString() {
+		return "n=" + count + " min=" + min + " max=" + max + " mean=" + mean + " sd=" + getStandardDeviation();
+	}
+}
@@ -1,4 +1,3 @@
-
 package interfaces;
 
 public interface SwingObserver<I, D> {
@@ -10,4 +9,17 @@ public interface SwingObserver<I, D> {
 	public void removeDataModel();
 
 	public void updateDisplay();
+
+	/**
+	 * Called instead of {@code updateDisplay()} when the data model knows what
+	 * changed. Observers which can update only the part affected by the change
+	 * should override this, by default it just calls {@code updateDisplay()}.
+	 *
+	 * @param change
+	 *            Every change made since the observer was last updated, merged
+	 *            into one
+	 */
+	public default void updateDisplay(DataChange change) {
+		updateDisplay();
+	}
 }
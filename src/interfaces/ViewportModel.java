@@ -0,0 +1,40 @@
+package interfaces;
+
+/**
+ * A data model whose values depend on the part of the graph being viewed, for
+ * example a function which is only evaluated at the x values a graph can
+ * actually show. Graphs tell the model what they are about to draw before
+ * reading its independent and dependent values.
+ */
+public interface ViewportModel {
+
+	/**
+	 * Tells the model the x range and size in pixels about to be drawn. The
+	 * model should make its values match this viewport, and should do as
+	 * little work as possible if the viewport has not changed. Called on the
+	 * event dispatch thread, a model may match the viewport later, on another
+	 * thread, and update its observers once it has.
+	 * 
+	 * @param xMin
+	 *            Smallest visible x value
+	 * @param xMax
+	 *            Largest visible x value
+	 * @param width
+	 *            Width of the drawing area in pixels
+	 * @param height
+	 *            Height of the drawing area in pixels
+	 */
+	public void setViewport(double xMin, double xMax, int width, int height);
+
+	/**
+	 * @return The smallest x value the model covers, used when the graph is
+	 *         auto-ranging
+	 */
+	public double getDomainMin();
+
+	/**
+	 * @return The largest x value the model covers, used when the graph is
+	 *         auto-ranging
+	 */
+	public double getDomainMax();
+}
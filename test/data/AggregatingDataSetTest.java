@@ -0,0 +1,103 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import interfaces.DataSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import data.AggregatingDataSet.Aggregate;
+
+class AggregatingDataSetTest {
+
+	/**
+	 * @return Sum, count, smallest and largest of a category's values
+	 */
+	private static double expected(double[] e, Aggregate aggregate) {
+		switch (aggregate) {
+		case SUM:
+			return e[0];
+		case COUNT:
+			return e[1];
+		case MIN:
+			return e[1] == 0 ? Double.NaN : e[2];
+		case MAX:
+			return e[1] == 0 ? Double.NaN : e[3];
+		default:
+			return e[1] == 0 ? Double.NaN : e[0] / e[1];
+		}
+	}
+
+	private static void assertAggregates(AggregatingDataSet dataSet, Map<String, double[]> reference) {
+		DataSnapshot<String, Double> snapshot = dataSet.getSnapshot();
+		List<String> categories = snapshot.getIndependent();
+		List<Double> values = snapshot.getDependent().get(0);
+		assertEquals(reference.size(), categories.size());
+		for (int i = 0; i < categories.size(); i++) {
+			double[] e = reference.get(categories.get(i));
+			assertEquals(expected(e, dataSet.getAggregate()), values.get(i).doubleValue());
+			for (Aggregate aggregate : Aggregate.values()) {
+				assertEquals(expected(e, aggregate), dataSet.getValue(categories.get(i), 0, aggregate));
+			}
+		}
+	}
+
+	@Test
+	void aggregatesMatchTheEventsAdded() {
+		Random r = new Random(1);
+		AggregatingDataSet dataSet = new AggregatingDataSet(1, Aggregate.SUM);
+		Map<String, double[]> reference = new HashMap<>();
+		for (int round = 0; round < 50; round++) {
+			List<Row<String>> batch = new ArrayList<>();
+			int n = r.nextInt(3) == 0 ? 1 : r.nextInt(500);
+			for (int i = 0; i < n; i++) {
+				String category = "c" + r.nextInt(20 + round * 10);
+				double v = r.nextInt(50) == 0 ? Double.NaN : r.nextInt(100);
+				batch.add(new Row<>(category, new double[] { v }));
+				double[] e = reference.computeIfAbsent(category, k -> new double[] { 0, 0,
+						Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY });
+				if (!Double.isNaN(v)) {
+					e[0] += v;
+					e[1]++;
+					e[2] = Math.min(e[2], v);
+					e[3] = Math.max(e[3], v);
+				}
+			}
+			dataSet.addRows(batch);
+			if (round % 10 == 0) {
+				dataSet.setAggregate(Aggregate.values()[round / 10 % Aggregate.values().length]);
+			}
+			assertAggregates(dataSet, reference);
+		}
+	}
+
+	@Test
+	void olderSnapshotsKeepTheirValues() {
+		AggregatingDataSet dataSet = new AggregatingDataSet(1, Aggregate.SUM);
+		dataSet.addRows(Arrays.asList(new Row<>("a", new double[] { 1 }), new Row<>("b", new double[] { 2 })));
+		DataSnapshot<String, Double> before = dataSet.getSnapshot();
+		dataSet.addRow("a", 10);
+		dataSet.addRow("c", 5);
+		assertEquals(Arrays.asList("a", "b"), before.getIndependent());
+		assertEquals(Arrays.asList(1.0, 2.0), before.getDependent().get(0));
+		assertEquals(Arrays.asList(11.0, 2.0, 5.0), dataSet.getSnapshot().getDependent().get(0));
+
+		dataSet.setAggregate(Aggregate.COUNT);
+		assertEquals(Arrays.asList(1.0, 2.0), before.getDependent().get(0));
+		assertEquals(Arrays.asList(2.0, 1.0, 1.0), dataSet.getSnapshot().getDependent().get(0));
+
+		DataSnapshot<String, Double> counted = dataSet.getSnapshot();
+		dataSet.clear();
+		assertEquals(3, counted.getIndependent().size());
+		assertEquals(0, dataSet.getSnapshot().getDependent().get(0).size());
+		dataSet.addRow("d", 4);
+		assertEquals(Arrays.asList(1.0), dataSet.getSnapshot().getDependent().get(0));
+	}
+}
@@ -0,0 +1,127 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import interfaces.DoubleList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ColumnarFileTest {
+
+	private static final double[] SPECIAL = { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0,
+			Double.MIN_VALUE, Double.MAX_VALUE };
+
+	@Test
+	void continuousDataSetRoundTrips() throws IOException {
+		int n = 10000;
+		List<Double> x = new ArrayList<>();
+		List<Double> y = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			x.add(i * 0.25);
+			y.add(i < SPECIAL.length ? SPECIAL[i] : Math.sin(i));
+		}
+		ContinuousDataSet d = new ContinuousDataSet();
+		d.setIndependent(x);
+		d.addDependentSet(y);
+
+		Path file = Files.createTempFile("columnar", ".jgc");
+		try {
+			ColumnarFile.write(d, file, 1000);
+			try (ColumnarFile f = ColumnarFile.open(file)) {
+				assertEquals(n, f.getRowCount());
+				assertEquals(1, f.getDependentCount());
+				assertEquals(1000, f.getBlockSize());
+				DoubleList fx = f.getIndependentValues();
+				DoubleList fy = f.getDependent(0);
+				for (int i = 0; i < n; i++) {
+					assertEquals(x.get(i).doubleValue(), fx.getDouble(i));
+					assertEquals(y.get(i).doubleValue(), fy.getDouble(i), "Row " + i);
+				}
+				for (int b = 1; b < 10; b++) {
+					double min = Double.POSITIVE_INFINITY;
+					double max = Double.NEGATIVE_INFINITY;
+					for (int i = b * 1000; i < (b + 1) * 1000; i++) {
+						min = Math.min(min, y.get(i));
+						max = Math.max(max, y.get(i));
+					}
+					assertEquals(min, f.getBlockMin(0, b));
+					assertEquals(max, f.getBlockMax(0, b));
+				}
+				ContinuousDataSet back = f.toContinuousDataSet();
+				assertEquals(x, back.getIndependent());
+				assertEquals(y, back.getDependent().get(0));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void categoricDataSetRoundTrips() throws IOException {
+		CategoricDataSet d = new CategoricDataSet();
+		List<String> categories = Arrays.asList("a", "b\u00e9ta", "", "\u65e5\u672c");
+		d.setIndependent(categories);
+		d.addDependentSet(Arrays.asList(1.0, 2.0, Double.NaN, 4.0));
+
+		Path file = Files.createTempFile("columnar", ".jgc");
+		try {
+			ColumnarFile.write(d, file, 0);
+			try (ColumnarFile f = ColumnarFile.open(file)) {
+				assertTrue(f.isCategoric());
+				assertEquals(0, f.getBlockSize());
+				assertEquals(categories, f.getCategories());
+				assertEquals(Arrays.asList(1.0, 2.0, Double.NaN, 4.0), f.getDependent(0));
+				assertThrows(IllegalStateException.class, () -> f.getIndependentValues());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void sampledDataSetWritesEveryRecordedRow() throws IOException {
+		int n = 100000;
+		CompressedDataSet d = new CompressedDataSet();
+		d.addDependentSet(new ArrayList<>());
+		List<Row<Double>> rows = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			rows.add(new Row<>((double) i, new double[] { i % 100 }));
+		}
+		d.addRows(rows);
+		assertTrue(d.getSnapshot().getIndependent().size() < n);
+
+		Path file = Files.createTempFile("columnar", ".jgc");
+		try {
+			ColumnarFile.write(d, file);
+			try (ColumnarFile f = ColumnarFile.open(file)) {
+				assertEquals(n, f.getRowCount());
+				for (int i = 0; i < n; i++) {
+					assertEquals(i, f.getIndependentValues().getDouble(i));
+					assertEquals(i % 100, f.getDependent(0).getDouble(i));
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void rejectsFilesWhichArentColumnar() throws IOException {
+		Path file = Files.createTempFile("columnar", ".jgc");
+		try {
+			Files.write(file, new byte[40]);
+			assertThrows(IOException.class, () -> ColumnarFile.open(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
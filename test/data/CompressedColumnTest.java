@@ -0,0 +1,128 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import interfaces.DoubleList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import data.CompressedColumn.Encoding;
+
+class CompressedColumnTest {
+
+	private static final int ROWS = 20000;
+
+	/**
+	 * @return Values of the given kind, each kind suiting one encoding better
+	 *         than the other
+	 */
+	private static double[] values(int kind, Random r) {
+		double[] v = new double[ROWS];
+		for (int i = 0; i < v.length; i++) {
+			switch (kind) {
+			case 0:
+				// Evenly spaced timestamps
+				v[i] = 1.7e12 + i * 1000.0;
+				break;
+			case 1:
+				// Timestamps with jitter
+				v[i] = 1.7e12 + i * 1000.0 + r.nextInt(5);
+				break;
+			case 2:
+				// Random bits, which don't compress at all
+				v[i] = Double.longBitsToDouble(r.nextLong());
+				break;
+			case 3:
+				v[i] = r.nextInt(10) == 0 ? Double.NaN : r.nextInt(10) == 0 ? Double.POSITIVE_INFINITY : r
+						.nextGaussian();
+				break;
+			case 4:
+				// A slowly changing signal, repeating values
+				v[i] = Math.round(Math.sin(i * 1e-3) * 100) / 100.0;
+				break;
+			default:
+				v[i] = r.nextBoolean() ? 0.0 : -0.0;
+				break;
+			}
+		}
+		return v;
+	}
+
+	/**
+	 * Checks every value, read one at a time and in ranges crossing blocks,
+	 * is exactly the value added, down to the bits of NaNs and zeros.
+	 */
+	private static void assertValues(double[] expected, DoubleList column, int size, Random r) {
+		assertEquals(size, column.size());
+		for (int i = 0; i < size; i++) {
+			assertEquals(Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(column.getDouble(i)));
+		}
+		for (int t = 0; t < 20; t++) {
+			int from = r.nextInt(size + 1);
+			int to = from + r.nextInt(size - from + 1);
+			double[] dest = new double[to - from + 1];
+			column.getDoubles(from, dest, 1, to - from);
+			for (int i = from; i < to; i++) {
+				assertEquals(Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(dest[i - from + 1]));
+			}
+		}
+	}
+
+	@Test
+	void valuesRoundTripWithEitherEncoding() {
+		Random r = new Random(1);
+		for (Encoding encoding : Encoding.values()) {
+			for (int kind = 0; kind < 6; kind++) {
+				double[] v = values(kind, r);
+				CompressedColumn column = new CompressedColumn(encoding);
+				for (double d : v) {
+					column.addDouble(d);
+				}
+				assertValues(v, column, v.length, r);
+			}
+		}
+	}
+
+	@Test
+	void snapshotsKeepTheirValuesAsMoreAreAdded() {
+		Random r = new Random(2);
+		double[] v = values(1, r);
+		CompressedColumn column = new CompressedColumn(Encoding.DELTA_OF_DELTA);
+		List<DoubleList> snapshots = new ArrayList<>();
+		List<Integer> sizes = new ArrayList<>();
+		for (int i = 0; i < v.length; i++) {
+			// Some snapshots end exactly on the end of a block
+			if (i % CompressedColumn.BLOCK_SIZE == 0 || r.nextInt(1000) == 0) {
+				snapshots.add((DoubleList) column.snapshot());
+				sizes.add(i);
+			}
+			column.addDouble(v[i]);
+		}
+		for (int s = 0; s < snapshots.size(); s++) {
+			assertValues(v, snapshots.get(s), sizes.get(s), r);
+		}
+	}
+
+	@Test
+	void regularValuesTakeLessSpace() {
+		CompressedColumn timestamps = new CompressedColumn(Encoding.DELTA_OF_DELTA);
+		CompressedColumn signal = new CompressedColumn(Encoding.XOR);
+		Random r = new Random(3);
+		double[] t = values(0, r);
+		double[] s = values(4, r);
+		for (int i = 0; i < ROWS; i++) {
+			timestamps.addDouble(t[i]);
+			signal.addDouble(s[i]);
+		}
+		// Less than a byte per timestamp and four per value, once the
+		// unfinished block kept uncompressed is left out
+		long head = CompressedColumn.BLOCK_SIZE * 8L;
+		assertTrue(timestamps.getCompressedBytes() - head < ROWS);
+		assertTrue(signal.getCompressedBytes() - head < ROWS * 4L);
+	}
+}
@@ -0,0 +1,97 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IndependentOrderTest {
+
+	/**
+	 * @return Rows in order of their values, by a stable comparison sort
+	 */
+	private static int[] reference(DoubleColumn values) {
+		Integer[] rows = new Integer[values.size()];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		Arrays.sort(rows, (a, b) -> Double.compare(values.getDouble(a), values.getDouble(b)));
+		return Arrays.stream(rows).mapToInt(Integer::intValue).toArray();
+	}
+
+	private static double randomValue(Random r) {
+		switch (r.nextInt(20)) {
+		case 0:
+			return Double.NaN;
+		case 1:
+			return r.nextBoolean() ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		case 2:
+			return r.nextBoolean() ? 0.0 : -0.0;
+		case 3:
+			// Plenty of equal values, to check the sort is stable
+			return r.nextInt(5);
+		default:
+			return r.nextGaussian() * Math.pow(10, r.nextInt(20) - 10);
+		}
+	}
+
+	@Test
+	void orderMatchesAStableSortAsRowsAreAppended() {
+		Random r = new Random(1);
+		DoubleColumn values = new DoubleColumn();
+		IndependentOrder order = new IndependentOrder();
+		for (int round = 0; round < 10; round++) {
+			int n = round == 0 ? 0 : r.nextInt(20000);
+			for (int i = 0; i < n; i++) {
+				values.addDouble(randomValue(r));
+			}
+			order.update(values);
+			DoubleColumn snapshot = new DoubleColumn(values);
+			assertArrayEquals(reference(snapshot), order.order(snapshot));
+		}
+		assertFalse(order.isSorted());
+	}
+
+	@Test
+	void olderSnapshotsLeaveOutNewerRows() {
+		Random r = new Random(2);
+		DoubleColumn values = new DoubleColumn();
+		for (int i = 0; i < 5000; i++) {
+			values.addDouble(randomValue(r));
+		}
+		DoubleColumn older = new DoubleColumn(values);
+		for (int i = 0; i < 5000; i++) {
+			values.addDouble(randomValue(r));
+		}
+		IndependentOrder order = new IndependentOrder();
+		order.update(values);
+		order.order(values);
+		assertArrayEquals(reference(older), order.order(older));
+	}
+
+	@Test
+	void sortedValuesAreRecognised() {
+		DoubleColumn values = new DoubleColumn();
+		IndependentOrder order = new IndependentOrder();
+		for (int i = 0; i < 3000; i++) {
+			values.addDouble(i / 2);
+		}
+		order.update(values);
+		assertTrue(order.isSorted());
+
+		values.addDouble(Double.POSITIVE_INFINITY);
+		order.update(values);
+		assertFalse(order.isSorted());
+
+		values = new DoubleColumn();
+		order = new IndependentOrder();
+		values.addDouble(1);
+		values.addDouble(0);
+		order.update(values);
+		assertFalse(order.isSorted());
+	}
+}
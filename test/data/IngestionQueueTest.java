@@ -0,0 +1,126 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class IngestionQueueTest {
+
+	private static ContinuousDataSet newDataSet() {
+		ContinuousDataSet d = new ContinuousDataSet();
+		d.addDependentSet(new ArrayList<>());
+		return d;
+	}
+
+	@Test
+	void everyRowFromEveryProducerIsDrainedInOrder() throws InterruptedException {
+		ContinuousDataSet d = newDataSet();
+		IngestionQueue<Double> q = new IngestionQueue<>(d);
+		q.setMaxBatch(1000);
+		q.start(1, TimeUnit.MILLISECONDS);
+		int producers = 8;
+		int rows = 20000;
+		Thread[] threads = new Thread[producers];
+		// Thrown again on the test thread, where they fail the test
+		ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		for (int p = 0; p < producers; p++) {
+			int id = p;
+			threads[p] = new Thread(() -> {
+				for (int i = 0; i < rows; i++) {
+					q.offer((double) i, id);
+					long backlog = q.getBacklog();
+					if (backlog < 0) {
+						failures.add(new AssertionError("Backlog went negative: " + backlog));
+						return;
+					}
+				}
+			});
+			threads[p].setUncaughtExceptionHandler((t, e) -> {
+				failures.add(e);
+			});
+			threads[p].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		q.stop();
+		if (!failures.isEmpty()) {
+			throw new AssertionError(failures.peek());
+		}
+
+		assertEquals(producers * rows, q.getOfferedCount());
+		assertEquals(producers * rows, q.getDrainedCount());
+		assertEquals(0, q.getBacklog());
+		assertEquals(0, q.getRejectedCount());
+		assertTrue(q.getLargestBatch() <= 1000);
+
+		List<Double> x = d.getIndependent();
+		List<Double> y = d.getDependent().get(0);
+		assertEquals(producers * rows, x.size());
+		double[] next = new double[producers];
+		for (int i = 0; i < x.size(); i++) {
+			int id = y.get(i).intValue();
+			assertEquals(next[id], x.get(i).doubleValue(), "Rows of producer " + id + " out of order");
+			next[id]++;
+		}
+	}
+
+	@Test
+	void rejectedRowsDontLoseTheRestOfTheBatch() {
+		ContinuousDataSet d = newDataSet();
+		IngestionQueue<Double> q = new IngestionQueue<>(d);
+		for (int i = 0; i < 1000; i++) {
+			if (i % 100 == 7) {
+				q.offer((double) i, i, i);
+			} else {
+				q.offer((double) i, i);
+			}
+		}
+		assertEquals(990, q.drain());
+		assertEquals(10, q.getRejectedCount());
+		assertEquals(0, q.getBacklog());
+		assertNotNull(q.getLastError());
+
+		List<Double> x = d.getIndependent();
+		assertEquals(990, x.size());
+		int row = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (i % 100 != 7) {
+				assertEquals(i, x.get(row++).doubleValue());
+			}
+		}
+	}
+
+	@Test
+	void backgroundDrainSurvivesRejectedRows() throws InterruptedException {
+		ContinuousDataSet d = newDataSet();
+		IngestionQueue<Double> q = new IngestionQueue<>(d);
+		q.start(1, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 3000; i++) {
+			if (i == 10) {
+				q.offer((double) i);
+			} else {
+				q.offer((double) i, i);
+			}
+			if (i % 500 == 0) {
+				Thread.sleep(5);
+			}
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (q.getBacklog() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(2999, q.getDrainedCount());
+		assertEquals(1, q.getRejectedCount());
+		assertEquals(0, q.getFailedDrainCount());
+		q.stop();
+		assertEquals(2999, d.getIndependent().size());
+	}
+}
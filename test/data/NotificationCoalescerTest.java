@@ -0,0 +1,92 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import interfaces.DataModel;
+import interfaces.SwingObserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class NotificationCoalescerTest {
+
+	/**
+	 * Observer counting its updates.
+	 */
+	private static class Counter implements SwingObserver<Double, Double> {
+		private final AtomicInteger updates = new AtomicInteger();
+
+		@Override
+		public void setDataModel(DataModel<Double, Double> model) {
+		}
+
+		@Override
+		public DataModel<Double, Double> getDataModel() {
+			return null;
+		}
+
+		@Override
+		public void removeDataModel() {
+		}
+
+		@Override
+		public void updateDisplay() {
+			updates.incrementAndGet();
+		}
+	}
+
+	@Test
+	void taskRunsStraightAwayWithNothingPending() {
+		NotificationCoalescer<Double> coalescer = new NotificationCoalescer<>();
+		AtomicInteger runs = new AtomicInteger();
+		coalescer.whenDelivered(runs::incrementAndGet);
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	void taskWaitsForUpdatesHeldBackByTheRateLimit() throws InterruptedException {
+		NotificationCoalescer<Double> coalescer = new NotificationCoalescer<>();
+		coalescer.setMaxRate(5);
+		Counter first = new Counter();
+		Counter second = new Counter();
+		coalescer.notify(first);
+		coalescer.notify(second);
+		CountDownLatch delivered = new CountDownLatch(1);
+		coalescer.whenDelivered(delivered::countDown);
+		assertTrue(delivered.await(5, TimeUnit.SECONDS));
+		assertEquals(1, first.updates.get());
+		assertEquals(1, second.updates.get());
+
+		// Held back by the rate limit, so delivered by a timer
+		coalescer.notify(first);
+		CountDownLatch limited = new CountDownLatch(1);
+		coalescer.whenDelivered(() -> {
+			assertEquals(2, first.updates.get());
+			limited.countDown();
+		});
+		assertEquals(1, first.updates.get());
+		assertTrue(limited.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void taskStillRunsIfTheObserverIsForgotten() throws InterruptedException {
+		NotificationCoalescer<Double> coalescer = new NotificationCoalescer<>();
+		coalescer.setMaxRate(5);
+		Counter observer = new Counter();
+		coalescer.notify(observer);
+		CountDownLatch first = new CountDownLatch(1);
+		coalescer.whenDelivered(first::countDown);
+		assertTrue(first.await(5, TimeUnit.SECONDS));
+
+		coalescer.notify(observer);
+		CountDownLatch dropped = new CountDownLatch(1);
+		coalescer.whenDelivered(dropped::countDown);
+		coalescer.forget(observer);
+		assertTrue(dropped.await(5, TimeUnit.SECONDS));
+		assertEquals(1, observer.updates.get());
+	}
+}
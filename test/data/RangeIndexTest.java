@@ -0,0 +1,184 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RangeIndexTest {
+
+	private static double randomValue(Random r) {
+		switch (r.nextInt(40)) {
+		case 0:
+			return Double.NaN;
+		case 1:
+			return Double.POSITIVE_INFINITY;
+		case 2:
+			return Double.NEGATIVE_INFINITY;
+		default:
+			return 1e6 + r.nextGaussian() * 100;
+		}
+	}
+
+	/**
+	 * Checks summaries of random ranges against summaries worked out by
+	 * reading every value.
+	 */
+	private static void assertSummaries(RangeIndex index, DoubleColumn values, long first, Random r) {
+		double[] summary = new double[RangeIndex.SUMMARY_LENGTH];
+		int size = values.size();
+		for (int k = 0; k < 200; k++) {
+			int from = r.nextInt(size + 1);
+			int to = from + r.nextInt(size - from + 1);
+			if (k == 0) {
+				from = 0;
+				to = size;
+			}
+			index.summarise(values, first, from, to, summary);
+
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			double sum = 0;
+			int count = 0;
+			for (int i = from; i < to; i++) {
+				double d = values.getDouble(i);
+				if (Double.isFinite(d)) {
+					min = Math.min(min, d);
+					max = Math.max(max, d);
+					sum += d;
+					count++;
+				}
+			}
+			double m2 = 0;
+			for (int i = from; i < to; i++) {
+				double d = values.getDouble(i);
+				if (Double.isFinite(d)) {
+					m2 += (d - sum / count) * (d - sum / count);
+				}
+			}
+			String range = from + ".." + to;
+			assertEquals(count, summary[RangeIndex.COUNT], range);
+			assertEquals(min, summary[RangeIndex.MIN], range);
+			assertEquals(max, summary[RangeIndex.MAX], range);
+			assertEquals(sum, summary[RangeIndex.SUM], 1e-6 * Math.max(1, Math.abs(sum)), range);
+			assertEquals(m2, summary[RangeIndex.M2], 1e-6 * Math.max(1, m2), range);
+		}
+	}
+
+	@Test
+	void summariesMatchEveryValueRead() {
+		Random r = new Random(1);
+		for (int shift : new int[] { 0, 3, 6, 10 }) {
+			DoubleColumn values = new DoubleColumn();
+			RangeIndex index = new RangeIndex(shift);
+			for (int round = 0; round < 5; round++) {
+				int n = r.nextInt(5000);
+				for (int i = 0; i < n; i++) {
+					values.addDouble(randomValue(r));
+				}
+				// Only reads the values added since the last refresh
+				index.refresh(values, 0);
+				assertSummaries(index, values, 0, r);
+			}
+		}
+	}
+
+	@Test
+	void changedValuesAreSummarisedAgain() {
+		Random r = new Random(2);
+		DoubleColumn values = new DoubleColumn();
+		for (int i = 0; i < 10000; i++) {
+			values.addDouble(randomValue(r));
+		}
+		RangeIndex index = new RangeIndex();
+		index.refresh(values, 0);
+		for (int k = 0; k < 20; k++) {
+			int i = r.nextInt(values.size());
+			values.setDouble(i, 1e9 * (r.nextBoolean() ? 1 : -1));
+			index.invalidate(i);
+			index.refresh(values, 0);
+			assertSummaries(index, values, 0, r);
+		}
+	}
+
+	@Test
+	void droppedValuesAreLeftOut() {
+		Random r = new Random(3);
+		DoubleColumn values = new DoubleColumn();
+		RangeIndex index = new RangeIndex();
+		long first = 0;
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 3000; i++) {
+				values.addDouble(randomValue(r));
+			}
+			int drop = r.nextInt(values.size());
+			values.removeFirst(drop);
+			first += drop;
+			index.refresh(values, first);
+			assertSummaries(index, values, first, r);
+		}
+	}
+
+	@Test
+	void viewsAndCopiesDontChange() {
+		Random r = new Random(4);
+		DoubleColumn values = new DoubleColumn();
+		for (int i = 0; i < 5000; i++) {
+			values.addDouble(randomValue(r));
+		}
+		RangeIndex index = new RangeIndex();
+		index.refresh(values, 0);
+		RangeIndex.View view = index.view();
+		RangeIndex copy = index.copy();
+		DoubleColumn before = new DoubleColumn(values);
+
+		for (int i = 0; i < 5000; i++) {
+			values.addDouble(randomValue(r));
+		}
+		index.refresh(values, 0);
+
+		double[] expected = new double[RangeIndex.SUMMARY_LENGTH];
+		double[] actual = new double[RangeIndex.SUMMARY_LENGTH];
+		copy.summarise(before, 0, 0, before.size(), expected);
+		view.summarise(before, 0, 0, before.size(), actual);
+		for (int i = 0; i < RangeIndex.SUMMARY_LENGTH; i++) {
+			assertEquals(expected[i], actual[i]);
+		}
+		assertSummaries(copy, before, 0, r);
+		assertSummaries(index, values, 0, r);
+	}
+
+	@Test
+	void searchFindsTheSameRowsAsBinarySearch() {
+		Random r = new Random(5);
+		DoubleColumn values = new DoubleColumn();
+		values.addDouble(Double.NEGATIVE_INFINITY);
+		double v = 0;
+		for (int i = 0; i < 20000; i++) {
+			v += r.nextInt(3);
+			values.addDouble(v);
+		}
+		values.addDouble(Double.POSITIVE_INFINITY);
+		values.addDouble(Double.POSITIVE_INFINITY);
+		for (int shift : new int[] { 0, 4, 10 }) {
+			RangeIndex index = new RangeIndex(shift);
+			index.refresh(values, 0);
+			for (double target = -2; target <= v + 2; target += 2.75) {
+				assertEquals(firstPassing(values, target, false), index.search(values, 0, target, false));
+				assertEquals(firstPassing(values, target, true), index.search(values, 0, target, true));
+			}
+			assertEquals(values.size() - 2, index.search(values, 0, Double.MAX_VALUE, true));
+		}
+	}
+
+	private static int firstPassing(DoubleColumn values, double target, boolean above) {
+		for (int i = 0; i < values.size(); i++) {
+			double d = values.getDouble(i);
+			if (above ? d > target : d >= target) {
+				return i;
+			}
+		}
+		return values.size();
+	}
+}
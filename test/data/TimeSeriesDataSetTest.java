@@ -0,0 +1,113 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import interfaces.DataSnapshot;
+import interfaces.Statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+class TimeSeriesDataSetTest {
+
+	private static final long START = 1_700_000_000_000L;
+
+	@Test
+	void recordingAndStatisticsCoverEverySample() {
+		TimeSeriesDataSet d = new TimeSeriesDataSet();
+		d.addDependentSet(new ArrayList<>());
+		Random r = new Random(1);
+		int n = 100000;
+		long t = START;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			t += 1 + r.nextInt(5);
+			double v = r.nextGaussian();
+			max = Math.max(max, v);
+			sum += v;
+			d.addRow(t, v);
+		}
+		// Far more samples than are published
+		assertTrue(d.getSnapshot().getIndependent().size() < n);
+
+		Statistics s = d.getStatistics(0);
+		assertEquals(n, s.getCount());
+		assertEquals(max, s.getMax());
+		assertEquals(sum / n, s.getMean(), 1e-12);
+
+		DataSnapshot<Double, Double> recording = d.getRecording();
+		assertEquals(n, recording.getIndependent().size());
+		assertEquals(t, recording.getIndependent().get(n - 1).longValue());
+		assertEquals(n, recording.getDependent().get(0).size());
+	}
+
+	@Test
+	void publishedRowsFollowSamplesAddedSinceTheyWereRead() {
+		TimeSeriesDataSet d = new TimeSeriesDataSet();
+		d.addDependentSet(new ArrayList<>());
+		for (int i = 0; i < 10; i++) {
+			d.addRow(START + i, i);
+		}
+		assertEquals(10, d.getSnapshot().getIndependent().size());
+		long[] times = new long[5];
+		double[][] values = new double[5][];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = START + 10 + i;
+			values[i] = new double[] { 10 + i };
+		}
+		d.addRows(times, values);
+		List<Double> x = d.getSnapshot().getIndependent();
+		assertEquals(15, x.size());
+		assertEquals(START + 14, x.get(14).longValue());
+		assertEquals(14.0, d.getDependent().get(0).get(14).doubleValue());
+		assertEquals(START + 14, d.getTime(14));
+	}
+
+	@Test
+	void settingTheViewportOnTheEventDispatchThreadNeverWaitsForTheLock() throws InterruptedException {
+		TimeSeriesDataSet d = new TimeSeriesDataSet();
+		d.addDependentSet(new ArrayList<>());
+		for (int i = 0; i < 1000; i++) {
+			d.addRow(START + i, i);
+		}
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch set = new CountDownLatch(1);
+		Thread writer = new Thread(() -> {
+			synchronized (d) {
+				held.countDown();
+				try {
+					set.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		writer.start();
+		assertTrue(held.await(5, TimeUnit.SECONDS));
+		SwingUtilities.invokeLater(() -> {
+			d.setViewport(START + 100, START + 199, 100, 100);
+			set.countDown();
+		});
+		// Returns while the writer still holds the lock
+		assertTrue(set.await(2, TimeUnit.SECONDS));
+		writer.join();
+
+		// Published by the background thread once the lock is free
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (d.getSnapshot().getIndependent().size() != 102 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		List<Double> x = d.getSnapshot().getIndependent();
+		assertEquals(102, x.size());
+		assertEquals(START + 99, x.get(0).longValue());
+	}
+}
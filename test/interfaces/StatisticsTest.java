@@ -0,0 +1,109 @@
+package interfaces;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class StatisticsTest {
+
+	/**
+	 * Statistics worked out the textbook way, in two passes.
+	 */
+	private static double[] reference(double[] values, int from, int to) {
+		double sum = 0;
+		int count = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			if (Double.isFinite(values[i])) {
+				sum += values[i];
+				count++;
+				min = Math.min(min, values[i]);
+				max = Math.max(max, values[i]);
+			}
+		}
+		double mean = sum / count;
+		double m2 = 0;
+		for (int i = from; i < to; i++) {
+			if (Double.isFinite(values[i])) {
+				m2 += (values[i] - mean) * (values[i] - mean);
+			}
+		}
+		return new double[] { count, min, max, mean, m2 / count };
+	}
+
+	private static void assertMatches(double[] expected, Statistics actual) {
+		assertMatches(expected, actual, 1e-9);
+	}
+
+	private static void assertMatches(double[] expected, Statistics actual, double tolerance) {
+		assertEquals((long) expected[0], actual.getCount());
+		assertEquals(expected[1], actual.getMin());
+		assertEquals(expected[2], actual.getMax());
+		assertEquals(expected[3], actual.getMean(), tolerance * Math.max(1, Math.abs(expected[3])));
+		assertEquals(expected[4], actual.getVariance(), tolerance * Math.max(1, expected[4]));
+	}
+
+	private static double[] randomValues(Random r, int n, double offset) {
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = offset + r.nextGaussian() * 10;
+			if (r.nextInt(50) == 0) {
+				values[i] = r.nextBoolean() ? Double.NaN : Double.POSITIVE_INFINITY;
+			}
+		}
+		return values;
+	}
+
+	@Test
+	void ofMatchesReferenceIgnoringNonFiniteValues() {
+		Random r = new Random(1);
+		double[] values = randomValues(r, 10000, 0);
+		assertMatches(reference(values, 0, values.length), Statistics.of(values, 0, values.length));
+		assertMatches(reference(values, 123, 4567), Statistics.of(values, 123, 4567));
+	}
+
+	@Test
+	void mergingSplitsMatchesTheWhole() {
+		Random r = new Random(2);
+		double[] values = randomValues(r, 5000, 100);
+		for (int k = 0; k < 100; k++) {
+			int a = r.nextInt(values.length + 1);
+			int b = a + r.nextInt(values.length - a + 1);
+			Statistics merged = Statistics.of(values, 0, a).merge(Statistics.of(values, a, b)).merge(
+					Statistics.of(values, b, values.length));
+			assertMatches(reference(values, 0, values.length), merged);
+		}
+	}
+
+	@Test
+	void mergingKeepsPrecisionFarFromZero() {
+		Random r = new Random(3);
+		double[] values = randomValues(r, 100000, 1e9);
+		Statistics merged = Statistics.EMPTY;
+		for (int from = 0; from < values.length; from += 1000) {
+			merged = merged.merge(Statistics.of(values, from, from + 1000));
+		}
+		// The two pass reference loses a little precision summing the values
+		assertMatches(reference(values, 0, values.length), merged, 1e-6);
+		assertEquals(10, merged.getStandardDeviation(), 0.2);
+	}
+
+	@Test
+	void emptyStatistics() {
+		Statistics s = Statistics.of(new double[] { Double.NaN, Double.NEGATIVE_INFINITY }, 0, 2);
+		assertEquals(0, s.getCount());
+		assertTrue(Double.isNaN(s.getMin()));
+		assertTrue(Double.isNaN(s.getMean()));
+		assertTrue(Double.isNaN(s.getVariance()));
+		Statistics one = Statistics.of(new double[] { 5 }, 0, 1);
+		assertSame(one, one.merge(Statistics.EMPTY));
+		assertSame(one, Statistics.EMPTY.merge(one));
+		assertEquals(0, one.getVariance());
+		assertTrue(Double.isNaN(one.getSampleVariance()));
+	}
+}